@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.perl5.lang.perl.PerlLanguage;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Base state for benchmarks: light project fixture and the corpus of perl sources to process
+ */
+@State(Scope.Benchmark)
+public abstract class PerlBenchmarkBase {
+  static final String CORPUS_PROPERTY = "perl5.benchmark.corpus";
+  private IdeaProjectTestFixture myFixture;
+  private final List<String> myTexts = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUpFixture() throws Exception {
+    myFixture = IdeaTestFixtureFactory.getFixtureFactory()
+      .createLightFixtureBuilder(LightProjectDescriptor.EMPTY_PROJECT_DESCRIPTOR).getFixture();
+    EdtTestUtil.runInEdtAndWait(() -> myFixture.setUp());
+    myTexts.addAll(loadCorpus());
+    setUpState();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownFixture() throws Exception {
+    myTexts.clear();
+    EdtTestUtil.runInEdtAndWait(() -> myFixture.tearDown());
+    myFixture = null;
+  }
+
+  /**
+   * Invoked after fixture and corpus are ready, allows to prepare benchmark-specific state
+   */
+  protected void setUpState() {
+  }
+
+  protected @NotNull Project getProject() {
+    return myFixture.getProject();
+  }
+
+  protected @NotNull List<String> getTexts() {
+    return myTexts;
+  }
+
+  /**
+   * @return perl file created from {@code text} with AST built
+   */
+  protected @NotNull PsiFile parse(@NotNull String text) {
+    PsiFile psiFile = PsiFileFactory.getInstance(getProject()).createFileFromText("benchmark.pm", PerlLanguage.INSTANCE, text);
+    ReadAction.run(() -> ((PsiFileImpl)psiFile).calcTreeElement());
+    return psiFile;
+  }
+
+  private static @NotNull List<String> loadCorpus() throws IOException {
+    String corpusPath = System.getProperty(CORPUS_PROPERTY);
+    if (corpusPath == null) {
+      throw new IllegalStateException("Corpus directory is not set, use -D" + CORPUS_PROPERTY + "=<path>");
+    }
+    List<String> result = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(Paths.get(corpusPath))) {
+      for (Path path : paths.filter(it -> it.toString().endsWith(".pm")).sorted().collect(Collectors.toList())) {
+        result.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      }
+    }
+    if (result.isEmpty()) {
+      throw new IllegalStateException("No perl modules found in " + corpusPath);
+    }
+    return result;
+  }
+}
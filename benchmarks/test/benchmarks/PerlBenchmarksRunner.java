@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import categories.Performance;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Collection;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs JMH benchmarks from the test task, so forked benchmark JVMs get the same classpath and platform properties as tests.
+ * Benchmarks may be filtered with {@code perl5.benchmark.include} regexp, results are written in JSON format into the
+ * {@code perl5.benchmark.results} file.
+ */
+@Category(Performance.class)
+public class PerlBenchmarksRunner {
+  private static final String INCLUDE_PROPERTY = "perl5.benchmark.include";
+  private static final String RESULTS_PROPERTY = "perl5.benchmark.results";
+
+  @Test
+  public void runBenchmarks() throws Exception {
+    File resultsFile = new File(System.getProperty(RESULTS_PROPERTY, "jmh-results.json"));
+    File resultsDir = resultsFile.getParentFile();
+    if (resultsDir != null && !resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + resultsDir);
+    }
+
+    Options options = new OptionsBuilder()
+      .include(System.getProperty(INCLUDE_PROPERTY, PerlBenchmarksRunner.class.getPackage().getName() + "\\..*Benchmark"))
+      .shouldFailOnError(true)
+      .resultFormat(ResultFormatType.JSON)
+      .result(resultsFile.getAbsolutePath())
+      .build();
+
+    Collection<RunResult> results = new Runner(options).run();
+    assertFalse("No benchmarks were run", results.isEmpty());
+  }
+}
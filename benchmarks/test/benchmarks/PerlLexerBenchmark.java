@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.intellij.lexer.Lexer;
+import com.perl5.lang.perl.lexer.PerlLexingContext;
+import com.perl5.lang.perl.lexer.adapters.PerlMergingLexerAdapter;
+import com.perl5.lang.perl.lexer.adapters.PerlSublexingLexerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PerlLexerBenchmark extends PerlBenchmarkBase {
+  @Benchmark
+  public void sublexingLexer(Blackhole blackhole) {
+    PerlLexingContext lexingContext = PerlLexingContext.create(getProject());
+    for (String text : getTexts()) {
+      lex(new PerlSublexingLexerAdapter(lexingContext), text, blackhole);
+    }
+  }
+
+  @Benchmark
+  public void mergingLexer(Blackhole blackhole) {
+    PerlLexingContext lexingContext = PerlLexingContext.create(getProject());
+    for (String text : getTexts()) {
+      lex(new PerlMergingLexerAdapter(lexingContext), text, blackhole);
+    }
+  }
+
+  private static void lex(@NotNull Lexer lexer, @NotNull String text, @NotNull Blackhole blackhole) {
+    lexer.start(text);
+    while (lexer.getTokenType() != null) {
+      blackhole.consume(lexer.getTokenType());
+      blackhole.consume(lexer.getTokenEnd());
+      lexer.advance();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.SerializerNotFoundException;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubElement;
+import com.perl5.lang.perl.psi.stubs.PerlStubElementTypes;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building of perl stubs trees from parsed files and their serialization round-trip
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PerlStubsBenchmark extends PerlBenchmarkBase {
+  private final List<PsiFile> myFiles = new ArrayList<>();
+  private final List<StubElement<?>> myStubs = new ArrayList<>();
+  private final List<byte[]> mySerializedStubs = new ArrayList<>();
+
+  @Override
+  protected void setUpState() {
+    for (String text : getTexts()) {
+      PsiFile psiFile = parse(text);
+      myFiles.add(psiFile);
+      StubElement<?> stub = buildStub(psiFile);
+      myStubs.add(stub);
+      mySerializedStubs.add(serialize(stub).toByteArray());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownState() {
+    myFiles.clear();
+    myStubs.clear();
+    mySerializedStubs.clear();
+  }
+
+  @Benchmark
+  public void buildStubs(Blackhole blackhole) {
+    for (PsiFile psiFile : myFiles) {
+      blackhole.consume(buildStub(psiFile));
+    }
+  }
+
+  @Benchmark
+  public void serializeStubs(Blackhole blackhole) {
+    for (StubElement<?> stub : myStubs) {
+      blackhole.consume(serialize(stub).size());
+    }
+  }
+
+  @Benchmark
+  public void deserializeStubs(Blackhole blackhole) throws SerializerNotFoundException {
+    SerializationManagerEx serializationManager = SerializationManagerEx.getInstanceEx();
+    for (byte[] bytes : mySerializedStubs) {
+      blackhole.consume(serializationManager.deserialize(new ByteArrayInputStream(bytes)));
+    }
+  }
+
+  private static @NotNull StubElement<?> buildStub(@NotNull PsiFile psiFile) {
+    return ReadAction.compute(() -> PerlStubElementTypes.FILE.getBuilder().buildStubTree(psiFile));
+  }
+
+  private static @NotNull BufferExposingByteArrayOutputStream serialize(@NotNull Stub stub) {
+    BufferExposingByteArrayOutputStream outputStream = new BufferExposingByteArrayOutputStream();
+    SerializationManagerEx.getInstanceEx().serialize(stub, outputStream);
+    return outputStream;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.intellij.codeInsight.controlflow.ControlFlowUtil;
+import com.intellij.codeInsight.controlflow.Instruction;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlMutationInstruction;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
+import com.perl5.lang.perl.psi.PerlVariable;
+import com.perl5.lang.perl.psi.utils.PerlResolveUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.intellij.codeInsight.controlflow.ControlFlowUtil.Operation.CONTINUE;
+import static com.intellij.codeInsight.controlflow.ControlFlowUtil.Operation.NEXT;
+
+/**
+ * Measures lookup of variables assignments in large generated subs: backward control flow walk per variable use versus
+ * shared reaching definitions analysis, and value inference for all variables in the sub.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PerlVariableValueBenchmark extends PerlBenchmarkBase {
+  @Param({"100", "1000"})
+  public int statements;
+
+  private PsiFile myFile;
+  private Collection<PerlVariable> myVariables;
+
+  @Override
+  protected void setUpState() {
+    myFile = parse(generateSub(statements));
+    myVariables = ReadAction.compute(() -> PsiTreeUtil.findChildrenOfType(myFile, PerlVariable.class));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownState() {
+    myFile = null;
+    myVariables = null;
+  }
+
+  @Setup(Level.Invocation)
+  public void dropCaches() {
+    PsiManager.getInstance(getProject()).dropPsiCaches();
+  }
+
+  @Benchmark
+  public void backwardWalk(Blackhole blackhole) {
+    ReadAction.run(() -> {
+      for (PerlVariable variable : myVariables) {
+        VariableUse use = VariableUse.create(variable);
+        if (use == null) {
+          continue;
+        }
+        List<Instruction> result = new ArrayList<>();
+        Instruction startInstruction = use.instructions[use.index];
+        ControlFlowUtil.iteratePrev(use.index, use.instructions, it -> {
+          if (it != startInstruction && use.isDefinition.test(it)) {
+            result.add(it);
+            return CONTINUE;
+          }
+          return NEXT;
+        });
+        blackhole.consume(result);
+      }
+    });
+  }
+
+  @Benchmark
+  public void reachingDefinitions(Blackhole blackhole) {
+    ReadAction.run(() -> {
+      for (PerlVariable variable : myVariables) {
+        VariableUse use = VariableUse.create(variable);
+        if (use == null) {
+          continue;
+        }
+        blackhole.consume(PerlReachingDefinitions.getFor(use.scope).getReachingDefinitions(
+          Arrays.asList(variable.getActualType(), variable.getName()), use.isDefinition, use.index));
+      }
+    });
+  }
+
+  @Benchmark
+  public void inferValues(Blackhole blackhole) {
+    ReadAction.run(() -> {
+      for (PerlVariable variable : myVariables) {
+        blackhole.consume(PerlResolveUtil.inferVariableValue(variable));
+      }
+    });
+  }
+
+  /**
+   * @return a package with single sub with {@code statements} statements mutating and using few lexical variables
+   */
+  static @NotNull String generateSub(int statements) {
+    StringBuilder sb = new StringBuilder("package Benchmark::Generated;\n\nsub generated {\n  my ($self, $row, %opts) = @_;\n");
+    for (int i = 0; i < statements; i++) {
+      switch (i % 5) {
+        case 0:
+          sb.append("  $row = $self->fetch_").append(i).append("($row, %opts);\n");
+          break;
+        case 1:
+          sb.append("  if ($row->is_valid) {\n    $self = $row->owner;\n  }\n");
+          break;
+        case 2:
+          sb.append("  for my $item ($row->items) {\n    $row = $item if $item->id == ").append(i).append(";\n  }\n");
+          break;
+        case 3:
+          sb.append("  $opts{key_").append(i).append("} = $self->process($row);\n");
+          break;
+        default:
+          sb.append("  $self->log($row, $opts{key_").append(i - 1).append("});\n");
+      }
+    }
+    return sb.append("  return $row;\n}\n\n1;\n").toString();
+  }
+
+  private static final class VariableUse {
+    final @NotNull PsiElement scope;
+    final @NotNull Instruction[] instructions;
+    final int index;
+    final @NotNull Predicate<Instruction> isDefinition;
+
+    private VariableUse(@NotNull PsiElement scope,
+                        @NotNull Instruction[] instructions,
+                        int index,
+                        @NotNull Predicate<Instruction> isDefinition) {
+      this.scope = scope;
+      this.instructions = instructions;
+      this.index = index;
+      this.isDefinition = isDefinition;
+    }
+
+    static @Nullable VariableUse create(@NotNull PerlVariable variable) {
+      PsiElement scope = PerlControlFlowBuilder.getControlFlowScope(variable);
+      if (scope == null) {
+        return null;
+      }
+      Instruction[] instructions = PerlControlFlowBuilder.getFor(scope);
+      int index = -1;
+      for (PsiElement run = variable; run != null && run != scope && index < 0; run = run.getParent()) {
+        index = ControlFlowUtil.findInstructionNumberByElement(instructions, run);
+      }
+      if (index < 0) {
+        return null;
+      }
+      String name = variable.getName();
+      return new VariableUse(scope, instructions, index, it -> {
+        if (!(it instanceof PerlMutationInstruction)) {
+          return false;
+        }
+        PsiElement assignee = ((PerlMutationInstruction)it).getLeftSide();
+        return assignee instanceof PerlVariable &&
+               ((PerlVariable)assignee).getActualType() == variable.getActualType() &&
+               Objects.equals(name, ((PerlVariable)assignee).getName());
+      });
+    }
+  }
+}
@@ -17,10 +17,13 @@
 package com.perl5.lang.htmlmason;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSettings;
 import com.perl5.lang.htmlmason.parser.psi.HTMLMasonArgsBlock;
 import com.perl5.lang.htmlmason.parser.psi.HTMLMasonCompositeElement;
+import com.perl5.lang.htmlmason.parser.psi.HTMLMasonFlagsStatement;
 import com.perl5.lang.htmlmason.parser.psi.HTMLMasonParametrizedEntity;
 import com.perl5.lang.perl.psi.utils.PerlSubArgument;
 import com.perl5.lang.perl.util.PerlSubUtil;
@@ -36,6 +39,62 @@ public class HTMLMasonUtil {
     return MasonCoreUtil.getComponentRoot(HTMLMasonSettings.getInstance(project), file);
   }
 
+  /**
+   * Resolves parent of the component without loading PSI
+   *
+   * @param componentFile       component file
+   * @param parentComponentPath path from the {@code inherit} flag or null if component has no flags and inherits from autohandler
+   * @return parent component file, if any
+   */
+  public static @Nullable VirtualFile findParentComponentFile(@NotNull Project project,
+                                                              @Nullable VirtualFile componentFile,
+                                                              @Nullable String parentComponentPath) {
+    if (componentFile == null) {
+      return null;
+    }
+    HTMLMasonSettings settings = HTMLMasonSettings.getInstance(project);
+
+    if (parentComponentPath == null) // auto-handler
+    {
+      VirtualFile startDir = componentFile.getParent();
+      if (startDir != null && StringUtil.equals(componentFile.getName(), settings.autoHandlerName)) {
+        startDir = startDir.getParent();
+      }
+
+      VirtualFile componentRoot = getComponentRoot(project, startDir);
+      if (componentRoot != null) {
+        while (VfsUtil.isAncestor(componentRoot, startDir, false)) {
+          VirtualFile autoHandlerFile = startDir.findFileByRelativePath(settings.autoHandlerName);
+          if (autoHandlerFile != null) {
+            return autoHandlerFile;
+          }
+          startDir = startDir.getParent();
+        }
+      }
+    }
+    else if (!StringUtil.equals(parentComponentPath, HTMLMasonFlagsStatement.UNDEF_RESULT)) // Specific component
+    {
+      if (StringUtil.startsWith(parentComponentPath, "/")) // absolute path
+      {
+        String relativePath = parentComponentPath.substring(1);
+        for (VirtualFile root : settings.getComponentsRoots()) {
+          VirtualFile parentFile = root.findFileByRelativePath(relativePath);
+          if (parentFile != null) {
+            return parentFile;
+          }
+        }
+      }
+      else // relative path
+      {
+        VirtualFile containingDir = componentFile.getParent();
+        if (containingDir != null) {
+          return containingDir.findFileByRelativePath(parentComponentPath);
+        }
+      }
+    }
+    return null;
+  }
+
   public static List<PerlSubArgument> getArgumentsList(HTMLMasonParametrizedEntity entity) {
     List<PerlSubArgument> result = new ArrayList<>();
 
@@ -16,15 +16,12 @@
 
 package com.perl5.lang.htmlmason.parser.psi.impl;
 
-import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.scope.PsiScopeProcessor;
-import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubElement;
-import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -34,7 +31,7 @@ import com.perl5.lang.htmlmason.HTMLMasonUtil;
 import com.perl5.lang.htmlmason.MasonCoreUtil;
 import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSettings;
 import com.perl5.lang.htmlmason.parser.psi.*;
-import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonFlagsStubIndex;
+import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonParentComponentIndex;
 import com.perl5.lang.perl.psi.PerlCompositeElement;
 import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
 import com.perl5.lang.perl.psi.impl.PerlFileImpl;
@@ -46,6 +43,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -117,53 +115,7 @@ public class HTMLMasonFileImpl extends PerlFileImpl implements HTMLMasonFile {
   }
 
   public @Nullable HTMLMasonFileImpl getParentComponent() {
-    String parentComponentPath = getParentComponentPath();
-    HTMLMasonSettings settings = HTMLMasonSettings.getInstance(getProject());
-    VirtualFile parentFile = null;
-
-    if (parentComponentPath == null) // auto-handler
-    {
-      VirtualFile containingFile = getComponentVirtualFile();
-      if (containingFile != null) {
-        VirtualFile startDir = containingFile.getParent();
-        if (StringUtil.equals(containingFile.getName(), settings.autoHandlerName)) {
-          startDir = startDir.getParent();
-        }
-
-        VirtualFile componentRoot = HTMLMasonUtil.getComponentRoot(getProject(), startDir);
-        if (componentRoot != null) {
-          while (VfsUtil.isAncestor(componentRoot, startDir, false)) {
-            if ((parentFile = startDir.findFileByRelativePath(settings.autoHandlerName)) != null) {
-              break;
-            }
-            startDir = startDir.getParent();
-          }
-        }
-      }
-    }
-    else if (!StringUtil.equals(parentComponentPath, HTMLMasonFlagsStatement.UNDEF_RESULT)) // Specific component
-    {
-      if (StringUtil.startsWith(parentComponentPath, "/")) // absolute path
-      {
-        parentComponentPath = parentComponentPath.substring(1);
-        for (VirtualFile root : settings.getComponentsRoots()) {
-          if ((parentFile = root.findFileByRelativePath(parentComponentPath)) != null) {
-            break;
-          }
-        }
-      }
-      else // relative path
-      {
-        VirtualFile containingVirtualFile = getComponentVirtualFile();
-        if (containingVirtualFile != null) {
-          VirtualFile containingDir = containingVirtualFile.getParent();
-          if (containingDir != null) {
-            parentFile = containingDir.findFileByRelativePath(parentComponentPath);
-          }
-        }
-      }
-    }
-
+    VirtualFile parentFile = HTMLMasonUtil.findParentComponentFile(getProject(), getComponentVirtualFile(), getParentComponentPath());
     if (parentFile != null) {
       PsiFile file = PsiManager.getInstance(getProject()).findFile(parentFile);
       if (file instanceof HTMLMasonFileImpl) {
@@ -174,92 +126,24 @@ public class HTMLMasonFileImpl extends PerlFileImpl implements HTMLMasonFile {
     return null;
   }
 
+  /**
+   * @return components inheriting from this one
+   * @see HTMLMasonParentComponentIndex
+   */
   public @NotNull List<HTMLMasonFileImpl> getChildComponents() {
-    final List<HTMLMasonFileImpl> result = new ArrayList<>();
     VirtualFile containingFile = getComponentVirtualFile();
-
-    if (containingFile != null) {
-      VirtualFile componentRoot = getComponentRoot();
-
-      if (componentRoot != null) {
-        final String relativePath = VfsUtil.VFS_SEPARATOR_CHAR + VfsUtil.getRelativePath(containingFile, componentRoot);
-        final Project project = getProject();
-        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
-        final HTMLMasonFileImpl currentFile = this;
-        HTMLMasonSettings settings = HTMLMasonSettings.getInstance(project);
-
-        // indexed children
-        for (String parentPath : StubIndex.getInstance().getAllKeys(HTMLMasonFlagsStubIndex.KEY, project)) {
-          boolean isEquals = StringUtil.equals(relativePath, parentPath);
-          boolean isRelative = parentPath.length() == 0 || parentPath.charAt(0) != VfsUtil.VFS_SEPARATOR_CHAR;
-
-          for (HTMLMasonFlagsStatement statement : StubIndex.getElements(
-            HTMLMasonFlagsStubIndex.KEY,
-            parentPath,
-            project,
-            scope,
-            HTMLMasonFlagsStatement.class
-          )) {
-            PsiFile file = statement.getContainingFile();
-            if (file instanceof HTMLMasonFileImpl) {
-              if (isEquals || isRelative && currentFile.equals(((HTMLMasonFileImpl)file).getParentComponent())) {
-                result.add((HTMLMasonFileImpl)file);
-              }
-            }
-          }
-        }
-
-        // implicit auto-handled children
-        if (StringUtil.equals(containingFile.getName(), settings.autoHandlerName)) {
-          collectAutoHandledFiles(PsiManager.getInstance(project), containingFile.getParent(), result, settings.autoHandlerName, null);
-        }
-      }
+    if (containingFile == null) {
+      return Collections.emptyList();
     }
-
-    return result;
-  }
-
-  protected void collectAutoHandledFiles(
-    PsiManager manager,
-    VirtualFile dir,
-    List<HTMLMasonFileImpl> result,
-    String autoHandlerName,
-    @Nullable Set<VirtualFile> recursionMap
-  ) {
-    if (dir != null) {
-      if (recursionMap == null) // first iteration
-      {
-        recursionMap = new THashSet<>();
-      }
-      else // non-first iteration
-      {
-        VirtualFile autoHandlerVirtualFile = dir.findChild(autoHandlerName);
-        if (autoHandlerVirtualFile != null) {
-          PsiFile autoHandlerPsiFile = manager.findFile(autoHandlerVirtualFile);
-          if (autoHandlerPsiFile instanceof HTMLMasonFileImpl &&
-              this.equals(((HTMLMasonFileImpl)autoHandlerPsiFile).getParentComponent())) {
-            result.add((HTMLMasonFileImpl)autoHandlerPsiFile);
-          }
-          return;
-        }
-      }
-
-      recursionMap.add(dir);
-
-      // all iterations
-      for (VirtualFile file : dir.getChildren()) {
-        if (file.isDirectory() && !recursionMap.contains(file)) {
-          collectAutoHandledFiles(manager, file, result, autoHandlerName, recursionMap);
-        }
-        else if (!StringUtil.equals(file.getName(), autoHandlerName)) // non auto-handler file
-        {
-          PsiFile psiFile = manager.findFile(file);
-          if (psiFile instanceof HTMLMasonFileImpl && this.equals(((HTMLMasonFileImpl)psiFile).getParentComponent())) {
-            result.add((HTMLMasonFileImpl)psiFile);
-          }
-        }
+    final List<HTMLMasonFileImpl> result = new ArrayList<>();
+    PsiManager psiManager = PsiManager.getInstance(getProject());
+    for (VirtualFile childFile : HTMLMasonParentComponentIndex.getChildComponentsFiles(getProject(), containingFile)) {
+      PsiFile psiFile = psiManager.findFile(childFile);
+      if (psiFile instanceof HTMLMasonFileImpl) {
+        result.add((HTMLMasonFileImpl)psiFile);
       }
     }
+    return result;
   }
 
   protected @Nullable String getParentComponentPath() {
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.htmlmason.parser.stubs;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubTreeBuilder;
+import com.intellij.util.PathUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.perl5.lang.htmlmason.HTMLMasonUtil;
+import com.perl5.lang.htmlmason.filetypes.HTMLMasonFileType;
+import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSettings;
+import com.perl5.lang.htmlmason.parser.psi.HTMLMasonFlagsStatement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Indexes components by their parent reference: path from the {@code inherit} flag or {@link #AUTOHANDLER_KEY} for components
+ * inheriting from the autohandler. Relative paths are additionally indexed by their file name, so children of a component may be found
+ * without iterating all keys. References are resolved to files with {@link HTMLMasonUtil#findParentComponentFile}, so parent and child
+ * components lookups don't load PSI of candidate components. Flags are taken from the file stub tree, which is built once for all stub
+ * indexes.
+ */
+public class HTMLMasonParentComponentIndex extends ScalarIndexExtension<String> {
+  public static final int VERSION = 2;
+  public static final ID<String, Void> NAME = ID.create("perl.html.mason.parent.component");
+  /**
+   * Key for components without {@code inherit} flag
+   */
+  public static final String AUTOHANDLER_KEY = "\0";
+  /**
+   * Prefix of the keys with file names of relative parent paths. File names can't contain a separator, so these keys don't clash with
+   * {@link #AUTOHANDLER_KEY}. Paths with unknown file name, e.g. {@code ../..}, are indexed with the prefix itself.
+   */
+  private static final String RELATIVE_FILE_NAME_KEY_PREFIX = AUTOHANDLER_KEY + VfsUtil.VFS_SEPARATOR_CHAR;
+
+  @Override
+  public @NotNull ID<String, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer() {
+    return inputData -> {
+      Stub fileStub = StubTreeBuilder.buildStubTree(inputData);
+      if (fileStub == null) {
+        return Collections.emptyMap();
+      }
+      HTMLMasonFlagsStatementStub flagsStub = findFlagsStub(fileStub);
+      String parentComponentPath = flagsStub == null ? null : flagsStub.getParentComponentPath();
+      if (parentComponentPath == null) {
+        return Collections.singletonMap(AUTOHANDLER_KEY, null);
+      }
+      Map<String, Void> result = new HashMap<>();
+      result.put(parentComponentPath, null);
+      if (isRelativePath(parentComponentPath)) {
+        result.put(getRelativeFileNameKey(PathUtil.getFileName(parentComponentPath)), null);
+      }
+      return result;
+    };
+  }
+
+  private static @Nullable HTMLMasonFlagsStatementStub findFlagsStub(@NotNull Stub stub) {
+    if (stub instanceof HTMLMasonFlagsStatementStub) {
+      return (HTMLMasonFlagsStatementStub)stub;
+    }
+    for (Stub childStub : stub.getChildrenStubs()) {
+      HTMLMasonFlagsStatementStub result = findFlagsStub(childStub);
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+    return file -> file.getFileType() == HTMLMasonFileType.INSTANCE;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * @return files of components inheriting from the {@code componentFile}, explicitly or through the autohandlers chain
+   */
+  public static @NotNull List<VirtualFile> getChildComponentsFiles(@NotNull Project project, @NotNull VirtualFile componentFile) {
+    VirtualFile componentRoot = HTMLMasonUtil.getComponentRoot(project, componentFile);
+    if (componentRoot == null) {
+      return Collections.emptyList();
+    }
+    String absolutePath = VfsUtil.VFS_SEPARATOR_CHAR + VfsUtil.getRelativePath(componentFile, componentRoot);
+    FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+    GlobalSearchScope searchScope = GlobalSearchScope.allScope(project);
+    Set<VirtualFile> result = new LinkedHashSet<>();
+
+    // explicit children; the same absolute path may point to components in several roots
+    for (VirtualFile childFile : fileBasedIndex.getContainingFiles(NAME, absolutePath, searchScope)) {
+      if (componentFile.equals(HTMLMasonUtil.findParentComponentFile(project, childFile, absolutePath))) {
+        result.add(childFile);
+      }
+    }
+    for (String fileNameKey : Arrays.asList(getRelativeFileNameKey(componentFile.getName()), RELATIVE_FILE_NAME_KEY_PREFIX)) {
+      for (VirtualFile childFile : fileBasedIndex.getContainingFiles(NAME, fileNameKey, searchScope)) {
+        for (String parentPath : fileBasedIndex.getFileData(NAME, childFile, project).keySet()) {
+          if (isRelativePath(parentPath) &&
+              componentFile.equals(HTMLMasonUtil.findParentComponentFile(project, childFile, parentPath))) {
+            result.add(childFile);
+          }
+        }
+      }
+    }
+
+    // implicit auto-handled children
+    VirtualFile componentDir = componentFile.getParent();
+    if (componentDir != null && StringUtil.equals(componentFile.getName(), HTMLMasonSettings.getInstance(project).autoHandlerName)) {
+      for (VirtualFile childFile : fileBasedIndex.getContainingFiles(
+        NAME, AUTOHANDLER_KEY, GlobalSearchScopesCore.directoryScope(project, componentDir, true))) {
+        if (!componentFile.equals(childFile) && componentFile.equals(HTMLMasonUtil.findParentComponentFile(project, childFile, null))) {
+          result.add(childFile);
+        }
+      }
+    }
+
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * @return true iff {@code parentPath} is a relative path from the {@code inherit} flag. Empty path is treated as relative.
+   */
+  private static boolean isRelativePath(@NotNull String parentPath) {
+    return !parentPath.startsWith(AUTOHANDLER_KEY) &&
+           !HTMLMasonFlagsStatement.UNDEF_RESULT.equals(parentPath) &&
+           !StringUtil.startsWithChar(parentPath, VfsUtil.VFS_SEPARATOR_CHAR);
+  }
+
+  private static @NotNull String getRelativeFileNameKey(@NotNull String fileName) {
+    return ".".equals(fileName) || "..".equals(fileName) ? RELATIVE_FILE_NAME_KEY_PREFIX : RELATIVE_FILE_NAME_KEY_PREFIX + fileName;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit;
+
+import base.HTMLMasonLightTestCase;
+import com.intellij.openapi.projectRoots.impl.PerlModuleExtension;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.perl5.lang.htmlmason.HTMLMasonUtil;
+import com.perl5.lang.htmlmason.filetypes.HTMLMasonFileType;
+import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSourceRootType;
+import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonParentComponentIndex;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.List;
+
+public class HTMLMasonParentComponentIndexTest extends HTMLMasonLightTestCase {
+  @Test
+  public void testAbsolutePathInSeveralRoots() {
+    VirtualFile firstBase = addComponent("root1/base.mas", "");
+    VirtualFile secondBase = addComponent("root2/base.mas", "");
+    markAsComponentRoot(firstBase.getParent());
+    markAsComponentRoot(secondBase.getParent());
+    VirtualFile childFile = addComponent("root2/child.mas", inheritFlags("/base.mas"));
+
+    VirtualFile parentFile = HTMLMasonUtil.findParentComponentFile(getProject(), childFile, "/base.mas");
+    assertNotNull(parentFile);
+    VirtualFile shadowedFile = parentFile.equals(firstBase) ? secondBase : firstBase;
+    assertContainsElements(getChildren(parentFile), childFile);
+    assertDoesntContain(getChildren(shadowedFile), childFile);
+  }
+
+  @Test
+  public void testRelativePath() {
+    VirtualFile topBase = addComponent("root/base.mas", "");
+    markAsComponentRoot(topBase.getParent());
+    VirtualFile nestedBase = addComponent("root/nested/base.mas", "");
+    VirtualFile upChild = addComponent("root/nested/up.mas", inheritFlags("../base.mas"));
+    VirtualFile siblingChild = addComponent("root/nested/sibling.mas", inheritFlags("base.mas"));
+    VirtualFile otherFile = addComponent("root/other.mas", inheritFlags("missing/base.mas"));
+
+    List<VirtualFile> topChildren = getChildren(topBase);
+    assertContainsElements(topChildren, upChild);
+    assertDoesntContain(topChildren, siblingChild, otherFile);
+
+    List<VirtualFile> nestedChildren = getChildren(nestedBase);
+    assertContainsElements(nestedChildren, siblingChild);
+    assertDoesntContain(nestedChildren, upChild, otherFile);
+  }
+
+  @Test
+  public void testAutohandler() {
+    VirtualFile topPage = addComponent("root/top.mas", "");
+    markAsComponentRoot(topPage.getParent());
+    VirtualFile topAutohandler = addComponent("root/autohandler", "");
+    VirtualFile nestedAutohandler = addComponent("root/nested/autohandler", "");
+    VirtualFile nestedPage = addComponent("root/nested/page.mas", "");
+    VirtualFile explicitPage = addComponent("root/nested/explicit.mas", inheritFlags("/top.mas"));
+    assertEquals(HTMLMasonFileType.INSTANCE, topAutohandler.getFileType());
+
+    List<VirtualFile> topChildren = getChildren(topAutohandler);
+    assertContainsElements(topChildren, topPage, nestedAutohandler);
+    assertDoesntContain(topChildren, topAutohandler, nestedPage, explicitPage);
+
+    List<VirtualFile> nestedChildren = getChildren(nestedAutohandler);
+    assertContainsElements(nestedChildren, nestedPage);
+    assertDoesntContain(nestedChildren, nestedAutohandler, topPage, explicitPage);
+
+    assertContainsElements(getChildren(topPage), explicitPage);
+  }
+
+  private @NotNull VirtualFile addComponent(@NotNull String relativePath, @NotNull String text) {
+    VirtualFile virtualFile = myFixture.addFileToProject(relativePath, text).getVirtualFile();
+    assertNotNull(virtualFile);
+    return virtualFile;
+  }
+
+  private void markAsComponentRoot(@NotNull VirtualFile componentRoot) {
+    PerlModuleExtension.modify(getModule(), it -> it.setRoot(componentRoot, HTMLMasonSourceRootType.INSTANCE));
+    addPerlTearDownListener(() -> removePerlSourceRoot(componentRoot));
+  }
+
+  private @NotNull List<VirtualFile> getChildren(@NotNull VirtualFile componentFile) {
+    return HTMLMasonParentComponentIndex.getChildComponentsFiles(getProject(), componentFile);
+  }
+
+  private static @NotNull String inheritFlags(@NotNull String parentPath) {
+    return "<%flags>\ninherit => '" + parentPath + "'\n</%flags>\n";
+  }
+}
@@ -22,6 +22,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubIndex;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.FileBasedIndexImpl;
 import com.intellij.util.indexing.FileBasedIndexProjectHandler;
@@ -80,36 +81,104 @@ public class Mason2Util {
                                                                                                 @NotNull List<String> componentPaths,
                                                                                                 @NotNull VirtualFile anchorDir) {
     List<PerlNamespaceDefinitionElement> result = new ArrayList<>();
-    MasonSettings masonSettings = MasonSettings.getInstance(project);
 
     for (String componentPath : componentPaths) {
-      VirtualFile componentFile = null;
-      if (componentPath
-        .startsWith("" + VfsUtil.VFS_SEPARATOR_CHAR)) // abs path relative to mason roots, see the Mason::Interp::_determine_parent_compc
-      {
-        for (VirtualFile componentRoot : masonSettings.getComponentsRoots()) {
-          componentFile = componentRoot.findFileByRelativePath(componentPath.substring(1));
-          if (componentFile != null) {
-            break;
-          }
-        }
-      }
-      else // relative path
-      {
-        componentFile = anchorDir.findFileByRelativePath(componentPath);
+      String absolutePath = PerlFileUtil.getPathRelativeToContentRoot(findComponentFile(project, componentPath, anchorDir), project);
+      if (absolutePath != null) {
+        result.addAll(Mason2Util.getMasonNamespacesByAbsolutePath(project, absolutePath));
       }
+    }
+
+    return result;
+  }
 
-      if (componentFile != null) {
-        String absolutePath = PerlFileUtil.getPathRelativeToContentRoot(componentFile, project);
-        if (absolutePath != null) {
-          result.addAll(Mason2Util.getMasonNamespacesByAbsolutePath(project, absolutePath));
+  /**
+   * @param componentPath path from the {@code extends} declaration, absolute or relative to the {@code anchorDir}
+   * @return component file for the {@code componentPath}
+   */
+  public static @Nullable VirtualFile findComponentFile(@NotNull Project project,
+                                                        @NotNull String componentPath,
+                                                        @NotNull VirtualFile anchorDir) {
+    if (componentPath
+      .startsWith("" + VfsUtil.VFS_SEPARATOR_CHAR)) // abs path relative to mason roots, see the Mason::Interp::_determine_parent_compc
+    {
+      for (VirtualFile componentRoot : MasonSettings.getInstance(project).getComponentsRoots()) {
+        VirtualFile componentFile = componentRoot.findFileByRelativePath(componentPath.substring(1));
+        if (componentFile != null) {
+          return componentFile;
         }
       }
+      return null;
     }
+    // relative path
+    return anchorDir.findFileByRelativePath(componentPath);
+  }
 
+  /**
+   * Resolves parents of the component without loading PSI
+   *
+   * @param componentFile component file
+   * @param parentsPaths  paths from the {@code extends} declarations of the component
+   * @return paths of parent components relative to the content root, explicit ones or autobase component
+   */
+  public static @NotNull List<String> getParentComponentsPaths(@NotNull Project project,
+                                                               @Nullable VirtualFile componentFile,
+                                                               @NotNull List<String> parentsPaths) {
+    if (componentFile == null || componentFile.getParent() == null) {
+      return Collections.emptyList();
+    }
+    List<String> result = new ArrayList<>();
+    if (!parentsPaths.isEmpty()) {
+      for (String parentPath : parentsPaths) {
+        ContainerUtil.addIfNotNull(
+          result, PerlFileUtil.getPathRelativeToContentRoot(findComponentFile(project, parentPath, componentFile.getParent()), project));
+      }
+    }
+    else {
+      VirtualFile componentRoot = getComponentRoot(project, componentFile);
+      if (componentRoot != null) {
+        VirtualFile autobaseFile = findAutobaseFile(project, componentRoot, componentFile.getParent(), componentFile);
+        ContainerUtil.addIfNotNull(result, PerlFileUtil.getPathRelativeToContentRoot(autobaseFile, project));
+      }
+    }
     return result;
   }
 
+  /**
+   * Recursively traversing paths and looking for autobase
+   *
+   * @param componentRoot    component root we are search in
+   * @param currentDirectory directory we are currently in
+   * @param childFile        current file (just to speed things up)
+   * @return parent component virtual file or null if not found
+   */
+  private static @Nullable VirtualFile findAutobaseFile(@NotNull Project project,
+                                                        @NotNull VirtualFile componentRoot,
+                                                        @NotNull VirtualFile currentDirectory,
+                                                        @NotNull VirtualFile childFile) {
+    // check in current dir
+    List<String> autobaseNames = new ArrayList<>(MasonSettings.getInstance(project).autobaseNames);
+
+    if (currentDirectory.equals(childFile.getParent()) && autobaseNames.contains(childFile.getName())) // avoid cyclic inheritance
+    {
+      autobaseNames = autobaseNames.subList(0, autobaseNames.lastIndexOf(childFile.getName()));
+    }
+
+    for (int i = autobaseNames.size() - 1; i >= 0; i--) {
+      VirtualFile potentialParent = VfsUtil.findRelativeFile(currentDirectory, autobaseNames.get(i));
+      if (potentialParent != null && potentialParent.exists() && !potentialParent.equals(childFile)) {
+        return potentialParent;
+      }
+    }
+
+    // move up or exit
+    VirtualFile parentDirectory = currentDirectory.getParent();
+    if (!componentRoot.equals(currentDirectory) && parentDirectory != null) {
+      return findAutobaseFile(project, componentRoot, parentDirectory, childFile);
+    }
+    return null;
+  }
+
   public static void reindexProjectFile(Project project, VirtualFile virtualFile) {
     if (VfsUtil.isAncestor(project.getBaseDir(), virtualFile, false)) {
       reindexProjectRoots(project, Collections.singletonList(PerlFileUtil.getPathRelativeToContentRoot(virtualFile, project)));
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.mason2;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.htmlmason.MasonCoreUtil;
+import com.perl5.lang.mason2.idea.configuration.MasonSettings;
+import com.perl5.lang.mason2.psi.MasonNamespaceDefinition;
+import com.perl5.lang.mason2.psi.stubs.MasonNamespaceDefitnitionsStubIndex;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Resolved hierarchy of Mason2 components in the project: parent component path to paths of components extending it, explicitly or
+ * with autobase components. Paths are relative to the content root, the same as keys of the {@link MasonNamespaceDefitnitionsStubIndex}.
+ * Hierarchy is built once from stubs and cached until perl stubs, project roots or Mason2 settings are changed.
+ */
+public final class MasonComponentsHierarchy {
+  private final @NotNull Map<String, List<String>> myChildren;
+
+  private MasonComponentsHierarchy(@NotNull Map<String, List<String>> children) {
+    myChildren = children;
+  }
+
+  /**
+   * @return paths of components directly extending component with {@code componentPath}
+   */
+  public @NotNull List<String> getChildrenPaths(@NotNull String componentPath) {
+    return Collections.unmodifiableList(myChildren.getOrDefault(componentPath, Collections.emptyList()));
+  }
+
+  public static @NotNull MasonComponentsHierarchy getInstance(@NotNull Project project) {
+    return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
+      MasonSettings masonSettings = MasonSettings.getInstance(project);
+      return CachedValueProvider.Result.create(
+        compute(project), PerlStubsModificationTracker.getInstance(project), ProjectRootModificationTracker.getInstance(project),
+        (ModificationTracker)masonSettings::getChangeCounter);
+    });
+  }
+
+  private static @NotNull MasonComponentsHierarchy compute(@NotNull Project project) {
+    Map<String, List<String>> children = new HashMap<>();
+    GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+    List<String> componentsPaths = new ArrayList<>();
+    StubIndex.getInstance().processAllKeys(MasonNamespaceDefitnitionsStubIndex.KEY, project, it -> {
+      componentsPaths.add(it);
+      return true;
+    });
+    for (String componentPath : componentsPaths) {
+      StubIndex.getInstance().processElements(
+        MasonNamespaceDefitnitionsStubIndex.KEY, componentPath, project, projectScope, MasonNamespaceDefinition.class, it -> {
+          for (String parentPath : Mason2Util.getParentComponentsPaths(
+            project, MasonCoreUtil.getContainingVirtualFile(it.getContainingFile()), it.getParentNamespacesNames())) {
+            List<String> parentChildren = children.computeIfAbsent(parentPath, __ -> new ArrayList<>());
+            if (!parentChildren.contains(componentPath)) {
+              parentChildren.add(componentPath);
+            }
+          }
+          return true;
+        });
+    }
+    return new MasonComponentsHierarchy(children);
+  }
+}
@@ -20,15 +20,12 @@ import com.intellij.lang.ASTNode;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.IStubElementType;
-import com.intellij.psi.stubs.StubIndex;
 import com.perl5.lang.htmlmason.MasonCoreUtil;
 import com.perl5.lang.mason2.Mason2Util;
+import com.perl5.lang.mason2.MasonComponentsHierarchy;
 import com.perl5.lang.mason2.idea.configuration.MasonSettings;
 import com.perl5.lang.mason2.psi.MasonNamespaceDefinition;
-import com.perl5.lang.mason2.psi.stubs.MasonNamespaceDefitnitionsStubIndex;
-import com.perl5.lang.mason2.psi.stubs.MasonParentNamespacesStubIndex;
 import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
 import com.perl5.lang.perl.psi.PerlNamespaceElement;
 import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
@@ -40,6 +37,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -86,22 +84,10 @@ public class MasonNamespaceDefinitionImpl extends PsiPerlNamespaceDefinitionImpl
 
   @Override
   public List<PerlNamespaceDefinitionElement> getParentNamespaceDefinitions() {
-    List<String> parentsPaths = getParentNamespacesNames();
-
-    VirtualFile containingFile = MasonCoreUtil.getContainingVirtualFile(getContainingFile());
-    List<PerlNamespaceDefinitionElement> parentsNamespaces;
-
-    if (!parentsPaths.isEmpty() && containingFile != null) {
-      parentsNamespaces = Mason2Util.collectComponentNamespacesByPaths(getProject(), parentsPaths, containingFile.getParent());
-    }
-    else {
-      String autobaseParent = getParentNamespaceFromAutobase();
-      if (autobaseParent != null) {
-        parentsNamespaces = Mason2Util.getMasonNamespacesByAbsolutePath(getProject(), autobaseParent);
-      }
-      else {
-        parentsNamespaces = new ArrayList<>();
-      }
+    List<PerlNamespaceDefinitionElement> parentsNamespaces = new ArrayList<>();
+    for (String parentPath : Mason2Util.getParentComponentsPaths(
+      getProject(), MasonCoreUtil.getContainingVirtualFile(getContainingFile()), getParentNamespacesNames())) {
+      parentsNamespaces.addAll(Mason2Util.getMasonNamespacesByAbsolutePath(getProject(), parentPath));
     }
 
     if (parentsNamespaces.isEmpty()) {
@@ -133,139 +119,21 @@ public class MasonNamespaceDefinitionImpl extends PsiPerlNamespaceDefinitionImpl
     return null;
   }
 
-  protected @Nullable String getParentNamespaceFromAutobase() {
-    // autobase
-    VirtualFile componentRoot = getContainingFile().getComponentRoot();
-    VirtualFile containingFile = MasonCoreUtil.getContainingVirtualFile(getContainingFile());
-
-    if (componentRoot != null && containingFile != null) {
-      VirtualFile parentComponentFile = getParentComponentFile(componentRoot, containingFile.getParent(), containingFile);
-      if (parentComponentFile != null) // found autobase class
-      {
-        String componentPath = PerlFileUtil.getPathRelativeToContentRoot(parentComponentFile, getProject());
-
-        return componentPath;
-      }
-    }
-    return null;
-  }
-
   /**
-   * Recursively traversing paths and looking for autobase
-   *
-   * @param componentRoot    component root we are search in
-   * @param currentDirectory directory we are currently in	 *
-   * @param childFile        current file (just to speed things up)
-   * @return parent component virtual file or null if not found
+   * @see MasonComponentsHierarchy
    */
-  private @Nullable VirtualFile getParentComponentFile(VirtualFile componentRoot, VirtualFile currentDirectory, VirtualFile childFile) {
-    // check in current dir
-    List<String> autobaseNames = new ArrayList<>(MasonSettings.getInstance(getProject()).autobaseNames);
-
-    if (childFile.getParent().equals(currentDirectory) && autobaseNames.contains(childFile.getName())) // avoid cyclic inheritance
-    {
-      autobaseNames = autobaseNames.subList(0, autobaseNames.lastIndexOf(childFile.getName()));
-    }
-
-    for (int i = autobaseNames.size() - 1; i >= 0; i--) {
-      VirtualFile potentialParent = VfsUtil.findRelativeFile(currentDirectory, autobaseNames.get(i));
-      if (potentialParent != null && potentialParent.exists() && !potentialParent.equals(childFile)) {
-        return potentialParent;
-      }
-    }
-
-    // move up or exit
-    if (!componentRoot.equals(currentDirectory)) {
-      return getParentComponentFile(componentRoot, currentDirectory.getParent(), childFile);
-    }
-    return null;
-  }
-
   @Override
   public @NotNull List<PerlNamespaceDefinitionElement> getChildNamespaceDefinitions() {
-    MasonSettings masonSettings = MasonSettings.getInstance(getProject());
-    final List<PerlNamespaceDefinitionElement> childNamespaces = new ArrayList<>();
-
-    // collect psi children
-    final Project project = getProject();
-    final GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
-    final String componentPath = getComponentPath();
-    if (componentPath != null) {
-      final List<String> relativePaths = new ArrayList<>();
-      final List<String> exactPaths = new ArrayList<>();
-
-      StubIndex.getInstance().processAllKeys(MasonParentNamespacesStubIndex.KEY, project, parentPath -> {
-        if (parentPath.charAt(0) == VfsUtil.VFS_SEPARATOR_CHAR) // absolute path, should be equal
-        {
-          if (componentPath.equals(parentPath.substring(1))) {
-            exactPaths.add(parentPath);
-          }
-        }
-        else if (componentPath.endsWith(parentPath))    // relative path
-        {
-          relativePaths.add(parentPath);
-        }
-
-        return true;
-      });
-
-      for (String parentPath : exactPaths) {
-        childNamespaces.addAll(StubIndex.getElements(
-          MasonParentNamespacesStubIndex.KEY,
-          parentPath,
-          project,
-          projectScope,
-          MasonNamespaceDefinition.class
-        ));
-      }
-
-      for (String parentPath : relativePaths) {
-        for (MasonNamespaceDefinition masonNamespaceDefinition : StubIndex.getElements(
-          MasonParentNamespacesStubIndex.KEY,
-          parentPath,
-          project,
-          projectScope,
-          MasonNamespaceDefinition.class
-        )) {
-          if (masonNamespaceDefinition.getParentNamespaceDefinitions().contains(MasonNamespaceDefinitionImpl.this)) {
-            childNamespaces.add(masonNamespaceDefinition);
-          }
-        }
-      }
+    String absoluteComponentPath = getAbsoluteComponentPath();
+    if (absoluteComponentPath == null) {
+      return Collections.emptyList();
     }
-
-    // collect autobased children
-    if (masonSettings.autobaseNames.contains(getContainingFile().getName())) {
-      VirtualFile containingFile = MasonCoreUtil.getContainingVirtualFile(getContainingFile());
-      if (containingFile != null) {
-        final String basePath = PerlFileUtil.getPathRelativeToContentRoot(containingFile.getParent(), getProject());
-
-        if (basePath != null) {
-          final List<String> componentPaths = new ArrayList<>();
-          StubIndex.getInstance().processAllKeys(
-            MasonNamespaceDefitnitionsStubIndex.KEY, getProject(), componentPath1 -> {
-              if (componentPath1.startsWith(basePath)) {
-                componentPaths.add(componentPath1);
-              }
-              return true;
-            }
-          );
-
-          for (String compoPath : componentPaths) {
-            for (MasonNamespaceDefinition namespaceDefinition : StubIndex.getElements(
-              MasonNamespaceDefitnitionsStubIndex.KEY,
-              compoPath,
-              project,
-              projectScope,
-              MasonNamespaceDefinition.class
-            )) {
-              if (namespaceDefinition.getParentNamespaceDefinitions().contains(MasonNamespaceDefinitionImpl.this)
-                  && !childNamespaces.contains(namespaceDefinition)
-              ) {
-                childNamespaces.add(namespaceDefinition);
-              }
-            }
-          }
+    final List<PerlNamespaceDefinitionElement> childNamespaces = new ArrayList<>();
+    Project project = getProject();
+    for (String childPath : MasonComponentsHierarchy.getInstance(project).getChildrenPaths(absoluteComponentPath)) {
+      for (PerlNamespaceDefinitionElement namespaceDefinition : Mason2Util.getMasonNamespacesByAbsolutePath(project, childPath)) {
+        if (!childNamespaces.contains(namespaceDefinition)) {
+          childNamespaces.add(namespaceDefinition);
         }
       }
     }
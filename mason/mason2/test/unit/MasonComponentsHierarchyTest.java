@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit;
+
+import base.Mason2TopLevelComponentTestCase;
+import com.intellij.openapi.projectRoots.impl.PerlModuleExtension;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.perl5.lang.mason2.Mason2Util;
+import com.perl5.lang.mason2.MasonComponentsHierarchy;
+import com.perl5.lang.mason2.idea.configuration.Mason2SourceRootType;
+import com.perl5.lang.mason2.idea.configuration.MasonSettings;
+import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
+import com.perl5.lang.perl.util.PerlFileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MasonComponentsHierarchyTest extends Mason2TopLevelComponentTestCase {
+  @Test
+  public void testAutobaseAndExplicitChildren() {
+    markAsComponentRoot(myFixture.getTempDirFixture().findOrCreateDir("comps"));
+    VirtualFile topBase = addComponent("comps/Base.mc", "");
+    VirtualFile page = addComponent("comps/page.mc", "");
+    VirtualFile nestedBase = addComponent("comps/nested/Base.mc", "");
+    VirtualFile inner = addComponent("comps/nested/inner.mc", "");
+    VirtualFile explicit = addComponent("comps/explicit.mc", extendsFlags("/nested/inner.mc"));
+    VirtualFile relative = addComponent("comps/nested/relative.mc", extendsFlags("../page.mc"));
+
+    MasonComponentsHierarchy hierarchy = MasonComponentsHierarchy.getInstance(getProject());
+    assertSameElements(hierarchy.getChildrenPaths(getPath(topBase)), getPath(page), getPath(nestedBase));
+    assertSameElements(hierarchy.getChildrenPaths(getPath(nestedBase)), getPath(inner));
+    assertSameElements(hierarchy.getChildrenPaths(getPath(inner)), getPath(explicit));
+    assertSameElements(hierarchy.getChildrenPaths(getPath(page)), getPath(relative));
+    assertEmpty(hierarchy.getChildrenPaths(getPath(explicit)));
+  }
+
+  @Test
+  public void testNamespaceDefinitions() {
+    markAsComponentRoot(myFixture.getTempDirFixture().findOrCreateDir("comps"));
+    VirtualFile base = addComponent("comps/Base.mc", "");
+    VirtualFile page = addComponent("comps/page.mc", "");
+    VirtualFile explicit = addComponent("comps/explicit.mc", extendsFlags("page.mc"));
+
+    PerlNamespaceDefinitionElement baseNamespace = getNamespace(base);
+    PerlNamespaceDefinitionElement pageNamespace = getNamespace(page);
+    PerlNamespaceDefinitionElement explicitNamespace = getNamespace(explicit);
+    assertSameElements(baseNamespace.getChildNamespaceDefinitions(), pageNamespace);
+    assertSameElements(pageNamespace.getChildNamespaceDefinitions(), explicitNamespace);
+    assertEmpty(explicitNamespace.getChildNamespaceDefinitions());
+    assertSameElements(explicitNamespace.getParentNamespaceDefinitions(), pageNamespace);
+    assertSameElements(pageNamespace.getParentNamespaceDefinitions(), baseNamespace);
+  }
+
+  @Test
+  public void testRootsChange() {
+    VirtualFile componentsDir = myFixture.getTempDirFixture().findOrCreateDir("comps");
+    PerlModuleExtension.modify(getModule(), it -> it.setRoot(componentsDir, Mason2SourceRootType.INSTANCE));
+    VirtualFile base = addComponent("comps/Base.mc", "");
+    VirtualFile page = addComponent("comps/nested/page.mc", "");
+    assertSameElements(MasonComponentsHierarchy.getInstance(getProject()).getChildrenPaths(getPath(base)), getPath(page));
+
+    removePerlSourceRoot(componentsDir);
+    assertEmpty(MasonComponentsHierarchy.getInstance(getProject()).getChildrenPaths(getPath(base)));
+  }
+
+  @Test
+  public void testSettingsChange() {
+    markAsComponentRoot(myFixture.getTempDirFixture().findOrCreateDir("comps"));
+    VirtualFile base = addComponent("comps/Base.mc", "");
+    VirtualFile customBase = addComponent("comps/nested/Custom.mc", "");
+    VirtualFile page = addComponent("comps/nested/page.mc", "");
+    assertSameElements(MasonComponentsHierarchy.getInstance(getProject()).getChildrenPaths(getPath(base)),
+                       getPath(customBase), getPath(page));
+
+    MasonSettings settings = MasonSettings.getInstance(getProject());
+    List<String> autobaseNames = new ArrayList<>(settings.autobaseNames);
+    settings.autobaseNames.add("Custom.mc");
+    settings.settingsUpdated();
+    addPerlTearDownListener(() -> {
+      settings.autobaseNames = autobaseNames;
+      settings.settingsUpdated();
+    });
+    MasonComponentsHierarchy hierarchy = MasonComponentsHierarchy.getInstance(getProject());
+    assertSameElements(hierarchy.getChildrenPaths(getPath(base)), getPath(customBase));
+    assertSameElements(hierarchy.getChildrenPaths(getPath(customBase)), getPath(page));
+  }
+
+  private @NotNull VirtualFile addComponent(@NotNull String relativePath, @NotNull String text) {
+    VirtualFile virtualFile = myFixture.addFileToProject(relativePath, text).getVirtualFile();
+    assertNotNull(virtualFile);
+    return virtualFile;
+  }
+
+  private void markAsComponentRoot(@NotNull VirtualFile componentRoot) {
+    PerlModuleExtension.modify(getModule(), it -> it.setRoot(componentRoot, Mason2SourceRootType.INSTANCE));
+    addPerlTearDownListener(() -> removePerlSourceRoot(componentRoot));
+  }
+
+  private @NotNull String getPath(@NotNull VirtualFile componentFile) {
+    String path = PerlFileUtil.getPathRelativeToContentRoot(componentFile, getProject());
+    assertNotNull(path);
+    return path;
+  }
+
+  private @NotNull PerlNamespaceDefinitionElement getNamespace(@NotNull VirtualFile componentFile) {
+    List<PerlNamespaceDefinitionElement> namespaces = Mason2Util.getMasonNamespacesByAbsolutePath(getProject(), getPath(componentFile));
+    assertSize(1, namespaces);
+    return namespaces.get(0);
+  }
+
+  private static @NotNull String extendsFlags(@NotNull String parentPath) {
+    return "<%flags>\nextends => '" + parentPath + "'\n</%flags>\n";
+  }
+}
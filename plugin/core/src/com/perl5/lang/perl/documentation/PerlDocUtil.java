@@ -41,7 +41,9 @@ import com.perl5.lang.pod.parser.psi.*;
 import com.perl5.lang.pod.parser.psi.impl.PodFileImpl;
 import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
 import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
 import com.perl5.lang.pod.parser.psi.util.PodFileUtil;
+import com.perl5.lang.pod.parser.psi.util.PodRenderedHtmlCache;
 import com.perl5.lang.pod.parser.psi.util.PodRenderUtil;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -290,6 +292,10 @@ public class PerlDocUtil implements PerlElementTypes {
       }
     }
 
+    if (PodSectionsIndex.isAvailable(psiFile)) {
+      return PodSectionsIndex.findElement(psiFile, pattern);
+    }
+
     final List<PodCompositeElement> result = new ArrayList<>();
 
     psiFile.accept(new PsiStubsAwareRecursiveVisitor() {
@@ -313,7 +319,7 @@ public class PerlDocUtil implements PerlElementTypes {
 
     renderFileToc(file, builder);
 
-    PodRenderUtil.renderPsiRangeAsHTML(file.getFirstNamedBlock(), null, builder, new PodRenderingContext());
+    builder.append(PodRenderedHtmlCache.getInstance(file.getProject()).renderPsiRangeAsHTML(file.getFirstNamedBlock(), null));
     return builder.toString();
   }
 
@@ -465,7 +471,7 @@ public class PerlDocUtil implements PerlElementTypes {
       }
     }
 
-    builder.append(PodRenderUtil.renderPsiRangeAsHTML(podSection, lastSection));
+    builder.append(PodRenderedHtmlCache.getInstance(podSection.getProject()).renderPsiRangeAsHTML(podSection, lastSection));
     builder.append(closeTag);
     return builder.toString();
   }
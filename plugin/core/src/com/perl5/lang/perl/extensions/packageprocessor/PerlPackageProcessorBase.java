@@ -18,10 +18,8 @@ package com.perl5.lang.perl.extensions.packageprocessor;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
 import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
-import com.perl5.lang.perl.util.PerlPackageUtil;
+import com.perl5.lang.perl.psi.stubs.imports.PerlNamespaceExportsTable;
 import com.perl5.lang.perl.util.PerlTimeLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -45,13 +43,9 @@ public abstract class PerlPackageProcessorBase implements PerlPackageProcessor {
     }
 
     // fixme handle tags
-    GlobalSearchScope scope = GlobalSearchScope.allScope(useStatement.getProject());
-    for (PerlNamespaceDefinitionElement namespaceDefinition : PerlPackageUtil
-      .getNamespaceDefinitions(useStatement.getProject(), scope, packageName)) {
-      export.addAll(namespaceDefinition.getEXPORT());
-      exportOk.addAll(namespaceDefinition.getEXPORT_OK());
-    }
-    exportOk.addAll(export);
+    PerlNamespaceExportsTable exportsTable = PerlNamespaceExportsTable.getInstance(useStatement.getProject(), packageName);
+    export.addAll(exportsTable.getExport());
+    exportOk.addAll(exportsTable.getExportOk());
   }
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2020 Alexandr Evstigneev
+ * Copyright 2015-2021 Alexandr Evstigneev
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,15 @@
 
 package com.perl5.lang.perl.idea.actions;
 
+import com.intellij.diff.fragments.LineFragment;
 import com.intellij.execution.ExecutionException;
-import com.intellij.execution.process.BaseProcessHandler;
-import com.intellij.execution.process.ProcessOutput;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.actionSystem.Presentation;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
@@ -32,34 +33,35 @@ import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.perl5.PerlBundle;
-import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
+import com.perl5.lang.perl.fileTypes.PurePerlFileType;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
-import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.formatter.PerlTidyService;
+import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.util.PerlActionUtil;
-import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
+/**
+ * Formats a file from the editor or selected files and directories with Perl::Tidy. Formatted text is applied as a line diff, so
+ * unchanged parts of documents are kept intact.
+ */
 public class PerlFormatWithPerlTidyAction extends PurePerlActionBase {
   private static final Logger LOG = Logger.getInstance(PerlFormatWithPerlTidyAction.class);
-  private static final String PACKAGE_NAME = "Perl::Tidy";
-  private static final String SCRIPT_NAME = "perltidy";
 
   public PerlFormatWithPerlTidyAction() {
     super(PerlBundle.message("perl.action.reformat.perl.tidy"));
   }
 
-  private @NotNull String getGroup() {
+  private static @NotNull String getGroup() {
     return PerlBundle.message("perl.action.perl.tidy.notification.group");
   }
 
@@ -67,123 +69,228 @@ public class PerlFormatWithPerlTidyAction extends PurePerlActionBase {
   protected boolean isEnabled(@NotNull AnActionEvent event) {
     Presentation presentation = event.getPresentation();
     presentation.setText(PerlBundle.message("perl.action.reformat.perl.tidy"));
-    if (!super.isEnabled(event)) {
-      return false;
+    VirtualFile[] selectedFiles = getSelectedFiles(event);
+    if (selectedFiles == null) {
+      if (!super.isEnabled(event)) {
+        return false;
+      }
+      final PsiFile file = PerlActionUtil.getPsiFileFromEvent(event);
+      //noinspection ConstantConditions
+      if (!file.isWritable()) {
+        return false;
+      }
+      presentation.setText(PerlBundle.message("perl.action.reformat.perl.tidy.specific", file.getName()));
+      return true;
     }
-    final PsiFile file = PerlActionUtil.getPsiFileFromEvent(event);
-    //noinspection ConstantConditions
-    if (!file.isWritable()) {
+    if (!PerlProjectManager.isPerlEnabled(event.getDataContext())) {
       return false;
     }
-    presentation.setText(PerlBundle.message("perl.action.reformat.perl.tidy.specific", file.getName()));
-    return true;
+    for (VirtualFile selectedFile : selectedFiles) {
+      if (selectedFile.isDirectory() || selectedFile.getFileType() instanceof PurePerlFileType) {
+        presentation.setText(PerlBundle.message("perl.action.reformat.perl.tidy.files"));
+        return true;
+      }
+    }
+    return false;
   }
 
-  private @Nullable PerlCommandLine getPerlTidyCommandLine(@NotNull Project project) {
-    PerlSharedSettings sharedSettings = PerlSharedSettings.getInstance(project);
-    VirtualFile perlTidyScript =
-      ReadAction.compute(() -> PerlRunUtil.findLibraryScriptWithNotification(project, SCRIPT_NAME, PACKAGE_NAME));
-    if (perlTidyScript == null) {
+  /**
+   * @return files and directories selected in a view, or null if action is invoked for a single file
+   */
+  private static VirtualFile @Nullable [] getSelectedFiles(@NotNull AnActionEvent event) {
+    if (event.getData(CommonDataKeys.EDITOR) != null) {
       return null;
     }
-    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(project, perlTidyScript);
-    if (commandLine == null) {
+    VirtualFile[] selectedFiles = event.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+    if (selectedFiles == null || selectedFiles.length == 0 ||
+        selectedFiles.length == 1 && !selectedFiles[0].isDirectory()) {
       return null;
     }
-    commandLine.withParameters("-st", "-se").withWorkDirectory(project.getBasePath());
-
-    if (StringUtil.isNotEmpty(sharedSettings.PERL_TIDY_ARGS)) {
-      commandLine.addParameters(StringUtil.split(sharedSettings.PERL_TIDY_ARGS, " "));
-    }
-
-    return commandLine;
+    return selectedFiles;
   }
 
   @Override
   public void actionPerformed(@NotNull AnActionEvent event) {
-    if (isEnabled(event)) {
-      final PsiFile file = PerlActionUtil.getPsiFileFromEvent(event);
-
-      if (file == null) {
+    if (!isEnabled(event)) {
+      return;
+    }
+    Project project = event.getProject();
+    if (project == null) {
+      return;
+    }
+    VirtualFile[] selectedFiles = getSelectedFiles(event);
+    if (selectedFiles == null) {
+      PsiFile psiFile = PerlActionUtil.getPsiFileFromEvent(event);
+      VirtualFile virtualFile = psiFile == null ? null : psiFile.getVirtualFile();
+      if (virtualFile == null) {
         return;
       }
+      selectedFiles = new VirtualFile[]{virtualFile};
+    }
+    VirtualFile[] filesToFormat = selectedFiles;
 
-      final Project project = file.getProject();
+    FileDocumentManager.getInstance().saveAllDocuments();
 
-      final Document document = file.getViewProvider().getDocument();
-      if (document == null) {
-        return;
+    new Task.Backgroundable(project, PerlBundle.message("perl.tidy.formatting"), true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        PerlTidyService perlTidyService = PerlTidyService.getInstance(project);
+        PerlCommandLine commandLine = perlTidyService.getCommandLine();
+        if (commandLine == null) {
+          return;
+        }
+        List<VirtualFile> files = ReadAction.compute(() -> collectFiles(project, filesToFormat));
+        if (files.isEmpty()) {
+          return;
+        }
+        Map<VirtualFile, Long> modificationStamps = ReadAction.compute(() -> {
+          Map<VirtualFile, Long> result = new HashMap<>();
+          files.forEach(it -> result.put(it, getModificationStamp(it)));
+          return result;
+        });
+        indicator.setIndeterminate(files.size() == 1);
+
+        Map<VirtualFile, PerlTidyService.Result> results;
+        try {
+          results = perlTidyService.tidy(commandLine, files, indicator);
+        }
+        catch (ExecutionException e) {
+          LOG.warn(e);
+          notifyError(PerlBundle.message("perl.action.perl.tidy.running.error.title"), e.getMessage());
+          return;
+        }
+
+        List<String> errors = new ArrayList<>();
+        Map<VirtualFile, String> formattedTexts = new LinkedHashMap<>();
+        results.forEach((file, result) -> {
+          byte[] formattedBytes = result.getFormatted();
+          if (formattedBytes == null) {
+            LOG.warn("Perl::Tidy errors for " + file.getPresentableUrl() + ": " + result.getErrors());
+            List<String> errorLines = StringUtil.split(result.getErrors(), "\n");
+            errors.add(files.size() == 1 ? StringUtil.join(errorLines, "<br>") :
+                       file.getPresentableUrl() + ":<br>" + StringUtil.join(errorLines, "<br>"));
+          }
+          else {
+            formattedTexts.put(file, StringUtil.convertLineSeparators(new String(formattedBytes, file.getCharset())));
+          }
+        });
+        if (!errors.isEmpty()) {
+          notifyError(PerlBundle.message("perl.action.perl.tidy.formatting.error.title"), StringUtil.join(errors, "<br>"));
+        }
+        if (!formattedTexts.isEmpty()) {
+          applyResults(project, formattedTexts, modificationStamps, indicator);
+        }
       }
+    }.queue();
+  }
 
-      final VirtualFile virtualFile = file.getVirtualFile();
+  /**
+   * @return modification stamp of the loaded document for the {@code file} or of the {@code file} itself. Documents are created and saved
+   * with stamps of their files, so stamps are comparable whether document is loaded or not.
+   */
+  private static long getModificationStamp(@NotNull VirtualFile file) {
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document == null ? file.getModificationStamp() : document.getModificationStamp();
+  }
 
-      if (virtualFile == null) {
+  /**
+   * Applies formatted texts to the documents, which were not changed since formatting started. Changes are computed in background, write
+   * action only replaces changed lines.
+   */
+  private static void applyResults(@NotNull Project project,
+                                   @NotNull Map<VirtualFile, String> formattedTexts,
+                                   @NotNull Map<VirtualFile, Long> modificationStamps,
+                                   @NotNull ProgressIndicator indicator) {
+    List<DocumentChanges> changes = new ArrayList<>();
+    formattedTexts.forEach((file, formattedText) -> {
+      indicator.checkCanceled();
+      long modificationStamp = modificationStamps.get(file);
+      Document document = ReadAction.compute(() -> {
+        if (!file.isValid() || !file.isWritable() || getModificationStamp(file) != modificationStamp) {
+          LOG.debug("Skipping modified file: ", file);
+          return null;
+        }
+        return FileDocumentManager.getInstance().getDocument(file);
+      });
+      if (document == null) {
         return;
       }
-
-      FileDocumentManager.getInstance().saveDocument(document);
-
-      new Task.Backgroundable(project, PerlBundle.message("perl.tidy.formatting"), false) {
-        @Override
-        public void run(@NotNull ProgressIndicator indicator) {
-          indicator.setIndeterminate(true);
-          try {
-            PerlCommandLine perlTidyCommandLine = getPerlTidyCommandLine(project);
-            if (perlTidyCommandLine == null) {
-              return;
-            }
-            BaseProcessHandler<?> processHandler = PerlHostData.createProcessHandler(
-              perlTidyCommandLine.withCharset(virtualFile.getCharset()));
-
-            final OutputStream outputStream = Objects.requireNonNull(processHandler.getProcessInput());
-
-            try {
-              final byte[] sourceBytes = virtualFile.contentsToByteArray();
-              outputStream.write(sourceBytes);
-              outputStream.close();
-            }
-            catch (IOException e) {
-              LOG.error(e);
-              Notifications.Bus.notify(new Notification(
-                getGroup(),
-                PerlBundle.message("perl.action.perl.tidy.formatting.error.title"),
-                e.getMessage(),
-                NotificationType.ERROR
-              ));
-              return;
-            }
-
-            ProcessOutput processOutput = PerlHostData.getOutput(processHandler);
-            final List<String> stdoutLines = processOutput.getStdoutLines(false);
-            List<String> stderrLines = processOutput.getStderrLines();
-
-            if (stderrLines.isEmpty()) {
-              WriteCommandAction.runWriteCommandAction(project, () -> {
-                document.setText(StringUtil.join(stdoutLines, "\n"));
-                PsiDocumentManager.getInstance(project).commitDocument(document);
-              });
-            }
-            else {
-              LOG.warn("Non-empty stderr: " + processOutput.getStderr());
-              Notifications.Bus.notify(new Notification(
-                getGroup(),
-                PerlBundle.message("perl.action.perl.tidy.formatting.error.title"),
-                StringUtil.join(stderrLines, "<br>"),
-                NotificationType.ERROR
-              ));
-            }
-          }
-          catch (ExecutionException e) {
-            LOG.error(e);
-            Notifications.Bus.notify(new Notification(
-              getGroup(),
-              PerlBundle.message("perl.action.perl.tidy.running.error.title"),
-              e.getMessage(),
-              NotificationType.ERROR
-            ));
+      CharSequence currentText = document.getImmutableCharSequence();
+      if (StringUtil.equals(currentText, formattedText)) {
+        return;
+      }
+      changes.add(new DocumentChanges(document, modificationStamp, formattedText,
+                                      PerlTidyService.computeChanges(currentText, formattedText, indicator)));
+    });
+    if (changes.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().invokeAndWait(() -> {
+      if (indicator.isCanceled()) {
+        return;
+      }
+      WriteCommandAction.writeCommandAction(project).withName(PerlBundle.message("perl.tidy.formatting")).run(() -> {
+        PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
+        for (DocumentChanges documentChanges : changes) {
+          Document document = documentChanges.myDocument;
+          if (document.getModificationStamp() != documentChanges.myModificationStamp) {
+            LOG.debug("Skipping modified document: ", document);
+            continue;
           }
+          PerlTidyService.applyChanges(document, documentChanges.myFormattedText, documentChanges.myFragments);
+          psiDocumentManager.commitDocument(document);
         }
-      }.queue();
+      });
+    });
+  }
+
+  /**
+   * @return writable pure perl files from {@code selectedFiles} and selected directories, excluding ignored and excluded ones
+   */
+  private static @NotNull List<VirtualFile> collectFiles(@NotNull Project project, VirtualFile @NotNull [] selectedFiles) {
+    ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    for (VirtualFile selectedFile : selectedFiles) {
+      if (!selectedFile.isValid()) {
+        continue;
+      }
+      if (!selectedFile.isDirectory()) {
+        if (selectedFile.isWritable() && selectedFile.getFileType() instanceof PurePerlFileType) {
+          result.add(selectedFile);
+        }
+        continue;
+      }
+      VfsUtilCore.iterateChildrenRecursively(
+        selectedFile,
+        file -> !fileIndex.isExcluded(file) && !fileIndex.isUnderIgnored(file),
+        file -> {
+          if (!file.isDirectory() && file.isWritable() && file.getFileType() instanceof PurePerlFileType) {
+            result.add(file);
+          }
+          return true;
+        });
+    }
+    return new ArrayList<>(result);
+  }
+
+  private static void notifyError(@NotNull String title, @NotNull String content) {
+    Notifications.Bus.notify(new Notification(getGroup(), title, content, NotificationType.ERROR));
+  }
+
+  private static final class DocumentChanges {
+    private final @NotNull Document myDocument;
+    private final long myModificationStamp;
+    private final @NotNull String myFormattedText;
+    private final @NotNull List<LineFragment> myFragments;
+
+    private DocumentChanges(@NotNull Document document,
+                            long modificationStamp,
+                            @NotNull String formattedText,
+                            @NotNull List<LineFragment> fragments) {
+      myDocument = document;
+      myModificationStamp = modificationStamp;
+      myFormattedText = formattedText;
+      myFragments = fragments;
     }
   }
 }
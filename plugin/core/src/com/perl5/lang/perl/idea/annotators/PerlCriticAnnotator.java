@@ -16,7 +16,6 @@
 
 package com.perl5.lang.perl.idea.annotators;
 
-import com.intellij.execution.process.BaseProcessHandler;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
@@ -26,6 +25,7 @@ import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
@@ -36,16 +36,14 @@ import com.intellij.psi.util.PsiUtilCore;
 import com.perl5.PerlBundle;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
-import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.psi.PerlFile;
+import com.perl5.lang.perl.util.PerlPluginUtil;
 import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 
 public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCriticErrorDescriptor>> {
@@ -66,7 +64,7 @@ public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCr
     if (perlCriticScript == null) {
       return null;
     }
-    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(project, perlCriticScript);
+    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(project, PerlPluginUtil.getHelperPath(PerlCriticWorker.WORKER_SCRIPT));
     if (commandLine == null) {
       return null;
     }
@@ -103,17 +101,12 @@ public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCr
         return null;
       }
 
-      BaseProcessHandler<?> processHandler = PerlHostData.createProcessHandler(
-        criticCommandLine.withCharset(virtualFile.getCharset())
-      );
-
-      OutputStream outputStream = Objects.requireNonNull(processHandler.getProcessInput());
-      outputStream.write(sourceBytes);
-      outputStream.close();
+      List<String> outputLines = PerlCriticService.getInstance(sourcePsiFile.getProject()).critique(
+        criticCommandLine.withCharset(virtualFile.getCharset()), sourceBytes);
 
       List<PerlCriticErrorDescriptor> errors = new ArrayList<>();
       PerlCriticErrorDescriptor lastDescriptor = null;
-      for (String output : PerlHostData.getOutput(processHandler).getStdoutLines()) {
+      for (String output : outputLines) {
         PerlCriticErrorDescriptor fromString = PerlCriticErrorDescriptor.getFromString(output);
         if (fromString != null) {
           errors.add(lastDescriptor = fromString);
@@ -127,6 +120,9 @@ public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCr
       }
       return errors;
     }
+    catch (ProcessCanceledException e) {
+      throw e;
+    }
     catch (Exception e) {
       LOG.warn("Error running perlcritic", e);
 
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.annotators;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.perl5.lang.perl.idea.configuration.settings.PerlLocalSettings;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.execution.PerlWorkersPool;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
+import com.perl5.lang.perl.util.PerlPluginUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Perl::Critic for the project using a pool of {@link PerlCriticWorker}s and caches results on disk.
+ * <p>
+ * Cache key is computed from the source, perlcritic configuration, profile content and Perl::Critic version, so unchanged files are never
+ * sent to workers. Version becomes known when the first worker for the configuration starts. Workers read the profile on startup, so
+ * profile content is a part of the pool configuration and changing it restarts workers. Pool size is limited by
+ * {@link PerlLocalSettings#PERL_CRITIC_WORKERS}.
+ * <p>
+ * Profile paths are resolved on the SDK host and mapped to the local file system. If the profile can't be checked locally, e.g. it may be
+ * in the home directory of a docker or WSL user, results are not cached.
+ */
+public class PerlCriticService implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerlCriticService.class);
+  private static final String CACHE_DIR = "perlcritic";
+  private static final long CACHE_TTL = TimeUnit.DAYS.toMillis(30);
+  private static final String PROFILE_OPTION = "--profile";
+  private static final String NO_PROFILE_OPTION = "--noprofile";
+  private static final String PROFILE_FILE = ".perlcriticrc";
+
+  private final @NotNull PerlWorkersPool<PerlCriticWorker> myWorkersPool;
+  /**
+   * Perl::Critic versions by configuration
+   */
+  private final Map<String, String> myVersions = new ConcurrentHashMap<>();
+
+  public PerlCriticService(@NotNull Project project) {
+    myWorkersPool = new PerlWorkersPool<>(() -> PerlLocalSettings.getInstance(project).PERL_CRITIC_WORKERS, PerlCriticWorker::start);
+    Disposer.register(this, myWorkersPool);
+    ApplicationManager.getApplication().executeOnPooledThread(PerlCriticService::pruneCache);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * @param commandLine command line for the {@code perlcritic_worker.pl}
+   * @param source      source to critique
+   * @return perlcritic output for the {@code source}
+   */
+  public @NotNull List<String> critique(@NotNull PerlCommandLine commandLine, byte @NotNull [] source) throws ExecutionException {
+    // workers read the profile on startup, so profile content is a part of the configuration
+    String profileHash = computeProfileHash(commandLine);
+    String configuration = PerlWorkersPool.getConfiguration(commandLine) + "\n" + StringUtil.notNullize(profileHash);
+    if (profileHash == null) {
+      return myWorkersPool.withWorker(commandLine, configuration, worker -> worker.critique(source));
+    }
+    String version = myVersions.get(configuration);
+    if (version != null) {
+      List<String> cachedOutput = readCache(computeKey(configuration, version, source));
+      if (cachedOutput != null) {
+        return cachedOutput;
+      }
+    }
+
+    return myWorkersPool.withWorker(commandLine, configuration, worker -> {
+      myVersions.put(configuration, worker.getVersion());
+      List<String> output = worker.critique(source);
+      writeCache(computeKey(configuration, worker.getVersion(), source), output);
+      return output;
+    });
+  }
+
+  private static @NotNull String computeKey(@NotNull String configuration, @NotNull String version, byte @NotNull [] source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(version.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte)0);
+      digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte)0);
+      digest.update(source);
+      return StringUtil.toHexString(digest.digest());
+    }
+    catch (NoSuchAlgorithmException e) {
+      LOG.warn(e);
+      return UUID.randomUUID().toString();
+    }
+  }
+
+  /**
+   * @return hash of the profile, Perl::Critic is going to use, empty string if there is no profile or null if profile can't be checked
+   */
+  private static @Nullable String computeProfileHash(@NotNull PerlCommandLine commandLine) {
+    PerlHostData<?, ?> hostData = commandLine.getEffectiveHostData();
+    boolean isLocalHost = hostData == null || hostData.getHandler() == PerlHostHandler.getDefaultHandler();
+    File profileFile;
+    try {
+      profileFile = findProfileFile(commandLine, hostData, isLocalHost);
+    }
+    catch (UnknownProfileException e) {
+      return null;
+    }
+    if (profileFile == null || !profileFile.isFile()) {
+      return "";
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(Files.readAllBytes(profileFile.toPath()));
+      return StringUtil.toHexString(digest.digest());
+    }
+    catch (NoSuchAlgorithmException | IOException e) {
+      LOG.warn(e);
+      return null;
+    }
+  }
+
+  /**
+   * Looks for the profile in the same order perlcritic does. Work directory is local, other paths are the SDK host paths.
+   *
+   * @return local file of the profile, Perl::Critic is going to use, or null if there is no profile
+   * @throws UnknownProfileException if profile is on the SDK host and can't be mapped to the local file
+   */
+  private static @Nullable File findProfileFile(@NotNull PerlCommandLine commandLine,
+                                                @Nullable PerlHostData<?, ?> hostData,
+                                                boolean isLocalHost) throws UnknownProfileException {
+    List<String> parameters = commandLine.getParametersList().getList();
+    for (int i = 0; i < parameters.size(); i++) {
+      String parameter = parameters.get(i);
+      if (parameter.equals(NO_PROFILE_OPTION)) {
+        return null;
+      }
+      String profilePath = null;
+      if (parameter.equals(PROFILE_OPTION) && i + 1 < parameters.size()) {
+        profilePath = parameters.get(i + 1);
+      }
+      else if (parameter.startsWith(PROFILE_OPTION + "=")) {
+        profilePath = parameter.substring(PROFILE_OPTION.length() + 1);
+      }
+      if (profilePath != null) {
+        File profileFile = new File(profilePath);
+        if (!profileFile.isAbsolute() && !profilePath.startsWith("/") && commandLine.getWorkDirectory() != null) {
+          return new File(commandLine.getWorkDirectory(), profilePath);
+        }
+        return getLocalFile(profilePath, hostData, isLocalHost);
+      }
+    }
+    String environmentProfile = commandLine.getEnvironment().get("PERLCRITIC");
+    if (StringUtil.isNotEmpty(environmentProfile)) {
+      return getLocalFile(environmentProfile, hostData, isLocalHost);
+    }
+    if (commandLine.getWorkDirectory() != null) {
+      File profileFile = new File(commandLine.getWorkDirectory(), PROFILE_FILE);
+      if (profileFile.isFile()) {
+        return profileFile;
+      }
+    }
+    if (!isLocalHost) {
+      // home directory of the SDK host user
+      throw new UnknownProfileException();
+    }
+    return new File(System.getProperty("user.home"), PROFILE_FILE);
+  }
+
+  /**
+   * @return local file for the {@code hostPath}
+   * @throws UnknownProfileException if path can't be mapped
+   */
+  private static @NotNull File getLocalFile(@NotNull String hostPath, @Nullable PerlHostData<?, ?> hostData, boolean isLocalHost)
+    throws UnknownProfileException {
+    if (isLocalHost || hostData == null) {
+      return new File(hostPath);
+    }
+    String localPath = hostData.getLocalPath(hostPath);
+    if (localPath == null) {
+      throw new UnknownProfileException();
+    }
+    return new File(localPath);
+  }
+
+  private static @NotNull File getCacheDir() {
+    return new File(PerlPluginUtil.getPerlSystemPath(), CACHE_DIR);
+  }
+
+  private static @Nullable List<String> readCache(@NotNull String key) {
+    File cacheFile = new File(getCacheDir(), key);
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    try {
+      List<String> result = Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8);
+      //noinspection ResultOfMethodCallIgnored
+      cacheFile.setLastModified(System.currentTimeMillis());
+      return result;
+    }
+    catch (IOException e) {
+      LOG.warn("Error reading perlcritic cache " + cacheFile, e);
+      return null;
+    }
+  }
+
+  private static void writeCache(@NotNull String key, @NotNull List<String> output) {
+    File cacheDir = getCacheDir();
+    try {
+      FileUtil.createDirectory(cacheDir);
+      File tempFile = FileUtil.createTempFile(cacheDir, key, ".tmp", true, false);
+      Files.write(tempFile.toPath(), output, StandardCharsets.UTF_8);
+      Files.move(tempFile.toPath(), new File(cacheDir, key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      LOG.warn("Error writing perlcritic cache to " + cacheDir, e);
+    }
+  }
+
+  /**
+   * Removes cache entries, unused for {@link #CACHE_TTL}
+   */
+  private static void pruneCache() {
+    File[] cacheFiles = getCacheDir().listFiles();
+    if (cacheFiles == null) {
+      return;
+    }
+    long threshold = System.currentTimeMillis() - CACHE_TTL;
+    for (File cacheFile : cacheFiles) {
+      if (cacheFile.lastModified() < threshold) {
+        FileUtil.delete(cacheFile);
+      }
+    }
+  }
+
+  public static @NotNull PerlCriticService getInstance(@NotNull Project project) {
+    return project.getService(PerlCriticService.class);
+  }
+
+  private static final class UnknownProfileException extends Exception {
+  }
+}
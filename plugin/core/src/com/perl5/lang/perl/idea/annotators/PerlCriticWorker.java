@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.annotators;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.openapi.diagnostic.Logger;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.execution.PerlProcessWorker;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Long-living {@code perlcritic_worker.pl} process with loaded Perl::Critic policies. Worker handles one source at a time.
+ */
+final class PerlCriticWorker extends PerlProcessWorker<List<String>> {
+  private static final Logger LOG = Logger.getInstance(PerlCriticWorker.class);
+  static final String WORKER_SCRIPT = "perlcritic_worker.pl";
+  private static final String PREFIX = "#camelcade-perlcritic-";
+  private static final String READY = PREFIX + "ready ";
+  private static final String DONE = PREFIX + "done";
+  private static final String ERROR = PREFIX + "error ";
+
+  private final @NotNull String myVersion;
+
+  private PerlCriticWorker(@NotNull BaseProcessHandler<?> processHandler) throws ExecutionException {
+    super("Perl::Critic", processHandler);
+    myVersion = waitForReady(READY);
+  }
+
+  /**
+   * @return version of Perl::Critic used by the worker
+   */
+  @NotNull String getVersion() {
+    return myVersion;
+  }
+
+  /**
+   * @return perlcritic output lines for the {@code source}
+   * @throws ExecutionException if worker died, is not responding or protocol is broken
+   */
+  @NotNull List<String> critique(byte @NotNull [] source) throws ExecutionException {
+    return request(source);
+  }
+
+  @Override
+  protected @NotNull List<String> readResponse() throws ExecutionException {
+    List<String> result = new ArrayList<>();
+    while (true) {
+      String line = readLine();
+      if (line == null) {
+        throw new ExecutionException("Perl::Critic worker exited unexpectedly" + getErrorOutput());
+      }
+      if (line.equals(DONE)) {
+        return result;
+      }
+      if (line.startsWith(ERROR)) {
+        LOG.warn("Perl::Critic failed: " + line.substring(ERROR.length()));
+      }
+      else {
+        result.add(line);
+      }
+    }
+  }
+
+  @Override
+  protected void skipResponse() throws ExecutionException {
+    String line;
+    do {
+      line = readLine();
+      if (line == null) {
+        throw new ExecutionException("Perl::Critic worker exited unexpectedly" + getErrorOutput());
+      }
+    }
+    while (!line.equals(DONE));
+  }
+
+  static @NotNull PerlCriticWorker start(@NotNull PerlCommandLine commandLine) throws ExecutionException {
+    return new PerlCriticWorker(PerlHostData.createProcessHandler(commandLine));
+  }
+}
@@ -20,7 +20,6 @@ import com.intellij.codeInsight.controlflow.*;
 import com.intellij.codeInsight.controlflow.impl.TransparentInstructionImpl;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.AtomicNotNullLazyValue;
-import com.intellij.openapi.util.ClearableLazyValue;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
@@ -29,8 +28,6 @@ import com.intellij.psi.TokenType;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.TokenSet;
-import com.intellij.psi.util.CachedValueProvider;
-import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.Function;
@@ -178,16 +175,15 @@ public class PerlControlFlowBuilder extends ControlFlowBuilder {
     return instruction;
   }
 
-  public static @NotNull ClearableLazyValue<Instruction[]> createLazy(@NotNull PsiElement element) {
-    return ClearableLazyValue.create(() -> new PerlControlFlowBuilder().build(element).getInstructions());
+  public static @NotNull PerlLazyControlFlow createLazy(@NotNull PerlControlFlowOwner owner) {
+    return new PerlLazyControlFlow(owner);
   }
 
   public static Instruction[] getFor(@NotNull PsiElement element) {
     if (element instanceof PerlControlFlowOwner) {
       return ((PerlControlFlowOwner)element).getControlFlow();
     }
-    return CachedValuesManager.getCachedValue(
-      element, () -> CachedValueProvider.Result.create(new PerlControlFlowBuilder().build(element).getInstructions(), element));
+    return PerlReachingDefinitions.getFor(element).getInstructions();
   }
 
   @SuppressWarnings("UnusedReturnValue")
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.codeInsight.controlFlow;
+
+import com.intellij.codeInsight.controlflow.Instruction;
+import com.intellij.openapi.util.ClearableLazyValue;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.perl5.lang.perl.psi.PerlControlFlowOwner;
+import com.perl5.lang.perl.psi.properties.PerlDieScope;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lazily computed control flow of the {@link PerlControlFlowOwner}.
+ * <p>
+ * Nested owners not inlined into the outer flow, e.g. sub definitions or anonymous subs, are represented with a single instruction in
+ * the control flow of the outer owner. So changes inside such nested owner drop only its own flow, and typing in a sub of a large
+ * script rebuilds only the graph of this sub, not the graph of the whole file.
+ *
+ * @implNote {@code subtreeChanged} is invoked for the changed element and all its ancestors, from the innermost one. Nested owner marks
+ * the outer one and the mark is consumed by the following {@link #subtreeChanged()} of the outer owner in the same pass.
+ */
+public final class PerlLazyControlFlow {
+  private final @NotNull PerlControlFlowOwner myOwner;
+  private final @NotNull ClearableLazyValue<PerlReachingDefinitions> myReachingDefinitions;
+  private volatile boolean myIsNestedChange;
+
+  PerlLazyControlFlow(@NotNull PerlControlFlowOwner owner) {
+    myOwner = owner;
+    myReachingDefinitions = ClearableLazyValue.create(
+      () -> new PerlReachingDefinitions(new PerlControlFlowBuilder().build(owner).getInstructions()));
+  }
+
+  public @NotNull Instruction[] getInstructions() {
+    return getReachingDefinitions().getInstructions();
+  }
+
+  /**
+   * @return reaching definitions for the current instructions, built once per control flow
+   */
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
+    return myReachingDefinitions.getValue();
+  }
+
+  /**
+   * Should be invoked from the {@code subtreeChanged} of the owner
+   */
+  public void subtreeChanged() {
+    if (myIsNestedChange) {
+      myIsNestedChange = false;
+    }
+    else {
+      myReachingDefinitions.drop();
+    }
+    if (myOwner instanceof PerlDieScope && !((PerlDieScope)myOwner).includeInControlFlow()) {
+      PerlControlFlowOwner outerOwner = PsiTreeUtil.getParentOfType(myOwner, PerlControlFlowOwner.class);
+      if (outerOwner != null) {
+        outerOwner.nestedOwnerChanged();
+      }
+    }
+  }
+
+  /**
+   * Marks that current change is inside the nested owner and does not affect flow of this one
+   *
+   * @see PerlControlFlowOwner#nestedOwnerChanged()
+   */
+  public void nestedOwnerChanged() {
+    myIsNestedChange = true;
+  }
+}
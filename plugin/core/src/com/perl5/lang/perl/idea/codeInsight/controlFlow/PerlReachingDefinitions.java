@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.codeInsight.controlFlow;
+
+import com.intellij.codeInsight.controlflow.Instruction;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.containers.IntArrayList;
+import com.perl5.lang.perl.psi.PerlControlFlowOwner;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Control flow of some element with reaching definitions analyses for it. Definitions are instructions selected by a
+ * predicate, each of them kills all others, e.g. assignments to the same variable. Analysis is computed once per
+ * definitions kind and shared between all lookups of this kind in the control flow.
+ *
+ * @see PerlControlFlowBuilder#getFor(PsiElement)
+ */
+public final class PerlReachingDefinitions {
+  private static final BitSet EMPTY_SET = new BitSet(0);
+
+  private final @NotNull Instruction[] myInstructions;
+  private final @NotNull Map<Object, Analysis> myAnalyses = new ConcurrentHashMap<>();
+
+  PerlReachingDefinitions(@NotNull Instruction[] instructions) {
+    myInstructions = instructions;
+  }
+
+  /**
+   * @return reaching definitions for the control flow of the {@code element}. Control flow owners keep them with their flow, for other
+   * elements flow and definitions are cached together
+   * @see PerlControlFlowOwner#getReachingDefinitions()
+   */
+  public static @NotNull PerlReachingDefinitions getFor(@NotNull PsiElement element) {
+    if (element instanceof PerlControlFlowOwner) {
+      return ((PerlControlFlowOwner)element).getReachingDefinitions();
+    }
+    return CachedValuesManager.getCachedValue(
+      element, () -> CachedValueProvider.Result.create(
+        new PerlReachingDefinitions(new PerlControlFlowBuilder().build(element).getInstructions()), element));
+  }
+
+  public @NotNull Instruction[] getInstructions() {
+    return myInstructions;
+  }
+
+  /**
+   * @param kind             key of definitions kind, must identify {@code isDefinition} predicate
+   * @param isDefinition     predicate selecting definitions of the {@code kind}
+   * @param instructionIndex index of instruction to find definitions for
+   * @return definitions of the {@code kind} reaching the instruction, closest first. Definition reaches instruction if there
+   * is a path from it to the instruction without other definitions. Instruction itself is a result only if it's reachable
+   * from itself.
+   */
+  public @NotNull List<Instruction> getReachingDefinitions(@NotNull Object kind,
+                                                           @NotNull Predicate<? super Instruction> isDefinition,
+                                                           int instructionIndex) {
+    Analysis analysis = myAnalyses.computeIfAbsent(kind, it -> new Analysis(myInstructions, isDefinition));
+    BitSet reachingSet = analysis.myReachingSets == null ? EMPTY_SET : analysis.myReachingSets[instructionIndex];
+    if (reachingSet.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Instruction> result = new ArrayList<>(reachingSet.cardinality());
+    for (int i = reachingSet.previousSetBit(reachingSet.length() - 1); i >= 0; i = reachingSet.previousSetBit(i - 1)) {
+      result.add(myInstructions[analysis.myDefinitions[i]]);
+    }
+    return result;
+  }
+
+  private static final class Analysis {
+    /**
+     * Instruction numbers of definitions, ascending
+     */
+    private final int[] myDefinitions;
+    /**
+     * Sets of definitions indexes reaching each instruction. Sets are shared between instructions, so they must not be modified.
+     * {@code null} if there are no definitions
+     */
+    private final BitSet[] myReachingSets;
+
+    Analysis(@NotNull Instruction[] instructions, @NotNull Predicate<? super Instruction> isDefinition) {
+      int instructionsNumber = instructions.length;
+      int[] definitionIndexes = new int[instructionsNumber];
+      IntArrayList definitions = new IntArrayList();
+      for (int i = 0; i < instructionsNumber; i++) {
+        if (isDefinition.test(instructions[i])) {
+          definitionIndexes[i] = definitions.size();
+          definitions.add(i);
+        }
+        else {
+          definitionIndexes[i] = -1;
+        }
+      }
+      myDefinitions = definitions.toArray();
+      myReachingSets = myDefinitions.length == 0 ? null : computeReachingSets(instructions, definitionIndexes);
+    }
+
+    private @NotNull BitSet[] computeReachingSets(@NotNull Instruction[] instructions, int[] definitionIndexes) {
+      int instructionsNumber = instructions.length;
+      BitSet[] definitionSets = new BitSet[myDefinitions.length];
+      for (int i = 0; i < definitionSets.length; i++) {
+        definitionSets[i] = new BitSet(definitionSets.length);
+        definitionSets[i].set(i);
+      }
+
+      BitSet[] inSets = new BitSet[instructionsNumber];
+      BitSet[] outSets = new BitSet[instructionsNumber];
+      Arrays.fill(inSets, EMPTY_SET);
+      Arrays.fill(outSets, EMPTY_SET);
+
+      boolean changed = true;
+      while (changed) {
+        ProgressManager.checkCanceled();
+        changed = false;
+        for (int i = 0; i < instructionsNumber; i++) {
+          BitSet inSet = join(instructions[i], outSets);
+          if (!inSet.equals(inSets[i])) {
+            inSets[i] = inSet;
+            changed = true;
+          }
+          outSets[i] = definitionIndexes[i] < 0 ? inSet : definitionSets[definitionIndexes[i]];
+        }
+      }
+      return inSets;
+    }
+
+    /**
+     * @return union of out sets of {@code instruction} predecessors. Reuses predecessor set if possible
+     */
+    private static @NotNull BitSet join(@NotNull Instruction instruction, @NotNull BitSet[] outSets) {
+      BitSet result = EMPTY_SET;
+      boolean isShared = true;
+      for (Instruction predecessor : instruction.allPred()) {
+        BitSet predecessorSet = outSets[predecessor.num()];
+        if (predecessorSet.isEmpty() || predecessorSet == result) {
+          continue;
+        }
+        if (result.isEmpty()) {
+          result = predecessorSet;
+        }
+        else {
+          if (isShared) {
+            result = (BitSet)result.clone();
+            isShared = false;
+          }
+          result.or(predecessorSet);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -32,7 +32,9 @@ import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
 import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
 import com.perl5.lang.perl.psi.PerlSubDefinitionElement;
 import com.perl5.lang.perl.psi.PerlSubElement;
+import com.perl5.lang.perl.psi.mro.PerlNamespaceMethodTable;
 import com.perl5.lang.perl.psi.references.PerlImplicitDeclarationsService;
+import com.perl5.lang.perl.psi.stubs.imports.PerlNamespaceImportsTable;
 import com.perl5.lang.perl.psi.utils.PerlContextType;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlSubUtil;
@@ -237,11 +239,8 @@ public abstract class PerlCallValue extends PerlParametrizedOperationValue {
     }
 
     // exports
-    Set<PerlExportDescriptor> exportDescriptors = new HashSet<>();
-    PerlNamespaceDefinitionElement.processExportDescriptors(project, effectiveScope, currentNamespaceName, (__, it) -> {
-      exportDescriptors.add(it);
-      return true;
-    });
+    Set<PerlExportDescriptor> exportDescriptors =
+      PerlNamespaceDefinitionElement.getExportDescriptors(project, effectiveScope, currentNamespaceName);
     return processExportDescriptors(project, effectiveScope, processor, exportDescriptors);
   }
 
@@ -266,16 +265,22 @@ public abstract class PerlCallValue extends PerlParametrizedOperationValue {
     };
 
     GlobalSearchScope subsEffectiveScope = getEffectiveScope(project, searchScope, namespaceName, contextElement);
+    PerlNamespaceMethodTable methodTable = PerlNamespaceMethodTable.getInstance(project, subsEffectiveScope, namespaceName);
     for (String subName : subNames) {
-      if (!PerlSubUtil.processRelatedItems(project, subsEffectiveScope, PerlPackageUtil.join(namespaceName, subName), processorWrapper)) {
+      if (methodTable.contains(subName) &&
+          !PerlSubUtil.processRelatedItems(project, subsEffectiveScope, PerlPackageUtil.join(namespaceName, subName), processorWrapper)) {
         return false;
       }
     }
 
     // exports
-    Set<PerlExportDescriptor> exportDescriptors = PerlNamespaceDefinitionElement.getExportDescriptors(project, searchScope, namespaceName);
-    if (!processExportDescriptorsItems(project, searchScope, subNames, processorWrapper, exportDescriptors)) {
-      return false;
+    PerlNamespaceImportsTable importsTable = PerlNamespaceImportsTable.getInstance(project, searchScope, namespaceName);
+    for (String subName : subNames) {
+      for (PerlExportDescriptor exportDescriptor : importsTable.getDescriptors(subName)) {
+        if (!PerlSubUtil.processRelatedItems(project, searchScope, exportDescriptor.getTargetCanonicalName(), processorWrapper)) {
+          return false;
+        }
+      }
     }
 
     // built-ins
@@ -292,6 +297,7 @@ public abstract class PerlCallValue extends PerlParametrizedOperationValue {
     // AUTOLOAD
     return !processingContext.processAutoload ||
            PerlPackageUtil.isUNIVERSAL(namespaceName) || PerlPackageUtil.isCORE(namespaceName) ||
+           !PerlNamespaceMethodTable.getInstance(project, searchScope, namespaceName).hasAutoload() ||
            PerlSubUtil.processRelatedItems(project, searchScope, PerlPackageUtil.join(namespaceName, SUB_AUTOLOAD), processorWrapper);
   }
 
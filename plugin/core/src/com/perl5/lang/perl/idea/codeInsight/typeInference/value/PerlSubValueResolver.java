@@ -33,6 +33,11 @@ public class PerlSubValueResolver extends PerlValueResolver {
     return perlValue == PerlValues.ARGUMENTS_VALUE ? myArguments : perlValue;
   }
 
+  @Override
+  protected @NotNull Object getSubstitutionKey() {
+    return myArguments;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -17,6 +17,7 @@
 package com.perl5.lang.perl.idea.codeInsight.typeInference.value;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -52,6 +53,23 @@ public abstract class PerlValueResolver {
     return myContextFile;
   }
 
+  /**
+   * @return key of the values resolved by this resolver for the {@link PerlValuesCacheService}. Key does not reference PSI, so cached
+   * values don't retain files and elements
+   */
+  final @NotNull Object getCacheKey() {
+    VirtualFile contextVirtualFile = myContextFile == null ? null : myContextFile.getViewProvider().getVirtualFile();
+    return new CacheKey(getClass(), myResolveScope, contextVirtualFile, getSubstitutionKey());
+  }
+
+  /**
+   * @return PSI-free object, identifying substitutions made by this resolver, if they depend on the resolver state
+   * @see #substitute(PerlValue)
+   */
+  protected @Nullable Object getSubstitutionKey() {
+    return null;
+  }
+
   public final @NotNull GlobalSearchScope getResolveScope() {
     return myResolveScope;
   }
@@ -91,4 +109,47 @@ public abstract class PerlValueResolver {
     result = 31 * result + (myContextFile != null ? myContextFile.hashCode() : 0);
     return result;
   }
+
+  private static final class CacheKey {
+    private final @NotNull Class<?> myResolverClass;
+    private final @NotNull GlobalSearchScope myResolveScope;
+    private final @Nullable VirtualFile myContextFile;
+    private final @Nullable Object mySubstitutionKey;
+
+    private CacheKey(@NotNull Class<?> resolverClass,
+                     @NotNull GlobalSearchScope resolveScope,
+                     @Nullable VirtualFile contextFile,
+                     @Nullable Object substitutionKey) {
+      myResolverClass = resolverClass;
+      myResolveScope = resolveScope;
+      myContextFile = contextFile;
+      mySubstitutionKey = substitutionKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey key = (CacheKey)o;
+
+      return myResolverClass.equals(key.myResolverClass) &&
+             myResolveScope.equals(key.myResolveScope) &&
+             Objects.equals(myContextFile, key.myContextFile) &&
+             Objects.equals(mySubstitutionKey, key.mySubstitutionKey);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = myResolverClass.hashCode();
+      result = 31 * result + myResolveScope.hashCode();
+      result = 31 * result + Objects.hashCode(myContextFile);
+      result = 31 * result + Objects.hashCode(mySubstitutionKey);
+      return result;
+    }
+  }
 }
@@ -16,43 +16,75 @@
 
 package com.perl5.lang.perl.idea.codeInsight.typeInference.value;
 
-import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.RecursionManager;
-import com.intellij.psi.util.PsiModificationTracker;
-import com.intellij.util.containers.ContainerUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.containers.SLRUMap;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValues.UNKNOWN_VALUE;
 
-public class PerlValuesCacheService implements PsiModificationTracker.Listener, Disposable {
+/**
+ * Caches results of deferred values resolution.
+ * <p>
+ * Resolved values depend on the stubs of all project files and on the resolver context file. Each cached value remembers the stubs
+ * modification count and the modification count of its context file at the moment of computation, see
+ * {@link PerlStubsModificationTracker}:
+ * <ul>
+ *   <li>changes that keep stub tree of the file intact (most of typing inside the code blocks) invalidate values resolved in context of
+ *   this file only, so values resolved in other files survive</li>
+ *   <li>changes of stubs, files structure, roots or indexes drop everything</li>
+ * </ul>
+ * Cache size is bounded with segmented LRU eviction policy. Keys don't reference PSI, see {@link PerlValueResolver#getCacheKey()}, so
+ * cached values don't retain files and elements of resolvers.
+ */
+public class PerlValuesCacheService {
   private static final Logger LOG = Logger.getInstance(PerlValuesCacheService.class);
-  private final @NotNull Map<Pair<PerlValue, PerlValueResolver>, PerlValue> myResolveMap = ContainerUtil.createConcurrentWeakMap();
+  private static final int PROTECTED_QUEUE_SIZE = 20_000;
+  private static final int PROBATIONAL_QUEUE_SIZE = 10_000;
+
+  private final @NotNull SLRUMap<Pair<PerlValue, Object>, CachedValue> myResolveMap =
+    new SLRUMap<>(PROTECTED_QUEUE_SIZE, PROBATIONAL_QUEUE_SIZE);
+  private final @NotNull PerlStubsModificationTracker myModificationTracker;
+  private long myLastStubsModificationCount = -1;
 
   private final AtomicLong myResolveRequests = new AtomicLong();
   private final AtomicLong myResolveBuilds = new AtomicLong();
+  private final AtomicLong myGlobalInvalidations = new AtomicLong();
+  private final AtomicLong myFileInvalidations = new AtomicLong();
 
   public PerlValuesCacheService(@NotNull Project project) {
-    project.getMessageBus().connect(this).subscribe(PsiModificationTracker.TOPIC, this);
-  }
-
-  @Override
-  public void dispose() {
-
+    myModificationTracker = PerlStubsModificationTracker.getInstance(project);
   }
 
   public @NotNull PerlValue getResolvedValue(@NotNull PerlValue deferredValue, @NotNull PerlValueResolver resolver) {
-    Pair<PerlValue, PerlValueResolver> key = Pair.create(deferredValue, resolver);
+    Pair<PerlValue, Object> key = Pair.create(deferredValue, resolver.getCacheKey());
     myResolveRequests.incrementAndGet();
-    PerlValue result = myResolveMap.get(key);
-    if (result != null) {
-      return result;
+    long stubsModificationCount = myModificationTracker.getModificationCount();
+    long fileModificationCount = myModificationTracker.getFileModificationCount(getContextVirtualFile(resolver));
+    CachedValue cachedValue;
+    synchronized (myResolveMap) {
+      if (myLastStubsModificationCount != stubsModificationCount) {
+        logStatistics();
+        myResolveMap.clear();
+        myLastStubsModificationCount = stubsModificationCount;
+        myGlobalInvalidations.incrementAndGet();
+      }
+      cachedValue = myResolveMap.get(key);
+    }
+    if (cachedValue != null) {
+      if (cachedValue.myModificationCount == fileModificationCount) {
+        return cachedValue.myValue;
+      }
+      myFileInvalidations.incrementAndGet();
     }
     myResolveBuilds.incrementAndGet();
     PerlValue resolvedValue = RecursionManager.doPreventingRecursion(
@@ -61,23 +93,79 @@ public class PerlValuesCacheService implements PsiModificationTracker.Listener,
       // fixme probably we could use this for recursion prevention. Actually, this may happen because of flaws of our loops/conditions handling
       return UNKNOWN_VALUE;
     }
-    myResolveMap.putIfAbsent(key, resolvedValue);
+    synchronized (myResolveMap) {
+      if (myLastStubsModificationCount == stubsModificationCount) {
+        myResolveMap.put(key, new CachedValue(resolvedValue, fileModificationCount));
+      }
+    }
     return resolvedValue;
   }
 
-  @Override
-  public void modificationCountChanged() {
-    myResolveMap.clear();
+  /**
+   * @return number of values requested since last {@link #resetStatistics()}
+   */
+  public long getResolveRequestsCount() {
+    return myResolveRequests.get();
+  }
 
-    if (myResolveRequests.get() > 0) {
-      LOG.debug(String.format("Value resolve effectiveness: %d, %d, %d", myResolveRequests.get(), myResolveBuilds.get(),
-                              (myResolveRequests.get() - myResolveBuilds.get()) * 100 / myResolveRequests.get()));
-    }
+  /**
+   * @return number of values actually computed since last {@link #resetStatistics()}
+   */
+  public long getResolveBuildsCount() {
+    return myResolveBuilds.get();
+  }
+
+  /**
+   * @return number of invalidations of the whole cache since last {@link #resetStatistics()}
+   */
+  public long getGlobalInvalidationsCount() {
+    return myGlobalInvalidations.get();
+  }
+
+  /**
+   * @return number of cached values invalidated by modifications of their context files since last {@link #resetStatistics()}
+   */
+  public long getFileInvalidationsCount() {
+    return myFileInvalidations.get();
+  }
+
+  /**
+   * @return percent of requests served from the cache since last {@link #resetStatistics()}
+   */
+  public int getHitRatio() {
+    long requests = myResolveRequests.get();
+    return requests == 0 ? 0 : (int)((requests - myResolveBuilds.get()) * 100 / requests);
+  }
+
+  public void resetStatistics() {
     myResolveRequests.set(0);
     myResolveBuilds.set(0);
+    myGlobalInvalidations.set(0);
+    myFileInvalidations.set(0);
+  }
+
+  private void logStatistics() {
+    if (LOG.isDebugEnabled() && myResolveRequests.get() > 0) {
+      LOG.debug(String.format("Value resolve effectiveness: %d, %d, %d", myResolveRequests.get(), myResolveBuilds.get(), getHitRatio()));
+    }
+  }
+
+  private static @Nullable VirtualFile getContextVirtualFile(@NotNull PerlValueResolver resolver) {
+    PsiFile contextFile = resolver.getContextFile();
+    return contextFile == null ? null : contextFile.getViewProvider().getVirtualFile();
   }
 
   public static @NotNull PerlValuesCacheService getInstance(@NotNull Project project) {
     return ServiceManager.getService(project, PerlValuesCacheService.class);
   }
+
+  private static final class CachedValue {
+    private final @NotNull PerlValue myValue;
+    private final long myModificationCount;
+
+    public CachedValue(@NotNull PerlValue value, long modificationCount) {
+      myValue = value;
+      myModificationCount = modificationCount;
+    }
+  }
 }
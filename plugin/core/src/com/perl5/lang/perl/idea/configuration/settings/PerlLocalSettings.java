@@ -39,6 +39,8 @@ public class PerlLocalSettings implements PersistentStateComponent<PerlLocalSett
   public boolean DISABLE_NO_INTERPRETER_WARNING = false;
   public boolean DISABLE_ASSOCIATIONS_CHECKING = false;
   public boolean ENABLE_REGEX_INJECTIONS = false;
+  public int PERL_CRITIC_WORKERS = 2;
+  public int PERL_TIDY_WORKERS = 2;
   private String myPerlInterpreter;
   private List<String> myExternalLibrariesPaths = new ArrayList<>();
 
@@ -74,6 +74,8 @@ public class Perl5ProjectConfigurable implements Configurable, Perl5SdkManipulat
   private CollectionListModel<VirtualFile> myLibsModel;
 
   private RawCommandLineEditor perlCriticArgsInputField;
+  private JBIntSpinner perlCriticWorkersSpinner;
+  private JBIntSpinner perlTidyWorkersSpinner;
   private RawCommandLineEditor perlTidyArgsInputField;
   private JTextField deparseArgumentsTextField;
   private JCheckBox simpleMainCheckbox;
@@ -172,12 +174,16 @@ public class Perl5ProjectConfigurable implements Configurable, Perl5SdkManipulat
         PerlBundle.message("perl.config.critic.cmd.arguments")
       )
     );
+    perlCriticWorkersSpinner = new JBIntSpinner(2, 1, 16);
+    builder.addLabeledComponent(PerlBundle.message("perl.config.critic.workers.label"), perlCriticWorkersSpinner);
     perlTidyArgsInputField = new RawCommandLineEditor();
     builder.addComponent(
       copyDialogCaption(
         LabeledComponent.create(perlTidyArgsInputField, PerlBundle.message("perl.config.tidy.options.label")),
         PerlBundle.message("perl.config.tidy.options.label.short")
       ));
+    perlTidyWorkersSpinner = new JBIntSpinner(2, 1, 16);
+    builder.addLabeledComponent(PerlBundle.message("perl.config.tidy.workers.label"), perlTidyWorkersSpinner);
 
     deparseArgumentsTextField = new JTextField();
     builder.addLabeledComponent(PerlBundle.message("perl.config.deparse.options.label"), deparseArgumentsTextField);
@@ -271,6 +277,8 @@ public class Perl5ProjectConfigurable implements Configurable, Perl5SdkManipulat
            !mySharedSettings.getTargetPerlVersion().equals(myTargetPerlVersionComboBox.getSelectedItem()) ||
            !StringUtil.equals(mySharedSettings.PERL_DEPARSE_ARGUMENTS, deparseArgumentsTextField.getText()) ||
            !StringUtil.equals(mySharedSettings.PERL_CRITIC_ARGS, perlCriticArgsInputField.getText()) ||
+           myLocalSettings.PERL_CRITIC_WORKERS != perlCriticWorkersSpinner.getNumber() ||
+           myLocalSettings.PERL_TIDY_WORKERS != perlTidyWorkersSpinner.getNumber() ||
            !StringUtil.equals(mySharedSettings.PERL_TIDY_ARGS, perlTidyArgsInputField.getText()) ||
            !mySharedSettings.selfNames.equals(selfNamesModel.getItems()) ||
            myHostProjectConfigurable != null && myHostProjectConfigurable.isModified();
@@ -302,6 +310,8 @@ public class Perl5ProjectConfigurable implements Configurable, Perl5SdkManipulat
 
     perlCriticCheckBox.setSelected(mySharedSettings.PERL_CRITIC_ENABLED);
     perlCriticArgsInputField.setText(mySharedSettings.PERL_CRITIC_ARGS);
+    perlCriticWorkersSpinner.setNumber(myLocalSettings.PERL_CRITIC_WORKERS);
+    perlTidyWorkersSpinner.setNumber(myLocalSettings.PERL_TIDY_WORKERS);
 
     perlTidyArgsInputField.setText(mySharedSettings.PERL_TIDY_ARGS);
   }
@@ -327,6 +337,8 @@ public class Perl5ProjectConfigurable implements Configurable, Perl5SdkManipulat
 
     mySharedSettings.PERL_CRITIC_ENABLED = perlCriticCheckBox.isSelected();
     mySharedSettings.PERL_CRITIC_ARGS = perlCriticArgsInputField.getText();
+    myLocalSettings.PERL_CRITIC_WORKERS = perlCriticWorkersSpinner.getNumber();
+    myLocalSettings.PERL_TIDY_WORKERS = perlTidyWorkersSpinner.getNumber();
 
     if (mySharedSettings.PERL_SWITCH_ENABLED != enablePerlSwitchCheckbox.isSelected()) {
       mySharedSettings.PERL_SWITCH_ENABLED = enablePerlSwitchCheckbox.isSelected();
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.execution;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-living helper process, handling one length-prefixed request at a time. Suitable for {@link PerlWorkersPool}.
+ * <p>
+ * Process output is read by a dedicated thread into a bounded queue, so the requesting thread never blocks on a read: it waits for
+ * the output at most {@link #READ_TIMEOUT_MS} and may be canceled while waiting for the next line. Rest of the canceled response is
+ * skipped with {@link #skipResponse()} before the next request, so the worker may be reused after cancellation.
+ *
+ * @param <R> response type
+ */
+public abstract class PerlProcessWorker<R> implements PerlWorkersPool.Worker {
+  private static final Logger LOG = Logger.getInstance(PerlProcessWorker.class);
+  /**
+   * Max time to wait for the next chunk of the worker output, including worker startup
+   */
+  private static final long READ_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(60);
+  private static final long READ_POLL_MS = 10;
+  private static final int MAX_QUEUED_CHUNKS = 256;
+  private static final int CHUNK_SIZE = 8192;
+  private static final int MAX_ERROR_OUTPUT = 4096;
+  /**
+   * Queued after the last chunk of the worker output
+   */
+  private static final byte[] END_OF_OUTPUT = new byte[0];
+
+  private final @NotNull String myName;
+  private final @NotNull Process myProcess;
+  private final @NotNull Charset myCharset;
+  private final @NotNull OutputStream myInput;
+  private final @NotNull BlockingQueue<byte[]> myOutputChunks = new ArrayBlockingQueue<>(MAX_QUEUED_CHUNKS);
+  private final @NotNull StringBuilder myErrorOutput = new StringBuilder();
+  /**
+   * Chunk being consumed by the requesting thread and position in it
+   */
+  private byte @Nullable [] myChunk;
+  private int myChunkOffset;
+  /**
+   * Bytes of the line being read, kept between canceled reads
+   */
+  private final @NotNull ByteArrayOutputStream myLineBuffer = new ByteArrayOutputStream();
+  /**
+   * Number of canceled responses, which rest should be skipped before the next request
+   */
+  private int myCanceledResponsesCount;
+  private volatile boolean myIsDestroyed;
+
+  /**
+   * @param name human-readable worker name for error messages
+   */
+  protected PerlProcessWorker(@NotNull String name, @NotNull BaseProcessHandler<?> processHandler) {
+    myName = name;
+    myProcess = processHandler.getProcess();
+    myCharset = processHandler.getCharset();
+    myInput = new BufferedOutputStream(myProcess.getOutputStream());
+    ApplicationManager.getApplication().executeOnPooledThread(this::readOutput);
+    ApplicationManager.getApplication().executeOnPooledThread(this::readErrorOutput);
+  }
+
+  /**
+   * Reads the first line of the worker output and checks that it starts with {@code readyPrefix}. Worker is destroyed on failure.
+   *
+   * @return rest of the ready line
+   */
+  protected final @NotNull String waitForReady(@NotNull String readyPrefix) throws ExecutionException {
+    String readyLine;
+    try {
+      readyLine = readLine();
+    }
+    catch (ExecutionException | RuntimeException e) {
+      destroy();
+      throw e;
+    }
+    if (readyLine == null || !readyLine.startsWith(readyPrefix)) {
+      destroy();
+      try {
+        // gives a chance to collect the reason from stderr
+        myProcess.waitFor(1, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new ExecutionException(myName + " worker failed to start: " + StringUtil.notNullize(readyLine) + getErrorOutput());
+    }
+    return readyLine.substring(readyPrefix.length()).trim();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return !myIsDestroyed && myProcess.isAlive();
+  }
+
+  @Override
+  public void destroy() {
+    myIsDestroyed = true;
+    try {
+      myInput.close();
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+    myProcess.destroy();
+  }
+
+  /**
+   * Skips responses to the canceled requests, sends the {@code source} prefixed with its length line and reads the response
+   *
+   * @throws ExecutionException if worker died, is not responding or protocol is broken
+   */
+  protected final R request(byte @NotNull [] source) throws ExecutionException {
+    while (myCanceledResponsesCount > 0) {
+      skipResponse();
+      myCanceledResponsesCount--;
+    }
+    try {
+      myInput.write((source.length + "\n").getBytes(StandardCharsets.US_ASCII));
+      myInput.write(source);
+      myInput.flush();
+    }
+    catch (IOException e) {
+      throw new ExecutionException("Error sending source to the " + myName + " worker" + getErrorOutput(), e);
+    }
+    try {
+      return readResponse();
+    }
+    catch (ProcessCanceledException e) {
+      myCanceledResponsesCount++;
+      throw e;
+    }
+  }
+
+  /**
+   * Reads a response to the request. Cancellation is possible only between lines, see {@link #readLine()}.
+   */
+  protected abstract R readResponse() throws ExecutionException;
+
+  /**
+   * Reads the rest of the response, which reading was canceled. Invoked before the next request.
+   */
+  protected abstract void skipResponse() throws ExecutionException;
+
+  /**
+   * Reads the next line of the worker output, checking for cancellation while waiting. Canceled read keeps the partially read line
+   * for the next one.
+   *
+   * @return next line without line separator or null if worker output is over
+   */
+  protected final @Nullable String readLine() throws ExecutionException {
+    while (true) {
+      byte[] chunk = nextChunk(true);
+      if (chunk == null) {
+        if (myLineBuffer.size() == 0) {
+          return null;
+        }
+        break;
+      }
+      int start = myChunkOffset;
+      int end = start;
+      while (end < chunk.length && chunk[end] != '\n') {
+        end++;
+      }
+      myLineBuffer.write(chunk, start, end - start);
+      if (end < chunk.length) {
+        myChunkOffset = end + 1;
+        break;
+      }
+      myChunkOffset = end;
+    }
+    String line = new String(myLineBuffer.toByteArray(), myCharset);
+    myLineBuffer.reset();
+    return line;
+  }
+
+  /**
+   * Reads exactly {@code length} bytes of the worker output. Read may not be canceled, only timed out, so it should be used for the
+   * data following a line, which worker prints without delays.
+   */
+  protected final byte @NotNull [] readBytes(int length) throws ExecutionException {
+    byte[] result = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      byte[] chunk = nextChunk(false);
+      if (chunk == null) {
+        throw new ExecutionException(myName + " worker exited unexpectedly" + getErrorOutput());
+      }
+      int read = Math.min(length - offset, chunk.length - myChunkOffset);
+      System.arraycopy(chunk, myChunkOffset, result, offset, read);
+      myChunkOffset += read;
+      offset += read;
+    }
+    return result;
+  }
+
+  protected final @NotNull Charset getCharset() {
+    return myCharset;
+  }
+
+  /**
+   * @return stderr collected so far, prefixed with a colon, or empty string
+   */
+  protected final @NotNull String getErrorOutput() {
+    synchronized (myErrorOutput) {
+      return myErrorOutput.length() == 0 ? "" : ": " + myErrorOutput;
+    }
+  }
+
+  /**
+   * @return current chunk with unread bytes, waiting for the next one if necessary, or null if output is over
+   * @throws ExecutionException if worker is not responding for {@link #READ_TIMEOUT_MS}
+   */
+  private byte @Nullable [] nextChunk(boolean isCancelable) throws ExecutionException {
+    if (myChunk != null && myChunkOffset < myChunk.length) {
+      return myChunk;
+    }
+    if (myChunk == END_OF_OUTPUT) {
+      return null;
+    }
+    long deadline = System.currentTimeMillis() + READ_TIMEOUT_MS;
+    try {
+      while (true) {
+        byte[] chunk = myOutputChunks.poll(READ_POLL_MS, TimeUnit.MILLISECONDS);
+        if (chunk != null) {
+          myChunk = chunk;
+          myChunkOffset = 0;
+          return chunk == END_OF_OUTPUT ? null : chunk;
+        }
+        if (isCancelable) {
+          ProgressManager.checkCanceled();
+        }
+        if (System.currentTimeMillis() > deadline) {
+          throw new ExecutionException(myName + " worker is not responding" + getErrorOutput());
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(e);
+    }
+  }
+
+  /**
+   * Reads worker output into the {@link #myOutputChunks}. Waits while the queue is full.
+   */
+  private void readOutput() {
+    try (InputStream output = myProcess.getInputStream()) {
+      byte[] buffer = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = output.read(buffer)) >= 0) {
+        if (read > 0 && !enqueue(Arrays.copyOf(buffer, read))) {
+          return;
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    try {
+      enqueue(END_OF_OUTPUT);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return false iff worker was destroyed while waiting for the free space in the queue
+   */
+  private boolean enqueue(byte @NotNull [] chunk) throws InterruptedException {
+    while (!myOutputChunks.offer(chunk, READ_POLL_MS, TimeUnit.MILLISECONDS)) {
+      if (myIsDestroyed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void readErrorOutput() {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(myProcess.getErrorStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        LOG.debug(myName, " worker: ", line);
+        synchronized (myErrorOutput) {
+          if (myErrorOutput.length() < MAX_ERROR_OUTPUT) {
+            myErrorOutput.append(line).append('\n');
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+}
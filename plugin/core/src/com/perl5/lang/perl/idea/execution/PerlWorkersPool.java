@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.execution;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.ThrowableConvertor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.IntSupplier;
+
+/**
+ * Bounded pool of long-living helper processes, started with the same command line. Idle workers are reused, workers started with
+ * previous command line are destroyed when command line changes.
+ *
+ * @param <W> worker type
+ */
+public final class PerlWorkersPool<W extends PerlWorkersPool.Worker> implements Disposable {
+  private final Object myLock = new Object();
+  private final @NotNull IntSupplier myPoolSizeSupplier;
+  private final @NotNull ThrowableConvertor<PerlCommandLine, W, ExecutionException> myWorkerFactory;
+  private final Deque<W> myIdleWorkers = new ArrayDeque<>();
+  private int myBusyWorkersCount;
+  private @Nullable String myConfiguration;
+  private boolean myIsDisposed;
+
+  /**
+   * @param poolSizeSupplier provides max number of simultaneously running workers
+   * @param workerFactory    starts a worker with a command line
+   */
+  public PerlWorkersPool(@NotNull IntSupplier poolSizeSupplier,
+                         @NotNull ThrowableConvertor<PerlCommandLine, W, ExecutionException> workerFactory) {
+    myPoolSizeSupplier = poolSizeSupplier;
+    myWorkerFactory = workerFactory;
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myLock) {
+      myIsDisposed = true;
+      myIdleWorkers.forEach(Worker::destroy);
+      myIdleWorkers.clear();
+      myLock.notifyAll();
+    }
+  }
+
+  /**
+   * @return a string identifying workers started with the {@code commandLine}
+   */
+  public static @NotNull String getConfiguration(@NotNull PerlCommandLine commandLine) {
+    return commandLine.getCommandLineString() + "\n" + commandLine.getWorkDirectory() + "\n" + commandLine.getCharset();
+  }
+
+  /**
+   * Runs {@code action} with a worker for the {@code commandLine}, waiting for a free one if pool is exhausted. Worker is destroyed if
+   * action fails, except for {@link ProcessCanceledException}: canceled action should leave the worker ready for the next request or
+   * destroy it itself.
+   */
+  public <T> T withWorker(@NotNull PerlCommandLine commandLine, @NotNull ThrowableConvertor<? super W, T, ExecutionException> action)
+    throws ExecutionException {
+    return withWorker(commandLine, getConfiguration(commandLine), action);
+  }
+
+  /**
+   * Same as {@link #withWorker(PerlCommandLine, ThrowableConvertor)}, but with explicit {@code configuration}. Useful when workers depend on
+   * something besides the command line, e.g. configuration files read on startup: changing the {@code configuration} restarts workers.
+   */
+  public <T> T withWorker(@NotNull PerlCommandLine commandLine,
+                          @NotNull String configuration,
+                          @NotNull ThrowableConvertor<? super W, T, ExecutionException> action)
+    throws ExecutionException {
+    W worker = acquire(commandLine, configuration);
+    boolean isBroken = true;
+    try {
+      T result = action.convert(worker);
+      isBroken = false;
+      return result;
+    }
+    catch (ProcessCanceledException e) {
+      isBroken = false;
+      throw e;
+    }
+    finally {
+      release(worker, configuration, isBroken);
+    }
+  }
+
+  private @NotNull W acquire(@NotNull PerlCommandLine commandLine, @NotNull String configuration) throws ExecutionException {
+    synchronized (myLock) {
+      if (!configuration.equals(myConfiguration)) {
+        myIdleWorkers.forEach(Worker::destroy);
+        myIdleWorkers.clear();
+        myConfiguration = configuration;
+      }
+      int poolSize = Math.max(1, myPoolSizeSupplier.getAsInt());
+      while (true) {
+        if (myIsDisposed) {
+          throw new ExecutionException("Workers pool is disposed");
+        }
+        W worker = myIdleWorkers.pollFirst();
+        if (worker != null) {
+          if (worker.isAlive()) {
+            myBusyWorkersCount++;
+            return worker;
+          }
+          worker.destroy();
+          continue;
+        }
+        if (myBusyWorkersCount < poolSize) {
+          break;
+        }
+        ProgressManager.checkCanceled();
+        try {
+          myLock.wait(100);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ExecutionException(e);
+        }
+      }
+      myBusyWorkersCount++;
+    }
+    try {
+      return myWorkerFactory.convert(commandLine);
+    }
+    catch (ExecutionException | RuntimeException e) {
+      synchronized (myLock) {
+        myBusyWorkersCount--;
+        myLock.notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  private void release(@NotNull W worker, @NotNull String configuration, boolean isBroken) {
+    synchronized (myLock) {
+      myBusyWorkersCount--;
+      if (!isBroken && !myIsDisposed && worker.isAlive() && configuration.equals(myConfiguration)) {
+        myIdleWorkers.addFirst(worker);
+      }
+      else {
+        worker.destroy();
+      }
+      myLock.notifyAll();
+    }
+  }
+
+  public interface Worker {
+    boolean isAlive();
+
+    void destroy();
+  }
+}
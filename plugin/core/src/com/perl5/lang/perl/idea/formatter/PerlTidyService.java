@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.formatter;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.perl5.lang.perl.idea.configuration.settings.PerlLocalSettings;
+import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.execution.PerlWorkersPool;
+import com.perl5.lang.perl.util.PerlPluginUtil;
+import com.perl5.lang.perl.util.PerlRunUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Formats perl sources with Perl::Tidy using a pool of {@link PerlTidyWorker}s. Pool size is limited by
+ * {@link PerlLocalSettings#PERL_TIDY_WORKERS}, batches of files are formatted in parallel by the same number of threads.
+ */
+public class PerlTidyService implements Disposable {
+  private static final String PACKAGE_NAME = "Perl::Tidy";
+  private static final String SCRIPT_NAME = "perltidy";
+
+  private final @NotNull Project myProject;
+  private final @NotNull PerlWorkersPool<PerlTidyWorker> myWorkersPool;
+
+  public PerlTidyService(@NotNull Project project) {
+    myProject = project;
+    myWorkersPool = new PerlWorkersPool<>(this::getPoolSize, PerlTidyWorker::start);
+    Disposer.register(this, myWorkersPool);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  private int getPoolSize() {
+    return Math.max(1, PerlLocalSettings.getInstance(myProject).PERL_TIDY_WORKERS);
+  }
+
+  /**
+   * @return command line for the Perl::Tidy worker with project arguments or null if Perl::Tidy is not available
+   */
+  public @Nullable PerlCommandLine getCommandLine() {
+    VirtualFile perlTidyScript =
+      ReadAction.compute(() -> PerlRunUtil.findLibraryScriptWithNotification(myProject, SCRIPT_NAME, PACKAGE_NAME));
+    if (perlTidyScript == null) {
+      return null;
+    }
+    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(myProject, PerlPluginUtil.getHelperPath(PerlTidyWorker.WORKER_SCRIPT));
+    if (commandLine == null) {
+      return null;
+    }
+    commandLine.withWorkDirectory(myProject.getBasePath());
+
+    String perlTidyArgs = PerlSharedSettings.getInstance(myProject).PERL_TIDY_ARGS;
+    if (StringUtil.isNotEmpty(perlTidyArgs)) {
+      commandLine.addParameters(StringUtil.split(perlTidyArgs, " "));
+    }
+    return commandLine;
+  }
+
+  /**
+   * @return result of formatting {@code source} with worker started by {@code commandLine}
+   */
+  public @NotNull Result tidy(@NotNull PerlCommandLine commandLine, byte @NotNull [] source) throws ExecutionException {
+    return myWorkersPool.withWorker(commandLine, worker -> worker.tidy(source));
+  }
+
+  /**
+   * Formats saved content of {@code files} in parallel
+   *
+   * @return formatting results by files, in the order of {@code files}
+   */
+  public @NotNull Map<VirtualFile, Result> tidy(@NotNull PerlCommandLine commandLine,
+                                                @NotNull List<VirtualFile> files,
+                                                @NotNull ProgressIndicator indicator) throws ExecutionException {
+    List<CompletableFuture<Result>> futures = new ArrayList<>(files.size());
+    var executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Perl::Tidy batch formatter", getPoolSize());
+    try {
+      for (VirtualFile file : files) {
+        futures.add(CompletableFuture.supplyAsync(() -> {
+          indicator.checkCanceled();
+          try {
+            return tidy(commandLine, file.contentsToByteArray());
+          }
+          catch (IOException e) {
+            return new Result(null, "Error reading " + file.getPresentableUrl() + ": " + e.getMessage());
+          }
+          catch (ExecutionException e) {
+            throw new CompletionException(e);
+          }
+        }, executor));
+      }
+      Map<VirtualFile, Result> results = new LinkedHashMap<>();
+      for (int i = 0; i < files.size(); i++) {
+        indicator.setFraction((double)i / files.size());
+        indicator.setText2(files.get(i).getPresentableUrl());
+        try {
+          results.put(files.get(i), futures.get(i).join());
+        }
+        catch (CompletionException e) {
+          ProgressManager.checkCanceled();
+          if (e.getCause() instanceof ExecutionException) {
+            throw (ExecutionException)e.getCause();
+          }
+          throw new ExecutionException(e.getCause());
+        }
+      }
+      return results;
+    }
+    finally {
+      futures.forEach(it -> it.cancel(false));
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Computes line fragments, which differ between {@code currentText} and {@code formattedText}. May be invoked in background.
+   */
+  public static @NotNull List<LineFragment> computeChanges(@NotNull CharSequence currentText,
+                                                           @NotNull CharSequence formattedText,
+                                                           @NotNull ProgressIndicator indicator) {
+    return ComparisonManager.getInstance().compareLines(currentText, formattedText, ComparisonPolicy.DEFAULT, indicator);
+  }
+
+  /**
+   * Replaces {@code document} text with {@code formattedText}, changing only {@code fragments} computed with
+   * {@link #computeChanges(CharSequence, CharSequence, ProgressIndicator)} for the current document text, so markers, folding and PSI out of
+   * changed lines are kept.
+   *
+   * @apiNote must be invoked in write action
+   */
+  public static void applyChanges(@NotNull Document document, @NotNull CharSequence formattedText, @NotNull List<LineFragment> fragments) {
+    for (int i = fragments.size() - 1; i >= 0; i--) {
+      LineFragment fragment = fragments.get(i);
+      document.replaceString(fragment.getStartOffset1(), fragment.getEndOffset1(),
+                             formattedText.subSequence(fragment.getStartOffset2(), fragment.getEndOffset2()));
+    }
+  }
+
+  public static @NotNull PerlTidyService getInstance(@NotNull Project project) {
+    return project.getService(PerlTidyService.class);
+  }
+
+  public static final class Result {
+    private final byte @Nullable [] myFormatted;
+    private final @NotNull String myErrors;
+
+    Result(byte @Nullable [] formatted, @NotNull String errors) {
+      myFormatted = formatted;
+      myErrors = errors;
+    }
+
+    /**
+     * @return formatted source bytes or null if formatting failed
+     */
+    public byte @Nullable [] getFormatted() {
+      return isSuccessful() ? myFormatted : null;
+    }
+
+    public @NotNull String getErrors() {
+      return myErrors;
+    }
+
+    public boolean isSuccessful() {
+      return myFormatted != null && myErrors.isEmpty();
+    }
+  }
+}
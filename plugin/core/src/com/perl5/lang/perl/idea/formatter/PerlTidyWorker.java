@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.formatter;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.openapi.util.text.StringUtil;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.execution.PerlProcessWorker;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Long-living {@code perltidy_worker.pl} process with loaded Perl::Tidy. Worker formats one source at a time.
+ */
+final class PerlTidyWorker extends PerlProcessWorker<PerlTidyService.Result> {
+  static final String WORKER_SCRIPT = "perltidy_worker.pl";
+  private static final String PREFIX = "#camelcade-perltidy-";
+  private static final String READY = PREFIX + "ready ";
+  private static final String RESULT = PREFIX + "result ";
+
+  private PerlTidyWorker(@NotNull BaseProcessHandler<?> processHandler) throws ExecutionException {
+    super("Perl::Tidy", processHandler);
+    waitForReady(READY);
+  }
+
+  /**
+   * @return formatting result for the {@code source}
+   * @throws ExecutionException if worker died, is not responding or protocol is broken
+   */
+  @NotNull PerlTidyService.Result tidy(byte @NotNull [] source) throws ExecutionException {
+    return request(source);
+  }
+
+  /**
+   * Result line is the only cancellation point: formatted source and errors are printed right after it
+   */
+  @Override
+  protected @NotNull PerlTidyService.Result readResponse() throws ExecutionException {
+    String resultLine = readLine();
+    if (resultLine == null || !resultLine.startsWith(RESULT)) {
+      throw new ExecutionException("Unexpected Perl::Tidy worker response: " + resultLine + getErrorOutput());
+    }
+    List<String> lengths = StringUtil.split(resultLine.substring(RESULT.length()), " ");
+    try {
+      if (lengths.size() == 2) {
+        byte[] formatted = readBytes(Integer.parseInt(lengths.get(0)));
+        byte[] errors = readBytes(Integer.parseInt(lengths.get(1)));
+        return new PerlTidyService.Result(formatted, new String(errors, getCharset()));
+      }
+    }
+    catch (NumberFormatException ignore) {
+    }
+    throw new ExecutionException("Malformed Perl::Tidy worker response: " + resultLine);
+  }
+
+  @Override
+  protected void skipResponse() throws ExecutionException {
+    readResponse();
+  }
+
+  static @NotNull PerlTidyWorker start(@NotNull PerlCommandLine commandLine) throws ExecutionException {
+    return new PerlTidyWorker(PerlHostData.createProcessHandler(commandLine));
+  }
+}
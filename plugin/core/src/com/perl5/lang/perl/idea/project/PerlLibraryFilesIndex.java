@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.ObjectUtils;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps paths relative to the library roots, e.g. {@code Foo/Bar.pm}, to the first matching file in the
+ * {@link PerlProjectManager#getAllLibraryRoots() library roots} order. Paths are resolved lazily and results, including misses, are
+ * kept until roots change or files inside the library roots are created, deleted, moved or renamed.
+ */
+public class PerlLibraryFilesIndex implements Disposable {
+  private static final Object NOT_FOUND = ObjectUtils.sentinel("PerlLibraryFilesIndex.NOT_FOUND");
+
+  private final @NotNull Project myProject;
+  /**
+   * relative path => virtual file or {@link #NOT_FOUND}
+   */
+  private volatile @NotNull Map<String, Object> myFiles = new ConcurrentHashMap<>();
+
+  public PerlLibraryFilesIndex(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        reset();
+      }
+    });
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        List<String> rootsPaths = null;
+        for (VFileEvent event : events) {
+          if (!isStructuralChange(event)) {
+            continue;
+          }
+          if (rootsPaths == null) {
+            rootsPaths = ContainerUtil.map(PerlProjectManager.getInstance(myProject).getAllLibraryRoots(), VirtualFile::getPath);
+          }
+          if (isLibraryChange(event, rootsPaths)) {
+            reset();
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  @Override
+  public void dispose() {
+    reset();
+  }
+
+  /**
+   * Drops all resolved paths. Lookups started before reset store their results into the dropped map.
+   */
+  private void reset() {
+    myFiles = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return first file with {@code relativePath} in the library roots
+   */
+  public @Nullable VirtualFile findFile(@NotNull String relativePath) {
+    Map<String, Object> files = myFiles;
+    Object result = files.get(relativePath);
+    if (result == null) {
+      VirtualFile foundFile = doFindFile(relativePath);
+      result = foundFile == null ? NOT_FOUND : foundFile;
+      files.put(relativePath, result);
+    }
+    if (result instanceof VirtualFile && ((VirtualFile)result).isValid()) {
+      return (VirtualFile)result;
+    }
+    return null;
+  }
+
+  private @Nullable VirtualFile doFindFile(@NotNull String relativePath) {
+    for (VirtualFile classRoot : PerlProjectManager.getInstance(myProject).getAllLibraryRoots()) {
+      VirtualFile targetFile = findFileInRoot(classRoot, relativePath);
+      if (targetFile != null) {
+        return targetFile;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return file with exactly {@code relativePath} in the {@code root}
+   */
+  public static @Nullable VirtualFile findFileInRoot(@NotNull VirtualFile root, @NotNull String relativePath) {
+    VirtualFile targetFile = root.findFileByRelativePath(relativePath);
+    if (targetFile == null) {
+      return null;
+    }
+    String foundRelativePath = VfsUtil.getRelativePath(targetFile, root);
+    return StringUtil.isNotEmpty(foundRelativePath) && StringUtil.equals(foundRelativePath, relativePath) ? targetFile : null;
+  }
+
+  @TestOnly
+  public int getResolvedPathsCount() {
+    return myFiles.size();
+  }
+
+  /**
+   * @return true iff {@code event} touches a file inside one of the {@code rootsPaths}, a root itself or some of roots ancestors
+   */
+  private static boolean isLibraryChange(@NotNull VFileEvent event, @NotNull List<String> rootsPaths) {
+    if (isLibraryPath(event.getPath(), rootsPaths)) {
+      return true;
+    }
+    if (event instanceof VFileMoveEvent) {
+      return isLibraryPath(((VFileMoveEvent)event).getOldPath(), rootsPaths);
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      return isLibraryPath(((VFilePropertyChangeEvent)event).getOldPath(), rootsPaths);
+    }
+    return false;
+  }
+
+  private static boolean isLibraryPath(@NotNull String path, @NotNull List<String> rootsPaths) {
+    for (String rootPath : rootsPaths) {
+      if (FileUtil.isAncestor(rootPath, path, false) || FileUtil.isAncestor(path, rootPath, false)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStructuralChange(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      return false;
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      return ((VFilePropertyChangeEvent)event).isRename();
+    }
+    return true;
+  }
+
+  public static @NotNull PerlLibraryFilesIndex getInstance(@NotNull Project project) {
+    return project.getService(PerlLibraryFilesIndex.class);
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.*;
+import com.intellij.util.messages.MessageBusConnection;
+import com.perl5.lang.perl.fileTypes.PerlPluginBaseFileType;
+import com.perl5.lang.perl.psi.stubs.imports.PerlModuleDependenciesIndex;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Project-wide graph of perl files dependencies, built from the {@link PerlModuleDependenciesIndex}.
+ * <p>
+ * Files get compact int ids, graph is stored as adjacency arrays of ids and transitive closures are cached as bit sets. Edges of a file
+ * are resolved lazily, on the first request. Changed files are re-resolved on the next request and only closures containing a file with
+ * changed edges are dropped. Roots changes and creation, removal, moving and renaming of perl files and directories may change resolution
+ * of any path, so they reset the graph.
+ * <p>
+ * Index queries and paths resolution are performed without holding the lock, the lock only guards the graph structure.
+ */
+public class PerlModuleDependenciesGraph implements Disposable {
+  private static final int[] UNRESOLVED = new int[0];
+
+  private final Project myProject;
+  private final Object myLock = new Object();
+  /**
+   * Files with possibly changed dependencies
+   */
+  private final Set<VirtualFile> myDirtyFiles = ConcurrentHashMap.newKeySet();
+  private final TObjectIntHashMap<VirtualFile> myIds = new TObjectIntHashMap<>();
+  private final List<VirtualFile> myFiles = new ArrayList<>();
+  /**
+   * Outgoing edges of the files by id, {@link #UNRESOLVED} if not computed yet
+   */
+  private int[][] myEdges = new int[64][];
+  /**
+   * Transitive closures by file id
+   */
+  private final TIntObjectHashMap<BitSet> myClosures = new TIntObjectHashMap<>();
+  /**
+   * Incremented on each reset, edges resolved before the reset are discarded
+   */
+  private int myGeneration;
+  private volatile boolean myIsResetRequested;
+
+  public PerlModuleDependenciesGraph(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        myIsResetRequested = true;
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        myIsResetRequested = true;
+      }
+    });
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (event instanceof VFileContentChangeEvent) {
+            myDirtyFiles.add(((VFileContentChangeEvent)event).getFile());
+          }
+          else if (mayChangeResolution(event)) {
+            myIsResetRequested = true;
+          }
+        }
+      }
+    });
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+    }, this);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * @return {@code virtualFile} and all files it loads directly or transitively
+   * @apiNote requires indexes to be ready
+   */
+  public @NotNull Set<VirtualFile> getIncludedFiles(@NotNull VirtualFile virtualFile) {
+    while (true) {
+      ProgressManager.checkCanceled();
+      int generation;
+      List<VirtualFile> filesToResolve;
+      synchronized (myLock) {
+        if (myIsResetRequested) {
+          reset();
+        }
+        generation = myGeneration;
+        filesToResolve = pollChangedFiles();
+        if (filesToResolve.isEmpty()) {
+          BitSet closure = computeClosure(virtualFile, filesToResolve);
+          if (closure != null) {
+            Set<VirtualFile> result = new HashSet<>(closure.cardinality());
+            for (int id = closure.nextSetBit(0); id >= 0; id = closure.nextSetBit(id + 1)) {
+              result.add(myFiles.get(id));
+            }
+            return result;
+          }
+        }
+      }
+      Map<VirtualFile, List<VirtualFile>> dependencies = new LinkedHashMap<>();
+      for (VirtualFile file : filesToResolve) {
+        ProgressManager.checkCanceled();
+        dependencies.put(file, resolveDependencies(file));
+      }
+      synchronized (myLock) {
+        if (generation == myGeneration) {
+          dependencies.forEach(this::setEdges);
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes transitive closure for the {@code virtualFile}, collecting reachable files with unresolved edges to the
+   * {@code unresolvedFiles}
+   *
+   * @return closure or null if some of reachable files have unresolved edges
+   */
+  private @Nullable BitSet computeClosure(@NotNull VirtualFile virtualFile, @NotNull List<VirtualFile> unresolvedFiles) {
+    int rootId = getId(virtualFile);
+    BitSet closure = myClosures.get(rootId);
+    if (closure != null) {
+      return closure;
+    }
+    closure = new BitSet(myFiles.size());
+    closure.set(rootId);
+    TIntArrayList queue = new TIntArrayList();
+    queue.add(rootId);
+    for (int i = 0; i < queue.size(); i++) {
+      ProgressManager.checkCanceled();
+      int id = queue.get(i);
+      BitSet cachedClosure = myClosures.get(id);
+      if (cachedClosure != null && id != rootId) {
+        closure.or(cachedClosure);
+        continue;
+      }
+      int[] edges = myEdges[id];
+      if (edges == UNRESOLVED) {
+        unresolvedFiles.add(myFiles.get(id));
+        continue;
+      }
+      for (int targetId : edges) {
+        if (!closure.get(targetId)) {
+          closure.set(targetId);
+          queue.add(targetId);
+        }
+      }
+    }
+    if (!unresolvedFiles.isEmpty()) {
+      return null;
+    }
+    myClosures.put(rootId, closure);
+    return closure;
+  }
+
+  /**
+   * @return files loaded by the {@code virtualFile}, resolved by its {@code @INC}
+   */
+  private @NotNull List<VirtualFile> resolveDependencies(@NotNull VirtualFile virtualFile) {
+    if (!virtualFile.isValid()) {
+      return Collections.emptyList();
+    }
+    PsiFile psiFile = PsiManager.getInstance(myProject).findFile(virtualFile);
+    if (psiFile == null) {
+      return Collections.emptyList();
+    }
+    List<VirtualFile> result = new ArrayList<>();
+    for (String relativePath : PerlModuleDependenciesIndex.getDependencies(myProject, virtualFile)) {
+      VirtualFile targetFile = PerlPackageUtil.resolveRelativePathToVirtualFile(psiFile, relativePath);
+      if (targetFile != null) {
+        result.add(targetFile);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sets resolved edges of the {@code virtualFile}, dropping closures containing it if edges changed
+   */
+  private void setEdges(@NotNull VirtualFile virtualFile, @NotNull List<VirtualFile> targetFiles) {
+    int id = getId(virtualFile);
+    TIntArrayList newEdgesList = new TIntArrayList(targetFiles.size());
+    for (VirtualFile targetFile : targetFiles) {
+      int targetId = getId(targetFile);
+      if (!newEdgesList.contains(targetId)) {
+        newEdgesList.add(targetId);
+      }
+    }
+    newEdgesList.sort();
+    int[] newEdges = newEdgesList.toNativeArray();
+    int[] oldEdges = myEdges[id];
+    myEdges[id] = newEdges;
+    if (oldEdges == UNRESOLVED || Arrays.equals(oldEdges, newEdges)) {
+      return;
+    }
+    for (int closureId : myClosures.keys()) {
+      if (myClosures.get(closureId).get(id)) {
+        myClosures.remove(closureId);
+      }
+    }
+  }
+
+  private int getId(@NotNull VirtualFile virtualFile) {
+    if (myIds.containsKey(virtualFile)) {
+      return myIds.get(virtualFile);
+    }
+    int id = myFiles.size();
+    myFiles.add(virtualFile);
+    myIds.put(virtualFile, id);
+    if (id == myEdges.length) {
+      myEdges = Arrays.copyOf(myEdges, id * 3 / 2);
+    }
+    myEdges[id] = UNRESOLVED;
+    return id;
+  }
+
+  private void reset() {
+    myIsResetRequested = false;
+    myGeneration++;
+    myDirtyFiles.clear();
+    myIds.clear();
+    myFiles.clear();
+    myEdges = new int[64][];
+    myClosures.clear();
+  }
+
+  /**
+   * @return changed files with already resolved edges, which should be re-resolved
+   */
+  private @NotNull List<VirtualFile> pollChangedFiles() {
+    if (myDirtyFiles.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<VirtualFile> result = new ArrayList<>();
+    for (VirtualFile virtualFile : new ArrayList<>(myDirtyFiles)) {
+      myDirtyFiles.remove(virtualFile);
+      if (myIds.containsKey(virtualFile) && myEdges[myIds.get(virtualFile)] != UNRESOLVED) {
+        result.add(virtualFile);
+      }
+    }
+    return result;
+  }
+
+  private void fileChanged(@NotNull PsiTreeChangeEvent event) {
+    // files and directories changes are handled by the VFS listener
+    PsiFile psiFile = event.getFile();
+    if (psiFile != null) {
+      myDirtyFiles.add(psiFile.getViewProvider().getVirtualFile());
+    }
+  }
+
+  /**
+   * @return true iff {@code event} creates, removes, moves or renames a perl file or a directory, which may contain perl files
+   */
+  private static boolean mayChangeResolution(@NotNull VFileEvent event) {
+    if (event instanceof VFilePropertyChangeEvent) {
+      VFilePropertyChangeEvent propertyChangeEvent = (VFilePropertyChangeEvent)event;
+      return propertyChangeEvent.isRename() &&
+             (isPerlFileOrDirectory(propertyChangeEvent.getFile(), (String)propertyChangeEvent.getOldValue()) ||
+              isPerlFileOrDirectory(propertyChangeEvent.getFile(), (String)propertyChangeEvent.getNewValue()));
+    }
+    if (event instanceof VFileCreateEvent) {
+      VFileCreateEvent createEvent = (VFileCreateEvent)event;
+      return createEvent.isDirectory() || isPerlFileName(createEvent.getChildName());
+    }
+    if (event instanceof VFileCopyEvent) {
+      VFileCopyEvent copyEvent = (VFileCopyEvent)event;
+      return isPerlFileOrDirectory(copyEvent.getFile(), copyEvent.getNewChildName());
+    }
+    VirtualFile file = event.getFile();
+    return file == null || isPerlFileOrDirectory(file, file.getName());
+  }
+
+  private static boolean isPerlFileOrDirectory(@NotNull VirtualFile file, @NotNull String name) {
+    return file.isDirectory() || isPerlFileName(name);
+  }
+
+  private static boolean isPerlFileName(@NotNull String name) {
+    return FileTypeRegistry.getInstance().getFileTypeByFileName(name) instanceof PerlPluginBaseFileType;
+  }
+
+  public static @NotNull PerlModuleDependenciesGraph getInstance(@NotNull Project project) {
+    return project.getService(PerlModuleDependenciesGraph.class);
+  }
+}
@@ -16,7 +16,6 @@
 
 package com.perl5.lang.perl.idea.project;
 
-import com.intellij.ProjectTopics;
 import com.intellij.ide.lightEdit.LightEdit;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ReadAction;
@@ -24,12 +23,10 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ModuleRootEvent;
-import com.intellij.openapi.roots.ModuleRootListener;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.PsiTreeChangeAdapter;
-import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.*;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.update.MergingUpdateQueue;
 import com.intellij.util.ui.update.Update;
@@ -41,71 +38,99 @@ import com.perl5.lang.perl.psi.stubs.subsdefinitions.PerlSubDefinitionsIndex;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlTimeLogger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-
+/**
+ * Project-wide cache of known subs and namespaces names, used by the lexer.
+ * <p>
+ * Full rebuild is performed on project-wide stubs changes only: roots change, files creation, deletion or movement and dumb mode.
+ * Changes of files stubs, reported by the {@link PerlStubsModificationTracker}, are applied incrementally: we remember names each
+ * modified file contributed before the change, compute names after the change from its new stub tree and apply the difference.
+ * <p>
+ * For each name provided by modified files we keep the number of such files, so a name is checked against stub indexes only when the
+ * last modified file providing it drops it. Names sets are updated in place and may be changed while being read by the lexer.
+ */
 public class PerlNamesCache implements Disposable {
   private static final Logger LOG = Logger.getInstance(PerlNamesCache.class);
+  private static final List<StubIndexKey<String, ?>> SUBS_KEYS = List.of(
+    PerlSubDeclarationIndex.KEY, PerlSubDefinitionsIndex.KEY, PerlLightSubDefinitionsIndex.KEY);
+  private static final List<StubIndexKey<String, ?>> NAMESPACES_KEYS = List.of(
+    PerlNamespaceIndex.KEY, PerlLightNamespaceIndex.KEY);
+
   private final MergingUpdateQueue myQueue = new MergingUpdateQueue("Perl names cache updater", 1000, true, null, this, null, false);
   private final Project myProject;
   private final AtomicBoolean myIsUpdating = new AtomicBoolean(false);
-  private volatile Set<String> myKnownSubs = Collections.emptySet();
-  private volatile Set<String> myKnownNamespaces = Collections.emptySet();
+  private final AtomicBoolean myIsFullUpdateRequested = new AtomicBoolean(true);
+  private final AtomicLong myFullUpdatesCounter = new AtomicLong();
+  private final AtomicLong myDeltaUpdatesCounter = new AtomicLong();
+  /**
+   * Names, contributed by modified files. Modified by the updater only.
+   */
+  private final Map<VirtualFile, FileNames> myFileNames = new ConcurrentHashMap<>();
+  /**
+   * Names of modified files before their first modification, not applied yet
+   */
+  private final Map<VirtualFile, FileNames> myInitialFileNames = new ConcurrentHashMap<>();
+  /**
+   * Names of files with changed stubs, not applied yet
+   */
+  private final Map<VirtualFile, FileNames> myChangedFileNames = new ConcurrentHashMap<>();
+  /**
+   * Numbers of files from {@link #myFileNames} providing a sub or namespace name. Modified by the updater only.
+   */
+  private final Map<String, Integer> mySubsReferences = new HashMap<>();
+  private final Map<String, Integer> myNamespacesReferences = new HashMap<>();
+  /**
+   * Names, no modified file provides anymore, to be checked against stub indexes. Kept between canceled updates.
+   */
+  private final Set<String> myRemovedSubs = new HashSet<>();
+  private final Set<String> myRemovedNamespaces = new HashSet<>();
+  private volatile @NotNull Set<String> myKnownSubs = ConcurrentHashMap.newKeySet();
+  private volatile @NotNull Set<String> myKnownNamespaces = ConcurrentHashMap.newKeySet();
 
   public PerlNamesCache(Project project) {
     myProject = project;
     if (LightEdit.owns(myProject)) {
       return;
     }
+    // tracker reports changes only after being created
+    PerlStubsModificationTracker.getInstance(project);
     MessageBusConnection connection = project.getMessageBus().connect(this);
-    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
-      @Override
-      public void rootsChanged(@NotNull ModuleRootEvent event) {
-        queueUpdate();
-      }
-    });
-    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
-      @Override
-      public void exitDumbMode() {
-        queueUpdate();
-      }
-    });
-    PsiManager.getInstance(myProject).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+    connection.subscribe(PerlStubsModificationTracker.TOPIC, new PerlStubsModificationTracker.Listener() {
       @Override
-      public void childAdded(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
-      }
-
-      @Override
-      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+      public void beforeFileStubsChange(@NotNull VirtualFile virtualFile, @NotNull StubTree stubTree) {
+        if (!myFileNames.containsKey(virtualFile)) {
+          myInitialFileNames.putIfAbsent(virtualFile, computeFileNames(stubTree));
+        }
       }
 
       @Override
-      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+      public void fileChanged(@NotNull VirtualFile virtualFile) {
         queueUpdate();
       }
 
       @Override
-      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+      public void fileStubsChanged(@NotNull VirtualFile virtualFile, @Nullable StubTree stubTree) {
+        myChangedFileNames.put(virtualFile, stubTree == null ? FileNames.EMPTY : computeFileNames(stubTree));
         queueUpdate();
       }
 
       @Override
-      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+      public void stubsChanged() {
+        queueFullUpdate();
       }
+    });
+  }
 
-      @Override
-      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
-      }
-    }, this);
+  private void queueFullUpdate() {
+    myIsFullUpdateRequested.set(true);
+    queueUpdate();
   }
 
   private void queueUpdate() {
@@ -135,13 +160,27 @@ public class PerlNamesCache implements Disposable {
       return;
     }
     ReadAction.nonBlocking(() -> {
-      PerlTimeLogger logger = PerlTimeLogger.create(LOG);
-      logger.debug("Starting to update names cache at");
+      if (myIsFullUpdateRequested.getAndSet(false)) {
+        doFullUpdate();
+      }
+      else {
+        doDeltaUpdate();
+      }
+    }).inSmartMode(myProject).expireWhen(myProject::isDisposed).executeSynchronously();
+  }
+
+  private void doFullUpdate() {
+    PerlTimeLogger logger = PerlTimeLogger.create(LOG);
+    logger.debug("Starting to update names cache at");
+    dropDeletedFiles();
+    myRemovedSubs.clear();
+    myRemovedNamespaces.clear();
 
-      GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
+    try {
       PerlSubDeclarationIndex subDeclarationIndex = PerlSubDeclarationIndex.getInstance();
       Collection<String> declarationsNames = subDeclarationIndex.getAllNames(myProject);
-      Set<String> subsSet = new HashSet<>(declarationsNames);
+      Set<String> subsSet = ConcurrentHashMap.newKeySet();
+      subsSet.addAll(declarationsNames);
       logger.debug("Got declarations names: ", declarationsNames.size());
       ProgressManager.checkCanceled();
 
@@ -156,9 +195,9 @@ public class PerlNamesCache implements Disposable {
       subsSet.addAll(lightDefinitionsNames);
       logger.debug("Got light definitions names: ", lightDefinitionsNames.size());
       ProgressManager.checkCanceled();
-      myKnownSubs = Collections.unmodifiableSet(subsSet);
 
-      Set<String> namespacesSet = new HashSet<>(PerlPackageUtil.CORE_PACKAGES_ALL);
+      Set<String> namespacesSet = ConcurrentHashMap.newKeySet();
+      namespacesSet.addAll(PerlPackageUtil.CORE_PACKAGES_ALL);
 
       PerlNamespaceIndex namespaceIndex = PerlNamespaceIndex.getInstance();
       Collection<String> namespacesNames = namespaceIndex.getAllNames(myProject);
@@ -170,13 +209,188 @@ public class PerlNamesCache implements Disposable {
       Collection<String> lightNamespacesNames = lightNamespaceIndex.getAllNames(myProject);
       namespacesSet.addAll(lightNamespacesNames);
       logger.debug("Got light namespaces names: ", lightNamespacesNames.size());
-      myKnownNamespaces = Collections.unmodifiableSet(namespacesSet);
 
-      logger.debug("Names cache updated");
-    }).inSmartMode(myProject).expireWhen(myProject::isDisposed).executeSynchronously();
+      myKnownSubs = subsSet;
+      myKnownNamespaces = namespacesSet;
+      myFullUpdatesCounter.incrementAndGet();
+    }
+    catch (Throwable e) {
+      myIsFullUpdateRequested.set(true);
+      throw e;
+    }
+
+    logger.debug("Names cache updated, full updates: ", myFullUpdatesCounter.get(), "; delta updates: ", myDeltaUpdatesCounter.get());
+  }
+
+  private void doDeltaUpdate() {
+    // makes tracker check stubs of modified files and report changed ones
+    PerlStubsModificationTracker.getInstance(myProject).getModificationCount();
+    if (myChangedFileNames.isEmpty() && myRemovedSubs.isEmpty() && myRemovedNamespaces.isEmpty()) {
+      return;
+    }
+    PerlTimeLogger logger = PerlTimeLogger.create(LOG);
+    logger.debug("Starting to apply names cache delta at");
+    int filesNumber = 0;
+
+    for (VirtualFile virtualFile : new ArrayList<>(myChangedFileNames.keySet())) {
+      ProgressManager.checkCanceled();
+      FileNames newNames = myChangedFileNames.remove(virtualFile);
+      if (newNames == null) {
+        continue;
+      }
+      FileNames oldNames = myFileNames.get(virtualFile);
+      if (oldNames == null) {
+        oldNames = myInitialFileNames.remove(virtualFile);
+        if (oldNames == null) {
+          // we've missed the before event for some reason
+          queueFullUpdate();
+          return;
+        }
+        addReferences(oldNames.mySubs, mySubsReferences);
+        addReferences(oldNames.myNamespaces, myNamespacesReferences);
+      }
+      applyDelta(oldNames.mySubs, newNames.mySubs, mySubsReferences, myKnownSubs, myRemovedSubs);
+      applyDelta(oldNames.myNamespaces, newNames.myNamespaces, myNamespacesReferences, myKnownNamespaces, myRemovedNamespaces);
+      if (newNames == FileNames.EMPTY) {
+        myFileNames.remove(virtualFile);
+      }
+      else {
+        myFileNames.put(virtualFile, newNames);
+      }
+      filesNumber++;
+    }
+
+    int removedSubsNumber = dropRemovedNames(myRemovedSubs, mySubsReferences, myKnownSubs, SUBS_KEYS);
+    myRemovedNamespaces.removeAll(PerlPackageUtil.CORE_PACKAGES_ALL);
+    int removedNamespacesNumber = dropRemovedNames(myRemovedNamespaces, myNamespacesReferences, myKnownNamespaces, NAMESPACES_KEYS);
+    myDeltaUpdatesCounter.incrementAndGet();
+
+    logger.debug("Names cache delta applied for ", filesNumber, " files; ",
+                 "removed subs: ", removedSubsNumber, "; removed namespaces: ", removedNamespacesNumber);
+  }
+
+  /**
+   * Removes names from {@code removedNames} and drops them from {@code knownNames}, unless some file still provides them
+   *
+   * @return number of dropped names
+   */
+  private int dropRemovedNames(@NotNull Set<String> removedNames,
+                               @NotNull Map<String, Integer> references,
+                               @NotNull Set<String> knownNames,
+                               @NotNull List<StubIndexKey<String, ?>> keys) {
+    int result = 0;
+    for (Iterator<String> iterator = removedNames.iterator(); iterator.hasNext(); ) {
+      String name = iterator.next();
+      if (!references.containsKey(name) && !isProvidedByIndex(name, keys)) {
+        knownNames.remove(name);
+        result++;
+      }
+      iterator.remove();
+    }
+    return result;
+  }
+
+  /**
+   * Drops names of deleted files. Names of other modified files are kept: they are still valid after full rebuild.
+   */
+  private void dropDeletedFiles() {
+    myInitialFileNames.keySet().removeIf(it -> !it.isValid());
+    myChangedFileNames.keySet().removeIf(it -> !it.isValid());
+    for (Iterator<Map.Entry<VirtualFile, FileNames>> iterator = myFileNames.entrySet().iterator(); iterator.hasNext(); ) {
+      Map.Entry<VirtualFile, FileNames> entry = iterator.next();
+      if (!entry.getKey().isValid()) {
+        removeReferences(entry.getValue().mySubs, mySubsReferences);
+        removeReferences(entry.getValue().myNamespaces, myNamespacesReferences);
+        iterator.remove();
+      }
+    }
+  }
+
+  private static void addReferences(@NotNull Set<String> names, @NotNull Map<String, Integer> references) {
+    for (String name : names) {
+      references.merge(name, 1, Integer::sum);
+    }
+  }
+
+  private static void removeReferences(@NotNull Set<String> names, @NotNull Map<String, Integer> references) {
+    for (String name : names) {
+      references.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+    }
+  }
+
+  /**
+   * Updates references of names changed between {@code oldNames} and {@code newNames} of a file, adds new names to the {@code knownNames}
+   * and collects names, no modified file provides anymore, to the {@code removedNames}
+   */
+  private static void applyDelta(@NotNull Set<String> oldNames,
+                                 @NotNull Set<String> newNames,
+                                 @NotNull Map<String, Integer> references,
+                                 @NotNull Set<String> knownNames,
+                                 @NotNull Set<String> removedNames) {
+    for (String newName : newNames) {
+      if (!oldNames.contains(newName)) {
+        references.merge(newName, 1, Integer::sum);
+        knownNames.add(newName);
+        removedNames.remove(newName);
+      }
+    }
+    for (String oldName : oldNames) {
+      if (!newNames.contains(oldName) && references.computeIfPresent(oldName, (key, count) -> count > 1 ? count - 1 : null) == null) {
+        removedNames.add(oldName);
+      }
+    }
+  }
+
+  /**
+   * @return true iff any of indexes from {@code keys} still contains the {@code name}
+   */
+  private boolean isProvidedByIndex(@NotNull String name, @NotNull List<StubIndexKey<String, ?>> keys) {
+    GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
+    StubIndex stubIndex = StubIndex.getInstance();
+    for (StubIndexKey<String, ?> key : keys) {
+      ProgressManager.checkCanceled();
+      if (!stubIndex.getContainingFiles(key, name, myProject, scope).isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes names file provides to the indexes covered by the cache, the same way stub indexes do
+   */
+  private static @NotNull FileNames computeFileNames(@NotNull StubTree stubTree) {
+    FileNames result = new FileNames();
+    IndexSink sink = new IndexSink() {
+      @Override
+      public <Psi extends PsiElement, K> void occurrence(@NotNull StubIndexKey<K, Psi> indexKey, @NotNull K value) {
+        if (SUBS_KEYS.contains(indexKey)) {
+          result.mySubs.add((String)value);
+        }
+        else if (NAMESPACES_KEYS.contains(indexKey)) {
+          result.myNamespaces.add((String)value);
+        }
+      }
+    };
+    for (StubElement<?> stubElement : stubTree.getPlainList()) {
+      if (stubElement.getStubType() instanceof IStubElementType) {
+        //noinspection unchecked,rawtypes
+        ((IStubElementType)stubElement.getStubType()).indexStub(stubElement, sink);
+      }
+    }
+    return result;
   }
 
   public void forceCacheUpdate() {
+    myIsFullUpdateRequested.set(true);
+    doUpdateSingleThread();
+  }
+
+  /**
+   * Applies pending changes without waiting for the update queue
+   */
+  @TestOnly
+  public void flushPendingUpdates() {
     doUpdateSingleThread();
   }
 
@@ -184,15 +398,49 @@ public class PerlNamesCache implements Disposable {
   public void dispose() {
   }
 
-  public Set<String> getSubsNamesSet() {
-    return myKnownSubs;
+  /**
+   * @return unmodifiable view of known subs names
+   */
+  public @NotNull Set<String> getSubsNamesSet() {
+    return Collections.unmodifiableSet(myKnownSubs);
+  }
+
+  /**
+   * @return unmodifiable view of known namespaces names
+   */
+  public @NotNull Set<String> getNamespacesNamesSet() {
+    return Collections.unmodifiableSet(myKnownNamespaces);
+  }
+
+  /**
+   * @return number of files, names snapshots are kept for
+   */
+  @TestOnly
+  public int getFileSnapshotsCount() {
+    return myFileNames.size();
+  }
+
+  /**
+   * @return number of full cache rebuilds performed
+   */
+  public long getFullUpdatesCount() {
+    return myFullUpdatesCounter.get();
   }
 
-  public Set<String> getNamespacesNamesSet() {
-    return myKnownNamespaces;
+  /**
+   * @return number of incremental cache updates performed
+   */
+  public long getDeltaUpdatesCount() {
+    return myDeltaUpdatesCounter.get();
   }
 
   public static @NotNull PerlNamesCache getInstance(@NotNull Project project) {
     return project.getService(PerlNamesCache.class);
   }
-}
\ No newline at end of file
+
+  private static class FileNames {
+    private static final FileNames EMPTY = new FileNames();
+    private final Set<String> mySubs = new HashSet<>();
+    private final Set<String> myNamespaces = new HashSet<>();
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.*;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.util.messages.MessageBusConnection;
+import com.intellij.util.messages.Topic;
+import com.perl5.lang.perl.psi.PerlFile;
+import com.perl5.lang.perl.util.PerlStubUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks modifications of perl stubs in the project.
+ * <p>
+ * Modification count is increased only if data provided by perl files to the stub indexes could change: stub tree of a modified file
+ * differs from the one it had before modification, files were created, moved or deleted, roots changed or indexes were rebuilt.
+ * Typing that keeps stubs intact, e.g. in the middle of the sub body, increases only the modification count of the file itself.
+ * <p>
+ * Stub trees of modified files are compared lazily, on the first modification count request after the change. Changes are published
+ * to the {@link #TOPIC}, so subscribers may follow stubs of modified files without building stub trees themselves.
+ */
+public class PerlStubsModificationTracker implements ModificationTracker, Disposable {
+  public static final Topic<Listener> TOPIC = Topic.create("Perl stubs changes", Listener.class);
+
+  private final @NotNull Project myProject;
+  /**
+   * Source of modification counts for the project stubs and files, so file counts never go below the stubs count and may be dropped on
+   * each stubs change
+   */
+  private final AtomicLong myModificationTicks = new AtomicLong();
+  private volatile long myModificationCount;
+  /**
+   * Modification counts of files changed since the last stubs change
+   */
+  private final Map<VirtualFile, Long> myFilesModificationCounts = new ConcurrentHashMap<>();
+  /**
+   * Digests of stub trees of modified files, taken before modification or on last check
+   */
+  private final Map<VirtualFile, FileStubsState> myFilesStubsStates = new ConcurrentHashMap<>();
+  /**
+   * Modified files, not checked for stubs changes yet
+   */
+  private final Map<VirtualFile, PsiFile> myDirtyFiles = new ConcurrentHashMap<>();
+  private final Object myDirtyFilesLock = new Object();
+
+  public PerlStubsModificationTracker(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        stubsChanged();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void enteredDumbMode() {
+        stubsChanged();
+      }
+
+      @Override
+      public void exitDumbMode() {
+        stubsChanged();
+      }
+    });
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (isStructuralChange(event)) {
+            stubsChanged();
+            return;
+          }
+        }
+      }
+    });
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void beforeChildAddition(@NotNull PsiTreeChangeEvent event) {
+        fileAboutToBeChanged(event);
+      }
+
+      @Override
+      public void beforeChildRemoval(@NotNull PsiTreeChangeEvent event) {
+        fileAboutToBeChanged(event);
+      }
+
+      @Override
+      public void beforeChildReplacement(@NotNull PsiTreeChangeEvent event) {
+        fileAboutToBeChanged(event);
+      }
+
+      @Override
+      public void beforeChildMovement(@NotNull PsiTreeChangeEvent event) {
+        fileAboutToBeChanged(event);
+      }
+
+      @Override
+      public void beforeChildrenChange(@NotNull PsiTreeChangeEvent event) {
+        fileAboutToBeChanged(event);
+      }
+
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+    }, this);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * @return modification count of the stubs in the project
+   */
+  @Override
+  public long getModificationCount() {
+    checkDirtyFiles();
+    return myModificationCount;
+  }
+
+  /**
+   * @return modification count of the {@code virtualFile} psi. Any change of the file or project stubs increases it.
+   */
+  public long getFileModificationCount(@Nullable VirtualFile virtualFile) {
+    long stubsModificationCount = getModificationCount();
+    Long fileModificationCount = virtualFile == null ? null : myFilesModificationCounts.get(virtualFile);
+    return fileModificationCount == null ? stubsModificationCount : Math.max(stubsModificationCount, fileModificationCount);
+  }
+
+  private void incModificationCount() {
+    myModificationCount = myModificationTicks.incrementAndGet();
+    myFilesModificationCounts.clear();
+    myFilesStubsStates.clear();
+    myDirtyFiles.clear();
+  }
+
+  /**
+   * Project-wide change, which can't be attributed to modified files
+   */
+  private void stubsChanged() {
+    incModificationCount();
+    getPublisher().stubsChanged();
+  }
+
+  private @NotNull Listener getPublisher() {
+    return myProject.getMessageBus().syncPublisher(TOPIC);
+  }
+
+  private void fileAboutToBeChanged(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = getPerlFile(event);
+    if (psiFile == null) {
+      return;
+    }
+    VirtualFile virtualFile = psiFile.getViewProvider().getVirtualFile();
+    if (myDirtyFiles.containsKey(virtualFile)) {
+      return;
+    }
+    FileStubsState stubsState = myFilesStubsStates.get(virtualFile);
+    if (stubsState == null || stubsState.myModificationStamp != psiFile.getModificationStamp()) {
+      StubTree stubTree = PerlStubUtil.calcStubTree(psiFile);
+      myFilesStubsStates.put(virtualFile, new FileStubsState(psiFile, stubTree));
+      if (stubTree != null) {
+        getPublisher().beforeFileStubsChange(virtualFile, stubTree);
+      }
+    }
+  }
+
+  private void fileChanged(@NotNull PsiTreeChangeEvent event) {
+    PsiFile eventFile = event.getFile();
+    if (eventFile == null) {
+      // files or directories were added, removed or moved
+      stubsChanged();
+      return;
+    }
+    VirtualFile virtualFile = eventFile.getViewProvider().getVirtualFile();
+    myFilesModificationCounts.put(virtualFile, myModificationTicks.incrementAndGet());
+    PsiFile psiFile = getPerlFile(event);
+    if (psiFile == null) {
+      return;
+    }
+    if (!myFilesStubsStates.containsKey(virtualFile)) {
+      // we've missed the before event for some reason
+      stubsChanged();
+      return;
+    }
+    myDirtyFiles.put(virtualFile, psiFile);
+    getPublisher().fileChanged(virtualFile);
+  }
+
+  /**
+   * Checks if stubs of modified files has been changed, reports changed files and increases modification count if any.
+   */
+  private void checkDirtyFiles() {
+    if (myDirtyFiles.isEmpty()) {
+      return;
+    }
+    synchronized (myDirtyFilesLock) {
+      boolean isChanged = false;
+      for (VirtualFile virtualFile : new ArrayList<>(myDirtyFiles.keySet())) {
+        PsiFile psiFile = myDirtyFiles.get(virtualFile);
+        FileStubsState oldState = myFilesStubsStates.get(virtualFile);
+        if (psiFile == null || oldState == null) {
+          continue;
+        }
+        myDirtyFiles.remove(virtualFile, psiFile);
+        if (!psiFile.isValid()) {
+          isChanged = true;
+          getPublisher().fileStubsChanged(virtualFile, null);
+          continue;
+        }
+        StubTree stubTree = PerlStubUtil.calcStubTree(psiFile);
+        FileStubsState newState = new FileStubsState(psiFile, stubTree);
+        myFilesStubsStates.put(virtualFile, newState);
+        if (!Arrays.equals(oldState.myDigest, newState.myDigest)) {
+          isChanged = true;
+          getPublisher().fileStubsChanged(virtualFile, stubTree);
+        }
+      }
+      if (isChanged) {
+        incModificationCount();
+      }
+    }
+  }
+
+  /**
+   * @return true iff {@code event} may change data in stub indexes without PSI events
+   */
+  private static boolean isStructuralChange(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      return !event.isFromSave() && ((VFileContentChangeEvent)event).getFile().getFileType() instanceof LanguageFileType;
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      return ((VFilePropertyChangeEvent)event).isRename();
+    }
+    return true;
+  }
+
+  /**
+   * @return stub binding root of the file changed in the {@code event} if it is a perl file
+   */
+  private static @Nullable PsiFile getPerlFile(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null) {
+      return null;
+    }
+    PsiFile stubBindingRoot = psiFile.getViewProvider().getStubBindingRoot();
+    return stubBindingRoot instanceof PerlFile ? stubBindingRoot : null;
+  }
+
+  public static @NotNull PerlStubsModificationTracker getInstance(@NotNull Project project) {
+    return project.getService(PerlStubsModificationTracker.class);
+  }
+
+  private static final class FileStubsState {
+    private final long myModificationStamp;
+    private final byte @NotNull [] myDigest;
+
+    public FileStubsState(@NotNull PsiFile psiFile, @Nullable StubTree stubTree) {
+      myModificationStamp = psiFile.getModificationStamp();
+      myDigest = PerlStubUtil.computeStubTreeDigest(stubTree);
+    }
+  }
+
+  public interface Listener {
+    /**
+     * Perl file is about to be modified for the first time since its stubs were checked
+     *
+     * @param stubTree stub tree of the file before modification
+     */
+    default void beforeFileStubsChange(@NotNull VirtualFile virtualFile, @NotNull StubTree stubTree) {
+    }
+
+    /**
+     * Perl file was modified, its stubs are checked on the next {@link #getModificationCount()} request
+     */
+    default void fileChanged(@NotNull VirtualFile virtualFile) {
+    }
+
+    /**
+     * Stubs of the modified file has changed
+     *
+     * @param stubTree new stub tree or null if file is not valid anymore
+     */
+    default void fileStubsChanged(@NotNull VirtualFile virtualFile, @Nullable StubTree stubTree) {
+    }
+
+    /**
+     * Stubs could change in the whole project: roots changed, files were created, moved or deleted, or indexes were rebuilt
+     */
+    default void stubsChanged() {
+    }
+  }
+}
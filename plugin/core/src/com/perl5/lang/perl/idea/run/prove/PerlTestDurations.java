@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.run.prove;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.xmlb.annotations.Tag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durations of test files, collected from prove runs. Used to schedule longest tests first.
+ * Stored duration is a moving average, so single slow or fast run does not change the schedule much.
+ * Number of stored durations is limited by {@link #MAX_DURATIONS}, see {@link #prune(int)}.
+ */
+@State(
+  name = "PerlTestDurations",
+  storages = @Storage(StoragePathMacros.CACHE_FILE)
+)
+public class PerlTestDurations implements PersistentStateComponent<PerlTestDurations> {
+  /**
+   * Weight of the last run in the moving average
+   */
+  private static final double LAST_RUN_WEIGHT = 0.5;
+  private static final int MAX_DURATIONS = 10_000;
+  /**
+   * Number of durations kept after pruning, so pruning does not happen on every new test file
+   */
+  private static final int PRUNED_DURATIONS = MAX_DURATIONS - MAX_DURATIONS / 10;
+
+  @Tag("DURATIONS")
+  private Map<String, Long> myDurations = new ConcurrentHashMap<>();
+
+  @Override
+  public @Nullable PerlTestDurations getState() {
+    return this;
+  }
+
+  @Override
+  public void loadState(@NotNull PerlTestDurations state) {
+    myDurations = new ConcurrentHashMap<>(state.myDurations);
+    if (myDurations.size() > MAX_DURATIONS) {
+      prune(PRUNED_DURATIONS);
+    }
+  }
+
+  /**
+   * @return expected duration of the test file with {@code localPath} in milliseconds or null if it is unknown
+   */
+  public @Nullable Long getDuration(@NotNull String localPath) {
+    return myDurations.get(FileUtil.toSystemIndependentName(localPath));
+  }
+
+  /**
+   * Updates expected duration of the test file with {@code localPath} with {@code duration} in milliseconds from the last run
+   */
+  public void addDuration(@NotNull String localPath, long duration) {
+    myDurations.merge(FileUtil.toSystemIndependentName(localPath), Math.max(0, duration),
+                      (oldValue, newValue) -> Math.round(oldValue * (1 - LAST_RUN_WEIGHT) + newValue * LAST_RUN_WEIGHT));
+    if (myDurations.size() > MAX_DURATIONS) {
+      prune(PRUNED_DURATIONS);
+    }
+  }
+
+  /**
+   * Drops durations of missing files and, if there are still more than {@code maxSize} of them, the shortest ones. Short tests affect the
+   * schedule least, unknown ones are estimated with the average duration anyway.
+   */
+  @VisibleForTesting
+  public void prune(int maxSize) {
+    myDurations.keySet().removeIf(it -> !new File(it).isFile());
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(myDurations.entrySet());
+    if (entries.size() <= maxSize) {
+      return;
+    }
+    entries.sort(Map.Entry.comparingByValue());
+    for (Map.Entry<String, Long> entry : entries.subList(0, entries.size() - maxSize)) {
+      myDurations.remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+  public static @NotNull PerlTestDurations getInstance(@NotNull Project project) {
+    return project.getService(PerlTestDurations.class);
+  }
+}
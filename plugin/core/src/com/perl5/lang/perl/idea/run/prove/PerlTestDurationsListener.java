@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.run.prove;
+
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsListener;
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.perl5.PerlBundle;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records durations of test files from the {@code TAP::Formatter::Camelcade} results into {@link PerlTestDurations} and reports
+ * predicted and actual duration of the run, if it was scheduled with {@link PerlTestsSchedule}
+ */
+final class PerlTestDurationsListener extends SMTRunnerEventsAdapter {
+  private static final Logger LOG = Logger.getInstance(PerlTestDurationsListener.class);
+  private final @NotNull SMTRunnerConsoleView myConsoleView;
+  private final @NotNull PerlHostData<?, ?> myHostData;
+  private final @NotNull ExecutionEnvironment myEnvironment;
+  private final @NotNull PerlTestDurations myDurations;
+  private volatile long myStartTime = -1;
+
+  private PerlTestDurationsListener(@NotNull SMTRunnerConsoleView consoleView,
+                                    @NotNull PerlHostData<?, ?> hostData,
+                                    @NotNull ExecutionEnvironment environment) {
+    myConsoleView = consoleView;
+    myHostData = hostData;
+    myEnvironment = environment;
+    myDurations = PerlTestDurations.getInstance(environment.getProject());
+  }
+
+  private boolean isMyRoot(@NotNull SMTestProxy proxy) {
+    return proxy == myConsoleView.getResultsViewer().getTestsRootNode();
+  }
+
+  @Override
+  public void onTestingStarted(@NotNull SMTestProxy.SMRootTestProxy testsRoot) {
+    if (isMyRoot(testsRoot)) {
+      myStartTime = System.currentTimeMillis();
+    }
+  }
+
+  @Override
+  public void onSuiteFinished(@NotNull SMTestProxy suite) {
+    SMTestProxy parent = suite.getParent();
+    if (parent == null || !isMyRoot(parent)) {
+      return;
+    }
+    Long duration = suite.getDuration();
+    String locationUrl = suite.getLocationUrl();
+    if (duration == null || locationUrl == null ||
+        !PerlSMTestLocator.FILE_PROTOCOL.equals(VirtualFileManager.extractProtocol(locationUrl))) {
+      return;
+    }
+    String localPath = myHostData.getLocalPath(VirtualFileManager.extractPath(locationUrl));
+    if (localPath != null) {
+      myDurations.addDuration(localPath, duration);
+    }
+  }
+
+  @Override
+  public void onTestingFinished(@NotNull SMTestProxy.SMRootTestProxy testsRoot) {
+    if (!isMyRoot(testsRoot) || myStartTime < 0) {
+      return;
+    }
+    PerlTestsSchedule<?> schedule = myEnvironment.getUserData(PerlTestsSchedule.SCHEDULE_KEY);
+    if (schedule == null || schedule.getPredictedMakespan() < 0) {
+      return;
+    }
+    long predicted = schedule.getPredictedMakespan();
+    long actual = System.currentTimeMillis() - myStartTime;
+    LOG.debug("Tests duration predicted: ", predicted, "; actual: ", actual);
+    myConsoleView.print(PerlBundle.message("perl.run.prove.schedule.report",
+                                           StringUtil.formatDuration(predicted), StringUtil.formatDuration(actual)) + "\n",
+                        ConsoleViewContentType.SYSTEM_OUTPUT);
+  }
+
+  static void install(@NotNull SMTRunnerConsoleView consoleView,
+                      @NotNull PerlHostData<?, ?> hostData,
+                      @NotNull ExecutionEnvironment environment) {
+    environment.getProject().getMessageBus().connect(consoleView)
+      .subscribe(SMTRunnerEventsListener.TEST_STATUS, new PerlTestDurationsListener(consoleView, hostData, environment));
+  }
+}
@@ -28,14 +28,18 @@ import com.intellij.execution.runners.ExecutionEnvironment;
 import com.intellij.execution.testframework.sm.SMTestRunnerConnectionUtil;
 import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView;
 import com.intellij.execution.ui.ConsoleView;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.options.SettingsEditor;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xmlb.annotations.Tag;
 import com.perl5.PerlBundle;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
@@ -43,6 +47,7 @@ import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.run.GenericPerlRunConfiguration;
 import com.perl5.lang.perl.idea.run.PerlRunProfileState;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
@@ -62,6 +67,19 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
   private static final String TEST_HARNESS = "Test::Harness";
   private static final String PROVE_PASS_PREFIX = "PROVE_PASS_";
   static final int DEFAULT_JOBS_NUMBER = 1;
+  /**
+   * Jobs number meaning number of processors on the interpreter host
+   */
+  static final int AUTO_JOBS_NUMBER = 0;
+  /**
+   * Max total length of test paths, passed to prove when directories are expanded for scheduling. Keeps the command line far below
+   * the Windows limit of 32767 characters
+   */
+  private static final int MAX_SCHEDULED_PATHS_LENGTH = 16 * 1024;
+  /**
+   * Numbers of processors on remote hosts
+   */
+  private static final Map<PerlHostData<?, ?>, Integer> HOSTS_PROCESSORS = ContainerUtil.createConcurrentWeakMap();
   private static final String PROVE_FORMAT_PARAMETER = "--formatter";
   private static final String PROVE_FRAMEWORK_NAME = TEST_HARNESS;
   private static final Pattern MISSING_FILTER_PATTERN = Pattern.compile("Can't load module (\\S+) at .+?/prove line");
@@ -70,11 +88,16 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     "-PPassEnv", PROVE_FORMAT_PARAMETER, "TAP::Formatter::Camelcade", "--merge", "--recurse");
   private static final String PROVE_JOBS_SHORT_PREFIX = "-j";
   private static final String PROVE_JOBS_PARAMETER = "--jobs";
+  private static final String PROVE_EXT_PARAMETER = "--ext";
+  private static final String NPROC = "nproc";
+  private static final String DEFAULT_TEST_EXTENSION = "t";
   private static final Logger LOG = Logger.getInstance(PerlTestRunConfiguration.class);
   @Tag("JOBS_NUMBER")
   private int myJobsNumber = DEFAULT_JOBS_NUMBER;
   @Tag("TEST_SCRIPT_PARAMETERS")
   private String myTestScriptParameters = "";
+  @Tag("SCHEDULE_BY_DURATION")
+  private boolean myScheduleByDuration = false;
 
   public PerlTestRunConfiguration(Project project,
                                   @NotNull ConfigurationFactory factory,
@@ -91,6 +114,58 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     myJobsNumber = jobsNumber;
   }
 
+  /**
+   * @return jobs number to pass to prove, {@link #AUTO_JOBS_NUMBER} is resolved to the number of processors on the {@code hostData}
+   */
+  int getEffectiveJobsNumber(@NotNull PerlHostData<?, ?> hostData) {
+    return myJobsNumber == AUTO_JOBS_NUMBER ? getProcessorsNumber(hostData) : myJobsNumber;
+  }
+
+  private static int getProcessorsNumber(@NotNull PerlHostData<?, ?> hostData) {
+    if (hostData.getHandler() == PerlHostHandler.getDefaultHandler()) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    Integer processorsNumber = HOSTS_PROCESSORS.get(hostData);
+    if (processorsNumber == null) {
+      processorsNumber = computeProcessorsNumber(hostData);
+      HOSTS_PROCESSORS.put(hostData, processorsNumber);
+    }
+    return processorsNumber;
+  }
+
+  /**
+   * @return number of processors reported by {@code nproc} on the {@code hostData} or {@link #DEFAULT_JOBS_NUMBER} if it is unknown
+   */
+  private static int computeProcessorsNumber(@NotNull PerlHostData<?, ?> hostData) {
+    List<String> output;
+    if (ApplicationManager.getApplication().isDispatchThread()) {
+      output = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+        () -> PerlRunUtil.getOutputFromProgram(hostData, NPROC),
+        PerlBundle.message("perl.run.prove.progress.processors", hostData.getShortName()),
+        false,
+        null
+      );
+    }
+    else {
+      output = PerlRunUtil.getOutputFromProgram(hostData, NPROC);
+    }
+    int result = output.isEmpty() ? 0 : StringUtil.parseInt(output.get(0).trim(), 0);
+    if (result < 1) {
+      LOG.warn("Unable to get number of processors on " + hostData + ": " + output);
+      return DEFAULT_JOBS_NUMBER;
+    }
+    return result;
+  }
+
+  boolean isScheduleByDuration() {
+    return myScheduleByDuration;
+  }
+
+  @VisibleForTesting
+  public void setScheduleByDuration(boolean scheduleByDuration) {
+    myScheduleByDuration = scheduleByDuration;
+  }
+
   @Nullable
   String getTestScriptParameters() {
     return myTestScriptParameters;
@@ -142,22 +217,29 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     Set<String> proveParameters = new LinkedHashSet<>(PROVE_DEFAULT_PARAMETERS);
     proveParameters.addAll(getScriptParameters());
     proveParameters.add(PROVE_JOBS_PARAMETER);
-    proveParameters.add(Integer.toString(perlRunProfileState.isParallelRunAllowed() ? getJobsNumber() : 1));
+    int jobsNumber = perlRunProfileState.isParallelRunAllowed() ? getEffectiveJobsNumber(perlHostData) : 1;
+    proveParameters.add(Integer.toString(jobsNumber));
     VirtualFile workingDirectory = computeExplicitWorkingDirectory();
 
-    List<String> testsPaths = new ArrayList<>();
-    for (VirtualFile testVirtualFile : computeTargetFiles()) {
-      if (testVirtualFile == null) {
-        continue;
-      }
-      String virtualFilePath = testVirtualFile.getPath();
-      if (workingDirectory != null && VfsUtil.isAncestor(workingDirectory, testVirtualFile, true)) {
-        testsPaths.add(VfsUtil.getRelativePath(testVirtualFile, workingDirectory));
+    List<VirtualFile> targetFiles = computeTargetFiles();
+    List<String> testsPaths = null;
+    if (isScheduleByDuration()) {
+      PerlTestDurations testDurations = PerlTestDurations.getInstance(project);
+      PerlTestsSchedule<VirtualFile> schedule = PerlTestsSchedule.create(
+        collectTestFiles(targetFiles), it -> testDurations.getDuration(it.getPath()), jobsNumber);
+      List<String> scheduledPaths = computeTestsPaths(schedule.getTests(), workingDirectory, perlHostData);
+      if (scheduledPaths.stream().mapToInt(it -> it.length() + 1).sum() <= MAX_SCHEDULED_PATHS_LENGTH) {
+        LOG.debug("Tests schedule: ", schedule.getTests(), "; predicted duration: ", schedule.getPredictedMakespan());
+        executionEnvironment.putUserData(PerlTestsSchedule.SCHEDULE_KEY, schedule);
+        testsPaths = scheduledPaths;
       }
       else {
-        testsPaths.add(perlHostData.getRemotePath(virtualFilePath));
+        LOG.info("Too many tests to schedule: " + scheduledPaths.size() + "; running in prove order");
       }
     }
+    if (testsPaths == null) {
+      testsPaths = computeTestsPaths(targetFiles, workingDirectory, perlHostData);
+    }
 
     String remotePath = perlHostData.getRemotePath(proveScript.getPath());
     if (StringUtil.isEmpty(remotePath)) {
@@ -199,6 +281,80 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     return commandLine;
   }
 
+  /**
+   * @return paths of {@code testsFiles} for prove: relative to the {@code workingDirectory} if possible or remote ones
+   */
+  private static @NotNull List<String> computeTestsPaths(@NotNull List<VirtualFile> testsFiles,
+                                                         @Nullable VirtualFile workingDirectory,
+                                                         @NotNull PerlHostData<?, ?> perlHostData) {
+    List<String> testsPaths = new ArrayList<>();
+    for (VirtualFile testVirtualFile : testsFiles) {
+      if (testVirtualFile == null) {
+        continue;
+      }
+      String virtualFilePath = testVirtualFile.getPath();
+      if (workingDirectory != null && VfsUtil.isAncestor(workingDirectory, testVirtualFile, true)) {
+        testsPaths.add(VfsUtil.getRelativePath(testVirtualFile, workingDirectory));
+      }
+      else {
+        testsPaths.add(perlHostData.getRemotePath(virtualFilePath));
+      }
+    }
+    return testsPaths;
+  }
+
+  /**
+   * @return test files from {@code targetFiles}, with directories expanded recursively the same way prove does
+   */
+  private @NotNull List<VirtualFile> collectTestFiles(@NotNull List<VirtualFile> targetFiles) {
+    Set<String> testExtensions = getTestExtensions();
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    for (VirtualFile targetFile : targetFiles) {
+      if (targetFile == null) {
+        continue;
+      }
+      if (!targetFile.isDirectory()) {
+        result.add(targetFile);
+        continue;
+      }
+      List<VirtualFile> directoryTests = new ArrayList<>();
+      VfsUtilCore.iterateChildrenRecursively(targetFile, null, file -> {
+        if (!file.isDirectory() && testExtensions.contains(file.getExtension())) {
+          directoryTests.add(file);
+        }
+        return true;
+      });
+      directoryTests.sort(Comparator.comparing(VirtualFile::getPath));
+      result.addAll(directoryTests);
+    }
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * @return extensions of test files, set by user with {@code --ext} parameters or default one
+   */
+  private @NotNull Set<String> getTestExtensions() {
+    Set<String> result = new HashSet<>();
+    List<String> parameters = super.getScriptParameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      String parameter = parameters.get(i);
+      String extension = null;
+      if (parameter.equals(PROVE_EXT_PARAMETER) && i + 1 < parameters.size()) {
+        extension = parameters.get(i + 1);
+      }
+      else if (parameter.startsWith(PROVE_EXT_PARAMETER + "=")) {
+        extension = parameter.substring(PROVE_EXT_PARAMETER.length() + 1);
+      }
+      if (StringUtil.isNotEmpty(extension)) {
+        result.add(StringUtil.trimStart(extension, "."));
+      }
+    }
+    if (result.isEmpty()) {
+      result.add(DEFAULT_TEST_EXTENSION);
+    }
+    return result;
+  }
+
   @Override
   protected @NotNull List<String> getScriptParameters() {
 
@@ -229,9 +385,11 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     PerlSMTRunnerConsoleProperties consoleProperties =
       new PerlSMTRunnerConsoleProperties(this, PROVE_FRAMEWORK_NAME, runProfileState.getEnvironment().getExecutor());
     String splitterPropertyName = SMTestRunnerConnectionUtil.getSplitterPropertyName(PROVE_FRAMEWORK_NAME);
+    PerlHostData<?, ?> hostData = PerlHostData.notNullFrom(getEffectiveSdk());
     SMTRunnerConsoleView consoleView = new PerlSMTRunnerConsoleView(getProject(), consoleProperties, splitterPropertyName)
-      .withHostData(PerlHostData.notNullFrom(getEffectiveSdk()));
+      .withHostData(hostData);
     SMTestRunnerConnectionUtil.initConsoleView(consoleView, PROVE_FRAMEWORK_NAME);
+    PerlTestDurationsListener.install(consoleView, hostData, runProfileState.getEnvironment());
     return consoleView;
   }
 
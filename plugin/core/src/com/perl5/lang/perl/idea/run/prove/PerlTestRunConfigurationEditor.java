@@ -25,6 +25,8 @@ import com.intellij.openapi.ui.TextFieldWithBrowseButton;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.RawCommandLineEditor;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.fields.ExpandableTextField;
 import com.intellij.util.containers.ContainerUtil;
 import com.perl5.PerlBundle;
@@ -56,6 +58,9 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
     private JComboBox<Integer> myJobsCombobox;
     private LabeledComponent<JComboBox<Integer>> myLabeledJobsCombobox;
 
+    private JBCheckBox myScheduleByDurationCheckbox;
+    private LabeledComponent<JBCheckBox> myLabeledScheduleByDurationCheckbox;
+
     private RawCommandLineEditor myTestScriptParametersEditor;
     private LabeledComponent<RawCommandLineEditor> myLabeledTestScriptParametersEditor;
 
@@ -73,14 +78,23 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
       super.createLabeledComponents();
 
       ArrayList<Integer> jobs = new ArrayList<>();
+      jobs.add(PerlTestRunConfiguration.AUTO_JOBS_NUMBER);
       for (int i = 1; i <= 32; i++) {
         jobs.add(i);
       }
 
       myJobsCombobox = new JComboBox<>(jobs.toArray(new Integer[0]));
+      myJobsCombobox.setRenderer(SimpleListCellRenderer.create("", it -> it == PerlTestRunConfiguration.AUTO_JOBS_NUMBER ?
+                                                                         PerlBundle.message("perl.run.option.jobs.number.auto") :
+                                                                         it.toString()));
       myLabeledJobsCombobox = LabeledComponent.create(myJobsCombobox, PerlBundle.message("perl.run.option.jobs.number"));
       myLabeledJobsCombobox.setLabelLocation(BorderLayout.WEST);
 
+      myScheduleByDurationCheckbox = new JBCheckBox();
+      myLabeledScheduleByDurationCheckbox = LabeledComponent.create(
+        myScheduleByDurationCheckbox, PerlBundle.message("perl.run.option.schedule.by.duration"));
+      myLabeledScheduleByDurationCheckbox.setLabelLocation(BorderLayout.WEST);
+
       myTestScriptParametersEditor = new RawCommandLineEditor();
       myLabeledTestScriptParametersEditor = LabeledComponent.create(
         myTestScriptParametersEditor, PerlBundle.message("perl.run.option.test.script.parameters"));
@@ -91,6 +105,7 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
     protected void reset(PerlTestRunConfiguration runConfiguration) {
       super.reset(runConfiguration);
       myJobsCombobox.setSelectedItem(runConfiguration.getJobsNumber());
+      myScheduleByDurationCheckbox.setSelected(runConfiguration.isScheduleByDuration());
       myTestScriptParametersEditor.setText(runConfiguration.getTestScriptParameters());
     }
 
@@ -99,6 +114,7 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
       super.applyTo(runConfiguration);
       Object item = myJobsCombobox.getSelectedItem();
       runConfiguration.setJobsNumber(item instanceof Integer ? (Integer)item : PerlTestRunConfiguration.DEFAULT_JOBS_NUMBER);
+      runConfiguration.setScheduleByDuration(myScheduleByDurationCheckbox.isSelected());
       runConfiguration.setTestScriptParameters(myTestScriptParametersEditor.getText());
     }
 
@@ -106,6 +122,7 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
     protected @NotNull List<LabeledComponent<?>> getLabeledComponents() {
       List<LabeledComponent<?>> parentComponents = new ArrayList<>(super.getLabeledComponents());
       parentComponents.add(myLabeledJobsCombobox);
+      parentComponents.add(myLabeledScheduleByDurationCheckbox);
       parentComponents.add(myLabeledTestScriptParametersEditor);
       return parentComponents;
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.run.prove;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Order of test files for prove, longest tests go first. Prove starts tests in the order they were passed, so this is a greedy
+ * longest-processing-time schedule for the jobs number. Tests without known duration are estimated with an average known duration.
+ */
+@VisibleForTesting
+public final class PerlTestsSchedule<T> {
+  static final Key<PerlTestsSchedule<?>> SCHEDULE_KEY = Key.create("perl.tests.schedule");
+
+  private final @NotNull List<T> myTests;
+  private final long myPredictedMakespan;
+
+  private PerlTestsSchedule(@NotNull List<T> tests, long predictedMakespan) {
+    myTests = tests;
+    myPredictedMakespan = predictedMakespan;
+  }
+
+  /**
+   * @return tests in order they should be started
+   */
+  public @NotNull List<T> getTests() {
+    return myTests;
+  }
+
+  /**
+   * @return expected wall-clock duration of the whole run in milliseconds, or negative value if there is no data for prediction
+   */
+  public long getPredictedMakespan() {
+    return myPredictedMakespan;
+  }
+
+  /**
+   * @param durationProvider provides known duration of a test in milliseconds or null
+   */
+  public static <T> @NotNull PerlTestsSchedule<T> create(@NotNull List<T> tests,
+                                                         @NotNull Function<? super T, Long> durationProvider,
+                                                         int jobsNumber) {
+    Map<T, Long> knownDurations = new HashMap<>();
+    long totalKnownDuration = 0;
+    for (T test : tests) {
+      Long duration = durationProvider.apply(test);
+      if (duration != null) {
+        knownDurations.put(test, duration);
+        totalKnownDuration += duration;
+      }
+    }
+    if (knownDurations.isEmpty()) {
+      return new PerlTestsSchedule<>(tests, -1);
+    }
+    long defaultDuration = totalKnownDuration / knownDurations.size();
+
+    List<T> sortedTests = new ArrayList<>(tests);
+    Map<T, Long> estimatedDurations = new HashMap<>();
+    for (T test : tests) {
+      estimatedDurations.put(test, knownDurations.getOrDefault(test, defaultDuration));
+    }
+    // stable sort keeps original order for tests with equal durations
+    sortedTests.sort(Comparator.comparingLong((T it) -> estimatedDurations.get(it)).reversed());
+
+    PriorityQueue<Long> jobsLoad = new PriorityQueue<>();
+    for (int i = 0; i < Math.max(1, jobsNumber); i++) {
+      jobsLoad.add(0L);
+    }
+    long makespan = 0;
+    for (T test : sortedTests) {
+      long jobLoad = jobsLoad.remove() + estimatedDurations.get(test);
+      makespan = Math.max(makespan, jobLoad);
+      jobsLoad.add(jobLoad);
+    }
+    return new PerlTestsSchedule<>(sortedTests, makespan);
+  }
+}
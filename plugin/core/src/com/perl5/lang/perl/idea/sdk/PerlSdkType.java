@@ -39,6 +39,7 @@ import com.perl5.PerlIcons;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostListingCache;
 import com.perl5.lang.perl.idea.sdk.implementation.PerlImplementationData;
 import com.perl5.lang.perl.idea.sdk.implementation.PerlImplementationHandler;
 import com.perl5.lang.perl.idea.sdk.versionManager.PerlVersionManagerData;
@@ -86,6 +87,8 @@ public class PerlSdkType extends SdkType {
     String oldText = PerlRunUtil.setProgressText(PerlBundle.message("perl.progress.refreshing.inc", sdk.getName()));
     LOG.info("Refreshing @INC for " + sdk);
     PerlHostData<?, ?> hostData = PerlHostData.notNullFrom(sdk);
+    // interpreter contents may be changed since last refresh
+    PerlHostListingCache.getInstance().invalidate(hostData);
     List<String> pathsToRefresh = new ArrayList<>();
     // syncing data if necessary
     List<String> incPaths = computeIncPaths(sdk);
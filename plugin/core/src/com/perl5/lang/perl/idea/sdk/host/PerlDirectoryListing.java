@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Snapshot of the remote directory contents, made with a single {@code ls -LAs[R] --classify} request. Recursive listing contains
+ * all subdirectories of the root.
+ */
+public final class PerlDirectoryListing {
+  private static final String HEADER_SUFFIX = ":";
+  private final @NotNull String myRootPath;
+  private final boolean myIsRecursive;
+  private final long myTimestamp;
+  private final @NotNull Map<String, List<PerlFileDescriptor>> myChildren;
+
+  private PerlDirectoryListing(@NotNull String rootPath,
+                               boolean isRecursive,
+                               long timestamp,
+                               @NotNull Map<String, List<PerlFileDescriptor>> children) {
+    myRootPath = rootPath;
+    myIsRecursive = isRecursive;
+    myTimestamp = timestamp;
+    myChildren = children;
+  }
+
+  public @NotNull String getRootPath() {
+    return myRootPath;
+  }
+
+  public boolean isRecursive() {
+    return myIsRecursive;
+  }
+
+  /**
+   * @return time of the listing creation in milliseconds
+   */
+  public long getTimestamp() {
+    return myTimestamp;
+  }
+
+  /**
+   * @return true iff listing contains children of the {@code path}
+   */
+  public boolean covers(@NotNull String path) {
+    String normalizedPath = normalizePath(path);
+    return myRootPath.equals(normalizedPath) || myIsRecursive && FileUtil.isAncestor(myRootPath, normalizedPath, true);
+  }
+
+  /**
+   * @return children of the {@code path} or null if {@code path} is not covered by this listing
+   */
+  public @Nullable List<PerlFileDescriptor> getChildren(@NotNull String path) {
+    if (!covers(path)) {
+      return null;
+    }
+    return myChildren.getOrDefault(normalizePath(path), Collections.emptyList());
+  }
+
+  /**
+   * @return map of directories paths to their children for all directories in this listing
+   */
+  public @NotNull Map<String, List<PerlFileDescriptor>> getAllChildren() {
+    return Collections.unmodifiableMap(myChildren);
+  }
+
+  /**
+   * @return recursive listing for {@code path} made from this one or null if {@code path} is not covered by this listing
+   */
+  public @Nullable PerlDirectoryListing getSubListing(@NotNull String path) {
+    String normalizedPath = normalizePath(path);
+    if (!myIsRecursive || !covers(normalizedPath)) {
+      return null;
+    }
+    if (myRootPath.equals(normalizedPath)) {
+      return this;
+    }
+    Map<String, List<PerlFileDescriptor>> children = new LinkedHashMap<>();
+    myChildren.forEach((dirPath, descriptors) -> {
+      if (FileUtil.isAncestor(normalizedPath, dirPath, false)) {
+        children.put(dirPath, descriptors);
+      }
+    });
+    return new PerlDirectoryListing(normalizedPath, true, myTimestamp, children);
+  }
+
+  /**
+   * @return listing in the {@code ls -AsR --classify} format, with a header line for each directory
+   * @see #parse(String, boolean, long, List)
+   */
+  public @NotNull List<String> toLines() {
+    List<String> result = new ArrayList<>();
+    myChildren.forEach((dirPath, descriptors) -> {
+      result.add(dirPath + HEADER_SUFFIX);
+      for (PerlFileDescriptor descriptor : descriptors) {
+        result.add(descriptor.toListingLine());
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @param lines output of {@code ls -LAs --classify rootPath} or {@code ls -AsR --classify rootPath} for recursive listing. Listing
+   *              of subdirectories starts with the {@code path:} header line
+   */
+  public static @NotNull PerlDirectoryListing parse(@NotNull String rootPath,
+                                                    boolean isRecursive,
+                                                    long timestamp,
+                                                    @NotNull List<String> lines) {
+    String normalizedRoot = normalizePath(rootPath);
+    Map<String, List<PerlFileDescriptor>> children = new LinkedHashMap<>();
+    children.put(normalizedRoot, new ArrayList<>());
+    String currentDir = normalizedRoot;
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (line.startsWith("/") && line.endsWith(HEADER_SUFFIX)) {
+        currentDir = normalizePath(line.substring(0, line.length() - HEADER_SUFFIX.length()));
+        children.computeIfAbsent(currentDir, it -> new ArrayList<>());
+        continue;
+      }
+      PerlFileDescriptor descriptor = PerlFileDescriptor.create(currentDir, line);
+      if (descriptor != null) {
+        children.computeIfAbsent(currentDir, it -> new ArrayList<>()).add(descriptor);
+      }
+    }
+    return new PerlDirectoryListing(normalizedRoot, isRecursive, timestamp, children);
+  }
+
+  static @NotNull String normalizePath(@NotNull String path) {
+    String canonicalPath = FileUtil.toCanonicalPath(FileUtil.toSystemIndependentName(path), '/');
+    return canonicalPath.isEmpty() ? "/" : canonicalPath;
+  }
+}
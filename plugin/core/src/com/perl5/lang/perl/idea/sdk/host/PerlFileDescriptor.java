@@ -74,6 +74,13 @@ public class PerlFileDescriptor {
     return myType.myIsDirectory;
   }
 
+  /**
+   * @return representation of this descriptor in format accepted by {@link #create(String, String)}
+   */
+  public @NotNull String toListingLine() {
+    return mySize + " " + myName + myType.mySuffix;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -155,11 +162,14 @@ public class PerlFileDescriptor {
   }
 
   public enum Type {
-    FILE(false), DIRECTORY(true), PIPE(false), SYMLINK(false), EXECUTABLE(false), SOCKET(false), DOOR(false);
+    FILE(false, ""), DIRECTORY(true, "/"), PIPE(false, "|"), SYMLINK(false, "@"), EXECUTABLE(false, "*"), SOCKET(false, "="),
+    DOOR(false, ">");
     private final boolean myIsDirectory;
+    private final @NotNull String mySuffix;
 
-    Type(boolean isDirectory) {
+    Type(boolean isDirectory, @NotNull String suffix) {
       myIsDirectory = isDirectory;
+      mySuffix = suffix;
     }
   }
 }
@@ -261,19 +261,33 @@ public abstract class PerlHostData<Data extends PerlHostData<Data, Handler>, Han
   }
 
   public static @NotNull BaseProcessHandler<?> createProcessHandler(@NotNull PerlCommandLine commandLine) throws ExecutionException {
+    commandLine = patchCommandLine(commandLine);
+    BaseProcessHandler<?> processHandler = getEffectiveHostData(commandLine).doCreateProcessHandler(commandLine);
+    commandLine.getProcessListeners().forEach(processHandler::addProcessListener);
+    PerlRunUtil.addMissingPackageListener(processHandler, commandLine);
+    return processHandler;
+  }
+
+  /**
+   * Creates a process without a process handler. Caller is responsible for reading process output and error streams, this is useful
+   * for processes with huge output, which should be processed in a streaming manner.
+   */
+  public static @NotNull Process createRawProcess(@NotNull PerlCommandLine commandLine) throws ExecutionException {
+    commandLine = patchCommandLine(commandLine);
+    return getEffectiveHostData(commandLine).createProcess(commandLine);
+  }
+
+  private static @NotNull PerlCommandLine patchCommandLine(@NotNull PerlCommandLine commandLine) {
     PerlVersionManagerData<?, ?> versionManagerData = commandLine.getEffectiveVersionManagerData();
-    if (versionManagerData != null) {
-      commandLine = versionManagerData.patchCommandLine(commandLine);
-    }
+    return versionManagerData == null ? commandLine : versionManagerData.patchCommandLine(commandLine);
+  }
 
+  private static @NotNull PerlHostData<?, ?> getEffectiveHostData(@NotNull PerlCommandLine commandLine) throws ExecutionException {
     PerlHostData<?, ?> perlHostData = commandLine.getEffectiveHostData();
     if (perlHostData == null) {
       throw new ExecutionException("No host data in " + commandLine);
     }
-    BaseProcessHandler<?> processHandler = perlHostData.doCreateProcessHandler(commandLine);
-    commandLine.getProcessListeners().forEach(processHandler::addProcessListener);
-    PerlRunUtil.addMissingPackageListener(processHandler, commandLine);
-    return processHandler;
+    return perlHostData;
   }
 
   /**
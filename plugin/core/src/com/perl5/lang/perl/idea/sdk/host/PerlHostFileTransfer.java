@@ -16,12 +16,13 @@
 
 package com.perl5.lang.perl.idea.sdk.host;
 
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.util.containers.ContainerUtil;
 import com.perl5.PerlBundle;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
 import com.perl5.lang.perl.util.PerlPluginUtil;
 import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.Contract;
@@ -31,9 +32,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>> implements Closeable {
   private static final Logger LOG = Logger.getInstance(PerlHostFileTransfer.class);
@@ -130,43 +129,133 @@ public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>>
   }
 
   /**
-   * synchronizes {@code remoteDir} with local cache
+   * Creates empty files and directories in the {@code localDir} with names of {@code remoteDir} children. Only one level is stubbed,
+   * because stubs are used to know names of the remote files, e.g. scripts in the bin directories, and subdirectories are browsed via the
+   * host file system if necessary. The whole subtree of the {@code remoteDir} is listed with a single request anyway, so such browsing
+   * is served from the cache afterwards.
    *
    * @implNote always invoked on pooled thread
    */
   protected void doStubFiles(@NotNull String remoteDir, String localDir) throws IOException {
-    File localDirFile = new File(localDir);
+    if (isListingCacheable()) {
+      listFilesRecursively(remoteDir);
+    }
+    stubDirectory(listFiles(remoteDir), new File(localDir));
+  }
+
+  private static void stubDirectory(@NotNull List<PerlFileDescriptor> remoteFiles, @NotNull File localDirFile) throws IOException {
     FileUtil.createDirectory(localDirFile);
+    Map<String, PerlFileDescriptor> remoteFilesMap = new HashMap<>();
+    remoteFiles.forEach(it -> remoteFilesMap.put(it.getName(), it));
+
+    File[] localFiles = localDirFile.listFiles();
     Set<String> localFileNames = new HashSet<>();
-    for (File localFile : localDirFile.listFiles()) {
-      if (localFile.length() == 0 || !localFile.delete()) {
+    for (File localFile : localFiles == null ? new File[0] : localFiles) {
+      PerlFileDescriptor remoteFile = remoteFilesMap.get(localFile.getName());
+      // non-empty files are not stubs, e.g. synced earlier, and replaced with stubs
+      if (remoteFile != null && remoteFile.isDirectory() == localFile.isDirectory() &&
+          (localFile.isDirectory() || localFile.length() == 0)) {
         localFileNames.add(localFile.getName());
       }
+      else if (!FileUtil.delete(localFile)) {
+        LOG.warn("Failed to delete: " + localFile);
+      }
     }
-    Set<String> remoteFileNames = ContainerUtil.map2Set(listFiles(remoteDir), VirtualFile::getName);
 
-    for (String fileName : ContainerUtil.subtract(localFileNames, remoteFileNames)) {
-      String localFileToDelete = FileUtil.join(localDir, fileName);
-      if (!new File(localFileToDelete).delete()) {
-        LOG.warn("Failed to delete: " + localFileToDelete);
+    for (PerlFileDescriptor remoteFile : remoteFiles) {
+      if (localFileNames.contains(remoteFile.getName())) {
+        continue;
       }
+      File localFile = new File(localDirFile, remoteFile.getName());
+      if (remoteFile.isDirectory()) {
+        FileUtil.createDirectory(localFile);
+      }
+      else if (!localFile.createNewFile()) {
+        LOG.warn("Failed to create: " + localFile);
+      }
+    }
+  }
+
+  /**
+   * @return contents of {@code remoteDir} on remote machine. Cached listing of the directory or its ancestor is used if available.
+   * @implNote we need this method to optimize working with docker and/or ssh. Using virtual file system may cause additional container
+   * start or additional connection created.
+   * @see PerlHostListingCache
+   */
+  public final @NotNull List<PerlFileDescriptor> listFiles(@NotNull String remoteDir) throws IOException {
+    if (!isListingCacheable()) {
+      return Objects.requireNonNull(
+        PerlDirectoryListing.parse(remoteDir, false, System.currentTimeMillis(), doListFiles(remoteDir, false)).getChildren(remoteDir));
+    }
+    PerlHostListingCache listingCache = PerlHostListingCache.getInstance();
+    List<PerlFileDescriptor> cachedChildren = listingCache.getCachedChildren(myHostData, remoteDir);
+    if (cachedChildren != null) {
+      return cachedChildren;
     }
+    return Objects.requireNonNull(
+      listingCache.getListing(myHostData, remoteDir, false, () -> doListFiles(remoteDir, false)).getChildren(remoteDir));
+  }
 
+  /**
+   * @return listing of the {@code remoteDir} with all subdirectories, made with a single request to the remote machine and cached
+   * @see PerlHostListingCache
+   */
+  public final @NotNull PerlDirectoryListing listFilesRecursively(@NotNull String remoteDir) throws IOException {
+    if (!isListingCacheable()) {
+      return PerlDirectoryListing.parse(remoteDir, true, System.currentTimeMillis(), doListFiles(remoteDir, true));
+    }
+    return PerlHostListingCache.getInstance().getListing(myHostData, remoteDir, true, () -> doListFiles(remoteDir, true));
+  }
 
-    for (String fileName : ContainerUtil.subtract(remoteFileNames, localFileNames)) {
-      String localFileToDelete = FileUtil.join(localDir, fileName);
-      if (!new File(localFileToDelete).createNewFile()) {
-        LOG.warn("Failed to create: " + localFileToDelete);
+  /**
+   * Drops cached listings of the {@code remotePath}, its ancestors and descendants, or all cached listings of the host if
+   * {@code remotePath} is null
+   */
+  public final void invalidateListings(@Nullable String remotePath) {
+    if (!isListingCacheable()) {
+      return;
+    }
+    if (remotePath == null) {
+      PerlHostListingCache.getInstance().invalidate(myHostData);
+    }
+    else {
+      PerlHostListingCache.getInstance().invalidate(myHostData, remotePath);
+    }
+  }
+
+  /**
+   * @return true iff listings of this host should be cached. Hosts with direct access to the file system may not need this
+   */
+  protected boolean isListingCacheable() {
+    return true;
+  }
+
+  /**
+   * @return output of {@code ls -LAs --classify remoteDir} on the remote machine, or {@code ls -AsR --classify remoteDir} if
+   * {@code recursive}. Recursive listing does not follow symlinks, because they may form cycles, e.g. {@code /usr/bin/X11 -> .}
+   * @see PerlDirectoryListing#parse(String, boolean, long, List)
+   */
+  protected @NotNull List<String> doListFiles(@NotNull String remoteDir, boolean recursive) throws IOException {
+    PerlCommandLine commandLine = new PerlCommandLine("ls", getListingOptions(recursive), "--classify", remoteDir)
+      .withHostData(myHostData);
+    try {
+      ProcessOutput output = PerlHostData.execAndGetOutput(commandLine);
+      if (output.getExitCode() != 0) {
+        LOG.debug("Listing ", remoteDir, " finished with ", output.getExitCode(), ": ", output.getStderr());
       }
+      return output.getStdoutLines();
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e);
     }
   }
 
   /**
-   * @return contents of {@code remotePath} on remote machine.
-   * @implNote we need this method to optimize working with docker and/or ssh. Using virtual file system may cause additional container
-   * start or additional connection created.
+   * @return {@code ls} options for listing a directory, symlinks are followed only for non-recursive listing
    */
-  public abstract @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) throws IOException;
+  public static @NotNull String getListingOptions(boolean recursive) {
+    return recursive ? "-AsR" : "-LAs";
+  }
 
   /**
    * synchronizes {@code remotePath} with local cache
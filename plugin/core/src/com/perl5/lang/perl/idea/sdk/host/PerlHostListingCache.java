@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.util.PerlPluginUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of the {@link PerlDirectoryListing remote directories listings}, shared by file transfers and pluggable file systems
+ * of the same host. Listings are stored per {@link PerlHostData#getShortName() host} and root path, expire after {@link #TTL} and
+ * dropped on explicit {@link #invalidate(PerlHostData) invalidation}, e.g. on interpreter or file system refresh.
+ * <p>
+ * Recursive listings don't follow symlinks, so directories with symlinks are served only from non-recursive listings, which report types
+ * of symlinks targets. Recursive and non-recursive listings of the same path are cached separately.
+ */
+public final class PerlHostListingCache {
+  private static final Logger LOG = Logger.getInstance(PerlHostListingCache.class);
+  private static final long TTL = TimeUnit.DAYS.toMillis(1);
+  private static final String CACHE_DIR = "host_listings";
+  private static final String SEPARATOR = "\t";
+  private static final int MAX_NAME_LENGTH = 100;
+
+  /**
+   * host key => listing key => listing
+   *
+   * @see #getListingKey(String, boolean)
+   */
+  private final Map<String, Map<String, PerlDirectoryListing>> myListings = new ConcurrentHashMap<>();
+
+  /**
+   * @return cached children of the {@code path} from the listing of the path itself or recursive listing of its ancestors; null if
+   * there is no such listing in cache
+   */
+  public @Nullable List<PerlFileDescriptor> getCachedChildren(@NotNull PerlHostData<?, ?> hostData, @NotNull String path) {
+    String normalizedPath = PerlDirectoryListing.normalizePath(path);
+    for (String candidate = normalizedPath; candidate != null; candidate = getParentPath(candidate)) {
+      PerlDirectoryListing listing = getListing(hostData, candidate, true);
+      if (listing != null && isListed(listing, normalizedPath)) {
+        List<PerlFileDescriptor> children = Objects.requireNonNull(listing.getChildren(normalizedPath));
+        if (!containsSymlinks(children)) {
+          return children;
+        }
+      }
+    }
+    PerlDirectoryListing listing = getListing(hostData, normalizedPath, false);
+    return listing == null ? null : listing.getChildren(normalizedPath);
+  }
+
+  /**
+   * @return cached listing of the {@code path} or new one, computed with {@code lister}
+   * @param lister computes {@code ls} output for the {@code path}
+   * @see PerlDirectoryListing#parse(String, boolean, long, List)
+   */
+  public @NotNull PerlDirectoryListing getListing(@NotNull PerlHostData<?, ?> hostData,
+                                                  @NotNull String path,
+                                                  boolean isRecursive,
+                                                  @NotNull ThrowableComputable<List<String>, IOException> lister) throws IOException {
+    String normalizedPath = PerlDirectoryListing.normalizePath(path);
+    for (String candidate = normalizedPath; candidate != null; candidate = getParentPath(candidate)) {
+      PerlDirectoryListing listing = getListing(hostData, candidate, true);
+      if (listing == null || !isListed(listing, normalizedPath)) {
+        continue;
+      }
+      PerlDirectoryListing subListing = Objects.requireNonNull(listing.getSubListing(normalizedPath));
+      if (isRecursive || !containsSymlinks(Objects.requireNonNull(subListing.getChildren(normalizedPath)))) {
+        return subListing;
+      }
+    }
+    if (!isRecursive) {
+      PerlDirectoryListing listing = getListing(hostData, normalizedPath, false);
+      if (listing != null) {
+        return listing;
+      }
+    }
+
+    PerlDirectoryListing listing = PerlDirectoryListing.parse(normalizedPath, isRecursive, System.currentTimeMillis(), lister.compute());
+    getHostListings(hostData).put(getListingKey(normalizedPath, isRecursive), listing);
+    saveListing(hostData, listing);
+    return listing;
+  }
+
+  /**
+   * Drops all cached listings for the {@code hostData}
+   */
+  public void invalidate(@NotNull PerlHostData<?, ?> hostData) {
+    LOG.debug("Invalidating listings for ", hostData);
+    myListings.remove(getHostKey(hostData));
+    FileUtil.delete(getHostCacheDir(hostData));
+  }
+
+  /**
+   * Drops cached listings of the {@code path}, its ancestors and descendants for the {@code hostData}
+   */
+  public void invalidate(@NotNull PerlHostData<?, ?> hostData, @NotNull String path) {
+    LOG.debug("Invalidating listings of ", path, " for ", hostData);
+    String normalizedPath = PerlDirectoryListing.normalizePath(path);
+    Map<String, PerlDirectoryListing> hostListings = getHostListings(hostData);
+    for (String candidate = normalizedPath; candidate != null; candidate = getParentPath(candidate)) {
+      for (boolean isRecursive : new boolean[]{true, false}) {
+        String listingKey = getListingKey(candidate, isRecursive);
+        hostListings.remove(listingKey);
+        FileUtil.delete(getListingFile(hostData, listingKey));
+      }
+    }
+    for (Map.Entry<String, PerlDirectoryListing> entry : new ArrayList<>(hostListings.entrySet())) {
+      if (FileUtil.isAncestor(normalizedPath, entry.getValue().getRootPath(), true)) {
+        hostListings.remove(entry.getKey());
+        FileUtil.delete(getListingFile(hostData, entry.getKey()));
+      }
+    }
+  }
+
+  /**
+   * @return true iff {@code path} is a directory listed in the recursive {@code listing}. Directories behind symlinks are not listed
+   */
+  private static boolean isListed(@NotNull PerlDirectoryListing listing, @NotNull String path) {
+    return listing.covers(path) && listing.getAllChildren().containsKey(path);
+  }
+
+  private static boolean containsSymlinks(@NotNull List<PerlFileDescriptor> descriptors) {
+    return ContainerUtil.exists(descriptors, it -> it.getType() == PerlFileDescriptor.Type.SYMLINK);
+  }
+
+  private @NotNull Map<String, PerlDirectoryListing> getHostListings(@NotNull PerlHostData<?, ?> hostData) {
+    return myListings.computeIfAbsent(getHostKey(hostData), it -> new ConcurrentHashMap<>());
+  }
+
+  private @Nullable PerlDirectoryListing getListing(@NotNull PerlHostData<?, ?> hostData, @NotNull String rootPath, boolean isRecursive) {
+    Map<String, PerlDirectoryListing> hostListings = getHostListings(hostData);
+    String listingKey = getListingKey(rootPath, isRecursive);
+    PerlDirectoryListing listing = hostListings.get(listingKey);
+    if (listing == null) {
+      listing = loadListing(hostData, rootPath, isRecursive);
+      if (listing != null) {
+        hostListings.put(listingKey, listing);
+      }
+    }
+    if (listing != null && System.currentTimeMillis() - listing.getTimestamp() > TTL) {
+      hostListings.remove(listingKey, listing);
+      FileUtil.delete(getListingFile(hostData, listingKey));
+      return null;
+    }
+    return listing;
+  }
+
+  private @Nullable PerlDirectoryListing loadListing(@NotNull PerlHostData<?, ?> hostData, @NotNull String rootPath, boolean isRecursive) {
+    File listingFile = getListingFile(hostData, getListingKey(rootPath, isRecursive));
+    if (!listingFile.isFile()) {
+      return null;
+    }
+    try {
+      List<String> lines = Files.readAllLines(listingFile.toPath(), StandardCharsets.UTF_8);
+      if (lines.isEmpty()) {
+        return null;
+      }
+      List<String> header = StringUtil.split(lines.get(0), SEPARATOR);
+      if (header.size() != 3 || !header.get(2).equals(rootPath) || Boolean.parseBoolean(header.get(1)) != isRecursive) {
+        return null;
+      }
+      return PerlDirectoryListing.parse(rootPath, isRecursive, Long.parseLong(header.get(0)), lines.subList(1, lines.size()));
+    }
+    catch (IOException | NumberFormatException e) {
+      LOG.warn("Error reading cached listing " + listingFile, e);
+      return null;
+    }
+  }
+
+  private static void saveListing(@NotNull PerlHostData<?, ?> hostData, @NotNull PerlDirectoryListing listing) {
+    File listingFile = getListingFile(hostData, getListingKey(listing.getRootPath(), listing.isRecursive()));
+    List<String> lines = new ArrayList<>();
+    lines.add(listing.getTimestamp() + SEPARATOR + listing.isRecursive() + SEPARATOR + listing.getRootPath());
+    lines.addAll(listing.toLines());
+    try {
+      FileUtil.createParentDirs(listingFile);
+      Files.write(listingFile.toPath(), lines, StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      LOG.warn("Error saving listing " + listingFile, e);
+    }
+  }
+
+  private static @Nullable String getParentPath(@NotNull String path) {
+    if (path.equals("/")) {
+      return null;
+    }
+    int lastSlash = path.lastIndexOf('/');
+    return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+  }
+
+  private static @NotNull String getHostKey(@NotNull PerlHostData<?, ?> hostData) {
+    return hostData.getShortName();
+  }
+
+  private static @NotNull File getHostCacheDir(@NotNull PerlHostData<?, ?> hostData) {
+    return new File(FileUtil.join(PerlPluginUtil.getPerlSystemPath(), CACHE_DIR), toFileName(getHostKey(hostData)));
+  }
+
+  private static @NotNull File getListingFile(@NotNull PerlHostData<?, ?> hostData, @NotNull String listingKey) {
+    return new File(getHostCacheDir(hostData), toFileName(listingKey));
+  }
+
+  private static @NotNull String getListingKey(@NotNull String rootPath, boolean isRecursive) {
+    return isRecursive ? rootPath + SEPARATOR + "recursive" : rootPath;
+  }
+
+  private static @NotNull String toFileName(@NotNull String key) {
+    return StringUtil.last(FileUtil.sanitizeFileName(key, false), MAX_NAME_LENGTH, false) + "_" + Integer.toHexString(key.hashCode());
+  }
+
+  public static @NotNull PerlHostListingCache getInstance() {
+    return ApplicationManager.getApplication().getService(PerlHostListingCache.class);
+  }
+}
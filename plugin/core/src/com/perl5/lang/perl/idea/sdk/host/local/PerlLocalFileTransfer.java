@@ -17,14 +17,14 @@
 package com.perl5.lang.perl.idea.sdk.host.local;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.vfs.LocalFileSystem;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.util.io.FileUtil;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 class PerlLocalFileTransfer extends PerlHostFileTransfer<PerlLocalHostData> {
@@ -47,9 +47,37 @@ class PerlLocalFileTransfer extends PerlHostFileTransfer<PerlLocalHostData> {
   }
 
   @Override
-  public @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) {
-    VirtualFile root = LocalFileSystem.getInstance().findFileByPath(remotePath);
-    return root == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(root.getChildren()));
+  protected boolean isListingCacheable() {
+    return false;
+  }
+
+  @Override
+  protected @NotNull List<String> doListFiles(@NotNull String remoteDir, boolean recursive) {
+    List<String> result = new ArrayList<>();
+    listDirectory(new File(remoteDir), recursive, result);
+    return result;
+  }
+
+  /**
+   * Lists {@code dir} in the {@code ls -LAs[R] --classify} format
+   */
+  private static void listDirectory(@NotNull File dir, boolean recursive, @NotNull List<String> result) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    result.add(FileUtil.toSystemIndependentName(dir.getPath()) + ":");
+    List<File> subDirs = new ArrayList<>();
+    for (File file : files) {
+      String suffix = file.isDirectory() ? "/" : file.canExecute() ? "*" : "";
+      result.add((file.length() + 1023) / 1024 + " " + file.getName() + suffix);
+      if (recursive && file.isDirectory() && !Files.isSymbolicLink(file.toPath())) {
+        subDirs.add(file);
+      }
+    }
+    for (File subDir : subDirs) {
+      listDirectory(subDir, true, result);
+    }
   }
 
   @SuppressWarnings("RedundantThrows")
@@ -18,6 +18,7 @@ package com.perl5.lang.perl.psi;
 
 import com.intellij.codeInsight.controlflow.Instruction;
 import com.intellij.psi.PsiElement;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,4 +26,17 @@ import org.jetbrains.annotations.NotNull;
  */
 public interface PerlControlFlowOwner extends PsiElement {
   @NotNull Instruction[] getControlFlow();
+
+  /**
+   * @return reaching definitions for the {@link #getControlFlow() control flow}, dropped together with it
+   */
+  @NotNull PerlReachingDefinitions getReachingDefinitions();
+
+  /**
+   * Invoked when the change happened inside a nested control flow owner, not inlined into the flow of this one. Such changes don't
+   * affect the control flow of this owner.
+   *
+   * @see com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlLazyControlFlow
+   */
+  void nestedOwnerChanged();
 }
@@ -23,17 +23,13 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiInvalidElementAccessException;
 import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.Processor;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlExportDescriptor;
-import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
-import com.perl5.lang.perl.psi.stubs.imports.PerlUseStatementsIndex;
+import com.perl5.lang.perl.psi.stubs.imports.PerlNamespaceImportsTable;
 import com.perl5.lang.perl.util.PerlPackageUtil;
-import com.perl5.lang.perl.util.PerlTimeLogger;
 import com.perl5.lang.perl.util.processors.*;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -88,52 +84,20 @@ public interface PerlNamespaceDefinitionElement extends PerlNamespaceDefinition,
     getMro().getLinearISA(getProject(), getParentNamespaceDefinitions(), recursionMap, result);
   }
 
+  /**
+   * @return unique export descriptors imported into the {@code namespaceName} by its use statements
+   * @see PerlNamespaceImportsTable
+   */
   static @NotNull Set<PerlExportDescriptor> getExportDescriptors(@NotNull Project project,
                                                                  @NotNull GlobalSearchScope searchScope,
                                                                  @NotNull String namespaceName) {
-    Set<PerlExportDescriptor> result = new HashSet<>();
-    PerlNamespaceDefinitionElement.processExportDescriptors(
-      project, searchScope, namespaceName, (__, it) -> {
-        result.add(it);
-        return true;
-      });
-    return result;
+    return PerlNamespaceImportsTable.getInstance(project, searchScope, namespaceName).getDescriptors();
   }
 
   static boolean processExportDescriptors(@NotNull Project project,
                                           @NotNull GlobalSearchScope searchScope,
                                           @NotNull String namespaceName,
                                           @NotNull PerlNamespaceEntityProcessor<? super PerlExportDescriptor> processor) {
-    PerlTimeLogger logger = PerlTimeLogger.create(LOG_STUBS);
-    PerlTimeLogger.Counter useStatementsCounter = logger.getCounter("use");
-    PerlTimeLogger.Counter exportsCounter = logger.getCounter("export");
-
-    boolean result = PerlUseStatementsIndex.getInstance().processElements(
-      project, namespaceName, searchScope, createUseStatementsProcessor(processor, useStatementsCounter, exportsCounter));
-
-    logger.debug("Processed: ", useStatementsCounter.get(), " use statements; ",
-                 exportsCounter.get(), " exports");
-
-    return result;
-  }
-
-  private static @NotNull Processor<PerlUseStatementElement> createUseStatementsProcessor(@NotNull PerlNamespaceEntityProcessor<? super PerlExportDescriptor> processor,
-                                                                                          @NotNull PerlTimeLogger.Counter useStatementsCounter,
-                                                                                          @NotNull PerlTimeLogger.Counter exportsCounter) {
-    return it -> {
-      useStatementsCounter.inc();
-      String packageName = it.getPackageName();
-
-      if (packageName == null) {
-        return true;
-      }
-      for (PerlExportDescriptor entry : it.getPackageProcessor().getImports(it)) {
-        exportsCounter.inc();
-        if (!processor.process(packageName, entry)) {
-          return false;
-        }
-      }
-      return true;
-    };
+    return PerlNamespaceImportsTable.getInstance(project, searchScope, namespaceName).processDescriptors(processor);
   }
 }
@@ -22,12 +22,14 @@ import com.intellij.lang.Language;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.impl.DirectoryInfo;
 import com.intellij.openapi.roots.impl.ProjectFileIndexImpl;
 import com.intellij.openapi.util.ClearableLazyValue;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.scope.PsiScopeProcessor;
@@ -45,6 +47,9 @@ import com.perl5.lang.perl.extensions.generation.PerlCodeGeneratorImpl;
 import com.perl5.lang.perl.fileTypes.PerlFileTypePackage;
 import com.perl5.lang.perl.fileTypes.PerlFileTypeScript;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlLazyControlFlow;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
+import com.perl5.lang.perl.idea.project.PerlModuleDependenciesGraph;
 import com.perl5.lang.perl.psi.PerlDoExpr;
 import com.perl5.lang.perl.psi.PerlFile;
 import com.perl5.lang.perl.psi.mro.PerlMroType;
@@ -73,7 +78,7 @@ public class PerlFileImpl extends PsiFileBase implements PerlFile {
 
   private final ClearableLazyValue<List<String>> myParentNamespaces = ClearableLazyValue.create(
     () -> PerlPackageUtil.collectParentNamespaceNamesFromPsi(this));
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final PerlLazyControlFlow myControlFlow = PerlControlFlowBuilder.createLazy(this);
 
   public PerlFileImpl(@NotNull FileViewProvider viewProvider, Language language) {
     super(viewProvider, language);
@@ -127,7 +132,7 @@ public class PerlFileImpl extends PsiFileBase implements PerlFile {
     super.subtreeChanged();
     myElementsResolveScope = null;
     myParentNamespaces.drop();
-    myControlFlow.drop();
+    myControlFlow.subtreeChanged();
   }
 
   @Override
@@ -142,6 +147,13 @@ public class PerlFileImpl extends PsiFileBase implements PerlFile {
 
   @Override
   public void collectIncludedFiles(Set<VirtualFile> includedVirtualFiles) {
+    VirtualFile virtualFile = getVirtualFile();
+    if (virtualFile instanceof VirtualFileWithId && !DumbService.isDumb(getProject())) {
+      if (!includedVirtualFiles.contains(virtualFile)) {
+        includedVirtualFiles.addAll(PerlModuleDependenciesGraph.getInstance(getProject()).getIncludedFiles(virtualFile));
+      }
+      return;
+    }
     if (!includedVirtualFiles.contains(getVirtualFile())) {
       includedVirtualFiles.add(getVirtualFile());
 
@@ -339,6 +351,16 @@ public class PerlFileImpl extends PsiFileBase implements PerlFile {
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
-    return myControlFlow.getValue();
+    return myControlFlow.getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
+    return myControlFlow.getReachingDefinitions();
+  }
+
+  @Override
+  public void nestedOwnerChanged() {
+    myControlFlow.nestedOwnerChanged();
   }
 }
@@ -19,10 +19,11 @@ package com.perl5.lang.perl.psi.mixins;
 import com.intellij.codeInsight.controlflow.Instruction;
 import com.intellij.lang.ASTNode;
 import com.intellij.navigation.ItemPresentation;
-import com.intellij.openapi.util.ClearableLazyValue;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlLazyControlFlow;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimpleDynamicLocation;
 import com.perl5.lang.perl.idea.ui.PerlIconProvider;
 import com.perl5.lang.perl.psi.PerlMethodModifier;
@@ -35,7 +36,7 @@ import javax.swing.*;
 
 public abstract class PerlMethodModifierMixin extends PerlCompositeElementImpl implements PerlMethodModifier {
 
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final PerlLazyControlFlow myControlFlow = PerlControlFlowBuilder.createLazy(this);
 
   public PerlMethodModifierMixin(@NotNull ASTNode node) {
     super(node);
@@ -72,11 +73,21 @@ public abstract class PerlMethodModifierMixin extends PerlCompositeElementImpl i
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
-    return myControlFlow.getValue();
+    return myControlFlow.getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
+    return myControlFlow.getReachingDefinitions();
+  }
+
+  @Override
+  public void nestedOwnerChanged() {
+    myControlFlow.nestedOwnerChanged();
   }
 
   @Override
   public void subtreeChanged() {
-    myControlFlow.drop();
+    myControlFlow.subtreeChanged();
   }
 }
@@ -18,7 +18,6 @@ package com.perl5.lang.perl.psi.mixins;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.navigation.ItemPresentation;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.stubs.IStubElementType;
 import com.perl5.PerlIcons;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimple;
@@ -66,7 +65,7 @@ public abstract class PerlSubDeclarationBase extends PerlSubBase<PerlSubDeclarat
 
   @Override
   public boolean isXSub() {
-    return StringUtil.equals(getContainingFile().getName(), PerlXSubsState.DEPARSED_FILE_NAME);
+    return PerlXSubsState.isDeparsedFile(getContainingFile());
   }
 
   public @Nullable PsiPerlExpr getExpr() {return null;}
@@ -24,6 +24,8 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.stubs.IStubElementType;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlLazyControlFlow;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimpleDynamicLocation;
 import com.perl5.lang.perl.lexer.PerlElementTypes;
@@ -43,7 +45,7 @@ public abstract class PerlSubDefinitionBase extends PerlSubBase<PerlSubDefinitio
                                                                                                   PerlLexicalScope,
                                                                                                   PerlElementTypes,
                                                                                                   PerlControlFlowOwner {
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final PerlLazyControlFlow myControlFlow = PerlControlFlowBuilder.createLazy(this);
   private final ClearableLazyValue<PerlValue> myReturnValueFromCode = ClearableLazyValue.create(
     () -> PerlResolveUtil.computeReturnValueFromControlFlow(this));
 
@@ -156,12 +158,22 @@ public abstract class PerlSubDefinitionBase extends PerlSubBase<PerlSubDefinitio
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
-    return myControlFlow.getValue();
+    return myControlFlow.getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
+    return myControlFlow.getReachingDefinitions();
+  }
+
+  @Override
+  public void nestedOwnerChanged() {
+    myControlFlow.nestedOwnerChanged();
   }
 
   @Override
   public void subtreeChanged() {
-    myControlFlow.drop();
+    myControlFlow.subtreeChanged();
     myReturnValueFromCode.drop();
   }
 }
\ No newline at end of file
@@ -17,25 +17,35 @@
 package com.perl5.lang.perl.psi.mro;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.Trinity;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.Processor;
-import com.perl5.lang.perl.psi.PerlGlobVariable;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.SLRUMap;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
 import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
-import com.perl5.lang.perl.util.PerlGlobUtil;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlSubUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.perl5.lang.perl.util.PerlSubUtil.SUB_AUTOLOAD;
 
 
 public abstract class PerlMro {
+  /**
+   * Resolve tables are cached per search scope, scopes are created by the call sites, so the cache is bounded
+   */
+  private static final int PROTECTED_QUEUE_SIZE = 2_000;
+  private static final int PROBATIONAL_QUEUE_SIZE = 1_000;
+
   protected PerlMro() {
   }
 
@@ -82,33 +92,34 @@ public abstract class PerlMro {
                                        @NotNull Set<String> subNames,
                                        boolean isSuper,
                                        @NotNull Processor<? super PsiNamedElement> processor) {
-    Collection<String> linearISA = getLinearISA(project, searchScope, baseNamespaceName, isSuper);
+    ResolveTable resolveTable = getResolveTable(project, searchScope, baseNamespaceName, isSuper);
+
+    int targetIndex = -1;
+    for (String subName : subNames) {
+      int subIndex = resolveTable.getTargetIndex(project, searchScope, subName);
+      if (subIndex >= 0 && (targetIndex < 0 || subIndex < targetIndex)) {
+        targetIndex = subIndex;
+      }
+    }
 
-    Ref<String> stopFlag = Ref.create();
-    for (String currentNamespaceName : linearISA) {
+    if (targetIndex >= 0) {
+      String targetNamespaceName = resolveTable.myLinearISA.get(targetIndex);
       for (String subName : subNames) {
-        if (!PerlSubUtil.processRelatedItems(project, searchScope, PerlPackageUtil.join(currentNamespaceName, subName), it -> {
-          stopFlag.set("");
-          return processor.process(it);
-        })) {
+        if (!PerlSubUtil.processRelatedItems(project, searchScope, PerlPackageUtil.join(targetNamespaceName, subName), processor)) {
           return false;
         }
       }
-      if (!stopFlag.isNull()) {
-        return true;
-      }
+      return true;
     }
 
-    for (String currentNamespaceName : linearISA) {
-      if (PerlPackageUtil.isUNIVERSAL(currentNamespaceName)) {
-        continue;
-      }
-      if (!PerlSubUtil.processRelatedItems(project, searchScope, PerlPackageUtil.join(currentNamespaceName, SUB_AUTOLOAD), it -> {
+    int autoloadIndex = resolveTable.getAutoloadIndex(project, searchScope);
+    if (autoloadIndex >= 0) {
+      String autoloadNamespaceName = resolveTable.myLinearISA.get(autoloadIndex);
+      PerlSubUtil.processRelatedItems(project, searchScope, PerlPackageUtil.join(autoloadNamespaceName, SUB_AUTOLOAD), it -> {
         processor.process(it);
         return false;
-      })) {
-        return false;
-      }
+      });
+      return false;
     }
 
     return true;
@@ -129,26 +140,22 @@ public abstract class PerlMro {
       return Collections.emptyList();
     }
     Project project = psiElement.getProject();
-    Map<String, PsiElement> methods = new HashMap<>();
-
     GlobalSearchScope searchScope = psiElement.getResolveScope();
-    for (String packageName : getLinearISA(project, psiElement.getResolveScope(), baseNamespaceName, isSuper)) {
-      PerlSubUtil.processRelatedSubsInPackage(project, searchScope, packageName, it -> {
-        methods.putIfAbsent(it.getName(), it);
-        return true;
-      });
-      for (PerlGlobVariable globVariable : PerlGlobUtil.getGlobsDefinitions(project, "*" + packageName)) {
-        if (globVariable.isLeftSideOfAssignment() && !methods.containsKey(globVariable.getName())) {
-          methods.putIfAbsent(globVariable.getName(), globVariable);
+    Set<String> processedNames = new HashSet<>();
+    List<PsiElement> result = new ArrayList<>();
+    for (String packageName : getLinearISA(project, searchScope, baseNamespaceName, isSuper)) {
+      PerlNamespaceMethodTable methodTable = PerlNamespaceMethodTable.getInstance(project, searchScope, packageName);
+      for (String methodName : methodTable.getMethodsNames()) {
+        if (processedNames.add(methodName)) {
+          ContainerUtil.addIfNotNull(result, methodTable.findElement(methodName));
         }
       }
     }
-
-    return new ArrayList<>(methods.values());
+    return result;
   }
 
   /**
-   * Building linear @ISA list
+   * Building linear @ISA list. Results are cached until perl stubs in the project are changed, cache size is bounded
    *
    * @param packageName current package name
    * @param isSuper     if false - we include current package into the list, true - otherwise
@@ -158,6 +165,13 @@ public abstract class PerlMro {
                                                @NotNull GlobalSearchScope searchScope,
                                                @NotNull String packageName,
                                                boolean isSuper) {
+    return new ArrayList<>(getResolveTable(project, searchScope, packageName, isSuper).myLinearISA);
+  }
+
+  private static @NotNull ArrayList<String> computeLinearISA(@NotNull Project project,
+                                                             @NotNull GlobalSearchScope searchScope,
+                                                             @NotNull String packageName,
+                                                             boolean isSuper) {
     HashSet<String> recursionMap = new HashSet<>();
     ArrayList<String> result = new ArrayList<>();
 
@@ -175,6 +189,34 @@ public abstract class PerlMro {
     return result;
   }
 
+  /**
+   * @return cached resolve table for the {@code packageName}, computing it if necessary
+   */
+  private static @NotNull ResolveTable getResolveTable(@NotNull Project project,
+                                                       @NotNull GlobalSearchScope searchScope,
+                                                       @NotNull String packageName,
+                                                       boolean isSuper) {
+    SLRUMap<Trinity<GlobalSearchScope, String, Boolean>, ResolveTable> tables = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> CachedValueProvider.Result.create(
+        new SLRUMap<>(PROTECTED_QUEUE_SIZE, PROBATIONAL_QUEUE_SIZE), PerlStubsModificationTracker.getInstance(project)));
+    Trinity<GlobalSearchScope, String, Boolean> key = Trinity.create(searchScope, packageName, isSuper);
+    ResolveTable result;
+    synchronized (tables) {
+      result = tables.get(key);
+    }
+    if (result == null) {
+      result = new ResolveTable(computeLinearISA(project, searchScope, packageName, isSuper));
+      synchronized (tables) {
+        ResolveTable existingTable = tables.get(key);
+        if (existingTable != null) {
+          return existingTable;
+        }
+        tables.put(key, result);
+      }
+    }
+    return result;
+  }
+
   public static void getPackageParents(@NotNull Project project,
                                        @NotNull GlobalSearchScope searchScope,
                                        @NotNull String packageName,
@@ -186,4 +228,57 @@ public abstract class PerlMro {
       namespaceDefinition.getLinearISA(recursionMap, result);
     }
   }
+
+  /**
+   * Linear @ISA of the namespace with lazily computed positions of the first namespaces providing subs with specific names
+   */
+  private static final class ResolveTable {
+    private static final String AUTOLOAD_KEY = "*" + SUB_AUTOLOAD;
+    private final @NotNull List<String> myLinearISA;
+    /**
+     * Maps sub name to the index of the first namespace in {@link #myLinearISA} containing related items, or -1 if there are none
+     */
+    private final @NotNull Map<String, Integer> myTargetIndexes = new ConcurrentHashMap<>();
+
+    public ResolveTable(@NotNull List<String> linearISA) {
+      myLinearISA = Collections.unmodifiableList(linearISA);
+    }
+
+    public int getTargetIndex(@NotNull Project project, @NotNull GlobalSearchScope searchScope, @NotNull String subName) {
+      return getIndex(project, searchScope, subName, subName, false);
+    }
+
+    /**
+     * @return index of the first non-UNIVERSAL namespace containing {@code AUTOLOAD} sub or -1 if there are none
+     */
+    public int getAutoloadIndex(@NotNull Project project, @NotNull GlobalSearchScope searchScope) {
+      return getIndex(project, searchScope, AUTOLOAD_KEY, SUB_AUTOLOAD, true);
+    }
+
+    private int getIndex(@NotNull Project project,
+                         @NotNull GlobalSearchScope searchScope,
+                         @NotNull String key,
+                         @NotNull String subName,
+                         boolean skipUniversal) {
+      Integer result = myTargetIndexes.get(key);
+      if (result == null) {
+        result = computeIndex(project, searchScope, subName, skipUniversal);
+        myTargetIndexes.putIfAbsent(key, result);
+      }
+      return result;
+    }
+
+    private int computeIndex(@NotNull Project project, @NotNull GlobalSearchScope searchScope, @NotNull String subName, boolean skipUniversal) {
+      for (int i = 0; i < myLinearISA.size(); i++) {
+        String namespaceName = myLinearISA.get(i);
+        if (skipUniversal && PerlPackageUtil.isUNIVERSAL(namespaceName)) {
+          continue;
+        }
+        if (PerlNamespaceMethodTable.getInstance(project, searchScope, namespaceName).contains(subName)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
 }
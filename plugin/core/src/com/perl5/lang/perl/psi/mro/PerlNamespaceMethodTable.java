@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.mro;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.Processor;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
+import com.perl5.lang.perl.psi.PerlGlobVariable;
+import com.perl5.lang.perl.psi.impl.PerlImplicitElement;
+import com.perl5.lang.perl.psi.stubs.globs.PerlGlobsStubIndex;
+import com.perl5.lang.perl.util.PerlGlobUtil;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import com.perl5.lang.perl.util.PerlSubUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.perl5.lang.perl.util.PerlSubUtil.SUB_AUTOLOAD;
+
+/**
+ * Names of subs provided by the namespace: own sub definitions and declarations, implicit subs, light subs generated by frameworks,
+ * e.g. Moose or Class::Accessor, and typeglobs. Table is built from the stub indexes only, without loading AST of the files, and
+ * cached until perl stubs in the project are changed.
+ * <p>
+ * Names are collected once per namespace from all files of the project and remembered per file. Table for the specific search scope
+ * is a view, containing names from the files in this scope only, so search scopes created at the call sites don't multiply cache entries.
+ * Elements are requested only for names, which are actually used, see {@link #processElements(String, Processor)}
+ */
+public final class PerlNamespaceMethodTable {
+  private static final int SUB = 1;
+  private static final int GLOB = 1 << 1;
+  private static final int ASSIGNED_GLOB = 1 << 2;
+
+  private final @NotNull Project myProject;
+  private final @NotNull GlobalSearchScope mySearchScope;
+  private final @NotNull String myNamespaceName;
+  /**
+   * Maps name to the kinds of items with this name in the namespace
+   */
+  private final @NotNull Map<String, Integer> myNames;
+
+  private PerlNamespaceMethodTable(@NotNull Project project,
+                                   @NotNull GlobalSearchScope searchScope,
+                                   @NotNull String namespaceName,
+                                   @NotNull Map<String, Integer> names) {
+    myProject = project;
+    mySearchScope = searchScope;
+    myNamespaceName = namespaceName;
+    myNames = Collections.unmodifiableMap(names);
+  }
+
+  public @NotNull String getNamespaceName() {
+    return myNamespaceName;
+  }
+
+  /**
+   * @return true iff namespace contains sub definitions, declarations or typeglobs with {@code name}
+   */
+  public boolean contains(@NotNull String name) {
+    return myNames.containsKey(name);
+  }
+
+  public boolean hasAutoload() {
+    return contains(SUB_AUTOLOAD);
+  }
+
+  /**
+   * @return names of subs and subs-like typeglobs assignments in the namespace
+   */
+  public @NotNull Set<String> getMethodsNames() {
+    Set<String> result = new LinkedHashSet<>();
+    myNames.forEach((name, kinds) -> {
+      if ((kinds & (SUB | ASSIGNED_GLOB)) != 0) {
+        result.add(name);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Processes sub definitions, declarations and typeglobs assignments with {@code name} from this namespace, in this order
+   */
+  public boolean processElements(@NotNull String name, @NotNull Processor<? super PsiNamedElement> processor) {
+    Integer kinds = myNames.get(name);
+    if (kinds == null) {
+      return true;
+    }
+    String canonicalName = PerlPackageUtil.join(myNamespaceName, name);
+    if ((kinds & SUB) != 0 &&
+        (!PerlSubUtil.processSubDefinitions(myProject, canonicalName, mySearchScope, processor::process) ||
+         !PerlSubUtil.processSubDeclarations(myProject, canonicalName, mySearchScope, processor::process))) {
+      return false;
+    }
+    if ((kinds & ASSIGNED_GLOB) != 0) {
+      for (PerlGlobVariable globVariable : PerlGlobUtil.getGlobsDefinitions(myProject, canonicalName, mySearchScope)) {
+        if (globVariable.isLeftSideOfAssignment() && !processor.process(globVariable)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return first sub definition, declaration or typeglob assignment with {@code name} from this namespace
+   */
+  public @Nullable PsiNamedElement findElement(@NotNull String name) {
+    PsiNamedElement[] result = new PsiNamedElement[1];
+    processElements(name, it -> {
+      result[0] = it;
+      return false;
+    });
+    return result[0];
+  }
+
+  /**
+   * @return cached method table of the {@code namespaceName}, computing it if necessary
+   */
+  public static @NotNull PerlNamespaceMethodTable getInstance(@NotNull Project project,
+                                                              @NotNull GlobalSearchScope searchScope,
+                                                              @NotNull String namespaceName) {
+    Map<String, NamesByFile> namesByNamespace = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PerlStubsModificationTracker.getInstance(project)));
+    NamesByFile namesByFile = namesByNamespace.get(namespaceName);
+    if (namesByFile == null) {
+      namesByFile = NamesByFile.compute(project, namespaceName);
+      NamesByFile existingNames = namesByNamespace.putIfAbsent(namespaceName, namesByFile);
+      if (existingNames != null) {
+        namesByFile = existingNames;
+      }
+    }
+    return new PerlNamespaceMethodTable(project, searchScope, namespaceName, namesByFile.getNames(searchScope));
+  }
+
+  /**
+   * Names of the namespace items in all files of the project, per file
+   */
+  private static final class NamesByFile {
+    /**
+     * Names per file; implicit items are stored with {@code null} key, they are visible in any scope
+     */
+    private final @NotNull Map<VirtualFile, Map<String, Integer>> myFilesNames;
+    /**
+     * Names from all the files, most of the scopes contain all files with the namespace items
+     */
+    private final @NotNull Map<String, Integer> myAllNames;
+
+    private NamesByFile(@NotNull Map<VirtualFile, Map<String, Integer>> filesNames) {
+      myFilesNames = filesNames;
+      myAllNames = mergeNames(filesNames.values());
+    }
+
+    public @NotNull Map<String, Integer> getNames(@NotNull GlobalSearchScope searchScope) {
+      List<Map<String, Integer>> namesInScope = new ArrayList<>(myFilesNames.size());
+      myFilesNames.forEach((virtualFile, names) -> {
+        if (virtualFile == null || searchScope.contains(virtualFile)) {
+          namesInScope.add(names);
+        }
+      });
+      return namesInScope.size() == myFilesNames.size() ? myAllNames : mergeNames(namesInScope);
+    }
+
+    private static @NotNull Map<String, Integer> mergeNames(@NotNull Collection<Map<String, Integer>> namesCollection) {
+      if (namesCollection.size() == 1) {
+        return namesCollection.iterator().next();
+      }
+      Map<String, Integer> result = new LinkedHashMap<>();
+      for (Map<String, Integer> names : namesCollection) {
+        names.forEach((name, kinds) -> addName(result, name, kinds));
+      }
+      return result;
+    }
+
+    public static @NotNull NamesByFile compute(@NotNull Project project, @NotNull String namespaceName) {
+      GlobalSearchScope searchScope = GlobalSearchScope.allScope(project);
+      Map<VirtualFile, Map<String, Integer>> filesNames = new LinkedHashMap<>();
+      PerlSubUtil.processSubDefinitionsInPackage(
+        project, namespaceName, searchScope, it -> addName(getFileNames(filesNames, it), it.getSubName(), SUB));
+      PerlSubUtil.processSubDeclarationsInPackage(
+        project, namespaceName, searchScope, it -> addName(getFileNames(filesNames, it), it.getSubName(), SUB));
+      PerlGlobsStubIndex.getInstance().processElements(project, "*" + namespaceName, searchScope, it -> {
+        Map<String, Integer> names = getFileNames(filesNames, it);
+        addName(names, it.getName(), GLOB);
+        return !it.isLeftSideOfAssignment() || addName(names, it.getName(), ASSIGNED_GLOB);
+      });
+      return new NamesByFile(filesNames);
+    }
+
+    private static @NotNull Map<String, Integer> getFileNames(@NotNull Map<VirtualFile, Map<String, Integer>> filesNames,
+                                                              @NotNull PsiElement element) {
+      PsiFile psiFile = element instanceof PerlImplicitElement ? null : element.getContainingFile();
+      VirtualFile virtualFile = psiFile == null ? null : psiFile.getViewProvider().getVirtualFile();
+      return filesNames.computeIfAbsent(virtualFile, it -> new LinkedHashMap<>());
+    }
+  }
+
+  private static boolean addName(@NotNull Map<String, Integer> names, @Nullable String name, int kind) {
+    if (name != null) {
+      names.merge(name, kind, (oldValue, newValue) -> oldValue | newValue);
+    }
+    return true;
+  }
+}
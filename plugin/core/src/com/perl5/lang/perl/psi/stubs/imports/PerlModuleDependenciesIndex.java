@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.stubs.imports;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubTreeBuilder;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.perl5.lang.perl.fileTypes.PerlPluginBaseFileType;
+import com.perl5.lang.perl.psi.stubs.imports.runtime.PerlRuntimeImportStub;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes outgoing module dependencies of perl files: relative paths of files loaded with {@code use}, {@code require} and
+ * {@code do}. Package names are converted to paths, e.g. {@code Foo::Bar} becomes {@code Foo/Bar.pm}.
+ * Paths are resolved to files by the dependent file {@code @INC}. Dependencies are collected from the file stub tree, which is built
+ * once for all stub indexes.
+ *
+ * @see com.perl5.lang.perl.idea.project.PerlModuleDependenciesGraph
+ */
+public class PerlModuleDependenciesIndex extends ScalarIndexExtension<String> {
+  public static final int VERSION = 2;
+  public static final ID<String, Void> NAME = ID.create("perl.module.dependencies");
+
+  @Override
+  public @NotNull ID<String, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer() {
+    return inputData -> {
+      Stub fileStub = StubTreeBuilder.buildStubTree(inputData);
+      if (fileStub == null) {
+        return Collections.emptyMap();
+      }
+      Map<String, Void> result = new HashMap<>();
+      collectDependencies(fileStub, result);
+      return result;
+    };
+  }
+
+  private static void collectDependencies(@NotNull Stub stub, @NotNull Map<String, Void> result) {
+    String relativePath = null;
+    if (stub instanceof PerlUseStatementStub) {
+      relativePath = PerlPackageUtil.getPackagePathByName(((PerlUseStatementStub)stub).getPackageName());
+    }
+    else if (stub instanceof PerlRuntimeImportStub) {
+      relativePath = ((PerlRuntimeImportStub)stub).getImportPath();
+    }
+    if (StringUtil.isNotEmpty(relativePath)) {
+      result.put(relativePath, null);
+    }
+    for (Stub childStub : stub.getChildrenStubs()) {
+      collectDependencies(childStub, result);
+    }
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+    return file -> file.getFileType() instanceof PerlPluginBaseFileType;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * @return relative paths of files loaded by the {@code virtualFile}
+   */
+  public static @NotNull Collection<String> getDependencies(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+    return FileBasedIndex.getInstance().getFileData(NAME, virtualFile, project).keySet();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.stubs.imports;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
+import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Contents of the {@code @EXPORT} and {@code @EXPORT_OK} arrays of all definitions of the namespace in the project. Built from the
+ * namespaces stubs and cached until perl stubs in the project are changed.
+ */
+public final class PerlNamespaceExportsTable {
+  private static final PerlNamespaceExportsTable EMPTY = new PerlNamespaceExportsTable(Collections.emptySet(), Collections.emptySet());
+
+  private final @NotNull Set<String> myExport;
+  private final @NotNull Set<String> myExportOk;
+
+  private PerlNamespaceExportsTable(@NotNull Set<String> export, @NotNull Set<String> exportOk) {
+    myExport = Collections.unmodifiableSet(export);
+    myExportOk = Collections.unmodifiableSet(exportOk);
+  }
+
+  /**
+   * @return names exported by default
+   */
+  public @NotNull Set<String> getExport() {
+    return myExport;
+  }
+
+  /**
+   * @return names allowed to be imported, including ones exported by default
+   */
+  public @NotNull Set<String> getExportOk() {
+    return myExportOk;
+  }
+
+  /**
+   * @return cached exports table of the {@code namespaceName}, computing it if necessary
+   */
+  public static @NotNull PerlNamespaceExportsTable getInstance(@NotNull Project project, @NotNull String namespaceName) {
+    Map<String, PerlNamespaceExportsTable> tables = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PerlStubsModificationTracker.getInstance(project)));
+    PerlNamespaceExportsTable result = tables.get(namespaceName);
+    if (result == null) {
+      result = compute(project, namespaceName);
+      PerlNamespaceExportsTable existingTable = tables.putIfAbsent(namespaceName, result);
+      if (existingTable != null) {
+        result = existingTable;
+      }
+    }
+    return result;
+  }
+
+  private static @NotNull PerlNamespaceExportsTable compute(@NotNull Project project, @NotNull String namespaceName) {
+    Set<String> export = new LinkedHashSet<>();
+    Set<String> exportOk = new LinkedHashSet<>();
+    for (PerlNamespaceDefinitionElement namespaceDefinition : PerlPackageUtil
+      .getNamespaceDefinitions(project, GlobalSearchScope.allScope(project), namespaceName)) {
+      export.addAll(namespaceDefinition.getEXPORT());
+      exportOk.addAll(namespaceDefinition.getEXPORT_OK());
+    }
+    exportOk.addAll(export);
+    return export.isEmpty() && exportOk.isEmpty() ? EMPTY : new PerlNamespaceExportsTable(export, exportOk);
+  }
+}
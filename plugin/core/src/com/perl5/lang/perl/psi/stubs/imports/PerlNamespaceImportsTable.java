@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.stubs.imports;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.extensions.packageprocessor.PerlExportDescriptor;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
+import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
+import com.perl5.lang.perl.util.PerlTimeLogger;
+import com.perl5.lang.perl.util.processors.PerlNamespaceEntityProcessor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Imports made by {@code use} statements of the namespace: imported name to the export descriptor. Table is computed once with
+ * {@link com.perl5.lang.perl.extensions.packageprocessor.PerlPackageProcessor#getImports package processors} from the use statements
+ * stubs and cached until perl stubs in the project are changed. Changes of the use statements or export lists of the imported modules
+ * change stubs, so the table is never stale.
+ * <p>
+ * Use statements are collected once per namespace from all files of the project. Table for the specific search scope contains
+ * imports of use statements from the files in this scope only and is cached only if it is the same as the table for all files.
+ *
+ * @see PerlNamespaceExportsTable
+ */
+public final class PerlNamespaceImportsTable {
+  private static final PerlNamespaceImportsTable EMPTY = new PerlNamespaceImportsTable(Collections.emptyList());
+
+  /**
+   * Imported package name and descriptor, in the order of use statements
+   */
+  private final @NotNull List<Pair<String, PerlExportDescriptor>> myImports;
+  private final @NotNull Set<PerlExportDescriptor> myDescriptors;
+  /**
+   * Imported name to descriptors, regardless of sigil
+   */
+  private final @NotNull Map<String, List<PerlExportDescriptor>> myDescriptorsByName;
+
+  private PerlNamespaceImportsTable(@NotNull List<Pair<String, PerlExportDescriptor>> imports) {
+    myImports = imports;
+    Set<PerlExportDescriptor> descriptors = new LinkedHashSet<>();
+    Map<String, List<PerlExportDescriptor>> descriptorsByName = new HashMap<>();
+    for (Pair<String, PerlExportDescriptor> entry : imports) {
+      PerlExportDescriptor descriptor = entry.second;
+      if (descriptors.add(descriptor)) {
+        descriptorsByName.computeIfAbsent(descriptor.getImportedName(), it -> new ArrayList<>(1)).add(descriptor);
+      }
+    }
+    myDescriptors = Collections.unmodifiableSet(descriptors);
+    myDescriptorsByName = descriptorsByName;
+  }
+
+  /**
+   * @return all unique export descriptors imported into the namespace
+   */
+  public @NotNull Set<PerlExportDescriptor> getDescriptors() {
+    return myDescriptors;
+  }
+
+  /**
+   * @return descriptors imported into the namespace with {@code importedName}, of any sigil
+   */
+  public @NotNull List<PerlExportDescriptor> getDescriptors(@NotNull String importedName) {
+    return myDescriptorsByName.getOrDefault(importedName, Collections.emptyList());
+  }
+
+  /**
+   * Processes imported descriptors with package names of use statements, in order of use statements
+   */
+  public boolean processDescriptors(@NotNull PerlNamespaceEntityProcessor<? super PerlExportDescriptor> processor) {
+    for (Pair<String, PerlExportDescriptor> entry : myImports) {
+      if (!processor.process(entry.first, entry.second)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return cached imports table of the {@code namespaceName} in the {@code searchScope}, computing it if necessary
+   */
+  public static @NotNull PerlNamespaceImportsTable getInstance(@NotNull Project project,
+                                                               @NotNull GlobalSearchScope searchScope,
+                                                               @NotNull String namespaceName) {
+    Map<String, ImportsByFile> importsByNamespace = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PerlStubsModificationTracker.getInstance(project)));
+    ImportsByFile importsByFile = importsByNamespace.get(namespaceName);
+    if (importsByFile == null) {
+      importsByFile = ImportsByFile.compute(project, namespaceName);
+      ImportsByFile existingImports = importsByNamespace.putIfAbsent(namespaceName, importsByFile);
+      if (existingImports != null) {
+        importsByFile = existingImports;
+      }
+    }
+    return importsByFile.getTable(searchScope);
+  }
+
+  /**
+   * Imports of the namespace use statements in all files of the project, per file
+   */
+  private static final class ImportsByFile {
+    private final @NotNull Map<VirtualFile, List<Pair<String, PerlExportDescriptor>>> myFilesImports;
+    /**
+     * Table of imports from all files, most of the scopes contain all files with the namespace use statements
+     */
+    private final @NotNull PerlNamespaceImportsTable myAllImportsTable;
+
+    private ImportsByFile(@NotNull Map<VirtualFile, List<Pair<String, PerlExportDescriptor>>> filesImports) {
+      myFilesImports = filesImports;
+      myAllImportsTable = createTable(filesImports.values());
+    }
+
+    public @NotNull PerlNamespaceImportsTable getTable(@NotNull GlobalSearchScope searchScope) {
+      List<List<Pair<String, PerlExportDescriptor>>> importsInScope = new ArrayList<>(myFilesImports.size());
+      myFilesImports.forEach((virtualFile, imports) -> {
+        if (searchScope.contains(virtualFile)) {
+          importsInScope.add(imports);
+        }
+      });
+      return importsInScope.size() == myFilesImports.size() ? myAllImportsTable : createTable(importsInScope);
+    }
+
+    private static @NotNull PerlNamespaceImportsTable createTable(@NotNull Collection<List<Pair<String, PerlExportDescriptor>>> importsCollection) {
+      List<Pair<String, PerlExportDescriptor>> result = new ArrayList<>();
+      importsCollection.forEach(result::addAll);
+      return result.isEmpty() ? EMPTY : new PerlNamespaceImportsTable(result);
+    }
+
+    public static @NotNull ImportsByFile compute(@NotNull Project project, @NotNull String namespaceName) {
+      PerlTimeLogger logger = PerlTimeLogger.create(PerlNamespaceDefinitionElement.LOG_STUBS);
+      PerlTimeLogger.Counter useStatementsCounter = logger.getCounter("use");
+      Map<VirtualFile, List<Pair<String, PerlExportDescriptor>>> filesImports = new LinkedHashMap<>();
+
+      PerlUseStatementsIndex.getInstance().processElements(project, namespaceName, GlobalSearchScope.allScope(project), it -> {
+        useStatementsCounter.inc();
+        String packageName = it.getPackageName();
+        if (packageName != null) {
+          List<Pair<String, PerlExportDescriptor>> imports = filesImports.computeIfAbsent(
+            it.getContainingFile().getViewProvider().getVirtualFile(), file -> new ArrayList<>());
+          for (PerlExportDescriptor descriptor : it.getPackageProcessor().getImports(it)) {
+            imports.add(Pair.create(packageName, descriptor));
+          }
+        }
+        return true;
+      });
+
+      logger.debug("Processed: ", useStatementsCounter.get(), " use statements in ", filesImports.size(), " files");
+      return new ImportsByFile(filesImports);
+    }
+  }
+}
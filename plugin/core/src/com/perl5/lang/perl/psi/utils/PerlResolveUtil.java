@@ -36,6 +36,7 @@ import com.perl5.lang.perl.extensions.PerlImplicitVariablesProvider;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlAssignInstruction;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlMutationInstruction;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlOneOfValue;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValues;
@@ -52,7 +53,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 import static com.intellij.codeInsight.controlflow.ControlFlowUtil.Operation.CONTINUE;
 import static com.intellij.codeInsight.controlflow.ControlFlowUtil.Operation.NEXT;
@@ -281,42 +286,42 @@ public class PerlResolveUtil {
       }
       return UNKNOWN_VALUE;
     }
+    Predicate<Instruction> isDefinition =
+      it -> isVariableDefinition(it, namespaceName, variableName, actualType, lexicalDeclaration, stopElement);
+    Instruction elementInstruction = instructions[elementInstructionIndex];
+    List<Instruction> definitions;
+    // fixme pop instruction should be decomposed
+    if (isDefinition.test(elementInstruction) &&
+        (!(elementInstruction instanceof PerlMutationInstruction) || elementInstruction instanceof PerlAssignInstruction)) {
+      definitions = Collections.singletonList(elementInstruction);
+    }
+    else {
+      List<Object> definitionsKind = Arrays.asList(
+        namespaceName, variableName, actualType, lexicalDeclaration instanceof PerlBuiltInVariable, stopElement);
+      definitions = PerlReachingDefinitions.getFor(controlFlowScope)
+        .getReachingDefinitions(definitionsKind, isDefinition, elementInstructionIndex);
+    }
+
     PerlOneOfValue.Builder valueBuilder = PerlOneOfValue.builder();
-    ControlFlowUtil.iteratePrev(elementInstructionIndex, instructions, currentInstruction -> {
-      if (!(currentInstruction instanceof PerlMutationInstruction)) {
-        PsiElement instructionElement = currentInstruction.getElement();
-        if ((instructionElement instanceof PerlSubDefinitionElement || instructionElement instanceof PerlSubExpr) &&
-            lexicalDeclaration instanceof PerlBuiltInVariable && "_".equals(variableName) && actualType == PerlVariableType.ARRAY) {
+    for (Instruction definition : definitions) {
+      ProgressManager.checkCanceled();
+      if (!(definition instanceof PerlMutationInstruction)) {
+        PsiElement instructionElement = definition.getElement();
+        if (isArgumentsSource(instructionElement, variableName, actualType, lexicalDeclaration)) {
           valueBuilder.addVariant(PerlValues.ARGUMENTS_VALUE);
-          return CONTINUE;
         }
-        if (Objects.equals(stopElement, instructionElement)) {
-          return CONTINUE;
-        }
-        if (currentInstruction.num() == 1 && instructionElement != null && instructionElement.getContext() != null) {
+        else if (!Objects.equals(stopElement, instructionElement)) {
+          // control flow entry, value comes from the outer scope
           valueBuilder.addVariant(
             getValueFromControlFlow(instructionElement, namespaceName, variableName, actualType, lexicalDeclaration, stopElement));
         }
-        return NEXT;
-      }
-      if (currentInstruction.num() > elementInstructionIndex) {
-        return NEXT;
+        continue;
       }
-      // fixme pop instruction should be decomposed
-      if (currentInstruction.num() == elementInstructionIndex && !(currentInstruction instanceof PerlAssignInstruction)) {
-        return NEXT;
-      }
-      PsiElement assignee = ((PerlMutationInstruction)currentInstruction).getLeftSide();
-      if (!(assignee instanceof PerlVariable) || ((PerlVariable)assignee).getActualType() != actualType) {
-        return NEXT;
-      }
-      if (!Objects.equals(variableName, ((PerlVariable)assignee).getName())) {
-        return NEXT;
-      }
-      String explicitNamespaceName = ((PerlVariable)assignee).getExplicitNamespaceName();
-      if ((explicitNamespaceName != null || namespaceName != null) && !Objects.equals(namespaceName, explicitNamespaceName)) {
-        return NEXT;
+      // definitions after the element reach it through loop back edges; the element itself may only be an assignment
+      if (definition == elementInstruction && !(definition instanceof PerlAssignInstruction)) {
+        continue;
       }
+      PsiElement assignee = ((PerlMutationInstruction)definition).getLeftSide();
       PerlVariableDeclarationElement assigneeDeclaration = getLexicalDeclaration((PerlVariable)assignee);
       if (element == assignee ||
           lexicalDeclaration == null && assigneeDeclaration == null && !(assignee.getParent() instanceof PerlVariableDeclarationElement) ||
@@ -324,11 +329,9 @@ public class PerlResolveUtil {
             Objects.equals(lexicalDeclaration, assigneeDeclaration) ||
             Objects.equals(lexicalDeclaration, assignee.getParent()))
       ) {
-        valueBuilder.addVariant(((PerlMutationInstruction)currentInstruction).createValue());
+        valueBuilder.addVariant(((PerlMutationInstruction)definition).createValue());
       }
-      return CONTINUE;
-    });
-
+    }
 
     if (lexicalDeclaration != null) {
       PerlValue declaredValue = lexicalDeclaration.getDeclaredValue();
@@ -339,6 +342,45 @@ public class PerlResolveUtil {
     return valueBuilder.build();
   }
 
+  /**
+   * @return true iff {@code instruction} stops the search of variable values: it's an assignment to the variable with same
+   * name, control flow entry, stop element or source of sub arguments
+   * @see #getValueFromControlFlow(PsiElement, String, String, PerlVariableType, PerlVariableDeclarationElement, PsiElement)
+   */
+  private static boolean isVariableDefinition(@NotNull Instruction instruction,
+                                              @Nullable String namespaceName,
+                                              @NotNull String variableName,
+                                              @NotNull PerlVariableType actualType,
+                                              @Nullable PerlVariableDeclarationElement lexicalDeclaration,
+                                              @Nullable PsiElement stopElement) {
+    if (!(instruction instanceof PerlMutationInstruction)) {
+      PsiElement instructionElement = instruction.getElement();
+      return isArgumentsSource(instructionElement, variableName, actualType, lexicalDeclaration) ||
+             Objects.equals(stopElement, instructionElement) ||
+             instruction.num() == 1 && instructionElement != null && instructionElement.getContext() != null;
+    }
+    PsiElement assignee = ((PerlMutationInstruction)instruction).getLeftSide();
+    if (!(assignee instanceof PerlVariable) || ((PerlVariable)assignee).getActualType() != actualType) {
+      return false;
+    }
+    if (!Objects.equals(variableName, ((PerlVariable)assignee).getName())) {
+      return false;
+    }
+    String explicitNamespaceName = ((PerlVariable)assignee).getExplicitNamespaceName();
+    return explicitNamespaceName == null && namespaceName == null || Objects.equals(namespaceName, explicitNamespaceName);
+  }
+
+  /**
+   * @return true iff {@code instructionElement} is a sub providing {@code @_} value
+   */
+  private static boolean isArgumentsSource(@Nullable PsiElement instructionElement,
+                                           @NotNull String variableName,
+                                           @NotNull PerlVariableType actualType,
+                                           @Nullable PerlVariableDeclarationElement lexicalDeclaration) {
+    return (instructionElement instanceof PerlSubDefinitionElement || instructionElement instanceof PerlSubExpr) &&
+           lexicalDeclaration instanceof PerlBuiltInVariable && "_".equals(variableName) && actualType == PerlVariableType.ARRAY;
+  }
+
   private static int findElementInstruction(@Nullable PsiElement elementToFind,
                                             @NotNull Instruction[] instructions,
                                             @Nullable PsiElement originalElementToFind) {
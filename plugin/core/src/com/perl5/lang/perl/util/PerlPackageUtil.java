@@ -20,6 +20,7 @@ import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -28,9 +29,12 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -38,6 +42,7 @@ import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.PairProcessor;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlLibProvider;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlPackageParentsProvider;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlPackageProcessor;
@@ -50,13 +55,18 @@ import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
 import com.perl5.lang.perl.idea.manipulators.PerlNamespaceElementManipulator;
 import com.perl5.lang.perl.idea.project.PerlDirectoryIndex;
+import com.perl5.lang.perl.idea.project.PerlLibraryFilesIndex;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
 import com.perl5.lang.perl.idea.refactoring.rename.RenameRefactoringQueue;
 import com.perl5.lang.perl.internals.PerlVersion;
 import com.perl5.lang.perl.lexer.PerlElementTypes;
 import com.perl5.lang.perl.psi.*;
 import com.perl5.lang.perl.psi.impl.PerlFileImpl;
 import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
+import com.perl5.lang.perl.psi.mro.PerlMro;
+import com.perl5.lang.perl.psi.mro.PerlNamespaceMethodTable;
+import com.perl5.lang.perl.psi.stubs.imports.PerlUseStatementStub;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceReverseIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlNamespaceIndex;
@@ -568,53 +578,47 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
         }
       }
 
-      processParentClassesSubs(
-        namespaceDefinition,
-        namesSet,
-        new THashSet<>(),
-        processor
-      );
+      processParentClassesSubs(namespaceDefinition.getProject(), namespaceDefinition.getResolveScope(), packageName, namesSet, processor);
     }
   }
 
-  public static void processParentClassesSubs(PerlNamespaceDefinitionElement childClass,
-                                              Set<String> processedSubsNames,
-                                              Set<PerlNamespaceDefinitionElement> recursionMap,
-                                              Processor<PerlSubElement> processor
-  ) {
-    if (childClass == null || recursionMap.contains(childClass)) {
-      return;
-    }
-    recursionMap.add(childClass);
-
-    for (PerlNamespaceDefinitionElement parentNamespace : childClass.getParentNamespaceDefinitions()) {
-      for (PsiElement subDefinitionBase : collectNamespaceSubs(parentNamespace)) {
+  /**
+   * Processes methods of the {@code packageName} parents with names not mentioned in {@code processedSubsNames}. Candidates are taken
+   * from the {@link PerlNamespaceMethodTable stub-based method tables}, so elements are loaded only for names not processed yet.
+   */
+  public static void processParentClassesSubs(@NotNull Project project,
+                                              @NotNull GlobalSearchScope searchScope,
+                                              @NotNull String packageName,
+                                              @NotNull Set<String> processedSubsNames,
+                                              @NotNull Processor<PerlSubElement> processor) {
+    for (String parentNamespaceName : PerlMro.getLinearISA(project, searchScope, packageName, true)) {
+      if (isUNIVERSAL(parentNamespaceName)) {
+        continue;
+      }
+      PerlNamespaceMethodTable methodTable = PerlNamespaceMethodTable.getInstance(project, searchScope, parentNamespaceName);
+      for (String subName : methodTable.getMethodsNames()) {
         ProgressManager.checkCanceled();
-        String subName = ((PerlSubElement)subDefinitionBase).getSubName();
-        if (subDefinitionBase.isValid() &&
-            ((PerlSubElement)subDefinitionBase).isMethod() &&
-            !processedSubsNames.contains(subName)
-          ) {
+        if (processedSubsNames.contains(subName)) {
+          continue;
+        }
+        Ref<PerlSubElement> methodRef = Ref.create();
+        methodTable.processElements(subName, it -> {
+          if (it instanceof PerlSubElement && it.isValid() && ((PerlSubElement)it).isMethod()) {
+            methodRef.set((PerlSubElement)it);
+            return false;
+          }
+          return true;
+        });
+        if (!methodRef.isNull()) {
           processedSubsNames.add(subName);
-          processor.process(((PerlSubElement)subDefinitionBase));
+          if (!processor.process(methodRef.get())) {
+            return;
+          }
         }
       }
-      processParentClassesSubs(
-        parentNamespace,
-        processedSubsNames,
-        recursionMap,
-        processor
-      );
     }
   }
 
-  public static List<PsiElement> collectNamespaceSubs(final @NotNull PsiElement namespace) {
-    return CachedValuesManager.getCachedValue(
-      namespace,
-      () -> CachedValueProvider.Result
-        .create(PerlPsiUtil.collectNamespaceMembers(namespace, PerlSubElement.class), namespace));
-  }
-
   public static @Nullable PsiFile getPackagePsiFileByPackageName(Project project, String packageName) {
     VirtualFile packageVirtualFile = getPackageVirtualFileByPackageName(project, packageName);
 
@@ -629,15 +633,7 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
     if (StringUtil.isEmpty(packageName)) {
       return null;
     }
-
-    String packagePath = getPackagePathByName(packageName);
-    for (VirtualFile classRoot : PerlProjectManager.getInstance(project).getAllLibraryRoots()) {
-      VirtualFile targetFile = classRoot.findFileByRelativePath(packagePath);
-      if (targetFile != null) {
-        return targetFile;
-      }
-    }
-    return null;
+    return PerlLibraryFilesIndex.getInstance(project).findFile(getPackagePathByName(packageName));
   }
 
   /**
@@ -692,22 +688,21 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
     if (relativePath == null) {
       return null;
     }
-    for (VirtualFile classRoot : getIncDirsForPsiElement(psiFile)) {
-      if (classRoot == null) {
-        continue;
-      }
-      VirtualFile targetFile = classRoot.findFileByRelativePath(relativePath);
-      if (targetFile == null) {
-        continue;
-      }
-      String foundRelativePath = VfsUtil.getRelativePath(targetFile, classRoot);
-
-      if (StringUtil.isNotEmpty(foundRelativePath) && StringUtil.equals(foundRelativePath, relativePath)) {
+    PsiFile originalFile = psiFile.getOriginalFile();
+    for (VirtualFile libDir : getLibDirs(originalFile)) {
+      VirtualFile targetFile = PerlLibraryFilesIndex.findFileInRoot(libDir, relativePath);
+      if (targetFile != null) {
         return targetFile;
       }
     }
 
-    return null;
+    VirtualFile targetFile = PerlLibraryFilesIndex.getInstance(psiFile.getProject()).findFile(relativePath);
+    if (targetFile != null) {
+      return targetFile;
+    }
+
+    VirtualFile currentDir = getCurrentDir(originalFile);
+    return currentDir == null ? null : PerlLibraryFilesIndex.findFileInRoot(currentDir, relativePath);
   }
 
   /**
@@ -718,27 +713,61 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
    */
   private static @NotNull List<VirtualFile> getIncDirsForPsiElement(@NotNull PsiElement psiElement) {
     PsiFile psiFile = psiElement.getContainingFile().getOriginalFile();
-    List<VirtualFile> result = new ArrayList<>();
-
-    // libdirs providers fixme we need to use stubs or psi here
-    for (PerlUseStatementElement useStatement : PsiTreeUtil.findChildrenOfType(psiFile, PerlUseStatementElement.class)) {
-      PerlPackageProcessor packageProcessor = useStatement.getPackageProcessor();
-      if (packageProcessor instanceof PerlLibProvider) {
-        ((PerlLibProvider)packageProcessor).addLibDirs(useStatement, result);
-      }
-    }
+    List<VirtualFile> result = new ArrayList<>(getLibDirs(psiFile));
 
     // classpath
     result.addAll(PerlProjectManager.getInstance(psiElement.getProject()).getAllLibraryRoots());
 
     // current dir
-    if (PerlSharedSettings.getInstance(psiFile.getProject()).getTargetPerlVersion().lesserThan(PerlVersion.V5_26)) {
-      VirtualFile virtualFile = psiFile.getVirtualFile();
-      if (virtualFile != null && virtualFile.getParent() != null) {
-        result.add(virtualFile.getParent());
-      }
+    ContainerUtil.addIfNotNull(result, getCurrentDir(psiFile));
+
+    return result;
+  }
+
+  /**
+   * @return directory of the {@code psiFile} if it is in {@code @INC} for the target perl version
+   */
+  private static @Nullable VirtualFile getCurrentDir(@NotNull PsiFile psiFile) {
+    if (!PerlSharedSettings.getInstance(psiFile.getProject()).getTargetPerlVersion().lesserThan(PerlVersion.V5_26)) {
+      return null;
     }
+    VirtualFile virtualFile = psiFile.getVirtualFile();
+    return virtualFile == null ? null : virtualFile.getParent();
+  }
+
+  /**
+   * @return lib directories added by {@link PerlLibProvider lib providers}, e.g. {@code use lib}, in the {@code psiFile}. Computed from
+   * stubs if file AST is not loaded and cached until perl stubs in the project are changed.
+   */
+  private static @NotNull List<VirtualFile> getLibDirs(@NotNull PsiFile psiFile) {
+    return CachedValuesManager.getCachedValue(psiFile, () -> {
+      List<VirtualFile> result = new ArrayList<>();
+      for (PerlUseStatementElement useStatement : getUseStatements(psiFile)) {
+        PerlPackageProcessor packageProcessor = useStatement.getPackageProcessor();
+        if (packageProcessor instanceof PerlLibProvider) {
+          ((PerlLibProvider)packageProcessor).addLibDirs(useStatement, result);
+        }
+      }
+      return CachedValueProvider.Result.create(
+        result.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(result),
+        PerlStubsModificationTracker.getInstance(psiFile.getProject()));
+    });
+  }
 
+  /**
+   * @return use statements of the {@code psiFile}, bound to stubs if file AST is not loaded
+   */
+  private static @NotNull List<PerlUseStatementElement> getUseStatements(@NotNull PsiFile psiFile) {
+    StubTree stubTree = psiFile instanceof PsiFileImpl ? ((PsiFileImpl)psiFile).getStubTree() : null;
+    if (stubTree == null) {
+      return new ArrayList<>(PsiTreeUtil.findChildrenOfType(psiFile, PerlUseStatementElement.class));
+    }
+    List<PerlUseStatementElement> result = new ArrayList<>();
+    for (StubElement<?> stubElement : stubTree.getPlainList()) {
+      if (stubElement instanceof PerlUseStatementStub) {
+        result.add(((PerlUseStatementStub)stubElement).getPsi());
+      }
+    }
     return result;
   }
 
@@ -18,14 +18,23 @@ package com.perl5.lang.perl.util;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.SerializationManagerEx;
 import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.stubs.StubIndexKey;
+import com.intellij.psi.stubs.StubTree;
 import com.intellij.util.Processor;
 import com.intellij.util.Processors;
+import com.intellij.util.io.DigestUtil;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.Set;
 
@@ -42,6 +51,26 @@ public final class PerlStubUtil {
     return allKeys;
   }
 
+  /**
+   * @return digest of the serialized {@code stubTree}. Equal digests mean that file provides the same data to the stub indexes.
+   */
+  public static byte @NotNull [] computeStubTreeDigest(@Nullable StubTree stubTree) {
+    MessageDigest digest = DigestUtil.sha1();
+    if (stubTree != null) {
+      OutputStream digestStream = new DigestOutputStream(OutputStream.nullOutputStream(), digest);
+      SerializationManagerEx.getInstanceEx().serialize(stubTree.getRoot(), digestStream);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * @return stub tree of the {@code psiFile} stub binding root, built from AST if it is loaded
+   */
+  public static @Nullable StubTree calcStubTree(@NotNull PsiFile psiFile) {
+    PsiFile stubBindingRoot = psiFile.getViewProvider().getStubBindingRoot();
+    return stubBindingRoot instanceof PsiFileImpl ? ((PsiFileImpl)stubBindingRoot).calcStubTree() : null;
+  }
+
   @Deprecated // make reverse index and use it
   public static Collection<String> getIndexKeysWithoutInternals(@NotNull StubIndexKey<String, ?> key, @NotNull Project project) {
     final Set<String> result = new THashSet<>();
@@ -19,11 +19,55 @@ package com.perl5.lang.perl.xsubs;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupActivity;
 import com.intellij.openapi.startup.StartupManager;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+import com.perl5.lang.perl.util.PerlPluginUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
+/**
+ * Checks XSubs declarations on startup and tracks changes of XS binaries after that
+ */
 public class PerlXSubsStartupActivity implements StartupActivity {
+  private static final int RESCAN_DELAY = 3000;
+
   @Override
   public void runActivity(@NotNull Project project) {
-    StartupManager.getInstance(project).runWhenProjectIsInitialized(() -> PerlXSubsState.getInstance(project).rescanFiles());
+    StartupManager.getInstance(project).runWhenProjectIsInitialized(() -> {
+      PerlXSubsState.getInstance(project).rescanFiles();
+      subscribeToChanges(project);
+    });
+  }
+
+  private static void subscribeToChanges(@NotNull Project project) {
+    MergingUpdateQueue rescanQueue = new MergingUpdateQueue(
+      "Perl5 XSubs changes", RESCAN_DELAY, true, null, PerlPluginUtil.getUnloadAwareDisposable(project), null,
+      Alarm.ThreadToUse.POOLED_THREAD);
+    project.getMessageBus().connect(PerlPluginUtil.getUnloadAwareDisposable(project))
+      .subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+        @Override
+        public void after(@NotNull List<? extends VFileEvent> events) {
+          if (project.isDisposed()) {
+            return;
+          }
+          PerlXSubsState xSubsState = PerlXSubsState.getInstance(project);
+          boolean hasChanges = false;
+          for (VFileEvent event : events) {
+            hasChanges |= xSubsState.fileChanged(event.getPath());
+          }
+          if (hasChanges) {
+            rescanQueue.queue(Update.create(project, () -> {
+              if (!project.isDisposed()) {
+                PerlXSubsState.getInstance(project).rescanChangedFiles();
+              }
+            }));
+          }
+        }
+      });
   }
 }
@@ -23,7 +23,6 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
@@ -41,14 +40,19 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.GlobalSearchScopesCore;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.FileContentUtilCore;
 import com.intellij.util.Function;
+import com.intellij.util.ObjectUtils;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DigestUtil;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.intellij.util.xmlb.annotations.Transient;
 import com.perl5.PerlBundle;
@@ -63,14 +67,20 @@ import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps XSubs declarations deparsed from the XS modules up to date. Declarations are stored in {@link #DEPARSED_DIRECTORY_NAME}
+ * in the project root, one file per XS module, so only changed modules are deparsed and re-indexed. Binaries are tracked by
+ * modification stamps and content hashes, persisted between sessions; changes are detected on startup and by VFS events.
+ */
 @State(
   name = "Perl5XSubsState",
   storages = @Storage(PerlPathMacros.PERL5_PROJECT_SETTINGS_FILE)
@@ -78,14 +88,52 @@ import java.util.Set;
 
 public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState> {
   private static final Logger LOG = Logger.getInstance(PerlXSubsState.class);
+  /**
+   * Legacy single file with all declarations, removed after the first regeneration
+   */
   @Transient
   public static final String DEPARSED_FILE_NAME = "_Deparsed_XSubs.pm";
+  @Transient
+  public static final String DEPARSED_DIRECTORY_NAME = "_Deparsed_XSubs";
+  /**
+   * Prefix of the line starting declarations of a module in the deparser output
+   */
+  private static final String SECTION_PREFIX = "#@ ";
+  /**
+   * Last line of the complete deparser output
+   */
+  private static final String END_MARKER = "#@END";
+  private static final String DEPARSED_FILE_HEADER = "#\n" +
+                                                     "#\n" +
+                                                     "# DO NOT EDIT THIS FILE, IT'S AUTOGENERATED FROM XS MODULES AND WILL BE UPDATED AUTOMATICALLY\n" +
+                                                     "#\n" +
+                                                     "#\n";
+  private static final String AUTO_DIRECTORY = "/auto/";
+  private static final int MAX_MODULES_IN_NOTIFICATION = 5;
+
   public boolean isActual = true;
+  /**
+   * Binary path to the modification stamp
+   */
   public Map<String, Long> myFilesMap = new THashMap<>();
+  /**
+   * Binary path to the sha1 of the content
+   */
+  public Map<String, String> myFilesHashes = new THashMap<>();
   @Transient
   private Task.Backgroundable myParserTask = null;
   @Transient
   private Project myProject;
+  /**
+   * Paths of binaries changed according to VFS events and not checked yet
+   */
+  @Transient
+  private final Set<String> myChangedPaths = ConcurrentHashMap.newKeySet();
+  /**
+   * Modules with changed binaries waiting for deparsing
+   */
+  @Transient
+  private final Set<String> myOutdatedModules = ConcurrentHashMap.newKeySet();
 
   public void setProject(Project myProject) {
     this.myProject = myProject;
@@ -111,10 +159,9 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
       GlobalSearchScopesCore.directoriesScope(myProject, true, classesRoots.toArray(new VirtualFile[classesRoots.size()]));
 
     Set<VirtualFile> result = new THashSet<>();
-    for (VirtualFile virtualFile : FilenameIndex.getAllFilesByExt(project, getXSBinaryExtension(), classRootsScope)) {
-      if (virtualFile.isValid() && !virtualFile.isDirectory() && !(virtualFile instanceof LightVirtualFile)) {
-        String path = virtualFile.getCanonicalPath();
-        if (path != null && StringUtil.contains(path, "/auto/")) {
+    for (String extension : getXSBinaryExtensions()) {
+      for (VirtualFile virtualFile : FilenameIndex.getAllFilesByExt(project, extension, classRootsScope)) {
+        if (isXSFile(virtualFile)) {
           result.add(virtualFile);
         }
       }
@@ -122,75 +169,225 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
     return result;
   }
 
+  private static boolean isXSFile(@NotNull VirtualFile virtualFile) {
+    if (!virtualFile.isValid() || virtualFile.isDirectory() || virtualFile instanceof LightVirtualFile) {
+      return false;
+    }
+    String path = virtualFile.getCanonicalPath();
+    return path != null && getModuleName(path) != null;
+  }
+
+  /**
+   * Records a change of the file at {@code path} reported by VFS, it is going to be checked with {@link #rescanChangedFiles()}
+   *
+   * @return true if the file looks like an XS binary
+   */
+  public boolean fileChanged(@NotNull String path) {
+    if (getModuleName(path) == null || !isXSBinaryName(path)) {
+      return false;
+    }
+    myChangedPaths.add(path);
+    return true;
+  }
+
+  /**
+   * Checks all XS binaries in the library roots
+   */
   public void rescanFiles() {
+    myChangedPaths.clear();
+    scheduleRescan(null);
+  }
+
+  /**
+   * Checks binaries reported by {@link #fileChanged(String)}
+   */
+  public void rescanChangedFiles() {
+    if (myChangedPaths.isEmpty()) {
+      return;
+    }
+    Set<String> changedPaths = new THashSet<>(myChangedPaths);
+    myChangedPaths.removeAll(changedPaths);
+    scheduleRescan(changedPaths);
+  }
+
+  /**
+   * @param changedPaths paths to check or null to check all binaries
+   */
+  private void scheduleRescan(@Nullable Set<String> changedPaths) {
     ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ReadTask() {
       @Override
       public void computeInReadAction(@NotNull ProgressIndicator indicator) throws ProcessCanceledException {
-        if (!PerlProjectManager.isPerlEnabled(myProject)) {
+        if (myProject.isDisposed() || !PerlProjectManager.isPerlEnabled(myProject)) {
           return;
         }
-        int filesCounter = 0;
         indicator.setIndeterminate(false);
         indicator.setText(PerlBundle.message("perl.scanning.xs.changes"));
-        if (isActual) {
-          Set<VirtualFile> allXSFiles = getAllXSFiles(myProject);
-          for (VirtualFile virtualFile : allXSFiles) {
-            if (indicator.isCanceled()) {
-              return;
-            }
-
-            if (!virtualFile.isValid()) {
-              continue;
-            }
-
-            indicator.setFraction(filesCounter / allXSFiles.size());
-
-            if (!isFileUpToDate(virtualFile)) {
-              isActual = false;
-              break;
-            }
-            else {
-              filesCounter++;
-            }
+
+        Set<String> outdatedModules = new THashSet<>();
+        Map<String, VirtualFile> currentFiles = changedPaths == null ? getAllXSFilesMap() : getXSFilesMap(changedPaths);
+        int filesCounter = 0;
+        for (Map.Entry<String, VirtualFile> entry : currentFiles.entrySet()) {
+          indicator.checkCanceled();
+          indicator.setFraction((double)filesCounter++ / currentFiles.size());
+          if (!isFileUpToDate(entry.getKey(), entry.getValue())) {
+            ContainerUtil.addIfNotNull(outdatedModules, getModuleName(entry.getKey()));
+          }
+        }
+
+        Collection<String> removedPaths = changedPaths == null ? getKnownPaths() : changedPaths;
+        for (String removedPath : removedPaths) {
+          if (!currentFiles.containsKey(removedPath) && isKnownPath(removedPath)) {
+            ContainerUtil.addIfNotNull(outdatedModules, getModuleName(removedPath));
           }
         }
 
-        isActual = isActual && (filesCounter == 0 || myProject.getBaseDir().findFileByRelativePath(DEPARSED_FILE_NAME) != null);
+        if (changedPaths == null && !currentFiles.isEmpty() && getDeparsedDirectory() == null) {
+          isActual = false;
+        }
+        if (!outdatedModules.isEmpty()) {
+          myOutdatedModules.addAll(outdatedModules);
+          isActual = false;
+        }
 
         if (!isActual) {
-          showNotification(
-            PerlBundle.message("perl.deparsing.change.detected.title"),
-            PerlBundle.message("perl.deparsing.change.detected.message"),
-            NotificationType.INFORMATION,
-            notification -> Collections.singletonList(new AnAction(PerlBundle.message("perl.deparsing.action")) {
-              @Override
-              public void actionPerformed(@NotNull AnActionEvent e) {
-                notification.expire();
-                reparseXSubs();
-              }
-            })
-          );
+          showChangesNotification();
         }
       }
 
       @Override
       public void onCanceled(@NotNull ProgressIndicator indicator) {
-        rescanFiles();
+        if (changedPaths == null) {
+          rescanFiles();
+        }
+        else {
+          myChangedPaths.addAll(changedPaths);
+          rescanChangedFiles();
+        }
       }
     });
   }
 
-  private boolean isFileUpToDate(VirtualFile virtualFile) {
-    String path = virtualFile.getCanonicalPath();
+  private void showChangesNotification() {
+    List<String> outdatedModules = new ArrayList<>(myOutdatedModules);
+    Collections.sort(outdatedModules);
+    String message;
+    if (outdatedModules.isEmpty() || getDeparsedDirectory() == null) {
+      message = PerlBundle.message("perl.deparsing.change.detected.message");
+    }
+    else {
+      String modulesList = StringUtil.join(ContainerUtil.getFirstItems(outdatedModules, MAX_MODULES_IN_NOTIFICATION), ", ");
+      message = PerlBundle.message("perl.deparsing.change.detected.modules.message", outdatedModules.size(), modulesList);
+    }
+    showNotification(
+      PerlBundle.message("perl.deparsing.change.detected.title"),
+      message,
+      NotificationType.INFORMATION,
+      notification -> Collections.singletonList(new AnAction(PerlBundle.message("perl.deparsing.action")) {
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent e) {
+          notification.expire();
+          reparseOutdatedXSubs();
+        }
+      })
+    );
+  }
 
-    if (path != null) {
-      Long modificationStamp = myFilesMap.get(path);
-      return modificationStamp != null && modificationStamp == VfsUtilCore.virtualToIoFile(virtualFile).lastModified();
+  private @NotNull Map<String, VirtualFile> getAllXSFilesMap() {
+    Map<String, VirtualFile> result = new THashMap<>();
+    for (VirtualFile virtualFile : getAllXSFiles(myProject)) {
+      String path = virtualFile.getCanonicalPath();
+      if (path != null) {
+        result.put(path, virtualFile);
+      }
     }
-    return false;
+    return result;
   }
 
+  /**
+   * @return map of existing XS binaries from {@code paths} in the library roots
+   */
+  private @NotNull Map<String, VirtualFile> getXSFilesMap(@NotNull Collection<String> paths) {
+    List<VirtualFile> libraryRoots = PerlProjectManager.getInstance(myProject).getAllLibraryRoots();
+    Map<String, VirtualFile> result = new THashMap<>();
+    for (String path : paths) {
+      VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(path);
+      if (virtualFile != null && isXSFile(virtualFile) &&
+          ContainerUtil.exists(libraryRoots, root -> VfsUtilCore.isAncestor(root, virtualFile, true))) {
+        result.put(ObjectUtils.notNull(virtualFile.getCanonicalPath(), path), virtualFile);
+      }
+    }
+    return result;
+  }
+
+  private synchronized @NotNull Collection<String> getKnownPaths() {
+    return new ArrayList<>(myFilesHashes.keySet());
+  }
+
+  private synchronized boolean isKnownPath(@NotNull String path) {
+    return myFilesHashes.containsKey(path);
+  }
+
+  /**
+   * Checks modification stamp of the file and its content hash if stamp has changed. Stamp is updated if content is the same.
+   */
+  private boolean isFileUpToDate(@NotNull String path, @NotNull VirtualFile virtualFile) {
+    File ioFile = VfsUtilCore.virtualToIoFile(virtualFile);
+    long modificationStamp = ioFile.lastModified();
+    String knownHash;
+    synchronized (this) {
+      Long knownStamp = myFilesMap.get(path);
+      knownHash = myFilesHashes.get(path);
+      if (knownHash == null) {
+        return false;
+      }
+      if (knownStamp != null && knownStamp == modificationStamp) {
+        return true;
+      }
+    }
+    if (!knownHash.equals(computeHash(ioFile))) {
+      return false;
+    }
+    synchronized (this) {
+      myFilesMap.put(path, modificationStamp);
+    }
+    return true;
+  }
+
+  private static @Nullable String computeHash(@NotNull File file) {
+    MessageDigest digest = DigestUtil.sha1();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream inputStream = new FileInputStream(file)) {
+      int read;
+      while ((read = inputStream.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    catch (IOException e) {
+      LOG.warn("Error reading " + file + ": " + e.getMessage());
+      return null;
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  /**
+   * Deparses all XS modules
+   */
   public void reparseXSubs() {
+    reparseXSubs(null);
+  }
+
+  /**
+   * Deparses modules with changes, detected by the last scan
+   */
+  public void reparseOutdatedXSubs() {
+    boolean reparseAll = myOutdatedModules.isEmpty() || getDeparsedDirectory() == null;
+    reparseXSubs(reparseAll ? null : new THashSet<>(myOutdatedModules));
+  }
+
+  /**
+   * @param modules modules to deparse, or null to deparse all modules
+   */
+  private void reparseXSubs(@Nullable Set<String> modules) {
     if (!PerlProjectManager.isPerlEnabled(myProject)) {
       return;
     }
@@ -211,102 +408,254 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
       return;
     }
     commandLine.withCharset(StandardCharsets.UTF_8).withMissingPackageListener(false);
+    if (modules != null) {
+      List<String> sortedModules = new ArrayList<>(modules);
+      Collections.sort(sortedModules);
+      commandLine.addParameters(sortedModules);
+    }
 
     LOG.info("Deparsing: " + commandLine.getCommandLineString());
 
     myParserTask = new Task.Backgroundable(myProject, PerlBundle.message("perl.deparsing.xsubs"), false) {
       @Override
       public void run(@NotNull ProgressIndicator indicator) {
-        indicator.setIndeterminate(true);
-        Map<String, Long> newFilesMap = ReadAction.compute(() -> {
-          if (myProject.isDisposed()) {
-            return null;
-          }
-          final Map<String, Long> result = new THashMap<>();
-          for (VirtualFile virtualFile : getAllXSFiles(myProject)) {
-            if (virtualFile.isValid()) {
-              String filePath = virtualFile.getCanonicalPath();
-              if (filePath != null) {
-                result.put(filePath, VfsUtilCore.virtualToIoFile(virtualFile)
-                  .lastModified());
-              }
-            }
-          }
-          return result;
-        });
-        if (newFilesMap == null) {
+        try {
+          doReparseXSubs(commandLine, modules, indicator);
+        }
+        finally {
           myParserTask = null;
-          return;
         }
+      }
+    };
+    myParserTask.queue();
+  }
 
-        ProcessOutput processOutput;
+  private void doReparseXSubs(@NotNull PerlCommandLine commandLine,
+                              @Nullable Set<String> modules,
+                              @NotNull ProgressIndicator indicator) {
+    indicator.setIndeterminate(true);
+    Map<String, VirtualFile> xsFiles = ReadAction.compute(() -> myProject.isDisposed() ? null : getAllXSFilesMap());
+    if (xsFiles == null) {
+      return;
+    }
+
+    Map<String, Long> newFilesMap = new THashMap<>();
+    Map<String, String> newFilesHashes = new THashMap<>();
+    for (Map.Entry<String, VirtualFile> entry : xsFiles.entrySet()) {
+      String path = entry.getKey();
+      if (modules != null && !modules.contains(getModuleName(path))) {
+        continue;
+      }
+      File ioFile = VfsUtilCore.virtualToIoFile(entry.getValue());
+      String hash = computeHash(ioFile);
+      if (hash != null) {
+        newFilesMap.put(path, ioFile.lastModified());
+        newFilesHashes.put(path, hash);
+      }
+    }
+
+    ProcessOutput processOutput;
+    try {
+      processOutput = PerlHostData.execAndGetOutput(commandLine);
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Error deparsing", e);
+
+      showNotification(
+        PerlBundle.message("perl.deparsing.error.execution"),
+        e.getMessage(),
+        NotificationType.ERROR
+      );
+      return;
+    }
+    final String stdout = processOutput.getStdout();
+    String stderr = processOutput.getStderr();
+    int exitCode = processOutput.getExitCode();
+    LOG.info("Deparsing finished with exit code: " + exitCode +
+             (StringUtil.isEmpty(stderr) ? "" : ". STDERR:\n" + stderr));
+
+    if (exitCode != 0) {
+      showNotification(
+        PerlBundle.message("perl.deparsing.error.execution"),
+        stderr,
+        NotificationType.ERROR
+      );
+      return;
+    }
+    if (!isComplete(stdout)) {
+      // deparser is going to fail the same way until binaries change, so modules are not reported as outdated any more
+      LOG.warn("Incomplete deparser output, " + stdout.length() + " chars received");
+      updateFilesState(modules, newFilesMap, newFilesHashes);
+      showNotification(
+        PerlBundle.message("perl.deparsing.error.execution"),
+        PerlBundle.message("perl.deparsing.error.incomplete.output", StringUtil.notNullize(stderr)),
+        NotificationType.ERROR
+      );
+      return;
+    }
+
+    Map<String, String> deparsedModules = parseSections(stdout);
+    if (modules != null) {
+      for (String module : modules) {
+        deparsedModules.putIfAbsent(module, "");
+      }
+    }
+
+    ApplicationManager.getApplication().invokeAndWait(
+      () -> WriteAction.run(() -> {
+        if (myProject.isDisposed()) {
+          return;
+        }
         try {
-          processOutput = PerlHostData.execAndGetOutput(commandLine);
+          writeDeparsedFiles(deparsedModules, modules == null);
         }
-        catch (ExecutionException e) {
-          LOG.warn("Error deparsing", e);
-
+        catch (IOException e) {
+          LOG.warn("Error creating deparsed file", e);
           showNotification(
-            PerlBundle.message("perl.deparsing.error.execution"),
+            PerlBundle.message("perl.deparsing.error.creating.file"),
             e.getMessage(),
             NotificationType.ERROR
           );
-          myParserTask = null;
           return;
         }
-        final String stdout = processOutput.getStdout();
-        String stderr = processOutput.getStderr();
-        int exitCode = processOutput.getExitCode();
-        LOG.info("Deparsing finished with exit code: " + exitCode +
-                 (StringUtil.isEmpty(stderr) ? "" : ". STDERR:\n" + stderr));
 
-        if (exitCode != 0) {
-          showNotification(
-            PerlBundle.message("perl.deparsing.error.execution"),
-            stderr,
-            NotificationType.ERROR
-          );
+        updateFilesState(modules, newFilesMap, newFilesHashes);
+
+        showNotification(
+          PerlBundle.message("perl.deparsing.finished"),
+          "",
+          NotificationType.INFORMATION
+        );
+        // fixme fix modality state
+      }));
+  }
+
+  /**
+   * Replaces known binaries state of the {@code modules} with the new one and marks them as up to date
+   *
+   * @param modules deparsed modules, or null if all modules were deparsed
+   */
+  private synchronized void updateFilesState(@Nullable Set<String> modules,
+                                             @NotNull Map<String, Long> newFilesMap,
+                                             @NotNull Map<String, String> newFilesHashes) {
+    if (modules == null) {
+      myFilesMap = newFilesMap;
+      myFilesHashes = newFilesHashes;
+      myOutdatedModules.clear();
+    }
+    else {
+      for (String path : new ArrayList<>(myFilesHashes.keySet())) {
+        if (modules.contains(getModuleName(path))) {
+          myFilesMap.remove(path);
+          myFilesHashes.remove(path);
+        }
+      }
+      myFilesMap.putAll(newFilesMap);
+      myFilesHashes.putAll(newFilesHashes);
+      myOutdatedModules.removeAll(modules);
+    }
+    isActual = myOutdatedModules.isEmpty();
+  }
+
+  /**
+   * Writes declarations of the {@code deparsedModules} to the separate files. Files with unchanged content are not touched, files
+   * for modules without declarations are removed.
+   *
+   * @param removeOthers remove files for modules absent in {@code deparsedModules}
+   */
+  private void writeDeparsedFiles(@NotNull Map<String, String> deparsedModules, boolean removeOthers) throws IOException {
+    VirtualFile baseDir = myProject.getBaseDir();
+    VirtualFile deparsedDirectory = baseDir.findChild(DEPARSED_DIRECTORY_NAME);
+    if (deparsedDirectory == null) {
+      deparsedDirectory = baseDir.createChildDirectory(this, DEPARSED_DIRECTORY_NAME);
+    }
+    else if (!deparsedDirectory.isDirectory()) {
+      throw new IOException(deparsedDirectory.getPath() + " is not a directory");
+    }
+
+    List<VirtualFile> changedFiles = new ArrayList<>();
+    Set<String> fileNames = new THashSet<>();
+    for (Map.Entry<String, String> entry : deparsedModules.entrySet()) {
+      String fileName = getDeparsedFileName(entry.getKey());
+      fileNames.add(fileName);
+      String declarations = entry.getValue();
+      VirtualFile existingFile = deparsedDirectory.findChild(fileName);
+      if (StringUtil.isEmptyOrSpaces(declarations)) {
+        if (existingFile != null) {
+          existingFile.delete(this);
         }
-        else if (!stdout.isEmpty()) {
-          Application application = ApplicationManager.getApplication();
-          application.invokeAndWait(
-            () -> WriteAction.run(() -> {
-              if (myProject.isDisposed()) {
-                return;
-              }
-              try {
-                VirtualFile newFile = myProject.getBaseDir().findOrCreateChildData(this, DEPARSED_FILE_NAME);
-                newFile.setWritable(true);
-                OutputStream outputStream = newFile.getOutputStream(null);
-                outputStream.write(stdout.getBytes());
-                outputStream.close();
-                newFile.setWritable(false);
-                FileContentUtilCore.reparseFiles(newFile);
-
-                myFilesMap = newFilesMap;
-                isActual = true;
-
-                showNotification(
-                  PerlBundle.message("perl.deparsing.finished"),
-                  "",
-                  NotificationType.INFORMATION
-                );
-              }
-              catch (IOException e) {
-                LOG.warn("Error creating deparsed file", e);
-                showNotification(
-                  PerlBundle.message("perl.deparsing.error.creating.file"),
-                  e.getMessage(),
-                  NotificationType.ERROR
-                );
-              }
-              // fixme fix modality state
-            }));
+        continue;
+      }
+
+      byte[] newContent = (DEPARSED_FILE_HEADER + declarations).getBytes(StandardCharsets.UTF_8);
+      if (existingFile != null && Arrays.equals(existingFile.contentsToByteArray(), newContent)) {
+        continue;
+      }
+      VirtualFile newFile = existingFile == null ? deparsedDirectory.createChildData(this, fileName) : existingFile;
+      newFile.setWritable(true);
+      newFile.setBinaryContent(newContent);
+      newFile.setWritable(false);
+      changedFiles.add(newFile);
+    }
+
+    if (removeOthers) {
+      for (VirtualFile child : deparsedDirectory.getChildren()) {
+        if (!fileNames.contains(child.getName())) {
+          child.delete(this);
         }
-        myParserTask = null;
       }
-    };
-    myParserTask.queue();
+    }
+
+    VirtualFile legacyFile = baseDir.findChild(DEPARSED_FILE_NAME);
+    if (legacyFile != null) {
+      legacyFile.delete(this);
+    }
+
+    if (!changedFiles.isEmpty()) {
+      FileContentUtilCore.reparseFiles(changedFiles);
+    }
+  }
+
+  private @Nullable VirtualFile getDeparsedDirectory() {
+    VirtualFile baseDir = myProject.getBaseDir();
+    VirtualFile deparsedDirectory = baseDir == null ? null : baseDir.findChild(DEPARSED_DIRECTORY_NAME);
+    return deparsedDirectory != null && deparsedDirectory.isDirectory() ? deparsedDirectory : null;
+  }
+
+  /**
+   * @return true iff deparser finished the {@code output}, otherwise it may lack some modules
+   */
+  private static boolean isComplete(@NotNull String output) {
+    List<String> lines = StringUtil.split(output, "\n");
+    return !lines.isEmpty() && ContainerUtil.getLastItem(lines).trim().equals(END_MARKER);
+  }
+
+  /**
+   * @return map of module name to its declarations from deparser output
+   */
+  private static @NotNull Map<String, String> parseSections(@NotNull String output) {
+    Map<String, String> result = new LinkedHashMap<>();
+    String currentModule = null;
+    StringBuilder currentDeclarations = new StringBuilder();
+    for (String line : StringUtil.splitByLinesKeepSeparators(output)) {
+      if (line.trim().equals(END_MARKER)) {
+        break;
+      }
+      if (line.startsWith(SECTION_PREFIX)) {
+        if (currentModule != null) {
+          result.put(currentModule, currentDeclarations.toString());
+        }
+        currentModule = line.substring(SECTION_PREFIX.length()).trim();
+        currentDeclarations.setLength(0);
+      }
+      else if (currentModule != null) {
+        currentDeclarations.append(line);
+      }
+    }
+    if (currentModule != null) {
+      result.put(currentModule, currentDeclarations.toString());
+    }
+    return result;
   }
 
   private void showNotification(@NotNull String title,
@@ -330,6 +679,33 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
     Notifications.Bus.notify(notification, myProject);
   }
 
+  /**
+   * @return true iff {@code file} contains deparsed XSubs declarations
+   */
+  public static boolean isDeparsedFile(@NotNull PsiFile file) {
+    if (StringUtil.equals(file.getName(), DEPARSED_FILE_NAME)) {
+      return true;
+    }
+    VirtualFile parent = file.getViewProvider().getVirtualFile().getParent();
+    return parent != null && StringUtil.equals(parent.getName(), DEPARSED_DIRECTORY_NAME);
+  }
+
+  /**
+   * @return name of the XS module for the binary path: {@code .../auto/Foo/Bar/Bar.so} is {@code Foo::Bar}
+   */
+  static @Nullable String getModuleName(@NotNull String path) {
+    int autoIndex = path.lastIndexOf(AUTO_DIRECTORY);
+    int nameIndex = path.lastIndexOf('/');
+    if (autoIndex < 0 || nameIndex <= autoIndex + AUTO_DIRECTORY.length()) {
+      return null;
+    }
+    return StringUtil.replace(path.substring(autoIndex + AUTO_DIRECTORY.length(), nameIndex), "/", "::");
+  }
+
+  private static @NotNull String getDeparsedFileName(@NotNull String moduleName) {
+    return StringUtil.replace(moduleName, "::", "-") + ".pm";
+  }
+
   public static PerlXSubsState getInstance(@NotNull Project project) {
     PerlXSubsState persisted = ServiceManager.getService(project, PerlXSubsState.class);
     if (persisted == null) {
@@ -340,7 +716,11 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
     return persisted;
   }
 
-  private static @NotNull String getXSBinaryExtension() {
-    return SystemInfo.isWindows ? "xs.dll" : "so";
+  private static boolean isXSBinaryName(@NotNull String path) {
+    return ContainerUtil.exists(getXSBinaryExtensions(), it -> StringUtil.endsWith(path, "." + it));
+  }
+
+  private static @NotNull List<String> getXSBinaryExtensions() {
+    return SystemInfo.isWindows ? Collections.singletonList("xs.dll") : Arrays.asList("so", "bundle");
   }
 }
@@ -28,6 +28,6 @@ public class PodFileElementType extends IStubFileElementType<PsiFileStub<?>> {
 
   @Override
   public int getStubVersion() {
-    return super.getStubVersion() + 2;
+    return super.getStubVersion() + 3;
   }
 }
@@ -18,8 +18,10 @@ package com.perl5.lang.pod.elementTypes;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.stubs.IndexSink;
 import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
 import com.perl5.lang.pod.parser.psi.stubs.PodSectionStub;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
 import com.perl5.lang.pod.psi.impl.PsiPodFormatIndexImpl;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -39,6 +41,11 @@ public class PodFormatterXElementType extends PodStubBasedTitledSectionElementTy
     return new PsiPodFormatIndexImpl(stub, this);
   }
 
+  @Override
+  public void indexStub(@NotNull PodSectionStub stub, @NotNull IndexSink sink) {
+    sink.occurrence(PodSectionsIndex.KEY, stub.getContent());
+  }
+
   @Override
   protected boolean shouldCreateStub(@NotNull PodFormatterX psi) {
     return super.shouldCreateStub(psi) && psi.isMeaningful();
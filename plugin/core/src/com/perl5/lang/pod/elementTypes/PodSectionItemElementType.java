@@ -19,9 +19,11 @@ package com.perl5.lang.pod.elementTypes;
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.stubs.IndexSink;
 import com.intellij.psi.stubs.StubElement;
 import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
 import com.perl5.lang.pod.parser.psi.stubs.PodSectionStub;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
 import com.perl5.lang.pod.psi.impl.PsiItemSectionImpl;
 import org.jetbrains.annotations.NotNull;
 
@@ -46,6 +48,20 @@ public class PodSectionItemElementType extends PodStubBasedTitledSectionElementT
     return new PodSectionStub(parentStub, this, "" + prefix + psi.getPresentableText());
   }
 
+  /**
+   * Stub content is prefixed with targetable marker, see {@link #createStub(PodSectionItem, StubElement)}
+   */
+  @Override
+  public void indexStub(@NotNull PodSectionStub stub, @NotNull IndexSink sink) {
+    String content = stub.getContent();
+    if (content.isEmpty()) {
+      return;
+    }
+    for (String key : PodSectionsIndex.getKeys(content.substring(1))) {
+      sink.occurrence(PodSectionsIndex.KEY, key);
+    }
+  }
+
   @Override
   protected boolean shouldCreateStub(@NotNull PodSectionItem item) {
     return item.isIndexed() && StringUtil.isNotEmpty(item.getPresentableText()) ||
@@ -17,9 +17,11 @@
 package com.perl5.lang.pod.elementTypes;
 
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.stubs.IndexSink;
 import com.intellij.psi.stubs.StubElement;
 import com.perl5.lang.pod.parser.psi.mixin.PodStubBasedTitledSection;
 import com.perl5.lang.pod.parser.psi.stubs.PodSectionStub;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Objects;
@@ -39,4 +41,11 @@ public abstract class PodStubBasedTitledSectionElementType<Psi extends PodStubBa
   protected boolean shouldCreateStub(@NotNull Psi psi) {
     return StringUtil.isNotEmpty(psi.getTitleText());
   }
+
+  @Override
+  public void indexStub(@NotNull PodSectionStub stub, @NotNull IndexSink sink) {
+    for (String key : PodSectionsIndex.getKeys(stub.getContent())) {
+      sink.occurrence(PodSectionsIndex.KEY, key);
+    }
+  }
 }
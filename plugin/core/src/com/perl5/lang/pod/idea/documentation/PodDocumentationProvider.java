@@ -36,6 +36,8 @@ import com.perl5.lang.pod.lexer.PodTokenSets;
 import com.perl5.lang.pod.parser.psi.*;
 import com.perl5.lang.pod.parser.psi.impl.PodFileImpl;
 import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
+import com.perl5.lang.pod.parser.psi.mixin.PodStubBasedSection;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
 import com.perl5.lang.pod.psi.PsiPodFormatIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -127,15 +129,25 @@ public class PodDocumentationProvider extends PerlDocumentationProviderBase impl
   private static @NotNull String generateDocByIndex(@NotNull PodFormatterX element) {
     String indexText = element.getPresentableText();
     List<PsiElement> targets = new ArrayList<>();
-    element.getContainingFile().accept(new PodStubsAwareRecursiveVisitor() {
-      @Override
-      public void visitPodFormatIndex(@NotNull PsiPodFormatIndex o) {
-        assert o instanceof PodFormatterX;
-        if (StringUtil.equals(indexText, ((PodFormatterX)o).getPresentableText())) {
-          ContainerUtil.addIfNotNull(targets, ((PodFormatterX)o).getIndexTarget());
+    PsiFile podFile = element.getContainingFile();
+    if (indexText != null && PodSectionsIndex.isAvailable(podFile)) {
+      for (PodStubBasedSection section : PodSectionsIndex.getElements(podFile, indexText)) {
+        if (section instanceof PodFormatterX && StringUtil.equals(indexText, section.getPresentableText())) {
+          ContainerUtil.addIfNotNull(targets, ((PodFormatterX)section).getIndexTarget());
         }
       }
-    });
+    }
+    else {
+      podFile.accept(new PodStubsAwareRecursiveVisitor() {
+        @Override
+        public void visitPodFormatIndex(@NotNull PsiPodFormatIndex o) {
+          assert o instanceof PodFormatterX;
+          if (StringUtil.equals(indexText, ((PodFormatterX)o).getPresentableText())) {
+            ContainerUtil.addIfNotNull(targets, ((PodFormatterX)o).getIndexTarget());
+          }
+        }
+      });
+    }
     return targets.stream().map(PodDocumentationProvider::doGenerateDoc).collect(Collectors.joining("<hr>"));
   }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.perl5.lang.pod.parser.psi.stubs;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.*;
+import com.intellij.util.Processor;
+import com.perl5.lang.pod.parser.psi.PodCompositeElement;
+import com.perl5.lang.pod.parser.psi.PodDocumentPattern;
+import com.perl5.lang.pod.parser.psi.mixin.PodStubBasedSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Indexes POD headings, items and {@code X<>} entries of POD files by title. Headings and items are indexed with all title prefixes
+ * ending at a word boundary, so both exact and prefix lookups of the {@link PodDocumentPattern} are served from the index, see
+ * {@link #getKeys(String)}. Index entries are indexed with full title only.
+ */
+public class PodSectionsIndex extends StringStubIndexExtension<PodStubBasedSection> {
+  public static final int VERSION = 2;
+  public static final StubIndexKey<String, PodStubBasedSection> KEY = StubIndexKey.createIndexKey("pod.sections");
+
+  @Override
+  public int getVersion() {
+    return super.getVersion() + VERSION;
+  }
+
+  @Override
+  public @NotNull StubIndexKey<String, PodStubBasedSection> getKey() {
+    return KEY;
+  }
+
+  /**
+   * @return {@code title} without trailing spaces and all its prefixes ending at a word boundary, the way
+   * {@link PodDocumentPattern} matches titles
+   */
+  public static @NotNull Set<String> getKeys(@NotNull String title) {
+    Set<String> result = new LinkedHashSet<>();
+    String trimmedTitle = StringUtil.trimTrailing(title);
+    for (int i = 1; i < trimmedTitle.length(); i++) {
+      if (Character.isUnicodeIdentifierPart(trimmedTitle.charAt(i)) != Character.isUnicodeIdentifierPart(trimmedTitle.charAt(i - 1))) {
+        result.add(trimmedTitle.substring(0, i));
+      }
+    }
+    if (!trimmedTitle.isEmpty()) {
+      result.add(trimmedTitle);
+    }
+    return result;
+  }
+
+  /**
+   * @return true iff sections of the {@code podFile} may be searched with {@link #findElement(PsiFile, PodDocumentPattern)}: file is
+   * a stub-based POD file in the project scope and indexes are ready
+   */
+  public static boolean isAvailable(@NotNull PsiFile podFile) {
+    if (!(podFile instanceof PsiFileImpl) || podFile.getViewProvider().getStubBindingRoot() != podFile) {
+      return false;
+    }
+    Project project = podFile.getProject();
+    VirtualFile virtualFile = podFile.getViewProvider().getVirtualFile();
+    return !DumbService.isDumb(project) && GlobalSearchScope.allScope(project).contains(virtualFile);
+  }
+
+  /**
+   * @return first element of the {@code podFile} in the document order, accepted by the {@code pattern}
+   * @see #isAvailable(PsiFile)
+   */
+  public static @Nullable PodCompositeElement findElement(@NotNull PsiFile podFile, @NotNull PodDocumentPattern pattern) {
+    Set<String> keys = new LinkedHashSet<>();
+    for (String patternText : Arrays.asList(pattern.getItemPattern(), pattern.getHeadingPattern(), pattern.getIndexKey())) {
+      if (StringUtil.isNotEmpty(patternText)) {
+        keys.add(patternText);
+      }
+    }
+    Set<PodStubBasedSection> candidates = new HashSet<>();
+    for (String key : keys) {
+      processElements(podFile, key, it -> {
+        if (pattern.accepts(it)) {
+          candidates.add(it);
+        }
+        return true;
+      });
+    }
+    List<PodStubBasedSection> result = sortByDocumentOrder(podFile, candidates);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  /**
+   * @return sections of the {@code podFile} indexed with {@code key}, in the document order
+   * @see #isAvailable(PsiFile)
+   */
+  public static @NotNull List<PodStubBasedSection> getElements(@NotNull PsiFile podFile, @NotNull String key) {
+    Set<PodStubBasedSection> result = new HashSet<>();
+    processElements(podFile, key, result::add);
+    return sortByDocumentOrder(podFile, result);
+  }
+
+  private static void processElements(@NotNull PsiFile podFile,
+                                      @NotNull String key,
+                                      @NotNull Processor<? super PodStubBasedSection> processor) {
+    StubIndex.getInstance().processElements(
+      KEY, key, podFile.getProject(), GlobalSearchScope.fileScope(podFile), PodStubBasedSection.class, it -> {
+        ProgressManager.checkCanceled();
+        return processor.process(it);
+      });
+  }
+
+  /**
+   * Stubs plain list is in the document order, so we don't need to load the AST to sort the elements
+   */
+  private static @NotNull List<PodStubBasedSection> sortByDocumentOrder(@NotNull PsiFile podFile,
+                                                                        @NotNull Set<PodStubBasedSection> elements) {
+    if (elements.size() < 2) {
+      return new ArrayList<>(elements);
+    }
+    StubTree stubTree = ((PsiFileImpl)podFile).getStubTree();
+    if (stubTree == null) {
+      List<PodStubBasedSection> result = new ArrayList<>(elements);
+      result.sort(Comparator.comparingInt(it -> it.getTextRange().getStartOffset()));
+      return result;
+    }
+    List<PodStubBasedSection> result = new ArrayList<>();
+    for (StubElement<?> stubElement : stubTree.getPlainList()) {
+      Object psi = stubElement.getPsi();
+      //noinspection SuspiciousMethodCalls
+      if (elements.contains(psi)) {
+        result.add((PodStubBasedSection)psi);
+      }
+    }
+    return result;
+  }
+}
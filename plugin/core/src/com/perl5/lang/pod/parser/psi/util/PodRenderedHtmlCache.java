@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.perl5.lang.pod.parser.psi.util;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.containers.SLRUMap;
+import com.perl5.lang.perl.idea.project.PerlStubsModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Caches HTML fragments rendered with {@link PodRenderUtil#renderPsiRangeAsHTML(PsiElement, PsiElement)}, e.g. sections of the
+ * {@code perlfunc.pod} shown in quick documentation.
+ * <p>
+ * Fragment is keyed by file and elements range and remembers modification stamp of the file at the moment of rendering. Rendered links
+ * depend on other files, so changes of stubs, files structure or roots drop everything, see {@link PerlStubsModificationTracker}.
+ * Cache size is bounded with segmented LRU eviction policy.
+ */
+public class PodRenderedHtmlCache {
+  private static final int PROTECTED_QUEUE_SIZE = 100;
+  private static final int PROBATIONAL_QUEUE_SIZE = 50;
+
+  private final @NotNull SLRUMap<RangeKey, CachedFragment> myFragments = new SLRUMap<>(PROTECTED_QUEUE_SIZE, PROBATIONAL_QUEUE_SIZE);
+  private final @NotNull PerlStubsModificationTracker myModificationTracker;
+  private long myLastStubsModificationCount = -1;
+
+  public PodRenderedHtmlCache(@NotNull Project project) {
+    myModificationTracker = PerlStubsModificationTracker.getInstance(project);
+  }
+
+  /**
+   * @return HTML rendered from {@code firstElement} to {@code lastElement} inclusive, or to the last sibling if {@code lastElement} is
+   * null
+   */
+  public @NotNull String renderPsiRangeAsHTML(@Nullable PsiElement firstElement, @Nullable PsiElement lastElement) {
+    if (firstElement == null) {
+      return "";
+    }
+    PsiFile containingFile = firstElement.getContainingFile();
+    VirtualFile virtualFile = containingFile == null ? null : containingFile.getViewProvider().getVirtualFile();
+    if (virtualFile == null || !containingFile.isPhysical()) {
+      return PodRenderUtil.renderPsiRangeAsHTML(firstElement, lastElement);
+    }
+
+    RangeKey key = new RangeKey(virtualFile, firstElement.getTextRange().getStartOffset(),
+                                lastElement == null ? -1 : lastElement.getTextRange().getEndOffset());
+    long stubsModificationCount = myModificationTracker.getModificationCount();
+    long fileModificationStamp = containingFile.getModificationStamp();
+    CachedFragment cachedFragment;
+    synchronized (myFragments) {
+      if (myLastStubsModificationCount != stubsModificationCount) {
+        myFragments.clear();
+        myLastStubsModificationCount = stubsModificationCount;
+      }
+      cachedFragment = myFragments.get(key);
+    }
+    if (cachedFragment != null && cachedFragment.myModificationStamp == fileModificationStamp) {
+      return cachedFragment.myHtml;
+    }
+
+    String html = PodRenderUtil.renderPsiRangeAsHTML(firstElement, lastElement);
+    synchronized (myFragments) {
+      if (myLastStubsModificationCount == stubsModificationCount) {
+        myFragments.put(key, new CachedFragment(html, fileModificationStamp));
+      }
+    }
+    return html;
+  }
+
+  public static @NotNull PodRenderedHtmlCache getInstance(@NotNull Project project) {
+    return project.getService(PodRenderedHtmlCache.class);
+  }
+
+  private static final class RangeKey {
+    private final @NotNull VirtualFile myVirtualFile;
+    private final int myStartOffset;
+    private final int myEndOffset;
+
+    public RangeKey(@NotNull VirtualFile virtualFile, int startOffset, int endOffset) {
+      myVirtualFile = virtualFile;
+      myStartOffset = startOffset;
+      myEndOffset = endOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RangeKey key = (RangeKey)o;
+      return myStartOffset == key.myStartOffset && myEndOffset == key.myEndOffset && myVirtualFile.equals(key.myVirtualFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myVirtualFile, myStartOffset, myEndOffset);
+    }
+  }
+
+  private static final class CachedFragment {
+    private final @NotNull String myHtml;
+    private final long myModificationStamp;
+
+    public CachedFragment(@NotNull String html, long modificationStamp) {
+      myHtml = html;
+      myModificationStamp = modificationStamp;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.perl5.lang.perl.idea.coverage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader of the {@code camelcade} report of {@code Devel::Cover}: array of files with {@code name} and {@code lines} map.
+ * Each file is passed to the consumer as soon as it is read, so the whole report is never kept in memory.
+ */
+@VisibleForTesting
+public class PerlCoverageDataReader {
+  private final @NotNull JsonReader myJsonReader;
+
+  public PerlCoverageDataReader(@NotNull Reader reader) {
+    myJsonReader = new JsonReader(reader);
+  }
+
+  /**
+   * Reads all files data from the report and passes them to the {@code consumer}
+   *
+   * @throws JsonParseException on malformed report
+   */
+  public void readFiles(@NotNull Consumer<? super PerlFileCoverageData> consumer) throws IOException {
+    try {
+      if (myJsonReader.peek() == JsonToken.NULL) {
+        myJsonReader.nextNull();
+        return;
+      }
+      myJsonReader.beginArray();
+      while (myJsonReader.hasNext()) {
+        PerlFileCoverageData fileData = readFile();
+        if (fileData != null) {
+          consumer.accept(fileData);
+        }
+      }
+      myJsonReader.endArray();
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      throw new JsonParseException(e);
+    }
+  }
+
+  private @Nullable PerlFileCoverageData readFile() throws IOException {
+    if (myJsonReader.peek() == JsonToken.NULL) {
+      myJsonReader.nextNull();
+      return null;
+    }
+    PerlFileCoverageData fileData = new PerlFileCoverageData();
+    myJsonReader.beginObject();
+    while (myJsonReader.hasNext()) {
+      String propertyName = myJsonReader.nextName();
+      if ("name".equals(propertyName) && myJsonReader.peek() == JsonToken.STRING) {
+        fileData.setName(myJsonReader.nextString());
+      }
+      else if ("lines".equals(propertyName) && myJsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+        readLines(fileData);
+      }
+      else {
+        myJsonReader.skipValue();
+      }
+    }
+    myJsonReader.endObject();
+    return fileData;
+  }
+
+  private void readLines(@NotNull PerlFileCoverageData fileData) throws IOException {
+    myJsonReader.beginObject();
+    while (myJsonReader.hasNext()) {
+      int line = Integer.parseInt(myJsonReader.nextName());
+      if (myJsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+        myJsonReader.skipValue();
+        continue;
+      }
+      int statements = 0;
+      int covered = 0;
+      myJsonReader.beginObject();
+      while (myJsonReader.hasNext()) {
+        String propertyName = myJsonReader.nextName();
+        if ("data".equals(propertyName) && myJsonReader.peek() == JsonToken.NUMBER) {
+          statements = myJsonReader.nextInt();
+        }
+        else if ("cover".equals(propertyName) && myJsonReader.peek() == JsonToken.NUMBER) {
+          covered = myJsonReader.nextInt();
+        }
+        else {
+          myJsonReader.skipValue();
+        }
+      }
+      myJsonReader.endObject();
+      if (line >= 0) {
+        fileData.addLine(line, statements, covered);
+      }
+    }
+    myJsonReader.endObject();
+  }
+}
@@ -16,19 +16,19 @@
 
 package com.perl5.lang.perl.idea.coverage;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
 import com.intellij.coverage.CoverageSuite;
 import com.intellij.execution.ExecutionException;
-import com.intellij.execution.process.ProcessOutput;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
@@ -40,6 +40,8 @@ import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineCoverage;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.Interner;
 import com.perl5.PerlBundle;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
@@ -48,15 +50,16 @@ import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
+import java.io.*;
+import java.nio.charset.Charset;
 import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class PerlCoverageRunner extends CoverageRunner {
   private static final String COVER = "cover";
   private static final String COVER_LIB = "Devel::Cover";
   private static final Logger LOG = Logger.getInstance(PerlCoverageRunner.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
 
   @Override
   public ProjectData loadCoverageData(@NotNull File sessionDataFile, @Nullable CoverageSuite baseCoverageSuite) {
@@ -132,81 +135,111 @@ public class PerlCoverageRunner extends CoverageRunner {
       return null;
     }
 
+    LOG.info("Loading coverage by: " + perlCommandLine.getCommandLineString());
+    Process process;
     try {
-      LOG.info("Loading coverage by: " + perlCommandLine.getCommandLineString());
-      ProcessOutput output = PerlHostData.execAndGetOutput(perlCommandLine);
-      if (output.getExitCode() != 0) {
-        String errorMessage = output.getStderr();
-        if (StringUtil.isEmpty(errorMessage)) {
-          errorMessage = output.getStdout();
-        }
+      process = PerlHostData.createRawProcess(perlCommandLine);
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Error loading coverage", e);
+      showError(project, e.getMessage());
+      return null;
+    }
 
-        if (!StringUtil.isEmpty(errorMessage)) {
-          showError(project, errorMessage);
-        }
-        return null;
+    Charset charset = perlCommandLine.getCharset();
+    CompletableFuture<String> stderrFuture = CompletableFuture.supplyAsync(() -> {
+      try {
+        return FileUtil.loadTextAndClose(new InputStreamReader(process.getErrorStream(), charset));
       }
-      String stdout = output.getStdout();
-      if (StringUtil.isEmpty(stdout)) {
+      catch (IOException e) {
+        LOG.warn("Error reading stderr", e);
         return null;
       }
-
-      try {
-        PerlFileCoverageData[] filesData = new Gson().fromJson(stdout, PerlFileCoverageData[].class);
-        if (filesData != null) {
-          return parsePerlFileData(PerlHostData.notNullFrom(effectiveSdk), filesData);
+    }, AppExecutorUtil.getAppExecutorService());
+    ProjectData projectData = new ProjectData();
+    PerlHostData<?, ?> hostData = PerlHostData.notNullFrom(effectiveSdk);
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    Interner<String> pathsInterner = Interner.createStringInterner();
+    int[] filesCounter = new int[]{0};
+    String parsingError = null;
+    boolean noOutput = false;
+    try (Reader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset), BUFFER_SIZE)) {
+      new PerlCoverageDataReader(reader).readFiles(fileData -> {
+        ProgressManager.checkCanceled();
+        if (indicator != null) {
+          indicator.setText2(PerlBundle.message("perl.coverage.loading.file", ++filesCounter[0], fileData.getName()));
         }
+        addFileData(projectData, hostData, pathsInterner, fileData);
+      });
+    }
+    catch (EOFException e) {
+      if (filesCounter[0] > 0) {
+        parsingError = e.getMessage();
       }
-      catch (JsonParseException e) {
-        LOG.warn("Error parsing JSON", e);
-        showError(project, e.getMessage());
+      else {
+        noOutput = true;
       }
     }
-    catch (ExecutionException e) {
-      LOG.warn("Error loading coverage", e);
-      showError(project, e.getMessage());
+    catch (IOException | JsonParseException e) {
+      LOG.warn("Error parsing JSON", e);
+      parsingError = e.getMessage();
+    }
+    catch (ProcessCanceledException e) {
+      process.destroy();
+      throw e;
     }
-    return null;
-  }
 
-  private static @NotNull ProjectData parsePerlFileData(@NotNull PerlHostData<?, ?> hostData, @NotNull PerlFileCoverageData[] filesData) {
-    ProjectData projectData = new ProjectData();
-    for (PerlFileCoverageData perlFileCoverageData : filesData) {
-      if (StringUtil.isEmpty(perlFileCoverageData.name) || perlFileCoverageData.lines == null) {
-        LOG.warn("Name or lines is null in " + perlFileCoverageData);
-        continue;
-      }
-      String localPath = hostData.getLocalPath(perlFileCoverageData.name);
-      if (localPath == null) {
-        continue;
-      }
-      ClassData classData = projectData.getOrCreateClassData(FileUtil.toSystemIndependentName(localPath));
-      Set<Map.Entry<Integer, PerlLineData>> linesEntries = perlFileCoverageData.lines.entrySet();
-      Integer maxLineNumber = linesEntries.stream().map(Map.Entry::getKey).max(Integer::compare).orElse(0);
-      LineData[] linesData = new LineData[maxLineNumber + 1];
-      for (Map.Entry<Integer, PerlLineData> lineEntry : linesEntries) {
-        PerlLineData perlLineData = lineEntry.getValue();
-        final Integer lineNumber = lineEntry.getKey();
-        LineData lineData = new LineData(lineNumber, null) {
-          @Override
-          public int getStatus() {
-            if (perlLineData.cover == 0) {
-              return LineCoverage.NONE;
-            }
-            else if (perlLineData.cover < perlLineData.data) {
-              return LineCoverage.PARTIAL;
-            }
-            return LineCoverage.FULL;
-          }
-        };
-        lineData.setHits(perlLineData.cover);
-        linesData[lineNumber] = lineData;
+    try {
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        String errorMessage = stderrFuture.join();
+        if (StringUtil.isEmpty(errorMessage)) {
+          errorMessage = parsingError;
+        }
+        if (!StringUtil.isEmpty(errorMessage)) {
+          showError(project, errorMessage);
+        }
+        return null;
       }
+    }
+    catch (InterruptedException e) {
+      process.destroy();
+      LOG.warn("Interrupted while loading coverage", e);
+      return null;
+    }
 
-      classData.setLines(linesData);
+    if (parsingError != null) {
+      showError(project, parsingError);
+      return null;
     }
+    return noOutput ? null : projectData;
+  }
 
-    return projectData;
+  /**
+   * Converts {@code fileData} to the {@link ClassData} of the {@code projectData}
+   */
+  private static void addFileData(@NotNull ProjectData projectData,
+                                  @NotNull PerlHostData<?, ?> hostData,
+                                  @NotNull Interner<String> pathsInterner,
+                                  @NotNull PerlFileCoverageData fileData) {
+    String remotePath = fileData.getName();
+    if (StringUtil.isEmpty(remotePath) || fileData.getSize() == 0) {
+      LOG.debug("Name or lines is empty in " + fileData);
+      return;
+    }
+    String localPath = hostData.getLocalPath(remotePath);
+    if (localPath == null) {
+      return;
+    }
+    ClassData classData = projectData.getOrCreateClassData(pathsInterner.intern(FileUtil.toSystemIndependentName(localPath)));
+    LineData[] linesData = new LineData[fileData.getMaxLine() + 1];
+    for (int i = 0; i < fileData.getSize(); i++) {
+      int lineNumber = fileData.getLine(i);
+      LineData lineData = new PerlLineData(lineNumber, fileData.getStatements(i), fileData.getCovered(i));
+      lineData.setHits(fileData.getCovered(i));
+      linesData[lineNumber] = lineData;
+    }
+    classData.setLines(linesData);
   }
 
   private static void showError(@NotNull Project project, @NotNull String message) {
@@ -226,6 +259,28 @@ public class PerlCoverageRunner extends CoverageRunner {
     });
   }
 
+  private static class PerlLineData extends LineData {
+    private final byte myStatus;
+
+    public PerlLineData(int line, int statements, int covered) {
+      super(line, null);
+      if (covered == 0) {
+        myStatus = LineCoverage.NONE;
+      }
+      else if (covered < statements) {
+        myStatus = LineCoverage.PARTIAL;
+      }
+      else {
+        myStatus = LineCoverage.FULL;
+      }
+    }
+
+    @Override
+    public int getStatus() {
+      return myStatus;
+    }
+  }
+
   @Override
   public @NotNull String getPresentableName() {
     return PerlBundle.message("perl.perl5");
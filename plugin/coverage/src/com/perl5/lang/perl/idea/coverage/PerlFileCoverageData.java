@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2020 Alexandr Evstigneev
+ * Copyright 2015-2021 Alexandr Evstigneev
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,12 +13,79 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.perl5.lang.perl.idea.coverage;
 
-import java.util.Map;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Coverage data of a single file from {@code camelcade} report. Lines data is stored in parallel primitive arrays to keep memory
+ * footprint of big reports low.
+ */
+@VisibleForTesting
+public class PerlFileCoverageData {
+  private @Nullable String myName;
+  private int[] myLines = ArrayUtil.EMPTY_INT_ARRAY;
+  private int[] myStatements = ArrayUtil.EMPTY_INT_ARRAY;
+  private int[] myCovered = ArrayUtil.EMPTY_INT_ARRAY;
+  private int mySize;
+  private int myMaxLine;
+
+  public @Nullable String getName() {
+    return myName;
+  }
+
+  void setName(@Nullable String name) {
+    myName = name;
+  }
+
+  void addLine(int line, int statements, int covered) {
+    if (mySize == myLines.length) {
+      int newCapacity = Math.max(16, mySize * 2);
+      myLines = ArrayUtil.realloc(myLines, newCapacity);
+      myStatements = ArrayUtil.realloc(myStatements, newCapacity);
+      myCovered = ArrayUtil.realloc(myCovered, newCapacity);
+    }
+    myLines[mySize] = line;
+    myStatements[mySize] = statements;
+    myCovered[mySize] = covered;
+    mySize++;
+    myMaxLine = Math.max(myMaxLine, line);
+  }
+
+  /**
+   * @return number of lines with coverage data
+   */
+  public int getSize() {
+    return mySize;
+  }
+
+  public int getMaxLine() {
+    return myMaxLine;
+  }
+
+  public int getLine(int index) {
+    return myLines[index];
+  }
+
+  /**
+   * @return number of statements at line with {@code index}
+   */
+  public int getStatements(int index) {
+    return myStatements[index];
+  }
+
+  /**
+   * @return number of covered statements at line with {@code index}
+   */
+  public int getCovered(int index) {
+    return myCovered[index];
+  }
 
-class PerlFileCoverageData {
-  public String name;
-  public Map<Integer, PerlLineData> lines;
+  @Override
+  public @NotNull String toString() {
+    return "PerlFileCoverageData{name=" + myName + ", lines=" + mySize + "}";
+  }
 }
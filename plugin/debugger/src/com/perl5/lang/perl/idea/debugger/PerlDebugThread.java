@@ -18,8 +18,6 @@ package com.perl5.lang.perl.idea.debugger;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonObject;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.ExecutionResult;
 import com.intellij.execution.actions.StopProcessAction;
@@ -32,8 +30,6 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.util.concurrency.Semaphore;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.impl.XDebugSessionImpl;
 import com.perl5.PerlBundle;
@@ -45,20 +41,16 @@ import com.perl5.lang.perl.idea.run.debugger.PerlDebugOptions;
 import com.perl5.lang.perl.idea.run.debugger.PerlDebugProfileStateBase;
 import com.perl5.lang.perl.idea.run.debugger.remote.PerlRemoteDebuggingConfiguration;
 import com.perl5.lang.perl.util.PerlRunUtil;
-import gnu.trove.TByteArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.PropertyKey;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.reflect.Modifier;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -66,7 +58,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.perl5.PerlBundle.PATH_TO_BUNDLE;
 import static com.perl5.lang.perl.idea.debugger.protocol.PerlDebuggingEventReady.MODULE_VERSION_PREFIX;
@@ -85,16 +77,15 @@ public class PerlDebugThread extends Thread {
   private final XDebugSession mySession;
   private Socket mySocket;
   private ServerSocket myServerSocket;
-  private OutputStream myOutputStream;
-  private InputStream myInputStream;
+  private volatile PerlDebuggingTransport myTransport;
   private volatile boolean myStop = false;
   private final List<PerlLineBreakPointDescriptor> breakpointsDescriptorsQueue = new CopyOnWriteArrayList<>();
   private boolean isReady = false;
-  private int transactionId = 0;
+  private final AtomicInteger transactionId = new AtomicInteger();
   private final ConcurrentHashMap<Integer, PerlDebuggingTransactionHandler> transactionsMap =
     new ConcurrentHashMap<>();
-  private final ReentrantLock lock = new ReentrantLock();
   private final PerlRemoteFileSystem myPerlRemoteFileSystem = PerlRemoteFileSystem.getInstance();
+  private final PerlRemoteSourceCache myRemoteSourceCache = new PerlRemoteSourceCache(this, myPerlRemoteFileSystem);
   private final PerlDebugOptions myPerlDebugOptions;
 
   public PerlDebugThread(XDebugSession session, PerlDebugProfileStateBase state, ExecutionResult executionResult) {
@@ -139,6 +130,7 @@ public class PerlDebugThread extends Thread {
   private void prepareAndConnect() throws ExecutionException, IOException, InterruptedException {
     myScriptListPanel.clear();
     myEvalsListPanel.clear();
+    myRemoteSourceCache.clear();
     WriteAction.runAndWait(myPerlRemoteFileSystem::dropFiles);
 
     int debugPort = myDebugProfileState.getDebugPort();
@@ -190,37 +182,25 @@ public class PerlDebugThread extends Thread {
       }
       print("perl.debug.connected");
 
-      myOutputStream = mySocket.getOutputStream();
-      myInputStream = mySocket.getInputStream();
-
-      TByteArrayList response = new TByteArrayList();
+      PerlDebuggingTransport transport = new PerlDebuggingTransport(mySocket.getInputStream(), mySocket.getOutputStream());
+      myTransport = transport;
 
       while (!myStop) {
-        response.clear();
-
         if (DEV_MODE) {
           LOG.debug("Reading data");
         }
 
-        // reading bytes
-        while (myInputStream != null) {
-          int dataByte = myInputStream.read();
-          if (dataByte == '\n') {
-            break;
-          }
-          else if (dataByte == -1) {
-            return true;
-          }
-          else {
-            response.add((byte)dataByte);
-          }
+        if (!transport.hasNext()) {
+          return true;
         }
 
+        PerlDebuggingEvent newEvent = transport.read(myGson, PerlDebuggingEvent.class);
+
         if (DEV_MODE) {
-          LOG.debug("Got response " + response.size() + "\n" + new String(response.toNativeArray(), StandardCharsets.UTF_8));
+          LOG.debug("Got event " + newEvent);
         }
 
-        processResponse(response);
+        processEvent(newEvent);
       }
     }
     catch (Exception e) {
@@ -245,10 +225,7 @@ public class PerlDebugThread extends Thread {
     }
   }
 
-  private void processResponse(TByteArrayList responseBytes) {
-    final String response = new String(responseBytes.toNativeArray(), StandardCharsets.UTF_8);
-    final PerlDebuggingEvent newEvent = myGson.fromJson(response, PerlDebuggingEvent.class);
-
+  private void processEvent(@Nullable PerlDebuggingEvent newEvent) {
     if (newEvent != null) {
       if (newEvent instanceof PerlDebuggingEventReady) {
         if (((PerlDebuggingEventReady)newEvent).isValid()) {
@@ -285,32 +262,16 @@ public class PerlDebugThread extends Thread {
   }
 
   public void sendString(String string) {
-    if (mySocket == null) {
+    PerlDebuggingTransport transport = myTransport;
+    if (mySocket == null || transport == null) {
       return;
     }
 
-    string = string + "\n";
-
-    try {
-      if (DEV_MODE) {
-        LOG.debug("Going to send string " + string);
-      }
-
-      lock.lock();
-
-      if (DEV_MODE) {
-        LOG.debug("Sent string " + string);
-      }
-
-
-      myOutputStream.write(string.getBytes(StandardCharsets.UTF_8));
-    }
-    catch (IOException e) {
-      LOG.warn(e);
-    }
-    finally {
-      lock.unlock();
+    if (DEV_MODE) {
+      LOG.debug("Going to send string " + string);
     }
+
+    transport.send(string);
   }
 
   public void sendCommand(String command, Object data) {
@@ -322,15 +283,9 @@ public class PerlDebugThread extends Thread {
       return;
     }
 
-    try {
-      lock.lock();
-      PerlDebuggingTransactionWrapper transaction = new PerlDebuggingTransactionWrapper(transactionId++, data);
-      transactionsMap.put(transaction.getTransactionId(), transactionHandler);
-      sendCommand(command, transaction);
-    }
-    finally {
-      lock.unlock();
-    }
+    PerlDebuggingTransactionWrapper transaction = new PerlDebuggingTransactionWrapper(transactionId.getAndIncrement(), data);
+    transactionsMap.put(transaction.getTransactionId(), transactionHandler);
+    sendCommand(command, transaction);
   }
 
   public Socket getSocket() {
@@ -350,26 +305,11 @@ public class PerlDebugThread extends Thread {
   }
 
   private void closeStreamsAndSockets() {
-    //noinspection Duplicates
-    try {
-      if (myInputStream != null) {
-        myInputStream.close();
-        myInputStream = null;
-      }
-    }
-    catch (IOException e) {
-      LOG.warn(e);
-    }
-
-    //noinspection Duplicates
-    try {
-      if (myOutputStream != null) {
-        myOutputStream.close();
-        myOutputStream = null;
-      }
-    }
-    catch (IOException e) {
-      LOG.warn(e);
+    // transport sends pending messages and closes raw socket streams, without waiting for the reading thread
+    PerlDebuggingTransport transport = myTransport;
+    if (transport != null) {
+      myTransport = null;
+      transport.close();
     }
 
     //noinspection Duplicates
@@ -411,33 +351,15 @@ public class PerlDebugThread extends Thread {
     return myEvalsListPanel;
   }
 
-  public @Nullable VirtualFile loadRemoteSource(String filePath) {
-    if (DEV_MODE) {
-      LOG.debug("Loading file " + filePath);
-    }
-    final Semaphore responseSemaphore = new Semaphore();
-    responseSemaphore.down();
-
-    final String[] response = new String[]{"# Source could not be loaded..."};
-
-    PerlDebuggingTransactionHandler perlDebuggingTransactionHandler = new PerlDebuggingTransactionHandler() {
-
-      @Override
-      public void run(JsonObject eventObject, JsonDeserializationContext jsonDeserializationContext) {
-        response[0] = eventObject.getAsJsonPrimitive("data").getAsString();
-        responseSemaphore.up();
-      }
-    };
-
-    if (mySocket != null) {
-      sendCommandAndGetResponse("get_source", new PerlSourceRequestDescriptor(filePath), perlDebuggingTransactionHandler);
-      responseSemaphore.waitFor(2000);
-    }
-
-    return myPerlRemoteFileSystem.registerRemoteFile(filePath, response[0]);
+  public @NotNull PerlRemoteSourceCache getRemoteSourceCache() {
+    return myRemoteSourceCache;
   }
 
   public PerlDebugProfileStateBase getDebugProfileState() {
     return myDebugProfileState;
   }
+
+  public XDebugSession getSession() {
+    return mySession;
+  }
 }
@@ -20,10 +20,12 @@ import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.frame.XExecutionStack;
 import com.intellij.xdebugger.frame.XStackFrame;
 import com.perl5.lang.perl.idea.debugger.protocol.PerlStackFrameDescriptor;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class PerlExecutionStack extends XExecutionStack {
@@ -48,6 +50,15 @@ public class PerlExecutionStack extends XExecutionStack {
     container.addStackFrames(myPerlStackFrames, true);
   }
 
+  /**
+   * @return future completed when source of the top frame is available. Sources of other frames are requested by frames in background
+   * and awaited only when frame position is requested
+   */
+  public @NotNull CompletableFuture<?> getTopFrameSourceFuture() {
+    PerlStackFrame topFrame = ContainerUtil.getFirstItem(myPerlStackFrames);
+    return topFrame == null ? CompletableFuture.completedFuture(null) : topFrame.getVirtualFileFuture();
+  }
+
   public PerlSuspendContext getSuspendContext() {
     return mySuspendContext;
   }
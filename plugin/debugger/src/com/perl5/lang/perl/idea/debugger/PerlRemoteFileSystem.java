@@ -28,9 +28,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Clone of mock file system
@@ -38,7 +38,7 @@ import java.util.Objects;
 public class PerlRemoteFileSystem extends DeprecatedVirtualFileSystem {
   public static final String PROTOCOL = "perl5_remote";
   public static final String PROTOCOL_PREFIX = "perl5_remote://";
-  private final Map<String, VirtualFile> virtualFilesMap = new HashMap<>();
+  private final Map<String, VirtualFile> virtualFilesMap = new ConcurrentHashMap<>();
 
   @Override
   public @Nullable VirtualFile findFileByPath(@NotNull String path) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.debugger;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.perl5.lang.perl.idea.debugger.protocol.PerlDebuggingTransactionHandler;
+import com.perl5.lang.perl.idea.debugger.protocol.PerlLoadedFileDescriptor;
+import com.perl5.lang.perl.idea.debugger.protocol.PerlSourceRequestDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous loader of the remote sources for the {@link PerlRemoteFileSystem}.
+ * <p>
+ * Each remote path is requested once, concurrent requests for the same path share the same future. Requests are pipelined by the
+ * transport, so prefetching sources of many loaded files costs a single round-trip. Identical sources, e.g. of the same code
+ * evaluated several times, are shared between files.
+ */
+public class PerlRemoteSourceCache {
+  private static final Logger LOG = Logger.getInstance(PerlRemoteSourceCache.class);
+  static final String SOURCE_NOT_LOADED = "# Source could not be loaded...";
+  private static final int SOURCE_TIMEOUT_SECONDS = 10;
+  /**
+   * Maximum number of files prefetched during debugging session
+   */
+  private static final int MAX_PREFETCHED_FILES = 200;
+
+  private final @NotNull PerlDebugThread myDebugThread;
+  private final @NotNull PerlRemoteFileSystem myRemoteFileSystem;
+  private final Map<String, CompletableFuture<VirtualFile>> myRequests = new ConcurrentHashMap<>();
+  private final Map<String, String> mySources = new ConcurrentHashMap<>();
+  private final AtomicInteger myPrefetchedFilesCounter = new AtomicInteger();
+
+  public PerlRemoteSourceCache(@NotNull PerlDebugThread debugThread, @NotNull PerlRemoteFileSystem remoteFileSystem) {
+    myDebugThread = debugThread;
+    myRemoteFileSystem = remoteFileSystem;
+  }
+
+  /**
+   * @return future for the virtual file with source of {@code remotePath}: local file if it exists, or remote file
+   */
+  public @NotNull CompletableFuture<VirtualFile> getFileAsync(@NotNull String remotePath) {
+    String localPath = myDebugThread.getDebugProfileState().mapPathToLocal(remotePath);
+    VirtualFile localFile = VfsUtil.findFileByIoFile(new File(localPath), false);
+    if (localFile != null) {
+      return CompletableFuture.completedFuture(localFile);
+    }
+    return getRemoteFileAsync(remotePath);
+  }
+
+  /**
+   * @return future for the remote file with source of {@code remotePath}, requesting source from the debugger if necessary
+   */
+  public @NotNull CompletableFuture<VirtualFile> getRemoteFileAsync(@NotNull String remotePath) {
+    VirtualFile remoteFile = myRemoteFileSystem.findFileByPath(remotePath);
+    if (remoteFile != null) {
+      return CompletableFuture.completedFuture(remoteFile);
+    }
+    CompletableFuture<VirtualFile> result = myRequests.get(remotePath);
+    if (result != null) {
+      return result;
+    }
+    CompletableFuture<String> sourceFuture = new CompletableFuture<>();
+    CompletableFuture<VirtualFile> newRequest = sourceFuture
+      .orTimeout(SOURCE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+      .exceptionally(e -> {
+        LOG.warn("Unable to load source for " + remotePath + ": " + e.getMessage());
+        return SOURCE_NOT_LOADED;
+      })
+      .thenApply(source -> myRemoteFileSystem.registerRemoteFile(remotePath, source));
+    result = myRequests.putIfAbsent(remotePath, newRequest);
+    if (result != null) {
+      return result;
+    }
+    requestSource(remotePath, sourceFuture);
+    return newRequest;
+  }
+
+  /**
+   * Requests sources of remote-only files from {@code fileDescriptors} in background
+   */
+  public void prefetch(@NotNull Collection<PerlLoadedFileDescriptor> fileDescriptors) {
+    for (PerlLoadedFileDescriptor fileDescriptor : fileDescriptors) {
+      if (fileDescriptor == null) {
+        continue;
+      }
+      String remotePath = fileDescriptor.getPath();
+      if (myRequests.containsKey(remotePath) || myRemoteFileSystem.findFileByPath(remotePath) != null) {
+        continue;
+      }
+      String localPath = myDebugThread.getDebugProfileState().mapPathToLocal(remotePath);
+      if (new File(localPath).exists()) {
+        continue;
+      }
+      if (myPrefetchedFilesCounter.incrementAndGet() > MAX_PREFETCHED_FILES) {
+        return;
+      }
+      getRemoteFileAsync(remotePath);
+    }
+  }
+
+  /**
+   * Drops all requested sources, e.g. on re-connection
+   */
+  public void clear() {
+    myRequests.clear();
+    mySources.clear();
+    myPrefetchedFilesCounter.set(0);
+  }
+
+  private void requestSource(@NotNull String remotePath, @NotNull CompletableFuture<String> sourceFuture) {
+    if (PerlDebugThread.DEV_MODE) {
+      LOG.debug("Loading file " + remotePath);
+    }
+    myDebugThread.sendCommandAndGetResponse("get_source", new PerlSourceRequestDescriptor(remotePath), new PerlDebuggingTransactionHandler() {
+      @Override
+      public void run(JsonObject eventObject, JsonDeserializationContext jsonDeserializationContext) {
+        JsonPrimitive data = eventObject.getAsJsonPrimitive("data");
+        sourceFuture.complete(data == null ? SOURCE_NOT_LOADED : deduplicate(data.getAsString()));
+      }
+    });
+  }
+
+  private @NotNull String deduplicate(@NotNull String source) {
+    String existingSource = mySources.putIfAbsent(source, source);
+    return existingSource == null ? source : existingSource;
+  }
+
+}
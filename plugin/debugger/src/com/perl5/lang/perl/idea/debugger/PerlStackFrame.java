@@ -19,12 +19,10 @@ package com.perl5.lang.perl.idea.debugger;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonObject;
 import com.intellij.icons.AllIcons;
-import com.intellij.openapi.util.AtomicNullableLazyValue;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.ui.ColoredTextContainer;
 import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.evaluation.XDebuggerEvaluator;
 import com.intellij.xdebugger.frame.XCompositeNode;
@@ -40,36 +38,23 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
-import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class PerlStackFrame extends XStackFrame {
   private final PerlStackFrameDescriptor myFrameDescriptor;
   private final PerlExecutionStack myPerlExecutionStack;
   private final PerlDebugThread myDebugThread;
-  private final AtomicNullableLazyValue<VirtualFile> myVirtualFile;
+  private final CompletableFuture<VirtualFile> myVirtualFile;
+  private final AtomicBoolean myIsPositionPending = new AtomicBoolean();
 
   public PerlStackFrame(PerlStackFrameDescriptor frameDescriptor, PerlExecutionStack stack) {
     myFrameDescriptor = frameDescriptor;
     myPerlExecutionStack = stack;
     myDebugThread = myPerlExecutionStack.getSuspendContext().getDebugThread();
 
-    myVirtualFile = AtomicNullableLazyValue.createValue(() -> {
-      String remoteFilePath = myFrameDescriptor.getFileDescriptor().getPath();
-      String localFilePath = myDebugThread.getDebugProfileState().mapPathToLocal(remoteFilePath);
-      VirtualFile result = VfsUtil.findFileByIoFile(new File(localFilePath), false);
-
-      if (result == null) {
-        String remoteFileUrl = PerlRemoteFileSystem.PROTOCOL_PREFIX + remoteFilePath;
-        result = VirtualFileManager.getInstance().findFileByUrl(remoteFileUrl);
-
-        if (result == null) {    // suppose that we need to fetch file
-          result = myDebugThread.loadRemoteSource(remoteFilePath);
-        }
-      }
-
-      return result;
-    });
+    myVirtualFile = myDebugThread.getRemoteSourceCache().getFileAsync(myFrameDescriptor.getFileDescriptor().getPath());
 
     PerlLoadedFileDescriptor fileDescriptor = myFrameDescriptor.getFileDescriptor();
 
@@ -87,12 +72,24 @@ public class PerlStackFrame extends XStackFrame {
     component.setIcon(AllIcons.Debugger.Frame);
   }
 
+  /**
+   * Position is available only when frame source is loaded. If it's still loading, we are not waiting for it and update the execution
+   * position when source arrives.
+   */
   @Override
   public @Nullable XSourcePosition getSourcePosition() {
-    VirtualFile virtualFile = myVirtualFile.getValue();
+    VirtualFile virtualFile = myVirtualFile.getNow(null);
     if (virtualFile != null) {
       return XSourcePositionImpl.create(virtualFile, myFrameDescriptor.getLine());
     }
+    if (!myVirtualFile.isDone() && myIsPositionPending.compareAndSet(false, true)) {
+      myVirtualFile.thenAccept(it -> {
+        XDebugSession session = myDebugThread.getSession();
+        if (it != null && session.getCurrentStackFrame() == this) {
+          session.updateExecutionPosition();
+        }
+      });
+    }
     return super.getSourcePosition();
   }
 
@@ -133,6 +130,13 @@ public class PerlStackFrame extends XStackFrame {
     }
   }
 
+  /**
+   * @return future for the source file of this frame, completed when source is available
+   */
+  public @NotNull CompletableFuture<VirtualFile> getVirtualFileFuture() {
+    return myVirtualFile;
+  }
+
   public PerlExecutionStack getPerlExecutionStack() {
     return myPerlExecutionStack;
   }
@@ -177,7 +181,7 @@ public class PerlStackFrame extends XStackFrame {
   public String toString() {
     return "PerlStackFrame{" +
            "myFrameDescriptor=" + myFrameDescriptor +
-           ", myVirtualFile=" + myVirtualFile.getValue() +
+           ", myVirtualFile=" + myVirtualFile.getNow(null) +
            '}';
   }
 }
@@ -27,7 +27,7 @@ import java.util.Collections;
 
 
 public class PerlSuspendContext extends XSuspendContext {
-  private final XExecutionStack myXExecutionStack;
+  private final PerlExecutionStack myXExecutionStack;
   private final XDebugSession myDebugSession;
   private final PerlDebugThread myDebugThread;
 
@@ -47,6 +47,10 @@ public class PerlSuspendContext extends XSuspendContext {
     container.addExecutionStack(Collections.singletonList(myXExecutionStack), true);
   }
 
+  public @NotNull PerlExecutionStack getPerlExecutionStack() {
+    return myXExecutionStack;
+  }
+
   public XDebugSession getDebugSession() {
     return myDebugSession;
   }
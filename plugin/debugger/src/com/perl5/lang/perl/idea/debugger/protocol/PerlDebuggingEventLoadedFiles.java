@@ -19,6 +19,7 @@ package com.perl5.lang.perl.idea.debugger.protocol;
 import com.perl5.lang.perl.idea.debugger.ui.PerlScriptsPanel;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -62,5 +63,7 @@ public class PerlDebuggingEventLoadedFiles extends PerlDebuggingEventBase {
 
     evalsListPanel.bulkChange(evalAdd, evalRemove);
     scriptListPanel.bulkChange(scriptAdd, scriptRemove);
+
+    getDebugThread().getRemoteSourceCache().prefetch(Arrays.asList(add));
   }
 }
@@ -16,7 +16,6 @@
 
 package com.perl5.lang.perl.idea.debugger.protocol;
 
-import com.intellij.xdebugger.frame.XSuspendContext;
 import com.perl5.lang.perl.idea.debugger.PerlSuspendContext;
 
 
@@ -27,12 +26,15 @@ public class PerlDebuggingEventStop extends PerlDebuggingEventBase implements Pe
     this.frames = frames;
   }
 
-  public XSuspendContext getSuspendContext() {
+  public PerlSuspendContext getSuspendContext() {
     return new PerlSuspendContext(frames, getDebugSession(), getDebugThread());
   }
 
   @Override
   public void run() {
-    getDebugSession().positionReached(getSuspendContext());
+    PerlSuspendContext suspendContext = getSuspendContext();
+    // position is reported when the top frame source is ready, without blocking the events thread
+    suspendContext.getPerlExecutionStack().getTopFrameSourceFuture().whenComplete(
+      (result, error) -> getDebugSession().positionReached(suspendContext));
   }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.debugger.protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport for the debugger protocol.
+ * <p>
+ * Debugger sends newline-separated json messages. They are deserialized directly from the buffered socket stream, without
+ * intermediate bytes and strings. Outgoing messages are queued and written by a single writer thread, batching all pending messages
+ * into a single flush, so senders never block on the socket and pipelined requests keep their order.
+ * <p>
+ * Closing sends pending messages and closes the raw streams. It never touches the reader, because the reading thread holds its lock
+ * while blocked on the socket.
+ */
+public class PerlDebuggingTransport implements Closeable {
+  private static final Logger LOG = Logger.getInstance(PerlDebuggingTransport.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int CLOSE_TIMEOUT_MS = 1000;
+
+  private final @NotNull InputStream myInputStream;
+  private final @NotNull OutputStream myOutputStream;
+  private final @NotNull JsonReader myJsonReader;
+  private final @NotNull Writer myWriter;
+  private final ExecutorService myWriterExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Perl debugger writer", 1);
+  private final Queue<String> myOutgoingQueue = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean myIsWriterScheduled = new AtomicBoolean(false);
+  private volatile boolean myIsClosed = false;
+
+  public PerlDebuggingTransport(@NotNull InputStream inputStream, @NotNull OutputStream outputStream) {
+    myInputStream = inputStream;
+    myOutputStream = outputStream;
+    myJsonReader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE));
+    myJsonReader.setLenient(true);
+    myWriter = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  /**
+   * Waits for the next message
+   *
+   * @return false iff end of stream has been reached
+   */
+  public boolean hasNext() throws IOException {
+    try {
+      return myJsonReader.peek() != JsonToken.END_DOCUMENT;
+    }
+    catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Deserializes next message with {@code gson}
+   */
+  public <T> @Nullable T read(@NotNull Gson gson, @NotNull Class<T> clazz) {
+    return gson.fromJson(myJsonReader, clazz);
+  }
+
+  /**
+   * Queues {@code message} for sending. Message is terminated with a new line.
+   */
+  public void send(@NotNull String message) {
+    if (myIsClosed) {
+      return;
+    }
+    myOutgoingQueue.add(message);
+    if (myIsWriterScheduled.compareAndSet(false, true)) {
+      myWriterExecutor.execute(this::writeQueuedMessages);
+    }
+  }
+
+  private void writeQueuedMessages() {
+    try {
+      while (true) {
+        String message;
+        while ((message = myOutgoingQueue.poll()) != null) {
+          myWriter.write(message);
+          myWriter.write('\n');
+        }
+        myWriter.flush();
+        myIsWriterScheduled.set(false);
+        if (myOutgoingQueue.isEmpty() || !myIsWriterScheduled.compareAndSet(false, true)) {
+          return;
+        }
+      }
+    }
+    catch (IOException e) {
+      myIsWriterScheduled.set(false);
+      if (!myIsClosed) {
+        LOG.warn(e);
+      }
+    }
+  }
+
+  /**
+   * Writes messages left in the queue and closes the output
+   */
+  private void writeRemainingMessagesAndClose() {
+    try {
+      String message;
+      while ((message = myOutgoingQueue.poll()) != null) {
+        myWriter.write(message);
+        myWriter.write('\n');
+      }
+      myWriter.flush();
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+    finally {
+      closeQuietly(myOutputStream);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (myIsClosed) {
+      return;
+    }
+    myIsClosed = true;
+    Future<?> closeFuture = myWriterExecutor.submit(this::writeRemainingMessagesAndClose);
+    try {
+      closeFuture.get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException | ExecutionException | TimeoutException e) {
+      LOG.debug("Unable to send pending messages", e);
+      closeQuietly(myOutputStream);
+    }
+    myWriterExecutor.shutdown();
+    closeQuietly(myInputStream);
+  }
+
+  private static void closeQuietly(@NotNull Closeable closeable) {
+    try {
+      closeable.close();
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+}
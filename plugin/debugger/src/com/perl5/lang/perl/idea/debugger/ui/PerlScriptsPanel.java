@@ -93,16 +93,22 @@ public class PerlScriptsPanel extends JPanel {
       public void mouseClicked(MouseEvent e) {
         if (e.getClickCount() == 2 && e.getButton() == MouseEvent.BUTTON1) {
           PerlLoadedFileDescriptor fileDescriptor = jbList.getSelectedValue();
+          if (fileDescriptor == null) {
+            return;
+          }
           String remotePath = fileDescriptor.getPath();
           String localPath = myDebugThread.getDebugProfileState().mapPathToLocal(remotePath);
           VirtualFile selectedVirtualFile = getVirtualFileByName(localPath);
-          if (selectedVirtualFile == null) {
-            selectedVirtualFile = myDebugThread.loadRemoteSource(remotePath);
-          }
-
           if (selectedVirtualFile != null) {
             OpenFileAction.openFile(selectedVirtualFile, myProject);
+            return;
           }
+          myDebugThread.getRemoteSourceCache().getRemoteFileAsync(remotePath).thenAccept(
+            remoteFile -> ApplicationManager.getApplication().invokeLater(() -> {
+              if (!myProject.isDisposed()) {
+                OpenFileAction.openFile(remoteFile, myProject);
+              }
+            }));
         }
       }
     });
@@ -0,0 +1,47 @@
+# Prints manifest of files under the directory, passed as the first argument. Script is passed to perl via STDIN, previous manifest of
+# the directory may be passed after the __END__ marker, hashes of files with same size and modification time are taken from it.
+# Symlinks to directories are followed, each directory is visited once.
+#
+# Manifest record: <size>\t<mtime>\t<sha1>\t<relative path>\0
+# Records are terminated with NUL, because paths may contain tabs and line breaks
+# Exit codes: 0 - success, 2 - path does not exist, 3 - path is not a directory
+use strict;
+use warnings;
+use File::Find;
+use Digest::SHA;
+
+my $root = shift @ARGV;
+exit 2 unless -e $root;
+exit 3 unless -d $root;
+$root =~ s{/+\z}{} unless $root eq '/';
+
+my %previous = ();
+{
+  local $/ = "\0";
+  while (my $record = <DATA>) {
+    next unless chomp $record;
+    my ($size, $mtime, $hash, $path) = split /\t/, $record, 4;
+    $previous{$path} = [ $size, $mtime, $hash ] if defined $path;
+  }
+}
+
+binmode STDOUT;
+find({ no_chdir => 1, follow_fast => 1, follow_skip => 2, wanted => sub {
+  my $path = $File::Find::name;
+  my @stat = stat($path) or return;
+  return unless -f _;
+  my $relative = substr($path, length($root));
+  $relative =~ s{\A/+}{};
+  return if $relative eq '';
+  my ($size, $mtime) = @stat[7, 9];
+  my $hash;
+  my $known = $previous{$relative};
+  if ($known && $known->[0] == $size && $known->[1] == $mtime) {
+    $hash = $known->[2];
+  }
+  else {
+    $hash = eval {Digest::SHA->new(1)->addfile($path, 'b')->hexdigest};
+    return unless defined $hash;
+  }
+  print join("\t", $size, $mtime, $hash, $relative), "\0";
+} }, $root);
@@ -36,8 +36,8 @@ import com.intellij.util.ArrayUtil;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.sdk.host.PerlExecutionException;
-import com.perl5.lang.perl.idea.sdk.host.PerlFileDescriptor;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
 import com.perl5.lang.perl.util.PerlPluginUtil;
 import org.jetbrains.annotations.NotNull;
@@ -125,6 +125,15 @@ class PerlDockerAdapter {
     }
   }
 
+  /**
+   * @return process of the {@code command}, running in the {@code containerName} with attached stdin
+   */
+  public @NotNull Process createExecProcess(@NotNull String containerName, @NotNull String... command) throws ExecutionException {
+    PerlCommandLine commandLine = baseCommandLine().withParameters(EXEC, INTERACTIVELY, containerName).withParameters(command);
+    LOG.debug("Executing: ", commandLine.getCommandLineString());
+    return commandLine.createProcess();
+  }
+
   public void killContainer(@NotNull String... containers) throws ExecutionException {
     runCommand(ArrayUtil.mergeArrays(new String[]{KILL}, containers));
   }
@@ -145,34 +154,33 @@ class PerlDockerAdapter {
   }
 
   /**
-   * @return contents of {@code path} in the container.
+   * @return {@code ls} output for the {@code path} in the container, with all subdirectories if {@code recursive}
+   * @see com.perl5.lang.perl.idea.sdk.host.PerlDirectoryListing
    */
-  public @NotNull List<PerlFileDescriptor> listFiles(@NotNull String containerName, @NotNull String path) {
-    try {
-      if (ApplicationManager.getApplication().isDispatchThread()) {
-        return ProgressManager.getInstance().runProcessWithProgressSynchronously(
-          () -> doListFiles(containerName, path),
-          PerlDockerBundle.message("docker.adapter.listing.files.in", path),
-          true,
-          null
-        );
-      }
-      else {
-        return doListFiles(containerName, path);
-      }
+  public @NotNull List<String> listFiles(@NotNull String containerName, @NotNull String path, boolean recursive)
+    throws ExecutionException {
+    if (ApplicationManager.getApplication().isDispatchThread()) {
+      return ProgressManager.getInstance().runProcessWithProgressSynchronously(
+        () -> doListFiles(containerName, path, recursive),
+        PerlDockerBundle.message("docker.adapter.listing.files.in", path),
+        true,
+        null
+      );
     }
-    catch (ExecutionException e) {
-      LOG.error(e);
-      return Collections.emptyList();
+    else {
+      return doListFiles(containerName, path, recursive);
     }
   }
 
-  private @NotNull List<PerlFileDescriptor> doListFiles(@NotNull String containerName, @NotNull String path) throws ExecutionException {
-    ProcessOutput output = runCommand(EXEC, containerName, "ls", "-LAs", "--classify", path);
-    return output.getStdoutLines().stream()
-      .map(it -> PerlFileDescriptor.create(path, it))
-      .filter(Objects::nonNull)
-      .collect(Collectors.toList());
+  private @NotNull List<String> doListFiles(@NotNull String containerName, @NotNull String path, boolean recursive)
+    throws ExecutionException {
+    ProcessOutput output = PerlHostData.execAndGetOutput(
+      baseCommandLine().withParameters(EXEC, containerName, "ls", PerlHostFileTransfer.getListingOptions(recursive), "--classify", path));
+    // exit code 1 means minor problems, e.g. broken symlinks in subdirectories
+    if (output.getExitCode() > 1) {
+      throw new PerlExecutionException(output);
+    }
+    return output.getStdoutLines();
   }
 
   private static String createContainerName(@NotNull String seed) {
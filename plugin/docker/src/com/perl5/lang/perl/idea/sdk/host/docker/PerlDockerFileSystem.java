@@ -70,12 +70,25 @@ class PerlDockerFileSystem extends PerlPluggableVirtualFileSystem {
   }
 
   private @NotNull List<PerlFileDescriptor> listFiles(@NotNull String path) throws IOException {
-    return myTransfer.getAdapter().listFiles(myTransfer.getContainerName(), FileUtil.toSystemIndependentName(path));
+    return myTransfer.listFiles(FileUtil.toSystemIndependentName(path));
   }
 
   @Override
   public @Nullable VirtualFile refreshAndFindFileByPath(@NotNull String path) {
-    return findFileByPath(path);
+    String normalizedPath = FileUtil.toSystemIndependentName(path);
+    String parentPath = new File(normalizedPath).getParent();
+    myTransfer.invalidateListings(parentPath == null ? normalizedPath : FileUtil.toSystemIndependentName(parentPath));
+    myFiles.remove(normalizedPath);
+    return findFileByPath(normalizedPath);
+  }
+
+  /**
+   * Drops all cached listings of the container, so files are re-listed on the next access
+   */
+  @Override
+  public void refresh(boolean asynchronous) {
+    myTransfer.invalidateListings(null);
+    myFiles.clear();
   }
 
   @Override
@@ -17,18 +17,21 @@
 package com.perl5.lang.perl.idea.sdk.host.docker;
 
 import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.AtomicNullableLazyValue;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
+import com.perl5.lang.perl.util.PerlPluginUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
+  private static final Logger LOG = Logger.getInstance(PerlDockerFileTransfer.class);
+  private static final String MANIFESTS_DIR = "docker_manifests";
   private final @NotNull PerlDockerAdapter myAdapter;
+  private final @NotNull PerlDockerIncrementalSync myIncrementalSync;
 
   private volatile boolean isOpened = false;
   private volatile Throwable closedThrowable;
@@ -49,6 +52,9 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
   public PerlDockerFileTransfer(@NotNull PerlDockerData hostData) {
     super(hostData);
     myAdapter = new PerlDockerAdapter(hostData);
+    myIncrementalSync = new PerlDockerIncrementalSync(
+      command -> myAdapter.createExecProcess(getContainerNameOrThrow(), command),
+      new File(PerlPluginUtil.getPerlSystemPath(), MANIFESTS_DIR));
   }
 
   @NotNull
@@ -59,6 +65,14 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
   @Override
   protected void doSyncPath(@NotNull String remotePath, String localPath) throws IOException {
     assertNotClosed();
+    try {
+      if (myIncrementalSync.sync(remotePath, localPath)) {
+        return;
+      }
+    }
+    catch (IOException e) {
+      LOG.warn("Incremental sync of " + remotePath + " failed, copying whole path", e);
+    }
     try {
       myAdapter.copyRemote(getContainerName(), remotePath, localPath);
     }
@@ -87,6 +101,15 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
     throw new IOException("Container could not be created for " + myHostData + ".", myCreationError);
   }
 
+  private @NotNull String getContainerNameOrThrow() throws ExecutionException {
+    try {
+      return getContainerName();
+    }
+    catch (IOException e) {
+      throw new ExecutionException(e);
+    }
+  }
+
   @Override
   public synchronized void close() throws IOException {
     if (!isOpened) {
@@ -107,9 +130,13 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
   }
 
   @Override
-  public @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) throws IOException {
-    VirtualFile root = new PerlDockerFileSystem(this).refreshAndFindFileByPath(remotePath);
-    return root == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(root.getChildren()));
+  protected @NotNull List<String> doListFiles(@NotNull String remoteDir, boolean recursive) throws IOException {
+    assertNotClosed();
+    try {
+      return myAdapter.listFiles(getContainerName(), remoteDir, recursive);
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e);
+    }
   }
 }
-
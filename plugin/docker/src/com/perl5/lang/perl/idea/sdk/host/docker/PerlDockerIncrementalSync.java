@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host.docker;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.StreamUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.ProcessIOExecutorService;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Synchronizes remote directory with the local copy, transferring only changed files.
+ * <p>
+ * Manifest of the remote directory (size, modification time and hash of each file) is computed by a perl helper in the container and
+ * compared with the manifest saved after the previous sync. Helper re-hashes only files with changed size or modification time.
+ * Changed files are transferred as a single tar stream, files missing in the remote directory are deleted locally. Symlinks to
+ * directories are followed. Manifest records and lists of paths are separated with NUL, because paths may contain tabs and line breaks.
+ */
+class PerlDockerIncrementalSync {
+  private static final Logger LOG = Logger.getInstance(PerlDockerIncrementalSync.class);
+  private static final String MANIFEST_SCRIPT = "/perl/docker_sync_manifest.pl";
+  private static final String MANIFEST_EXTENSION = ".manifest";
+  private static final int EXIT_CODE_MISSING = 2;
+  private static final int EXIT_CODE_NOT_DIRECTORY = 3;
+  private static final char RECORD_SEPARATOR = '\0';
+
+  private final @NotNull ContainerExecutor myExecutor;
+  private final @NotNull File myManifestsDir;
+
+  /**
+   * @param executor      runs commands in the container
+   * @param manifestsDir  directory to keep manifests of synchronized directories in
+   */
+  PerlDockerIncrementalSync(@NotNull ContainerExecutor executor, @NotNull File manifestsDir) {
+    myExecutor = executor;
+    myManifestsDir = manifestsDir;
+  }
+
+  /**
+   * Synchronizes {@code localPath} with {@code remotePath}
+   *
+   * @return false if {@code remotePath} can't be synchronized incrementally, because it is not a directory
+   */
+  boolean sync(@NotNull String remotePath, @NotNull String localPath) throws IOException {
+    File localDir = new File(localPath);
+    File manifestFile = getManifestFile(localPath);
+    Map<String, Entry> previousManifest = localDir.isDirectory() ? readManifest(manifestFile) : Collections.emptyMap();
+
+    Map<String, Entry> remoteManifest = computeRemoteManifest(remotePath, previousManifest.values());
+    if (remoteManifest == null) {
+      return false;
+    }
+
+    List<String> changedFiles = new ArrayList<>();
+    for (Entry remoteEntry : remoteManifest.values()) {
+      Entry previousEntry = previousManifest.get(remoteEntry.myPath);
+      File localFile = new File(localDir, remoteEntry.myPath);
+      if (previousEntry == null || !previousEntry.myHash.equals(remoteEntry.myHash) ||
+          !localFile.isFile() || localFile.length() != remoteEntry.mySize) {
+        changedFiles.add(remoteEntry.myPath);
+      }
+    }
+    List<File> removedFiles = new ArrayList<>();
+    if (localDir.isDirectory()) {
+      FileUtil.visitFiles(localDir, file -> {
+        String relativePath = FileUtil.getRelativePath(localDir, file);
+        if (file.isFile() && relativePath != null && !remoteManifest.containsKey(FileUtil.toSystemIndependentName(relativePath))) {
+          removedFiles.add(file);
+        }
+        return true;
+      });
+    }
+    LOG.info("Syncing " + remotePath + ": " + remoteManifest.size() + " files, " +
+             changedFiles.size() + " changed, " + removedFiles.size() + " removed");
+
+    FileUtil.delete(manifestFile);
+    removedFiles.forEach(FileUtil::delete);
+    FileUtil.createDirectory(localDir);
+    if (!changedFiles.isEmpty()) {
+      transferFiles(remotePath, localDir, changedFiles);
+    }
+    writeManifest(manifestFile, remoteManifest.values());
+    return true;
+  }
+
+  /**
+   * @return manifest of the {@code remotePath} or null if path is not a directory
+   * @throws IOException if path is missing, e.g. the container is misconfigured; local copy should be kept in this case
+   */
+  private @Nullable Map<String, Entry> computeRemoteManifest(@NotNull String remotePath,
+                                                             @NotNull Collection<Entry> previousEntries) throws IOException {
+    StringBuilder input = new StringBuilder(loadManifestScript()).append("\n__END__\n");
+    previousEntries.forEach(it -> input.append(it).append(RECORD_SEPARATOR));
+
+    Map<String, Entry> result = new LinkedHashMap<>();
+    int exitCode = runInContainer(input.toString().getBytes(StandardCharsets.UTF_8), stdout -> {
+      List<String> records = readRecords(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+      for (String record : records) {
+        Entry entry = Entry.parse(record);
+        if (entry != null) {
+          result.put(entry.myPath, entry);
+        }
+        else {
+          LOG.warn("Malformed manifest record: " + record);
+        }
+      }
+    }, "perl", "-", remotePath);
+    if (exitCode == EXIT_CODE_MISSING) {
+      throw new IOException("Missing remote directory: " + remotePath);
+    }
+    if (exitCode == EXIT_CODE_NOT_DIRECTORY) {
+      return null;
+    }
+    if (exitCode != 0) {
+      throw new IOException("Error computing manifest of " + remotePath + ", exit code: " + exitCode);
+    }
+    return result;
+  }
+
+  /**
+   * Transfers {@code relativePaths} from the {@code remotePath} to the {@code localDir} with a single tar stream
+   */
+  private void transferFiles(@NotNull String remotePath, @NotNull File localDir, @NotNull List<String> relativePaths)
+    throws IOException {
+    StringBuilder input = new StringBuilder();
+    relativePaths.forEach(it -> input.append(it).append(RECORD_SEPARATOR));
+    int exitCode = runInContainer(input.toString().getBytes(StandardCharsets.UTF_8), stdout -> {
+      TarArchiveInputStream tarStream = new TarArchiveInputStream(stdout, StandardCharsets.UTF_8.name());
+      TarArchiveEntry entry;
+      while ((entry = tarStream.getNextTarEntry()) != null) {
+        if (!entry.isFile()) {
+          continue;
+        }
+        File targetFile = new File(localDir, entry.getName());
+        if (!FileUtil.isAncestor(localDir, targetFile, true)) {
+          throw new IOException("Unexpected archive entry: " + entry.getName());
+        }
+        FileUtil.createParentDirs(targetFile);
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(targetFile))) {
+          FileUtil.copy(tarStream, outputStream);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        targetFile.setLastModified(entry.getModTime().getTime());
+        if ((entry.getMode() & 0100) != 0) {
+          //noinspection ResultOfMethodCallIgnored
+          targetFile.setExecutable(true);
+        }
+      }
+      // draining the trailing blocks
+      FileUtil.loadBytes(stdout);
+    }, "tar", "-C", remotePath, "-chf", "-", "--null", "-T", "-");
+    if (exitCode != 0) {
+      throw new IOException("Error transferring files from " + remotePath + ", exit code: " + exitCode);
+    }
+  }
+
+  /**
+   * Runs {@code command} in the container, passing {@code input} to its stdin and handling its stdout with {@code outputHandler}
+   *
+   * @return exit code of the command
+   */
+  private int runInContainer(byte @NotNull [] input, @NotNull OutputHandler outputHandler, @NotNull String... command)
+    throws IOException {
+    Process process;
+    try {
+      process = myExecutor.exec(command);
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e);
+    }
+    CompletableFuture<Void> inputFuture = CompletableFuture.runAsync(() -> {
+      try (OutputStream stdin = process.getOutputStream()) {
+        stdin.write(input);
+      }
+      catch (IOException e) {
+        LOG.debug(e);
+      }
+    }, ProcessIOExecutorService.INSTANCE);
+    CompletableFuture<String> errorFuture = CompletableFuture.supplyAsync(() -> {
+      try {
+        return StreamUtil.readText(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8));
+      }
+      catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }, ProcessIOExecutorService.INSTANCE);
+    try (InputStream stdout = new BufferedInputStream(process.getInputStream())) {
+      outputHandler.handle(stdout);
+    }
+    catch (IOException e) {
+      process.destroy();
+      throw e;
+    }
+    try {
+      int exitCode = process.waitFor();
+      inputFuture.join();
+      String errors = errorFuture.join();
+      if (!errors.isEmpty()) {
+        LOG.info("Error output of " + StringUtil.join(command, " ") + ": " + errors);
+      }
+      return exitCode;
+    }
+    catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    catch (CompletionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private @NotNull File getManifestFile(@NotNull String localPath) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(FileUtil.toSystemIndependentName(localPath).getBytes(StandardCharsets.UTF_8));
+      return new File(myManifestsDir, StringUtil.toHexString(hash) + MANIFEST_EXTENSION);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static @NotNull Map<String, Entry> readManifest(@NotNull File manifestFile) {
+    if (!manifestFile.isFile()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Entry> result = new HashMap<>();
+    try (Reader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+      for (String record : readRecords(reader)) {
+        Entry entry = Entry.parse(record);
+        if (entry != null) {
+          result.put(entry.myPath, entry);
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.warn("Error reading manifest " + manifestFile, e);
+      return Collections.emptyMap();
+    }
+    return result;
+  }
+
+  private static void writeManifest(@NotNull File manifestFile, @NotNull Collection<Entry> entries) throws IOException {
+    FileUtil.createParentDirs(manifestFile);
+    try (Writer writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+      for (Entry entry : entries) {
+        writer.append(entry.toString()).append(RECORD_SEPARATOR);
+      }
+    }
+  }
+
+  /**
+   * @return records from the {@code reader}, terminated with {@link #RECORD_SEPARATOR}. Unterminated trailing record is dropped
+   */
+  private static @NotNull List<String> readRecords(@NotNull Reader reader) throws IOException {
+    List<String> result = new ArrayList<>();
+    StringBuilder record = new StringBuilder();
+    char[] buffer = new char[8192];
+    int read;
+    while ((read = reader.read(buffer)) >= 0) {
+      for (int i = 0; i < read; i++) {
+        if (buffer[i] == RECORD_SEPARATOR) {
+          result.add(record.toString());
+          record.setLength(0);
+        }
+        else {
+          record.append(buffer[i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static @NotNull String loadManifestScript() throws IOException {
+    try (InputStream scriptStream = PerlDockerIncrementalSync.class.getResourceAsStream(MANIFEST_SCRIPT)) {
+      if (scriptStream == null) {
+        throw new IOException("Missing manifest script: " + MANIFEST_SCRIPT);
+      }
+      return StreamUtil.readText(new InputStreamReader(scriptStream, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Runs commands in the container, e.g. with {@code docker exec}
+   */
+  interface ContainerExecutor {
+    /**
+     * @return process of the {@code command} with stdin attached
+     */
+    @NotNull Process exec(@NotNull String... command) throws ExecutionException;
+  }
+
+  private interface OutputHandler {
+    void handle(@NotNull InputStream stdout) throws IOException;
+  }
+
+  private static final class Entry {
+    private final long mySize;
+    private final long myModificationTime;
+    private final @NotNull String myHash;
+    private final @NotNull String myPath;
+
+    private Entry(long size, long modificationTime, @NotNull String hash, @NotNull String path) {
+      mySize = size;
+      myModificationTime = modificationTime;
+      myHash = hash;
+      myPath = path;
+    }
+
+    @Override
+    public String toString() {
+      return mySize + "\t" + myModificationTime + "\t" + myHash + "\t" + myPath;
+    }
+
+    /**
+     * @param record manifest record; path is the last field and may contain tabs
+     */
+    static @Nullable Entry parse(@NotNull String record) {
+      int sizeEnd = record.indexOf('\t');
+      int timeEnd = sizeEnd < 0 ? -1 : record.indexOf('\t', sizeEnd + 1);
+      int hashEnd = timeEnd < 0 ? -1 : record.indexOf('\t', timeEnd + 1);
+      if (hashEnd < 0 || hashEnd == record.length() - 1) {
+        return null;
+      }
+      try {
+        return new Entry(Long.parseLong(record.substring(0, sizeEnd)), Long.parseLong(record.substring(sizeEnd + 1, timeEnd)),
+                         record.substring(timeEnd + 1, hashEnd), record.substring(hashEnd + 1));
+      }
+      catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host.docker;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs incremental sync with a local stand-in for the {@code docker exec}: commands are executed on the local machine, so local
+ * {@code perl} and {@code tar} are required. Tests are skipped if they are missing.
+ */
+public class PerlDockerIncrementalSyncTest {
+  private final List<String> myCommands = new ArrayList<>();
+  private File myRemoteDir;
+  private File myLocalDir;
+  private PerlDockerIncrementalSync mySync;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue("perl and tar are required",
+                      PathEnvironmentVariableUtil.findInPath("perl") != null && PathEnvironmentVariableUtil.findInPath("tar") != null);
+    File root = FileUtil.createTempDirectory("perl_docker_sync", null);
+    myRemoteDir = new File(root, "remote");
+    myLocalDir = new File(root, "local");
+    FileUtil.createDirectory(myRemoteDir);
+    mySync = new PerlDockerIncrementalSync(command -> {
+      myCommands.add(command[0]);
+      try {
+        return new ProcessBuilder(Arrays.asList(command)).start();
+      }
+      catch (IOException e) {
+        throw new ExecutionException(e);
+      }
+    }, new File(root, "manifests"));
+  }
+
+  @After
+  public void tearDown() {
+    if (myRemoteDir != null) {
+      FileUtil.delete(myRemoteDir.getParentFile());
+    }
+  }
+
+  @Test
+  public void testSync() throws IOException {
+    writeRemote("lib/Foo.pm", "package Foo;");
+    writeRemote("lib/Foo/Bar.pm", "package Foo::Bar;");
+    writeRemote("Baz.pm", "package Baz;");
+    doSync();
+    assertEquals(Arrays.asList("perl", "tar"), myCommands);
+    assertLocalFiles("Baz.pm", "lib/Foo.pm", "lib/Foo/Bar.pm");
+    assertLocalMatchesRemote();
+
+    myCommands.clear();
+    doSync();
+    assertEquals(Arrays.asList("perl"), myCommands);
+    assertLocalFiles("Baz.pm", "lib/Foo.pm", "lib/Foo/Bar.pm");
+    assertLocalMatchesRemote();
+
+    myCommands.clear();
+    writeRemote("lib/Foo.pm", "package Foo; 1;");
+    FileUtil.delete(new File(myRemoteDir, "Baz.pm"));
+    writeRemote("lib/New.pm", "package New;");
+    doSync();
+    assertEquals(Arrays.asList("perl", "tar"), myCommands);
+    assertLocalFiles("lib/Foo.pm", "lib/Foo/Bar.pm", "lib/New.pm");
+    assertEquals("package Foo; 1;", FileUtil.loadFile(new File(myLocalDir, "lib/Foo.pm")));
+    assertLocalMatchesRemote();
+  }
+
+  @Test
+  public void testSpecialFileNames() throws IOException {
+    Assume.assumeFalse("Tabs and line breaks are not allowed in Windows file names", SystemInfo.isWindows);
+    writeRemote("lib/Tab\tName.pm", "package Tab;");
+    writeRemote("lib/New\nLine.pm", "package NewLine;");
+    doSync();
+    assertLocalFiles("lib/New\nLine.pm", "lib/Tab\tName.pm");
+    assertLocalMatchesRemote();
+
+    myCommands.clear();
+    doSync();
+    assertEquals(Arrays.asList("perl"), myCommands);
+    assertLocalFiles("lib/New\nLine.pm", "lib/Tab\tName.pm");
+  }
+
+  @Test
+  public void testSymlinkedDirectory() throws IOException {
+    Assume.assumeFalse("Symlinks may be unavailable on Windows", SystemInfo.isWindows);
+    File targetDir = new File(myRemoteDir.getParentFile(), "target");
+    FileUtil.writeToFile(new File(targetDir, "Sub/Deep.pm"), "package Deep;");
+    Files.createSymbolicLink(new File(myRemoteDir, "linked").toPath(), targetDir.toPath());
+    Files.createSymbolicLink(new File(targetDir, "Sub/loop").toPath(), Paths.get("."));
+    writeRemote("Foo.pm", "package Foo;");
+    doSync();
+    assertLocalFiles("Foo.pm", "linked/Sub/Deep.pm");
+    assertFalse(Files.isSymbolicLink(new File(myLocalDir, "linked").toPath()));
+    assertEquals("package Deep;", FileUtil.loadFile(new File(myLocalDir, "linked/Sub/Deep.pm")));
+  }
+
+  @Test
+  public void testRestoresLocalChanges() throws IOException {
+    writeRemote("Foo.pm", "package Foo;");
+    doSync();
+    FileUtil.delete(new File(myLocalDir, "Foo.pm"));
+    FileUtil.writeToFile(new File(myLocalDir, "Stale.pm"), "package Stale;");
+    doSync();
+    assertLocalFiles("Foo.pm");
+    assertLocalMatchesRemote();
+  }
+
+  @Test
+  public void testMissingRemote() throws IOException {
+    writeRemote("Foo.pm", "package Foo;");
+    doSync();
+    FileUtil.delete(myRemoteDir);
+    try {
+      doSync();
+      fail("Missing remote directory should not be synchronized");
+    }
+    catch (IOException ignored) {
+    }
+    assertTrue(new File(myLocalDir, "Foo.pm").isFile());
+  }
+
+  @Test
+  public void testRemoteFile() throws IOException {
+    writeRemote("Foo.pm", "package Foo;");
+    assertFalse(mySync.sync(new File(myRemoteDir, "Foo.pm").getPath(), new File(myLocalDir, "Foo.pm").getPath()));
+  }
+
+  private void doSync() throws IOException {
+    assertTrue(mySync.sync(myRemoteDir.getPath(), myLocalDir.getPath()));
+  }
+
+  private void writeRemote(String relativePath, String content) throws IOException {
+    FileUtil.writeToFile(new File(myRemoteDir, relativePath), content);
+  }
+
+  private void assertLocalFiles(String... expectedPaths) {
+    assertEquals(Arrays.asList(expectedPaths), collectFiles(myLocalDir));
+  }
+
+  private void assertLocalMatchesRemote() throws IOException {
+    List<String> remoteFiles = collectFiles(myRemoteDir);
+    assertEquals(remoteFiles, collectFiles(myLocalDir));
+    for (String relativePath : remoteFiles) {
+      assertEquals(relativePath,
+                   FileUtil.loadFile(new File(myRemoteDir, relativePath)),
+                   FileUtil.loadFile(new File(myLocalDir, relativePath)));
+    }
+  }
+
+  private static List<String> collectFiles(File root) {
+    List<String> result = new ArrayList<>();
+    FileUtil.visitFiles(root, file -> {
+      if (file.isFile()) {
+        result.add(FileUtil.toSystemIndependentName(FileUtil.getRelativePath(root, file)));
+      }
+      return true;
+    });
+    result.sort(String::compareTo);
+    return result;
+  }
+}
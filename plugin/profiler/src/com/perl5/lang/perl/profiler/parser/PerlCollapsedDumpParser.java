@@ -17,49 +17,169 @@
 package com.perl5.lang.perl.profiler.parser;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Pair;
 import com.intellij.profiler.DummyCallTreeBuilder;
 import com.intellij.profiler.LineByLineParser;
 import com.intellij.profiler.api.BaseCallStackElement;
-import com.intellij.profiler.model.NoThreadInfoInProfilerData;
-import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.profiler.parser.frames.PerlCallStackElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleSupplier;
 
 public class PerlCollapsedDumpParser extends LineByLineParser {
   private static final Logger LOG = Logger.getInstance(PerlCollapsedDumpParser.class);
+  /**
+   * Number of stacks collected by {@link #consumeLine(String)} before adding them to the tree
+   */
+  private static final int STACKS_TO_FLUSH = 64 * 1024;
+  /**
+   * Size of the chunks of text parsed in parallel
+   */
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  /**
+   * Maximum number of chunks being parsed at once, bounds memory used for buffers
+   */
+  private static final int MAX_CHUNKS_IN_FLIGHT = 4;
   private final DummyCallTreeBuilder<BaseCallStackElement> myCallTreeBuilder = new DummyCallTreeBuilder<>();
-  private final Map<String, PerlCallStackElement> myCachedFrames = new ConcurrentHashMap<>();
+  private final Map<String, PerlCallStackElement> myCachedFrames = new HashMap<>();
+  private final PerlCollapsedStacks myStacks = new PerlCollapsedStacks();
 
+  /**
+   * @return call tree with all stacks parsed
+   */
   public @NotNull DummyCallTreeBuilder<BaseCallStackElement> getCallTreeBuilder() {
+    flushStacks(myStacks);
     return myCallTreeBuilder;
   }
 
   @Override
   public void consumeLine(@NotNull String line) {
-    var timeDelimiterIndex = line.lastIndexOf(" ");
-    var framesString = timeDelimiterIndex < 0 ? line : line.substring(0, timeDelimiterIndex);
-    var countString = timeDelimiterIndex < 0 ? null : line.substring(timeDelimiterIndex + 1);
-    Long count;
+    if (!myStacks.parseLine(line, 0, line.length())) {
+      setBadLines(getBadLines() + 1);
+      return;
+    }
+    if (myStacks.getStacksNumber() >= STACKS_TO_FLUSH) {
+      flushStacks(myStacks);
+    }
+  }
+
+  /**
+   * @see #readInParallel(Reader, ProgressIndicator, DoubleSupplier)
+   */
+  public void readInParallel(@NotNull Reader reader, @NotNull ProgressIndicator indicator) throws IOException {
+    readInParallel(reader, indicator, null);
+  }
+
+  /**
+   * Reads dump from {@code reader} by chunks of lines and parses chunks in parallel on the common fork-join pool. Chunks are parsed right
+   * in the buffers they were read to, at most {@link #MAX_CHUNKS_IN_FLIGHT} chunks are parsed at once and buffers of merged chunks are
+   * reused for reading. Parsed chunks are merged into the call tree in the order of reading.
+   *
+   * @param fractionSupplier supplies fraction of the dump read so far, reported to the {@code indicator} if not null
+   */
+  public void readInParallel(@NotNull Reader reader,
+                             @NotNull ProgressIndicator indicator,
+                             @Nullable DoubleSupplier fractionSupplier) throws IOException {
+    if (fractionSupplier != null) {
+      indicator.setIndeterminate(false);
+    }
+    int maxChunksInFlight = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), MAX_CHUNKS_IN_FLIGHT));
+    Deque<Pair<char[], ForkJoinTask<PerlCollapsedStacks>>> chunks = new ArrayDeque<>();
+    Deque<char[]> freeBuffers = new ArrayDeque<>();
     try {
-      count = countString == null ? null : Long.parseLong(countString);
+      char[] buffer = new char[CHUNK_SIZE];
+      int bufferSize = 0;
+      while (true) {
+        indicator.checkCanceled();
+        int read = reader.read(buffer, bufferSize, buffer.length - bufferSize);
+        if (read < 0) {
+          break;
+        }
+        bufferSize += read;
+        if (bufferSize < buffer.length) {
+          continue;
+        }
+
+        int chunkEnd = bufferSize;
+        while (chunkEnd > 0 && buffer[chunkEnd - 1] != '\n') {
+          chunkEnd--;
+        }
+        if (chunkEnd == 0) {
+          // line longer than the buffer
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          continue;
+        }
+
+        chunks.addLast(Pair.create(buffer, submitChunk(buffer, chunkEnd)));
+        while (chunks.size() > maxChunksInFlight) {
+          freeBuffers.addLast(mergeChunk(chunks.removeFirst(), indicator, fractionSupplier));
+        }
+
+        int tailSize = bufferSize - chunkEnd;
+        char[] nextBuffer = freeBuffers.pollFirst();
+        if (nextBuffer == null || nextBuffer.length <= tailSize) {
+          nextBuffer = new char[Math.max(CHUNK_SIZE, tailSize * 2)];
+        }
+        System.arraycopy(buffer, chunkEnd, nextBuffer, 0, tailSize);
+        buffer = nextBuffer;
+        bufferSize = tailSize;
+      }
+      if (bufferSize > 0) {
+        chunks.addLast(Pair.create(buffer, submitChunk(buffer, bufferSize)));
+      }
+      while (!chunks.isEmpty()) {
+        indicator.checkCanceled();
+        mergeChunk(chunks.removeFirst(), indicator, fractionSupplier);
+      }
     }
-    catch (NumberFormatException e) {
-      count = null;
+    catch (ProcessCanceledException | IOException e) {
+      chunks.forEach(it -> it.second.cancel(false));
+      throw e;
     }
+  }
 
-    //pretty common situation, just ignore
-    if (count == null || framesString.isEmpty()) {
-      setBadLines(getBadLines() + 1);
-      return;
+  private static @NotNull ForkJoinTask<PerlCollapsedStacks> submitChunk(char @NotNull [] buffer, int size) {
+    return ForkJoinPool.commonPool().submit(() -> {
+      PerlCollapsedStacks stacks = new PerlCollapsedStacks();
+      stacks.parseLines(CharBuffer.wrap(buffer), 0, size);
+      return stacks;
+    });
+  }
+
+  /**
+   * Waits for the {@code chunk} to be parsed, merges it into the call tree and updates progress
+   *
+   * @return buffer of the chunk, which may be reused
+   */
+  private char @NotNull [] mergeChunk(@NotNull Pair<char[], ForkJoinTask<PerlCollapsedStacks>> chunk,
+                                      @NotNull ProgressIndicator indicator,
+                                      @Nullable DoubleSupplier fractionSupplier) {
+    flushStacks(chunk.second.join());
+    if (fractionSupplier != null) {
+      indicator.setFraction(fractionSupplier.getAsDouble());
+    }
+    return chunk.first;
+  }
+
+  private void flushStacks(@NotNull PerlCollapsedStacks stacks) {
+    int badLines = stacks.getBadLines();
+    if (badLines > 0) {
+      LOG.debug("Bad lines in dump: " + badLines);
     }
-    var frames = StringUtil.split(framesString, ";");
-    myCallTreeBuilder.addStack(
-      NoThreadInfoInProfilerData.INSTANCE,
-      ContainerUtil.map(frames, it -> myCachedFrames.computeIfAbsent(it, PerlCallStackElement::create)),
-      count);
+    setBadLines(getBadLines() + badLines);
+    stacks.flushTo(myCallTreeBuilder, myCachedFrames);
   }
 }
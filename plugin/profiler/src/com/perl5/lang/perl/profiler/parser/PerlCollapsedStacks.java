@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.perl5.lang.perl.profiler.parser;
+
+import com.intellij.profiler.DummyCallTreeBuilder;
+import com.intellij.profiler.api.BaseCallStackElement;
+import com.intellij.profiler.model.NoThreadInfoInProfilerData;
+import com.perl5.lang.perl.profiler.parser.frames.PerlCallStackElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Stacks parsed from collapsed dump lines: {@code frame1;frame2;...;frameN value}. Frames are stored as ids in the
+ * {@link PerlFramesTable} and stacks are kept flattened in a single int array, so parsing does not allocate anything per line.
+ * Not thread-safe, but instances may be filled independently and merged into the call tree builder after that.
+ */
+final class PerlCollapsedStacks {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final @NotNull PerlFramesTable myFramesTable = new PerlFramesTable();
+  /**
+   * Ids of frames of all stacks, one after another
+   */
+  private int[] myFrameIds = new int[INITIAL_CAPACITY * 8];
+  private int myFrameIdsSize;
+  /**
+   * End offsets of stacks in {@link #myFrameIds}
+   */
+  private int[] myStackEnds = new int[INITIAL_CAPACITY];
+  private long[] myValues = new long[INITIAL_CAPACITY];
+  private int myStacksSize;
+  private int myBadLines;
+  /**
+   * Elements for frames of {@link #myFramesTable} created during previous flushes
+   */
+  private BaseCallStackElement[] myElements = new BaseCallStackElement[0];
+
+  /**
+   * Parses all lines from {@code start} inclusive to {@code end} exclusive in {@code text}. Empty lines are skipped.
+   */
+  void parseLines(@NotNull CharSequence text, int start, int end) {
+    int lineStart = start;
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == '\n') {
+        parseLineWithSeparator(text, lineStart, i);
+        lineStart = i + 1;
+      }
+    }
+    parseLineWithSeparator(text, lineStart, end);
+  }
+
+  private void parseLineWithSeparator(@NotNull CharSequence text, int start, int end) {
+    if (end > start && text.charAt(end - 1) == '\r') {
+      end--;
+    }
+    if (end > start && !parseLine(text, start, end)) {
+      myBadLines++;
+    }
+  }
+
+  /**
+   * Parses a single line from {@code start} inclusive to {@code end} exclusive in {@code text}
+   *
+   * @return false if line is malformed
+   */
+  boolean parseLine(@NotNull CharSequence text, int start, int end) {
+    int timeDelimiterIndex = end - 1;
+    while (timeDelimiterIndex >= start && text.charAt(timeDelimiterIndex) != ' ') {
+      timeDelimiterIndex--;
+    }
+
+    //pretty common situation, just ignore
+    if (timeDelimiterIndex <= start) {
+      return false;
+    }
+    long value = parseLong(text, timeDelimiterIndex + 1, end);
+    if (value < 0) {
+      return false;
+    }
+
+    int frameStart = start;
+    for (int i = start; i <= timeDelimiterIndex; i++) {
+      if (i == timeDelimiterIndex || text.charAt(i) == ';') {
+        if (i > frameStart) {
+          addFrameId(myFramesTable.getFrameId(text, frameStart, i));
+        }
+        frameStart = i + 1;
+      }
+    }
+    addStack(value);
+    return true;
+  }
+
+  /**
+   * @return number of lines which could not be parsed by {@link #parseLines(CharSequence, int, int)}
+   */
+  int getBadLines() {
+    return myBadLines;
+  }
+
+  /**
+   * @return number of stacks parsed and not flushed yet
+   */
+  int getStacksNumber() {
+    return myStacksSize;
+  }
+
+  /**
+   * Adds all stacks to the {@code builder} and drops them from this instance. Frames table is kept, so this instance may be used to
+   * parse more lines.
+   *
+   * @param elementsCache cache of stack elements by frame text, shared between instances merged into the same builder
+   */
+  void flushTo(@NotNull DummyCallTreeBuilder<BaseCallStackElement> builder,
+               @NotNull Map<String, PerlCallStackElement> elementsCache) {
+    int framesNumber = myFramesTable.size();
+    if (myElements.length < framesNumber) {
+      int oldLength = myElements.length;
+      myElements = Arrays.copyOf(myElements, framesNumber);
+      for (int frameId = oldLength; frameId < framesNumber; frameId++) {
+        myElements[frameId] = elementsCache.computeIfAbsent(myFramesTable.getFrameText(frameId), PerlCallStackElement::create);
+      }
+    }
+
+    int stackStart = 0;
+    for (int stackIndex = 0; stackIndex < myStacksSize; stackIndex++) {
+      int stackEnd = myStackEnds[stackIndex];
+      BaseCallStackElement[] frames = new BaseCallStackElement[stackEnd - stackStart];
+      for (int i = stackStart; i < stackEnd; i++) {
+        frames[i - stackStart] = myElements[myFrameIds[i]];
+      }
+      builder.addStack(NoThreadInfoInProfilerData.INSTANCE, Arrays.asList(frames), myValues[stackIndex]);
+      stackStart = stackEnd;
+    }
+    myStacksSize = 0;
+    myFrameIdsSize = 0;
+  }
+
+  private void addFrameId(int frameId) {
+    if (myFrameIdsSize == myFrameIds.length) {
+      myFrameIds = Arrays.copyOf(myFrameIds, myFrameIds.length * 2);
+    }
+    myFrameIds[myFrameIdsSize++] = frameId;
+  }
+
+  private void addStack(long value) {
+    if (myStacksSize == myStackEnds.length) {
+      myStackEnds = Arrays.copyOf(myStackEnds, myStackEnds.length * 2);
+      myValues = Arrays.copyOf(myValues, myValues.length * 2);
+    }
+    myStackEnds[myStacksSize] = myFrameIdsSize;
+    myValues[myStacksSize] = value;
+    myStacksSize++;
+  }
+
+  /**
+   * @return non-negative number from {@code start} inclusive to {@code end} exclusive in {@code text} or -1 if it is malformed
+   */
+  private static long parseLong(@NotNull CharSequence text, int start, int end) {
+    if (start < end && text.charAt(start) == '+') {
+      start++;
+    }
+    if (start == end) {
+      return -1;
+    }
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result > (Long.MAX_VALUE - digit) / 10) {
+        return -1;
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+}
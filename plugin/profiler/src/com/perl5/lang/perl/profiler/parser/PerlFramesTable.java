@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.perl5.lang.perl.profiler.parser;
+
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Table of frames texts with integer ids. Lookup is done by a range of characters, so text of a frame is copied only when it is seen
+ * for the first time. Not thread-safe.
+ */
+final class PerlFramesTable {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private String[] myFrames = ArrayUtil.EMPTY_STRING_ARRAY;
+  private int[] myHashes = ArrayUtil.EMPTY_INT_ARRAY;
+  private int mySize;
+  /**
+   * Open addressing hash table of frame ids plus one, zero means empty slot
+   */
+  private int[] mySlots = new int[INITIAL_CAPACITY];
+
+  /**
+   * @return id of the frame with text from {@code start} inclusive to {@code end} exclusive in {@code text}
+   */
+  int getFrameId(@NotNull CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    int mask = mySlots.length - 1;
+    int slot = mix(hash) & mask;
+    while (true) {
+      int slotValue = mySlots[slot];
+      if (slotValue == 0) {
+        break;
+      }
+      int frameId = slotValue - 1;
+      if (myHashes[frameId] == hash && contentEquals(myFrames[frameId], text, start, end)) {
+        return frameId;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (mySize == myFrames.length) {
+      int newCapacity = Math.max(INITIAL_CAPACITY, mySize * 2);
+      myFrames = Arrays.copyOf(myFrames, newCapacity);
+      myHashes = ArrayUtil.realloc(myHashes, newCapacity);
+    }
+    int frameId = mySize++;
+    myFrames[frameId] = text.subSequence(start, end).toString();
+    myHashes[frameId] = hash;
+    mySlots[slot] = frameId + 1;
+    if (mySize * 2 > mySlots.length) {
+      rehash();
+    }
+    return frameId;
+  }
+
+  /**
+   * @return number of frames in the table
+   */
+  int size() {
+    return mySize;
+  }
+
+  @NotNull String getFrameText(int frameId) {
+    return myFrames[frameId];
+  }
+
+  private void rehash() {
+    int[] newSlots = new int[mySlots.length * 2];
+    int mask = newSlots.length - 1;
+    for (int frameId = 0; frameId < mySize; frameId++) {
+      int slot = mix(myHashes[frameId]) & mask;
+      while (newSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newSlots[slot] = frameId + 1;
+    }
+    mySlots = newSlots;
+  }
+
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean contentEquals(@NotNull String frame, @NotNull CharSequence text, int start, int end) {
+    int length = end - start;
+    if (frame.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (frame.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -27,6 +27,8 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -50,9 +52,19 @@ public class PerlProfilerCollapsedDumpFileParser implements ProfilerDumpFilePars
     var dumpParser = new PerlCollapsedDumpParser();
 
     try (var fileInputStream = new FileInputStream(file);
-         var gzipInputStream = new GZIPInputStream(fileInputStream, 1024 * 1024)
+         var gzipInputStream = new GZIPInputStream(fileInputStream, 1024 * 1024);
+         var reader = new InputStreamReader(gzipInputStream, StandardCharsets.UTF_8)
     ) {
-      dumpParser.readFromStream(gzipInputStream, indicator);
+      var channel = fileInputStream.getChannel();
+      long fileLength = Math.max(1, file.length());
+      dumpParser.readInParallel(reader, indicator, () -> {
+        try {
+          return Math.min(1, (double)channel.position() / fileLength);
+        }
+        catch (IOException e) {
+          return 0;
+        }
+      });
     }
     catch (IOException e) {
       LOG.warn("Error reading collapsed dump: " + e.getMessage());
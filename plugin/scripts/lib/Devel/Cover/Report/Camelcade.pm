@@ -9,7 +9,9 @@ sub report {
     my $options = shift;
 
     my $report = $db->cover;
-    my $result = [];
+    my $json = JSON->new()->pretty(0);
+    my $separator = '';
+    print '[';
     for my $file_name ($report->items) {
         next unless ($file_name);
         my $file_result = {
@@ -17,7 +19,6 @@ sub report {
             lines => {}
 
         };
-        push @$result, $file_result;
         my $file_data = $report->file($file_name);
         for my $criterion_name ($file_data->items) {
             my $criterion = $file_data->criterion($criterion_name);
@@ -50,9 +51,10 @@ sub report {
             #                }
             #            }
         }
-
+        print $separator, $json->encode($file_result);
+        $separator = ',';
     }
-    print JSON->new()->pretty(0)->encode($result);
+    print ']';
 }
 
 1;
\ No newline at end of file
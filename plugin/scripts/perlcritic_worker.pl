@@ -0,0 +1,80 @@
+#!/usr/bin/perl
+# Long-living Perl::Critic worker for the IDE. Policies are loaded once on start and each source, received via STDIN, is
+# critiqued with the same Perl::Critic instance.
+#
+# Command line arguments are the subset of perlcritic options, affecting violations set and format, other options are ignored.
+#
+# Protocol:
+#  - on start worker prints: #camelcade-perlcritic-ready <Perl::Critic version>
+#  - request is a line with source length in bytes, followed by the source bytes
+#  - response is a list of violations, formatted as perlcritic does, followed by the line: #camelcade-perlcritic-done
+#  - if critique failed, response has a line: #camelcade-perlcritic-error <message>
+use strict;
+use warnings;
+use Getopt::Long qw(GetOptions :config no_ignore_case pass_through);
+use Perl::Critic;
+use Perl::Critic::Utils qw(verbosity_to_format);
+use Perl::Critic::Violation;
+
+my $PREFIX = '#camelcade-perlcritic-';
+
+my %options;
+GetOptions(\%options,
+  'severity=s',
+  'profile=s',
+  'noprofile',
+  'theme=s',
+  'include=s@',
+  'exclude=s@',
+  'single-policy|s=s',
+  'top:i',
+  'force!',
+  'only!',
+  'profile-strictness=s',
+  'allow-unsafe',
+  'verbose=s',
+  '1|brutal'  => sub {$options{severity} = 1},
+  '2|cruel'   => sub {$options{severity} = 2},
+  '3|harsh'   => sub {$options{severity} = 3},
+  '4|stern'   => sub {$options{severity} = 4},
+  '5|gentle'  => sub {$options{severity} = 5},
+) or die "Unable to parse options\n";
+warn "Ignored options unsupported by the worker: @ARGV\n" if @ARGV;
+
+$options{profile} = '' if delete $options{noprofile};
+$options{top} = 20 if defined $options{top} && !$options{top};
+my $verbose = delete $options{verbose} // 4;
+my $critic = Perl::Critic->new(map {("-$_" => $options{$_})} keys %options);
+Perl::Critic::Violation::set_format(verbosity_to_format($verbose));
+
+binmode STDIN;
+binmode STDOUT;
+$| = 1;
+
+print "${PREFIX}ready $Perl::Critic::VERSION\n";
+
+while (defined(my $header = <STDIN>)) {
+  $header =~ s/\s+\z//;
+  if ($header !~ /\A\d+\z/) {
+    print "${PREFIX}error Malformed request header: $header\n${PREFIX}done\n";
+    next;
+  }
+  my $source = '';
+  while (length($source) < $header) {
+    my $read = read(STDIN, $source, $header - length($source), length($source));
+    die "Unexpected end of input\n" unless $read;
+  }
+
+  my @violations = eval {$critic->critique(\$source)};
+  if (my $error = $@) {
+    $error =~ s/\s+/ /g;
+    print "${PREFIX}error $error\n";
+  }
+  elsif (@violations) {
+    print @violations;
+  }
+  else {
+    print "source OK\n";
+  }
+  print "${PREFIX}done\n";
+}
@@ -0,0 +1,55 @@
+#!/usr/bin/perl
+# Long-living Perl::Tidy worker for the IDE. Perl::Tidy is loaded once on start and each source, received via STDIN, is
+# formatted with command line arguments of the worker.
+#
+# Protocol:
+#  - on start worker prints: #camelcade-perltidy-ready <Perl::Tidy version>
+#  - request is a line with source length in bytes, followed by the source bytes
+#  - response is a line: #camelcade-perltidy-result <formatted length> <errors length>, followed by the formatted source bytes
+#    and errors bytes. Non-empty errors mean that formatting failed.
+use strict;
+use warnings;
+use Perl::Tidy;
+
+my $PREFIX = '#camelcade-perltidy-';
+my @arguments = @ARGV;
+
+binmode STDIN;
+binmode STDOUT;
+$| = 1;
+
+print "${PREFIX}ready $Perl::Tidy::VERSION\n";
+
+while (defined(my $header = <STDIN>)) {
+  $header =~ s/\s+\z//;
+  my $source = '';
+  if ($header =~ /\A\d+\z/) {
+    while (length($source) < $header) {
+      my $read = read(STDIN, $source, $header - length($source), length($source));
+      die "Unexpected end of input\n" unless $read;
+    }
+  }
+  my ($formatted, $errors) = ('', '');
+  if ($header !~ /\A\d+\z/) {
+    $errors = "Malformed request header: $header";
+  }
+  else {
+    my $error_flag = eval {
+      Perl::Tidy::perltidy(
+        source      => \$source,
+        destination => \$formatted,
+        stderr      => \$errors,
+        errorfile   => \$errors,
+        argv        => [ @arguments ],
+      );
+    };
+    if (my $exception = $@) {
+      $errors .= $exception;
+    }
+    elsif ($error_flag && !length $errors) {
+      $errors = "Perl::Tidy reported an error";
+    }
+  }
+  utf8::encode($_) for grep {utf8::is_utf8($_)} $formatted, $errors;
+  print "${PREFIX}result " . length($formatted) . " " . length($errors) . "\n", $formatted, $errors;
+}
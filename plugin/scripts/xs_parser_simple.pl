@@ -1,29 +1,79 @@
 #!/usr/bin/perl
-use File::Find;
-use B::Deparse;
+#
+# Deparses XSubs declarations.
+#
+# Usage: xs_parser_simple.pl [Module::Name ...]
+#
+# Without arguments, all XS modules found in @INC are loaded. Otherwise only listed modules are loaded.
+# Output consists of sections, one per XS module, each section starts with the line:
+#    #@ Module::Name
+# XSubs are attributed to the module loaded by XSLoader or DynaLoader when they appeared. In full mode, XSubs not
+# attributed to any module, e.g. from static extensions, are put into the CORE section.
+# Output ends with the #@END line, output without it is incomplete.
+#
+my $CORE_SECTION = 'CORE';
+my $END_MARKER = '#@END';
+my %owners = ();         # fully qualified sub name => module
+my %stash_states = ();   # namespace => { size => number of entries, children => [ namespaces ], subs => { sub name => 1 } }
+my @loading_stack = ();
+
+require XSLoader;
+require DynaLoader;
+{
+    no warnings 'redefine';
+    my $original_xsloader_load = \&XSLoader::load;
+    my $original_dynaloader_bootstrap = \&DynaLoader::bootstrap;
+
+    *XSLoader::load = sub {
+        my @args = @_ ? @_ : (scalar caller);
+        return track_loading($args[0], $original_xsloader_load, wantarray, @args);
+    };
+    *DynaLoader::bootstrap = sub {
+        return track_loading($_[0], $original_dynaloader_bootstrap, wantarray, @_);
+    };
+}
 
-File::Find::find( \&file_processor, @INC );
+collect_new_subs(undef, 1);
 
-my @packages = ();
-sub file_processor
+require File::Find;
+require B::Deparse;
+
+my %requested_modules = map {$_ => 1} @ARGV;
+my $full_mode = !@ARGV;
+
+if ($full_mode)
 {
-    if ($File::Find::name =~ m{auto/(.+?)/([^/]+)(dll|so)$})
-    {
-        my $name = $1;
-        $name =~ s{/+}{::}g;
-        return if $name =~ /\QType::Tiny::XS\E/; # see https://github.com/tobyink/p5-type-tiny-xs/issues/4
-        #        print STDERR "Processing $name\n";
-        eval "require $name;";
-        if (my $e = $@)
-        {
-            print STDERR "Error loading $name:\n$e\n";
-        }
-    }
+    File::Find::find( \&file_processor, @INC );
+}
+else
+{
+    load_module($_) for @ARGV;
 }
 
 my $deparser = B::Deparse->new();
 my %sub_map = ();
 
+foreach my $globname (sort keys %{get_code_snapshot()})
+{
+    my $module = $owners{$globname} // $CORE_SECTION;
+    next unless $full_mode || $requested_modules{$module};
+    next if $globname =~ /::bootstrap/;
+    next if $globname =~ /[^\w\:_]/;
+
+    my $deparsed = eval {$deparser->coderef2text( \&{$globname} )};
+    if (defined $deparsed && $deparsed =~ /^(?:\(.*?\))?\s*;$/)
+    {
+        my $name = $globname;
+        $name =~ s/^:://;
+        next unless $name =~ /^(.+)::([^:]+)$/;
+        my ($package, $sub) = ($1, $2);
+        push @{$sub_map{$module}{$package}}, $sub.$deparsed;
+    }
+}
+
+# requested modules without XSubs get empty sections
+$sub_map{$_} //= {} for keys %requested_modules;
+
 print <<'EOM';
 #
 #
@@ -32,41 +82,134 @@ print <<'EOM';
 #
 EOM
 
+foreach my $module (sort keys %sub_map)
+{
+    print "#@ $module\n";
+    my $packages = $sub_map{$module};
+    foreach my $package (sort keys %$packages)
+    {
+        print "package $package {\n";
+        foreach my $sub_name (sort @{$packages->{$package}})
+        {
+            print "sub $sub_name\n";
+        }
+        print "}\n";
+    }
+}
+print "$END_MARKER\n";
 
-foreach my $globname (sort @{get_typeglobs_snapshot()})
+sub file_processor
 {
-    next if $globname =~ /::bootstrap/;
-    next if $globname =~ /[^\w\:_]/;
+    if ($File::Find::name =~ m{auto/(.+?)/([^/]+)(dll|so|bundle)$})
+    {
+        my $name = $1;
+        $name =~ s{/+}{::}g;
+        load_module($name);
+    }
+}
 
-    if (*{$globname}{CODE})
+sub load_module
+{
+    my $name = shift;
+    return if $name =~ /\QType::Tiny::XS\E/; # see https://github.com/tobyink/p5-type-tiny-xs/issues/4
+    #        print STDERR "Processing $name\n";
+    eval "require $name;";
+    if (my $e = $@)
     {
-        my $deparsed = eval {$deparser->coderef2text( \&{$globname} )};
-        # too messy
-#        if( my $e = $@ )
-#        {
-#            print STDERR "Error deparsing $globname:\n$e\n";
-#        }
-
-        if ($deparsed =~ /^(?:\(.*?\))?\s*;$/)
+        print STDERR "Error loading $name:\n$e\n";
+    }
+}
+
+# invokes $loader for the $module and attributes all subs appeared meanwhile to it
+sub track_loading
+{
+    my ($module, $loader, $wantarray, @args) = @_;
+    attribute_new_subs($loading_stack[-1]);
+    push @loading_stack, $module;
+    my @result;
+    my $ok = eval {
+        if ($wantarray)
+        {
+            @result = $loader->(@args);
+        }
+        else
         {
-            $globname =~ s/^:://;
-            $globname =~ /^(.+)::([^:]+)$/;
-            my ($package, $sub) = ($1, $2);
-            $sub_map{$package} //= [ ];
-            push @{$sub_map{$package}}, $sub.$deparsed;
+            $result[0] = $loader->(@args);
         }
+        1;
+    };
+    my $error = $@;
+    attribute_new_subs($module);
+    pop @loading_stack;
+    die $error unless $ok;
+    return $wantarray ? @result : $result[0];
+}
+
+sub attribute_new_subs
+{
+    my $module = shift;
+    foreach my $globname (@{collect_new_subs( $module )})
+    {
+        $owners{$globname} //= $module if defined $module;
     }
 }
 
-foreach my $package (sort keys %sub_map)
+# returns fully qualified names of subs defined since the previous call. Only namespaces with changed number of entries and
+# the $module namespace with nested ones are scanned, so loading a module does not walk the whole symbol table
+sub collect_new_subs
 {
+    my ($module, $initial) = @_;
+    my $result = [ ];
+    scan_namespace( '', $result, defined $module ? "::$module" : undef, $initial, { qw/::main/ } );
+    return $result;
+}
+
+sub scan_namespace
+{
+    my ($namespace, $result, $module_namespace, $initial, $recursion_map) = @_;
+
+    return if exists $recursion_map->{$namespace};
+    $recursion_map->{$namespace} = 1;
+
+    my $stash = \%{"${namespace}::"};
+    my $size = scalar keys %$stash;
+    my $state = $stash_states{$namespace};
+    my $is_module_namespace = defined $module_namespace &&
+        ($namespace eq $module_namespace || index( $namespace, "${module_namespace}::" ) == 0);
 
-    print "package $package {\n";
-    foreach my $sub_name (sort @{$sub_map{$package}})
+    if (!$state || $state->{size} != $size || $is_module_namespace)
+    {
+        my $children = [ ];
+        my %subs = ();
+        foreach my $name (keys %$stash)
+        {
+            my $canonical_name = "${namespace}::$name";
+            if ($name =~ /::$/)
+            {
+                $canonical_name =~ s/::$//;
+                push @{$children}, $canonical_name;
+            }
+            elsif (defined *{$canonical_name}{CODE})
+            {
+                $subs{$name} = 1;
+                push @{$result}, $canonical_name unless $initial || $state && $state->{subs}->{$name};
+            }
+        }
+        $state = $stash_states{$namespace} = { size => $size, children => $children, subs => \%subs };
+    }
+
+    scan_namespace( $_, $result, $module_namespace, $initial, $recursion_map ) foreach @{$state->{children}};
+}
+
+# returns hash with fully qualified names of all defined subs
+sub get_code_snapshot
+{
+    my %result = ();
+    foreach my $globname (@{get_typeglobs_snapshot()})
     {
-        print "sub $sub_name\n";
+        $result{$globname} = 1 if defined *{$globname}{CODE};
     }
-    print "}\n";
+    return \%result;
 }
 
 sub get_typeglobs_snapshot
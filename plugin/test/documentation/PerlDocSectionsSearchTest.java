@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package documentation;
+
+import base.PerlLightTestCase;
+import categories.Heavy;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.perl5.lang.perl.documentation.PerlDocUtil;
+import com.perl5.lang.pod.parser.psi.PodCompositeElement;
+import com.perl5.lang.pod.parser.psi.PodDocumentPattern;
+import com.perl5.lang.pod.parser.psi.PodTitledSection;
+import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
+import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Heavy.class)
+public class PerlDocSectionsSearchTest extends PerlLightTestCase {
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    withPerlPod528();
+  }
+
+  @Test
+  public void testItemPrefix() {
+    doTest(PodDocumentPattern.itemPattern("print"), PodSectionItem.class, "print FILEHANDLE LIST");
+  }
+
+  @Test
+  public void testItemExact() {
+    doTest(PodDocumentPattern.itemPattern("print LIST").withExactMatch(), PodSectionItem.class, "print LIST");
+  }
+
+  @Test
+  public void testIndex() {
+    doTest(PodDocumentPattern.indexPattern("heredoc"), PodFormatterX.class, "heredoc");
+  }
+
+  private void doTest(@NotNull PodDocumentPattern pattern, @NotNull Class<?> expectedClass, @NotNull String expectedTitle) {
+    PsiFile podFile = findPodFile(pattern.getIndexKey() == null ? PerlDocUtil.PERL_FUNC_FILE_NAME : PerlDocUtil.PERL_OP_FILE_NAME);
+    assertTrue(PodSectionsIndex.isAvailable(podFile));
+    PodCompositeElement element = PerlDocUtil.searchPodElement(podFile, pattern);
+    assertInstanceOf(element, expectedClass);
+    assertEquals(expectedTitle, ((PodTitledSection)element).getTitleText());
+  }
+
+  private @NotNull PsiFile findPodFile(@NotNull String fileName) {
+    PsiFile[] files = FilenameIndex.getFilesByName(getProject(), fileName, GlobalSearchScope.allScope(getProject()));
+    assertSize(1, files);
+    return files[0];
+  }
+}
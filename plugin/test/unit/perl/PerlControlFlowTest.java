@@ -18,7 +18,15 @@ package unit.perl;
 
 
 import base.PerlLightTestCase;
+import com.intellij.codeInsight.controlflow.Instruction;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlMutationInstruction;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
+import com.perl5.lang.perl.psi.PerlSubDefinitionElement;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 public class PerlControlFlowTest extends PerlLightTestCase {
   @Override
@@ -953,5 +961,62 @@ public class PerlControlFlowTest extends PerlLightTestCase {
   @Test
   public void testNestedSubExpr() {doTest();}
 
+  @Test
+  public void testIncrementalChangeInsideSub() {
+    initWithTextSmart("my $var = 1;\nsub foo {\n  my $inner = 2;<caret>\n}\nsub bar { return 3 }\n");
+    Instruction[] fileFlow = PerlControlFlowBuilder.getFor(getFile());
+    PerlSubDefinitionElement bar = getSubDefinition("bar");
+    Instruction[] barFlow = PerlControlFlowBuilder.getFor(bar);
+    Instruction[] fooFlow = PerlControlFlowBuilder.getFor(getSubDefinition("foo"));
+
+    myFixture.type("\n  my $added = $inner;");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+    assertSame(fileFlow, PerlControlFlowBuilder.getFor(getFile()));
+    assertSame(barFlow, PerlControlFlowBuilder.getFor(bar));
+    assertNotSame(fooFlow, PerlControlFlowBuilder.getFor(getSubDefinition("foo")));
+  }
+
+  @Test
+  public void testIncrementalChangeOutsideSub() {
+    initWithTextSmart("my $var = 1;<caret>\nsub foo {\n  my $inner = 2;\n}\n");
+    Instruction[] fileFlow = PerlControlFlowBuilder.getFor(getFile());
+    PerlSubDefinitionElement foo = getSubDefinition("foo");
+    Instruction[] fooFlow = PerlControlFlowBuilder.getFor(foo);
+
+    myFixture.type("\nmy $added = $var;");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+    assertTrue(foo.isValid());
+    assertSame(foo, getSubDefinition("foo"));
+    assertSame(fooFlow, PerlControlFlowBuilder.getFor(getSubDefinition("foo")));
+
+    Instruction[] newFileFlow = PerlControlFlowBuilder.getFor(getFile());
+    assertNotSame(fileFlow, newFileFlow);
+    assertFalse(hasAssignmentTo(fileFlow, "$added"));
+    assertTrue(hasAssignmentTo(newFileFlow, "$added"));
+  }
+
+  private static boolean hasAssignmentTo(@NotNull Instruction[] instructions, @NotNull String variableText) {
+    for (Instruction instruction : instructions) {
+      if (instruction instanceof PerlMutationInstruction) {
+        PsiElement leftSide = ((PerlMutationInstruction)instruction).getLeftSide();
+        if (leftSide != null && leftSide.isValid() && variableText.equals(leftSide.getText())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private @NotNull PerlSubDefinitionElement getSubDefinition(@NotNull String name) {
+    for (PerlSubDefinitionElement subDefinition : PsiTreeUtil.findChildrenOfType(getFile(), PerlSubDefinitionElement.class)) {
+      if (name.equals(subDefinition.getSubName())) {
+        return subDefinition;
+      }
+    }
+    throw new AssertionError("No sub " + name);
+  }
+
   private void doTest() {doTestControlFlow();}
 }
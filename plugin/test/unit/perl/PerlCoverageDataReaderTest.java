@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.google.gson.JsonParseException;
+import com.intellij.testFramework.UsefulTestCase;
+import com.perl5.lang.perl.idea.coverage.PerlCoverageDataReader;
+import com.perl5.lang.perl.idea.coverage.PerlFileCoverageData;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PerlCoverageDataReaderTest extends PerlLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit/perl/coverage";
+  }
+
+  @Test
+  public void testSimple() {
+    List<String> result = new ArrayList<>();
+    for (PerlFileCoverageData fileData : readFiles()) {
+      result.add(fileData.getName() + "; max line: " + fileData.getMaxLine());
+      for (int i = 0; i < fileData.getSize(); i++) {
+        result.add(fileData.getLine(i) + ": " + fileData.getStatements(i) + "/" + fileData.getCovered(i));
+      }
+    }
+    UsefulTestCase.assertSameLinesWithFile(getTestResultsFilePath(), String.join("\n", result));
+  }
+
+  @Test
+  public void testEmptyReport() {
+    assertEmpty(readFiles());
+  }
+
+  @Test
+  public void testMalformed() {
+    try {
+      readFiles();
+      fail("Malformed report should not be read");
+    }
+    catch (JsonParseException ignore) {
+    }
+  }
+
+  private @NotNull List<PerlFileCoverageData> readFiles() {
+    List<PerlFileCoverageData> result = new ArrayList<>();
+    File reportFile = new File(getTestDataPath(), getTestName(true) + ".json");
+    try (Reader reader = Files.newBufferedReader(reportFile.toPath(), StandardCharsets.UTF_8)) {
+      new PerlCoverageDataReader(reader).readFiles(result::add);
+    }
+    catch (IOException e) {
+      fail(e.getMessage());
+    }
+    return result;
+  }
+}
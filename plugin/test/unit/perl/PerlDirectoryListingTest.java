@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.idea.sdk.host.PerlDirectoryListing;
+import com.perl5.lang.perl.idea.sdk.host.PerlFileDescriptor;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PerlDirectoryListingTest extends TestCase {
+  private static final List<String> RECURSIVE_OUTPUT = Arrays.asList(
+    "/usr/lib/perl5:",
+    "total 12",
+    "4 Foo/",
+    "8 Foo.pm",
+    "",
+    "/usr/lib/perl5/Foo:",
+    "total 4",
+    "4 Bar.pm",
+    "4 run*"
+  );
+
+  @Test
+  public void testRecursive() {
+    PerlDirectoryListing listing = PerlDirectoryListing.parse("/usr/lib/perl5/", true, 0, RECURSIVE_OUTPUT);
+    assertEquals("/usr/lib/perl5", listing.getRootPath());
+    assertEquals(Arrays.asList("Foo", "Foo.pm"), getNames(listing.getChildren("/usr/lib/perl5")));
+    assertEquals(Arrays.asList("Bar.pm", "run"), getNames(listing.getChildren("/usr/lib/perl5/Foo")));
+    assertEquals(Collections.emptyList(), listing.getChildren("/usr/lib/perl5/Foo/Baz"));
+    assertNull(listing.getChildren("/usr/lib"));
+    List<PerlFileDescriptor> fooChildren = listing.getChildren("/usr/lib/perl5/Foo");
+    assertNotNull(fooChildren);
+    assertEquals(PerlFileDescriptor.Type.EXECUTABLE, fooChildren.get(1).getType());
+    assertEquals("/usr/lib/perl5/Foo/Bar.pm", fooChildren.get(0).getPath());
+  }
+
+  @Test
+  public void testShallow() {
+    PerlDirectoryListing listing = PerlDirectoryListing.parse("/usr/lib/perl5", false, 0, Arrays.asList("total 12", "4 Foo/", "8 Foo.pm"));
+    assertEquals(Arrays.asList("Foo", "Foo.pm"), getNames(listing.getChildren("/usr/lib/perl5")));
+    assertNull(listing.getChildren("/usr/lib/perl5/Foo"));
+    assertNull(listing.getSubListing("/usr/lib/perl5"));
+  }
+
+  @Test
+  public void testSubListing() {
+    PerlDirectoryListing listing = PerlDirectoryListing.parse("/usr/lib/perl5", true, 42, RECURSIVE_OUTPUT);
+    PerlDirectoryListing subListing = listing.getSubListing("/usr/lib/perl5/Foo");
+    assertNotNull(subListing);
+    assertEquals("/usr/lib/perl5/Foo", subListing.getRootPath());
+    assertEquals(42, subListing.getTimestamp());
+    assertEquals(Collections.singleton("/usr/lib/perl5/Foo"), subListing.getAllChildren().keySet());
+    assertNull(subListing.getChildren("/usr/lib/perl5"));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    PerlDirectoryListing listing = PerlDirectoryListing.parse("/usr/lib/perl5", true, 0, RECURSIVE_OUTPUT);
+    PerlDirectoryListing restored = PerlDirectoryListing.parse("/usr/lib/perl5", true, 0, listing.toLines());
+    assertEquals(listing.getAllChildren(), restored.getAllChildren());
+    assertEquals(listing.toLines(), restored.toLines());
+  }
+
+  private static List<String> getNames(List<PerlFileDescriptor> descriptors) {
+    assertNotNull(descriptors);
+    return ContainerUtil.map(descriptors, PerlFileDescriptor::getName);
+  }
+}
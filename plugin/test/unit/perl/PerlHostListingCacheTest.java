@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostListingCache;
+import com.perl5.lang.perl.idea.sdk.host.PerlFileDescriptor;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PerlHostListingCacheTest extends PerlLightTestCase {
+  private static final List<String> RECURSIVE_OUTPUT = Arrays.asList(
+    "/usr/lib/perl5:",
+    "total 8",
+    "4 Foo/",
+    "0 Bar@",
+    "",
+    "/usr/lib/perl5/Foo:",
+    "total 4",
+    "4 Baz.pm"
+  );
+
+  private PerlHostData<?, ?> myHostData;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myHostData = PerlHostHandler.getDefaultHandler().createData();
+    PerlHostListingCache.getInstance().invalidate(myHostData);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      PerlHostListingCache.getInstance().invalidate(myHostData);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @Test
+  public void testChildrenFromRecursiveListing() throws Exception {
+    PerlHostListingCache cache = PerlHostListingCache.getInstance();
+    cache.getListing(myHostData, "/usr/lib/perl5", true, () -> RECURSIVE_OUTPUT);
+    assertEquals(Collections.singletonList("Baz.pm"), getNames(cache.getCachedChildren(myHostData, "/usr/lib/perl5/Foo")));
+    assertNull(cache.getCachedChildren(myHostData, "/usr/lib/perl5"));
+    assertNull(cache.getCachedChildren(myHostData, "/usr/lib/perl5/Bar"));
+  }
+
+  @Test
+  public void testShallowListingKeepsRecursive() throws Exception {
+    PerlHostListingCache cache = PerlHostListingCache.getInstance();
+    cache.getListing(myHostData, "/usr/lib/perl5", true, () -> RECURSIVE_OUTPUT);
+    cache.getListing(myHostData, "/usr/lib/perl5", false, () -> Arrays.asList("total 8", "4 Foo/", "4 Bar/"));
+    assertEquals(Arrays.asList("Foo", "Bar"), getNames(cache.getCachedChildren(myHostData, "/usr/lib/perl5")));
+    assertEquals(Collections.singletonList("Baz.pm"), getNames(cache.getCachedChildren(myHostData, "/usr/lib/perl5/Foo")));
+    cache.getListing(myHostData, "/usr/lib/perl5/Foo", false, () -> {
+      throw new AssertionError("Listing should be served from the cache");
+    });
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    PerlHostListingCache cache = PerlHostListingCache.getInstance();
+    cache.getListing(myHostData, "/usr/lib/perl5", true, () -> RECURSIVE_OUTPUT);
+    cache.getListing(myHostData, "/usr/lib/perl5", false, () -> Arrays.asList("total 8", "4 Foo/", "4 Bar/"));
+    cache.invalidate(myHostData, "/usr/lib/perl5/Foo");
+    assertNull(cache.getCachedChildren(myHostData, "/usr/lib/perl5"));
+    assertNull(cache.getCachedChildren(myHostData, "/usr/lib/perl5/Foo"));
+  }
+
+  private static List<String> getNames(List<PerlFileDescriptor> descriptors) {
+    assertNotNull(descriptors);
+    return ContainerUtil.map(descriptors, PerlFileDescriptor::getName);
+  }
+}
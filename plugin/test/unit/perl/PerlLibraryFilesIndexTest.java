@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.perl5.lang.perl.idea.project.PerlLibraryFilesIndex;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class PerlLibraryFilesIndexTest extends PerlLightTestCase {
+  @Test
+  public void testFirstRootWins() {
+    VirtualFile firstFile = addFile("first/Foo/Bar.pm");
+    addFile("second/Foo/Bar.pm");
+    VirtualFile secondOnlyFile = addFile("second/Foo/Baz.pm");
+    markAsLibRoot(firstFile.getParent().getParent(), true);
+    markAsLibRoot(secondOnlyFile.getParent().getParent(), true);
+
+    PerlLibraryFilesIndex index = PerlLibraryFilesIndex.getInstance(getProject());
+    assertEquals(firstFile, index.findFile("Foo/Bar.pm"));
+    assertEquals(secondOnlyFile, index.findFile("Foo/Baz.pm"));
+    assertNull(index.findFile("Foo/Missing.pm"));
+    assertNull(index.findFile("Bar.pm"));
+  }
+
+  @Test
+  public void testLibraryChangeResets() {
+    VirtualFile libFile = addFile("lib/Foo/Bar.pm");
+    markAsLibRoot(libFile.getParent().getParent(), true);
+
+    PerlLibraryFilesIndex index = PerlLibraryFilesIndex.getInstance(getProject());
+    assertNull(index.findFile("Foo/Baz.pm"));
+    assertEquals(1, index.getResolvedPathsCount());
+
+    VirtualFile createdFile = addFile("lib/Foo/Baz.pm");
+    assertEquals(0, index.getResolvedPathsCount());
+    assertEquals(createdFile, index.findFile("Foo/Baz.pm"));
+  }
+
+  @Test
+  public void testNonLibraryChangeKeepsPaths() {
+    VirtualFile libFile = addFile("lib/Foo/Bar.pm");
+    markAsLibRoot(libFile.getParent().getParent(), true);
+
+    PerlLibraryFilesIndex index = PerlLibraryFilesIndex.getInstance(getProject());
+    assertEquals(libFile, index.findFile("Foo/Bar.pm"));
+    assertNull(index.findFile("Foo/Baz.pm"));
+    assertEquals(2, index.getResolvedPathsCount());
+
+    addFile("script/Foo/Baz.pm");
+    addFile("lib.pl");
+    assertEquals(2, index.getResolvedPathsCount());
+    assertEquals(libFile, index.findFile("Foo/Bar.pm"));
+  }
+
+  private @NotNull VirtualFile addFile(@NotNull String relativePath) {
+    VirtualFile virtualFile = myFixture.addFileToProject(relativePath, "1;").getVirtualFile();
+    assertNotNull(virtualFile);
+    return virtualFile;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.perl5.lang.perl.psi.mro.PerlMro;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PerlLinearIsaTest extends PerlLightTestCase {
+  @Test
+  public void testDfs() {
+    initWithTextSmart("package Foo; use parent -norequire, 'Bar', 'Baz'; package Bar; use parent -norequire, 'Base';" +
+                      "package Baz; use parent -norequire, 'Base'; package Base;");
+    assertLinearIsa("Foo", false, "Foo", "Bar", "Base", "Baz", "UNIVERSAL");
+    assertLinearIsa("Foo", true, "Bar", "Base", "Baz", "UNIVERSAL");
+  }
+
+  @Test
+  public void testC3() {
+    initWithTextSmart("package Foo; use mro 'c3'; use parent -norequire, 'Bar', 'Baz'; package Bar; use parent -norequire, 'Base';" +
+                      "package Baz; use parent -norequire, 'Base'; package Base;");
+    assertLinearIsa("Foo", false, "Foo", "Bar", "Baz", "Base", "UNIVERSAL");
+  }
+
+  @Test
+  public void testParentChanged() {
+    initWithTextSmart("package Foo; use parent -norequire, 'Bar<caret>'; package Bar; package Bark;");
+    assertLinearIsa("Foo", false, "Foo", "Bar", "UNIVERSAL");
+    myFixture.type("k");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    assertLinearIsa("Foo", false, "Foo", "Bark", "UNIVERSAL");
+  }
+
+  private void assertLinearIsa(@NotNull String namespaceName, boolean isSuper, String @NotNull ... expected) {
+    List<String> linearISA = PerlMro.getLinearISA(getProject(), GlobalSearchScope.allScope(getProject()), namespaceName, isSuper);
+    assertEquals(Arrays.asList(expected), linearISA);
+  }
+}
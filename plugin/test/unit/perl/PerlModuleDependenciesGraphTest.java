@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.perl5.lang.perl.idea.project.PerlModuleDependenciesGraph;
+import com.perl5.lang.perl.psi.PerlFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class PerlModuleDependenciesGraphTest extends PerlLightTestCase {
+  @Test
+  public void testTransitiveDependencies() {
+    VirtualFile fooFile = addModule("Foo", "use Bar;");
+    VirtualFile barFile = addModule("Bar", "require Baz; use Foo;");
+    VirtualFile bazFile = addModule("Baz", "");
+    markAsLibRoot(fooFile.getParent(), true);
+    VirtualFile scriptFile = myFixture.addFileToProject("script.pl", "use Foo; do 'Unknown.pm';").getVirtualFile();
+
+    PerlModuleDependenciesGraph graph = PerlModuleDependenciesGraph.getInstance(getProject());
+    assertSameElements(graph.getIncludedFiles(scriptFile), scriptFile, fooFile, barFile, bazFile);
+    assertSameElements(graph.getIncludedFiles(barFile), barFile, fooFile, bazFile);
+    assertSameElements(graph.getIncludedFiles(bazFile), bazFile);
+    assertTrue(graph.getIncludedFiles(fooFile).contains(bazFile));
+    assertFalse(graph.getIncludedFiles(bazFile).contains(fooFile));
+
+    Set<VirtualFile> includedFiles = new HashSet<>();
+    ((PerlFile)getPsiManager().findFile(scriptFile)).collectIncludedFiles(includedFiles);
+    assertSameElements(includedFiles, scriptFile, fooFile, barFile, bazFile);
+  }
+
+  @Test
+  public void testDependencyChanged() {
+    VirtualFile fooFile = addModule("Foo", "use Bar;");
+    VirtualFile barFile = addModule("Bar", "");
+    VirtualFile bazFile = addModule("Baz", "");
+    markAsLibRoot(fooFile.getParent(), true);
+
+    PerlModuleDependenciesGraph graph = PerlModuleDependenciesGraph.getInstance(getProject());
+    assertSameElements(graph.getIncludedFiles(fooFile), fooFile, barFile);
+    assertFalse(graph.getIncludedFiles(fooFile).contains(bazFile));
+
+    Document barDocument = FileDocumentManager.getInstance().getDocument(barFile);
+    assertNotNull(barDocument);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      barDocument.insertString(barDocument.getText().indexOf("1;"), "use Baz;\n");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(barDocument);
+    });
+    assertSameElements(graph.getIncludedFiles(fooFile), fooFile, barFile, bazFile);
+    assertTrue(graph.getIncludedFiles(fooFile).contains(bazFile));
+  }
+
+  private @NotNull VirtualFile addModule(@NotNull String packageName, @NotNull String body) {
+    VirtualFile moduleFile =
+      myFixture.addFileToProject("lib/" + packageName + ".pm", "package " + packageName + ";\n" + body + "\n1;").getVirtualFile();
+    return moduleFile;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.psi.PsiDocumentManager;
+import com.perl5.lang.perl.idea.project.PerlNamesCache;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Set;
+
+public class PerlNamesCacheTest extends PerlLightTestCase {
+  @Test
+  public void testSubAdded() {
+    initWithTextSmart("package Foo::Bar; sub existing_sub{} sub <caret>{}");
+    PerlNamesCache namesCache = updateCache();
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::existing_sub"));
+    assertFalse(namesCache.getSubsNamesSet().contains("Foo::Bar::new_sub"));
+    long fullUpdates = namesCache.getFullUpdatesCount();
+
+    myFixture.type("new_sub");
+    flushUpdates(namesCache);
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::existing_sub"));
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::new_sub"));
+    assertEquals(fullUpdates, namesCache.getFullUpdatesCount());
+  }
+
+  @Test
+  public void testSubRemoved() {
+    initWithTextSmart("package Foo::Bar; sub existing_sub{} sub removed_sub<caret>{}");
+    PerlNamesCache namesCache = updateCache();
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::removed_sub"));
+    long deltaUpdates = namesCache.getDeltaUpdatesCount();
+
+    myFixture.type("_renamed");
+    flushUpdates(namesCache);
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::existing_sub"));
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::removed_sub_renamed"));
+    assertFalse(namesCache.getSubsNamesSet().contains("Foo::Bar::removed_sub"));
+    assertTrue(namesCache.getDeltaUpdatesCount() > deltaUpdates);
+  }
+
+  @Test
+  public void testNamespaceRenamed() {
+    initWithTextSmart("package Foo::Bar<caret>; sub existing_sub{}");
+    PerlNamesCache namesCache = updateCache();
+    assertTrue(namesCache.getNamespacesNamesSet().contains("Foo::Bar"));
+
+    myFixture.type("Baz");
+    flushUpdates(namesCache);
+    assertTrue(namesCache.getNamespacesNamesSet().contains("Foo::BarBaz"));
+    assertFalse(namesCache.getNamespacesNamesSet().contains("Foo::Bar"));
+    assertTrue(namesCache.getNamespacesNamesSet().contains("UNIVERSAL"));
+  }
+
+  @Test
+  public void testNamesSetUpdatedInPlace() {
+    initWithTextSmart("package Foo::Bar; sub existing_sub{} sub <caret>{}");
+    PerlNamesCache namesCache = updateCache();
+    Set<String> subsNames = namesCache.getSubsNamesSet();
+    long fullUpdates = namesCache.getFullUpdatesCount();
+
+    myFixture.type("new_sub");
+    flushUpdates(namesCache);
+    assertTrue(subsNames.contains("Foo::Bar::new_sub"));
+    assertEquals(fullUpdates, namesCache.getFullUpdatesCount());
+  }
+
+  @Test
+  public void testSubKeptWhileProvidedByAnotherFile() {
+    myFixture.addFileToProject("other.pl", "package Foo::Bar; sub shared_sub{}");
+    initWithTextSmart("package Foo::Bar; sub shared_sub<caret>{}");
+    PerlNamesCache namesCache = updateCache();
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::shared_sub"));
+
+    myFixture.type("_renamed");
+    flushUpdates(namesCache);
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::shared_sub_renamed"));
+    assertTrue(namesCache.getSubsNamesSet().contains("Foo::Bar::shared_sub"));
+  }
+
+  @Test
+  public void testDeletedFileSnapshotDropped() {
+    initWithTextSmart("package Foo::Bar; sub existing_sub{} sub <caret>{}");
+    PerlNamesCache namesCache = updateCache();
+    myFixture.type("new_sub");
+    flushUpdates(namesCache);
+    assertEquals(1, namesCache.getFileSnapshotsCount());
+
+    WriteAction.run(() -> getFile().getVirtualFile().delete(this));
+    flushUpdates(namesCache);
+    assertEquals(0, namesCache.getFileSnapshotsCount());
+    assertFalse(namesCache.getSubsNamesSet().contains("Foo::Bar::new_sub"));
+  }
+
+  private PerlNamesCache updateCache() {
+    PerlNamesCache namesCache = PerlNamesCache.getInstance(getProject());
+    namesCache.forceCacheUpdate();
+    return namesCache;
+  }
+
+  private void flushUpdates(@NotNull PerlNamesCache namesCache) {
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    namesCache.flushPendingUpdates();
+  }
+}
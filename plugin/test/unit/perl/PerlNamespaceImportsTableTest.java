@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.perl5.lang.perl.psi.stubs.imports.PerlNamespaceExportsTable;
+import com.perl5.lang.perl.psi.stubs.imports.PerlNamespaceImportsTable;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+public class PerlNamespaceImportsTableTest extends PerlLightTestCase {
+  private static final String EXPORTING_MODULE = "package Foo; our @EXPORT = qw(foo); our @EXPORT_OK = qw(bar); sub foo{} sub bar{}";
+
+  @Test
+  public void testExports() {
+    myFixture.addFileToProject("Foo.pm", EXPORTING_MODULE);
+    PerlNamespaceExportsTable exportsTable = PerlNamespaceExportsTable.getInstance(getProject(), "Foo");
+    assertEquals(new LinkedHashSet<>(Arrays.asList("foo")), exportsTable.getExport());
+    assertEquals(new LinkedHashSet<>(Arrays.asList("foo", "bar")), exportsTable.getExportOk());
+    assertEmpty(PerlNamespaceExportsTable.getInstance(getProject(), "Unknown").getExportOk());
+  }
+
+  @Test
+  public void testImports() {
+    myFixture.addFileToProject("Foo.pm", EXPORTING_MODULE);
+    initWithTextSmart("package Bar; use Foo; use Foo qw(bar unknown);");
+    PerlNamespaceImportsTable importsTable = getImportsTable(GlobalSearchScope.allScope(getProject()));
+    assertSize(2, importsTable.getDescriptors());
+    assertSize(1, importsTable.getDescriptors("foo"));
+    assertSize(1, importsTable.getDescriptors("bar"));
+    assertEmpty(importsTable.getDescriptors("unknown"));
+  }
+
+  @Test
+  public void testScope() {
+    myFixture.addFileToProject("Foo.pm", EXPORTING_MODULE);
+    PsiFile otherFile = myFixture.addFileToProject("Other.pm", "package Bar; use Foo qw(bar);");
+    initWithTextSmart("package Bar; use Foo;");
+
+    PerlNamespaceImportsTable allTable = getImportsTable(GlobalSearchScope.allScope(getProject()));
+    assertSize(1, allTable.getDescriptors("foo"));
+    assertSize(1, allTable.getDescriptors("bar"));
+
+    PerlNamespaceImportsTable fileTable = getImportsTable(GlobalSearchScope.fileScope(getFile()));
+    assertSize(1, fileTable.getDescriptors("foo"));
+    assertEmpty(fileTable.getDescriptors("bar"));
+
+    PerlNamespaceImportsTable otherFileTable = getImportsTable(GlobalSearchScope.fileScope(otherFile));
+    assertEmpty(otherFileTable.getDescriptors("foo"));
+    assertSize(1, otherFileTable.getDescriptors("bar"));
+  }
+
+  @Test
+  public void testExportChanged() {
+    initWithTextSmart("package Foo; our @EXPORT = qw(foo<caret>); sub foo{} sub food{} package Bar; use Foo;");
+    assertSize(1, getImportsTable(GlobalSearchScope.allScope(getProject())).getDescriptors("foo"));
+
+    myFixture.type("d");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    assertEquals(new LinkedHashSet<>(Arrays.asList("food")), PerlNamespaceExportsTable.getInstance(getProject(), "Foo").getExport());
+    PerlNamespaceImportsTable importsTable = getImportsTable(GlobalSearchScope.allScope(getProject()));
+    assertEmpty(importsTable.getDescriptors("foo"));
+    assertSize(1, importsTable.getDescriptors("food"));
+  }
+
+  private @NotNull PerlNamespaceImportsTable getImportsTable(@NotNull GlobalSearchScope searchScope) {
+    return PerlNamespaceImportsTable.getInstance(getProject(), searchScope, "Bar");
+  }
+}
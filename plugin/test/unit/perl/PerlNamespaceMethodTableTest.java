@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.perl5.lang.perl.psi.mro.PerlNamespaceMethodTable;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+public class PerlNamespaceMethodTableTest extends PerlLightTestCase {
+  @Test
+  public void testNames() {
+    initWithTextSmart("package Foo; sub defined_sub{} sub declared_sub; *assigned_glob = sub {}; sub AUTOLOAD{}");
+    PerlNamespaceMethodTable methodTable = getMethodTable(GlobalSearchScope.allScope(getProject()));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("defined_sub", "declared_sub", "assigned_glob", "AUTOLOAD")),
+                 methodTable.getMethodsNames());
+    assertTrue(methodTable.hasAutoload());
+    assertFalse(methodTable.contains("unknown_sub"));
+    PsiNamedElement element = methodTable.findElement("defined_sub");
+    assertNotNull(element);
+    assertEquals("defined_sub", element.getName());
+  }
+
+  @Test
+  public void testScope() {
+    PsiFile otherFile = myFixture.addFileToProject("Other.pm", "package Foo; sub other_sub{}");
+    initWithTextSmart("package Foo; sub own_sub{}");
+
+    PerlNamespaceMethodTable allTable = getMethodTable(GlobalSearchScope.allScope(getProject()));
+    assertTrue(allTable.contains("own_sub"));
+    assertTrue(allTable.contains("other_sub"));
+
+    PerlNamespaceMethodTable fileTable = getMethodTable(GlobalSearchScope.fileScope(getFile()));
+    assertTrue(fileTable.contains("own_sub"));
+    assertFalse(fileTable.contains("other_sub"));
+    assertNull(fileTable.findElement("other_sub"));
+
+    PerlNamespaceMethodTable otherFileTable = getMethodTable(GlobalSearchScope.fileScope(otherFile));
+    assertFalse(otherFileTable.contains("own_sub"));
+    assertTrue(otherFileTable.contains("other_sub"));
+  }
+
+  @Test
+  public void testSubRenamed() {
+    initWithTextSmart("package Foo; sub some_sub<caret>{}");
+    GlobalSearchScope searchScope = GlobalSearchScope.allScope(getProject());
+    assertTrue(getMethodTable(searchScope).contains("some_sub"));
+
+    myFixture.type("_renamed");
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    PerlNamespaceMethodTable methodTable = getMethodTable(searchScope);
+    assertFalse(methodTable.contains("some_sub"));
+    assertTrue(methodTable.contains("some_sub_renamed"));
+  }
+
+  private @NotNull PerlNamespaceMethodTable getMethodTable(@NotNull GlobalSearchScope searchScope) {
+    return PerlNamespaceMethodTable.getInstance(getProject(), searchScope, "Foo");
+  }
+}
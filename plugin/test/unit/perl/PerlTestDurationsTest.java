@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.perl5.lang.perl.idea.run.prove.PerlTestDurations;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.File;
+
+public class PerlTestDurationsTest extends TestCase {
+  @Test
+  public void testMovingAverage() throws Exception {
+    PerlTestDurations durations = new PerlTestDurations();
+    String path = createTestFile("average.t");
+    durations.addDuration(path, 100);
+    durations.addDuration(path, 300);
+    assertEquals(Long.valueOf(200), durations.getDuration(path));
+    assertNull(durations.getDuration(path + ".missing"));
+  }
+
+  @Test
+  public void testPruneMissingFiles() throws Exception {
+    PerlTestDurations durations = new PerlTestDurations();
+    String existingPath = createTestFile("existing.t");
+    String missingPath = new File(new File(existingPath).getParentFile(), "missing.t").getPath();
+    durations.addDuration(existingPath, 10);
+    durations.addDuration(missingPath, 20);
+    durations.prune(10);
+    assertEquals(Long.valueOf(10), durations.getDuration(existingPath));
+    assertNull(durations.getDuration(missingPath));
+  }
+
+  @Test
+  public void testPruneShortestFirst() throws Exception {
+    PerlTestDurations durations = new PerlTestDurations();
+    String shortPath = createTestFile("short.t");
+    String mediumPath = createTestFile("medium.t");
+    String longPath = createTestFile("long.t");
+    durations.addDuration(shortPath, 10);
+    durations.addDuration(mediumPath, 20);
+    durations.addDuration(longPath, 30);
+    durations.prune(2);
+    assertNull(durations.getDuration(shortPath));
+    assertEquals(Long.valueOf(20), durations.getDuration(mediumPath));
+    assertEquals(Long.valueOf(30), durations.getDuration(longPath));
+  }
+
+  private static String createTestFile(String name) throws Exception {
+    File file = FileUtil.createTempFile(name, null, true);
+    return file.getPath();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import com.perl5.lang.perl.idea.run.prove.PerlTestsSchedule;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PerlTestsScheduleTest extends TestCase {
+  @Test
+  public void testLongestFirst() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a.t", 10L);
+    durations.put("b.t", 50L);
+    durations.put("c.t", 30L);
+    durations.put("d.t", 20L);
+    PerlTestsSchedule<String> schedule = PerlTestsSchedule.create(Arrays.asList("a.t", "b.t", "c.t", "d.t"), durations::get, 2);
+    assertEquals(Arrays.asList("b.t", "c.t", "d.t", "a.t"), schedule.getTests());
+    assertEquals(60, schedule.getPredictedMakespan());
+  }
+
+  @Test
+  public void testSingleJob() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a.t", 10L);
+    durations.put("b.t", 50L);
+    PerlTestsSchedule<String> schedule = PerlTestsSchedule.create(Arrays.asList("a.t", "b.t"), durations::get, 1);
+    assertEquals(Arrays.asList("b.t", "a.t"), schedule.getTests());
+    assertEquals(60, schedule.getPredictedMakespan());
+  }
+
+  @Test
+  public void testUnknownDurationsAreAveraged() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a.t", 10L);
+    durations.put("b.t", 50L);
+    PerlTestsSchedule<String> schedule = PerlTestsSchedule.create(Arrays.asList("a.t", "new.t", "b.t"), durations::get, 3);
+    assertEquals(Arrays.asList("b.t", "new.t", "a.t"), schedule.getTests());
+    assertEquals(50, schedule.getPredictedMakespan());
+  }
+
+  @Test
+  public void testNoDurations() {
+    List<String> tests = Arrays.asList("a.t", "b.t", "c.t");
+    PerlTestsSchedule<String> schedule = PerlTestsSchedule.create(tests, it -> null, 2);
+    assertEquals(tests, schedule.getTests());
+    assertTrue(schedule.getPredictedMakespan() < 0);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValuesCacheService;
+import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValuesManager;
+import com.perl5.lang.perl.psi.PerlValuableEntity;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class PerlValuesCacheServiceTest extends PerlLightTestCase {
+  private String myResolvedText;
+
+  @Test
+  public void testCachedValueReused() {
+    PerlValuesCacheService cacheService = initAndResolve();
+    long builds = cacheService.getResolveBuildsCount();
+    assertEquals(myResolvedText, resolveAtCaret());
+    assertEquals(builds, cacheService.getResolveBuildsCount());
+  }
+
+  @Test
+  public void testCodeChangeKeepsGlobalCache() {
+    PerlValuesCacheService cacheService = initAndResolve();
+    appendText(" my $other = 42;");
+    assertEquals(myResolvedText, resolveAtCaret());
+    assertEquals(0, cacheService.getGlobalInvalidationsCount());
+    assertTrue(cacheService.getFileInvalidationsCount() > 0);
+  }
+
+  @Test
+  public void testStubsChangeDropsGlobalCache() {
+    PerlValuesCacheService cacheService = initAndResolve();
+    appendText(" package Bar; sub something{}");
+    assertEquals(myResolvedText, resolveAtCaret());
+    assertTrue(cacheService.getGlobalInvalidationsCount() > 0);
+  }
+
+  private @NotNull PerlValuesCacheService initAndResolve() {
+    initWithTextSmart("package Foo; sub new{ bless {}, shift } package main; my $var = Foo->new(); $v<caret>ar;");
+    PerlValuesCacheService cacheService = PerlValuesCacheService.getInstance(getProject());
+    myResolvedText = resolveAtCaret();
+    assertTrue(myResolvedText.contains("Foo"));
+    cacheService.resetStatistics();
+    return cacheService;
+  }
+
+  private @NotNull String resolveAtCaret() {
+    PerlValuableEntity element = getElementAtCaret(PerlValuableEntity.class);
+    return PerlValuesManager.from(element).resolve(element).getPresentableText();
+  }
+
+  private void appendText(@NotNull String text) {
+    Document document = getEditor().getDocument();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(document.getTextLength(), text));
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+  }
+}
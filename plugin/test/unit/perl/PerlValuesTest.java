@@ -718,6 +718,24 @@ public class PerlValuesTest extends PerlLightTestCase {
   @Test
   public void testScalarOtherScope() {doTest();}
 
+  @Test
+  public void testScalarBranchesFallThrough() {doTest();}
+
+  @Test
+  public void testScalarBranchesOverwritten() {doTest();}
+
+  @Test
+  public void testScalarLoopAfter() {doTest();}
+
+  @Test
+  public void testScalarLoopAssignedAfterUse() {doTest();}
+
+  @Test
+  public void testScalarLoopBackEdge() {doTest();}
+
+  @Test
+  public void testScalarLoopBackEdgeOverwritten() {doTest();}
+
   @Test
   public void testHashToScalar() {doTest();}
 
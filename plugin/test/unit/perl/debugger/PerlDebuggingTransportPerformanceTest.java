@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.debugger;
+
+import categories.Performance;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.UsefulTestCase;
+import com.perl5.lang.perl.idea.debugger.protocol.PerlDebuggingTransport;
+import gnu.trove.TByteArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays recorded debugger session from the fake Devel::Camelcadedb server and measures throughput of the legacy byte-by-byte
+ * reading and {@link PerlDebuggingTransport}
+ */
+@Category(Performance.class)
+public class PerlDebuggingTransportPerformanceTest extends UsefulTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlDebuggingTransportPerformanceTest.class);
+  private static final String SESSION_PATH = "testData/unit/perl/debugger/session.txt";
+  private static final Pattern TRANSACTION_ID_PATTERN = Pattern.compile("\"id\":(\\d+)");
+  private static final int SESSION_REPEATS = 2_000;
+  private static final int HUGE_VALUE_SIZE = 100_000;
+  private static final int PIPELINED_REQUESTS = 10_000;
+
+  private final Gson myGson = new Gson();
+
+  @Test
+  public void testLegacyReading() throws Exception {
+    byte[] session = createSession();
+    doTestReading(session, "legacy", socket -> {
+      InputStream inputStream = socket.getInputStream();
+      TByteArrayList response = new TByteArrayList();
+      int messages = 0;
+      while (true) {
+        response.clear();
+        int dataByte;
+        while ((dataByte = inputStream.read()) != '\n') {
+          if (dataByte == -1) {
+            return messages;
+          }
+          response.add((byte)dataByte);
+        }
+        myGson.fromJson(new String(response.toNativeArray(), StandardCharsets.UTF_8), JsonElement.class);
+        messages++;
+      }
+    });
+  }
+
+  @Test
+  public void testTransportReading() throws Exception {
+    byte[] session = createSession();
+    doTestReading(session, "transport", socket -> {
+      PerlDebuggingTransport transport = new PerlDebuggingTransport(socket.getInputStream(), socket.getOutputStream());
+      int messages = 0;
+      while (transport.hasNext()) {
+        transport.read(myGson, JsonElement.class);
+        messages++;
+      }
+      transport.close();
+      return messages;
+    });
+  }
+
+  @Test
+  public void testTransportPipelinedRequests() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      Thread server = new Thread(() -> {
+        try (Socket socket = serverSocket.accept();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+          String request;
+          while ((request = reader.readLine()) != null) {
+            Matcher matcher = TRANSACTION_ID_PATTERN.matcher(request);
+            if (matcher.find()) {
+              writer.write("{\"event\":\"RESPONSE\",\"transactionId\":" + matcher.group(1) + ",\"data\":[]}\n");
+              if (!reader.ready()) {
+                writer.flush();
+              }
+            }
+          }
+        }
+        catch (IOException e) {
+          LOG.warn(e);
+        }
+      }, "Fake Devel::Camelcadedb");
+      server.start();
+
+      try (Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort())) {
+        PerlDebuggingTransport transport = new PerlDebuggingTransport(socket.getInputStream(), socket.getOutputStream());
+        CountDownLatch responsesLatch = new CountDownLatch(PIPELINED_REQUESTS);
+        Thread reader = new Thread(() -> {
+          try {
+            while (transport.hasNext()) {
+              transport.read(myGson, JsonElement.class);
+              responsesLatch.countDown();
+            }
+          }
+          catch (IOException e) {
+            LOG.warn(e);
+          }
+        }, "Transport reader");
+        reader.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+          transport.send("get_value {\"id\":" + i + ",\"data\":{\"key\":\"0x55d5c8a1e2a8\",\"offset\":0,\"limit\":100}}");
+        }
+        assertTrue("Not all responses received", responsesLatch.await(60, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.warn("Pipelined " + PIPELINED_REQUESTS + " requests in " + elapsed + " ms");
+        transport.close();
+        reader.join();
+      }
+      server.join();
+    }
+  }
+
+  private void doTestReading(byte @NotNull [] session, @NotNull String name, @NotNull SessionReader sessionReader) throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      Thread server = new Thread(() -> {
+        try (Socket socket = serverSocket.accept(); OutputStream outputStream = socket.getOutputStream()) {
+          outputStream.write(session);
+        }
+        catch (IOException e) {
+          LOG.warn(e);
+        }
+      }, "Fake Devel::Camelcadedb");
+      server.start();
+
+      try (Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort())) {
+        long start = System.nanoTime();
+        int messages = sessionReader.read(socket);
+        long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOG.warn(name + ": read " + messages + " messages, " + session.length / 1024 + " kb in " + elapsed + " ms; " +
+                 (session.length / 1024 * 1000 / elapsed) + " kb/s");
+        assertTrue(messages > 0);
+      }
+      server.join();
+    }
+  }
+
+  /**
+   * @return recorded session, repeated {@link #SESSION_REPEATS} times, followed by the huge {@code get_value} response
+   */
+  private static byte @NotNull [] createSession() throws IOException {
+    List<String> recordedLines = FileUtil.loadLines(new File(SESSION_PATH), StandardCharsets.UTF_8.name());
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < SESSION_REPEATS; i++) {
+      for (String line : recordedLines) {
+        sb.append(line).append('\n');
+      }
+    }
+    sb.append("{\"event\":\"RESPONSE\",\"transactionId\":42,\"data\":[");
+    for (int i = 0; i < HUGE_VALUE_SIZE; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"name\":\"'key").append(i).append("'\",\"type\":\"SCALAR\",\"value\":\"value number ").append(i)
+        .append("\",\"ref_depth\":0,\"size\":0,\"expandable\":false,\"blessed\":false,\"is_utf\":false}");
+    }
+    sb.append("]}\n");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  private interface SessionReader {
+    /**
+     * @return number of messages read
+     */
+    int read(@NotNull Socket socket) throws IOException;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.profiler;
+
+import categories.Performance;
+import com.google.common.collect.Iterables;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.profiler.DummyCallTreeBuilder;
+import com.intellij.profiler.api.BaseCallStackElement;
+import com.intellij.profiler.model.NoThreadInfoInProfilerData;
+import com.intellij.testFramework.UsefulTestCase;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.profiler.parser.PerlCollapsedDumpParser;
+import com.perl5.lang.perl.profiler.parser.frames.PerlCallStackElement;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures parsing of a synthetic collapsed dump with the legacy per-line splitting, {@link PerlCollapsedDumpParser#consumeLine(String)}
+ * and {@link PerlCollapsedDumpParser#readInParallel}
+ */
+@Category(Performance.class)
+public class PerlCollapsedDumpParserPerformanceTest extends UsefulTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlCollapsedDumpParserPerformanceTest.class);
+  private static final int LINES_NUMBER = 5_000_000;
+  private static final int PACKAGES_NUMBER = 200;
+  private static final int SUBS_NUMBER = 50;
+  private static final int STACKS_NUMBER = 100_000;
+
+  private static File ourDumpFile;
+
+  @Test
+  public void testLegacyParsing() throws Exception {
+    DummyCallTreeBuilder<BaseCallStackElement> builder = new DummyCallTreeBuilder<>();
+    Map<String, PerlCallStackElement> cachedFrames = new HashMap<>();
+    long start = System.currentTimeMillis();
+    try (BufferedReader reader = createReader()) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int timeDelimiterIndex = line.lastIndexOf(" ");
+        String framesString = line.substring(0, timeDelimiterIndex);
+        long count = Long.parseLong(line.substring(timeDelimiterIndex + 1));
+        builder.addStack(
+          NoThreadInfoInProfilerData.INSTANCE,
+          ContainerUtil.map(StringUtil.split(framesString, ";"), it -> cachedFrames.computeIfAbsent(it, PerlCallStackElement::create)),
+          count);
+      }
+    }
+    report("legacy", start, builder);
+  }
+
+  @Test
+  public void testLineByLineParsing() throws Exception {
+    PerlCollapsedDumpParser parser = new PerlCollapsedDumpParser();
+    long start = System.currentTimeMillis();
+    try (BufferedReader reader = createReader()) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        parser.consumeLine(line);
+      }
+    }
+    report("line by line", start, parser.getCallTreeBuilder());
+    assertEquals(0, parser.getBadLines());
+  }
+
+  @Test
+  public void testParallelParsing() throws Exception {
+    PerlCollapsedDumpParser parser = new PerlCollapsedDumpParser();
+    long start = System.currentTimeMillis();
+    try (Reader reader = createReader()) {
+      parser.readInParallel(reader, new EmptyProgressIndicator());
+    }
+    report("parallel", start, parser.getCallTreeBuilder());
+    assertEquals(0, parser.getBadLines());
+  }
+
+  private static void report(@NotNull String name, long start, @NotNull DummyCallTreeBuilder<BaseCallStackElement> builder) {
+    long elapsed = System.currentTimeMillis() - start;
+    int stacksNumber = Iterables.size(builder.getAllStacks());
+    LOG.info(name + ": " + LINES_NUMBER + " lines, " + stacksNumber + " stacks in " + elapsed + " ms");
+    assertTrue(stacksNumber > 0);
+  }
+
+  private static @NotNull BufferedReader createReader() throws IOException {
+    return new BufferedReader(new InputStreamReader(
+      new GZIPInputStream(new FileInputStream(getDumpFile()), 1024 * 1024), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return gzipped dump with {@link #LINES_NUMBER} lines, sampled from {@link #STACKS_NUMBER} distinct stacks. Each stack extends
+   * a random previous one with a frame, so stacks share prefixes as in the real call trees.
+   */
+  private static synchronized @NotNull File getDumpFile() throws IOException {
+    if (ourDumpFile == null) {
+      Random random = new Random(42);
+      String[] stacks = new String[STACKS_NUMBER];
+      stacks[0] = "main::BEGIN";
+      for (int i = 1; i < STACKS_NUMBER; i++) {
+        stacks[i] = stacks[random.nextInt(i)] + ";Foo::Bar" + random.nextInt(PACKAGES_NUMBER) + "::sub_" + random.nextInt(SUBS_NUMBER);
+      }
+      File dumpFile = FileUtil.createTempFile("collapsed", ".gz", true);
+      try (Writer writer = new OutputStreamWriter(
+        new GZIPOutputStream(new FileOutputStream(dumpFile), 1024 * 1024), StandardCharsets.UTF_8)) {
+        for (int i = 0; i < LINES_NUMBER; i++) {
+          writer.append(stacks[random.nextInt(STACKS_NUMBER)]).append(' ').append(Integer.toString(1 + random.nextInt(100_000)))
+            .append('\n');
+        }
+      }
+      ourDumpFile = dumpFile;
+    }
+    return ourDumpFile;
+  }
+}
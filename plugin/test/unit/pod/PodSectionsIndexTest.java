@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.pod;
+
+import com.perl5.lang.pod.parser.psi.stubs.PodSectionsIndex;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+public class PodSectionsIndexTest extends TestCase {
+  @Test
+  public void testWords() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("print", "print ", "print FILEHANDLE", "print FILEHANDLE ", "print FILEHANDLE LIST")),
+                 PodSectionsIndex.getKeys("print FILEHANDLE LIST"));
+  }
+
+  @Test
+  public void testSymbols() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("-", "-X", "-X ", "-X FILEHANDLE")), PodSectionsIndex.getKeys("-X FILEHANDLE"));
+  }
+
+  @Test
+  public void testTrailingSpaces() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("$", "$_")), PodSectionsIndex.getKeys("$_  "));
+  }
+
+  @Test
+  public void testSymbolsOnly() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("?:")), PodSectionsIndex.getKeys("?:"));
+  }
+}
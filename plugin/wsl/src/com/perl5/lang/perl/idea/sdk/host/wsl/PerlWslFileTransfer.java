@@ -32,7 +32,6 @@ import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.ui.update.MergingUpdateQueue;
 import com.intellij.util.ui.update.Update;
@@ -41,7 +40,6 @@ import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -122,14 +120,12 @@ class PerlWslFileTransfer extends PerlHostFileTransfer<PerlWslData> {
   }
 
   @Override
-  public @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) throws IOException {
-    if (myHostData.isFileDirectlyAvailable(remotePath)) {
-      LOG.debug(myHostData + " file directly available: " + remotePath);
+  protected @NotNull List<String> doListFiles(@NotNull String remoteDir, boolean recursive) throws IOException {
+    if (myHostData.isFileDirectlyAvailable(remoteDir)) {
+      LOG.debug(myHostData + " file directly available: " + remoteDir);
       return Collections.emptyList();
     }
-    PerlWslFileSystem wslFileSystem = PerlWslFileSystem.create(myHostData.getDistribution());
-    VirtualFile root = wslFileSystem.refreshAndFindFileByPath(remotePath);
-    return root == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(root.getChildren()));
+    return super.doListFiles(remoteDir, recursive);
   }
 
   @Override
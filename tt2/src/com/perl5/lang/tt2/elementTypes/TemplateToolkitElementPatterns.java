@@ -19,6 +19,7 @@ package com.perl5.lang.tt2.elementTypes;
 import com.intellij.patterns.PsiElementPattern;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.tree.TokenSet;
 
 import static com.intellij.patterns.PlatformPatterns.psiElement;
 
@@ -34,4 +35,10 @@ public interface TemplateToolkitElementPatterns extends TemplateToolkitElementTy
 
   // fixme add controlling tokenset
   PsiElementPattern.Capture<PsiElement> BLOCK_NAME_USAGE_PATTERN = psiElement(TT2_STRING_CONTENT);
+
+  PsiElementPattern.Capture<PsiElement> MACRO_NAME_USAGE_PATTERN =
+    psiElement(TT2_IDENTIFIER)
+      .withParent(psiElement().withElementType(TokenSet.create(IDENTIFIER_EXPR, CALL_EXPR)))
+      .andNot(psiElement().afterLeaf(psiElement(TT2_PERIOD)))
+      .andNot(FILTER_NAME_PATTERN);
 }
@@ -20,16 +20,25 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.ProcessingContext;
+import com.perl5.lang.tt2.TemplateToolkitIcons;
 import com.perl5.lang.tt2.psi.TemplateToolkitNamedBlock;
 import com.perl5.lang.tt2.psi.TemplateToolkitString;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitBlocksIndex;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitIncludesIndex;
 import com.perl5.lang.tt2.psi.mixins.TemplateToolkitStringMixin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashSet;
+import java.util.Set;
+
 
 public class TemplateToolkitBlocksCompletionProvider extends CompletionProvider<CompletionParameters> {
   @Override
@@ -52,10 +61,13 @@ public class TemplateToolkitBlocksCompletionProvider extends CompletionProvider<
       return;
     }
 
-    PsiTreeUtil.processElements(element.getContainingFile(), element1 -> {
+    PsiFile containingFile = element.getContainingFile();
+    Set<String> addedNames = new HashSet<>();
+    PsiTreeUtil.processElements(containingFile, element1 -> {
       if (element1 instanceof TemplateToolkitNamedBlock) {
         String blockName = ((TemplateToolkitNamedBlock)element1).getName();
         if (StringUtil.isNotEmpty(blockName)) {
+          addedNames.add(blockName);
           result.addElement(
             LookupElementBuilder.create(element1, blockName)
               .withTypeText("BLOCK", true)
@@ -65,5 +77,20 @@ public class TemplateToolkitBlocksCompletionProvider extends CompletionProvider<
       }
       return true;
     });
+
+    Project project = element.getProject();
+    VirtualFile virtualFile = containingFile.getViewProvider().getVirtualFile();
+    for (VirtualFile relatedFile : TemplateToolkitIncludesIndex.getRelatedFiles(project, virtualFile)) {
+      for (String blockName : TemplateToolkitBlocksIndex.getBlocksNames(project, relatedFile)) {
+        if (addedNames.add(blockName)) {
+          result.addElement(
+            LookupElementBuilder.create(blockName)
+              .withTypeText("BLOCK", true)
+              .withTailText(" (" + relatedFile.getName() + ")", true)
+              .withIcon(TemplateToolkitIcons.TTK2_BLOCK_ICON)
+          );
+        }
+      }
+    }
   }
 }
@@ -34,5 +34,11 @@ public class TemplateToolkitCompletionContributor extends CompletionContributor
       BLOCK_NAME_USAGE_PATTERN,
       new TemplateToolkitBlocksCompletionProvider()
     );
+
+    extend(
+      CompletionType.BASIC,
+      MACRO_NAME_USAGE_PATTERN,
+      new TemplateToolkitMacrosCompletionProvider()
+    );
   }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.tt2.idea.completion;
+
+import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.codeInsight.completion.CompletionProvider;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ProcessingContext;
+import com.perl5.lang.tt2.TemplateToolkitIcons;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitIncludesIndex;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitMacrosIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+
+public class TemplateToolkitMacrosCompletionProvider extends CompletionProvider<CompletionParameters> {
+  @Override
+  protected void addCompletions(@NotNull CompletionParameters parameters,
+                                @NotNull ProcessingContext context,
+                                final @NotNull CompletionResultSet result) {
+    PsiElement element = parameters.getOriginalPosition();
+    if (element == null) {
+      return;
+    }
+
+    PsiFile containingFile = element.getContainingFile();
+    Set<String> addedNames = new HashSet<>();
+    PsiTreeUtil.processElements(containingFile, macroElement -> {
+      String macroName = TemplateToolkitMacrosIndex.getMacroName(macroElement);
+      if (StringUtil.isNotEmpty(macroName) && addedNames.add(macroName)) {
+        result.addElement(
+          LookupElementBuilder.create(macroElement, macroName)
+            .withTypeText("MACRO", true)
+            .withIcon(TemplateToolkitIcons.TTK2_ICON)
+        );
+      }
+      return true;
+    });
+
+    Project project = element.getProject();
+    VirtualFile virtualFile = containingFile.getViewProvider().getVirtualFile();
+    for (VirtualFile relatedFile : TemplateToolkitIncludesIndex.getRelatedFiles(project, virtualFile)) {
+      for (String macroName : TemplateToolkitMacrosIndex.getMacrosNames(project, relatedFile)) {
+        if (addedNames.add(macroName)) {
+          result.addElement(
+            LookupElementBuilder.create(macroName)
+              .withTypeText("MACRO", true)
+              .withTailText(" (" + relatedFile.getName() + ")", true)
+              .withIcon(TemplateToolkitIcons.TTK2_ICON)
+          );
+        }
+      }
+    }
+  }
+}
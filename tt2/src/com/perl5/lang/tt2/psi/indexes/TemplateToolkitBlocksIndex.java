@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.perl5.lang.tt2.psi.indexes;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.perl5.lang.tt2.TemplateToolkitLanguage;
+import com.perl5.lang.tt2.filetypes.TemplateToolkitFileType;
+import com.perl5.lang.tt2.psi.TemplateToolkitNamedBlock;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes templates by names of {@code BLOCK}s defined in them, so blocks from other templates are found without loading their PSI
+ */
+public class TemplateToolkitBlocksIndex extends ScalarIndexExtension<String> {
+  public static final int VERSION = 1;
+  public static final ID<String, Void> NAME = ID.create("tt2.blocks");
+
+  @Override
+  public @NotNull ID<String, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer() {
+    return inputData -> {
+      PsiFile templateFile = inputData.getPsiFile().getViewProvider().getPsi(TemplateToolkitLanguage.INSTANCE);
+      if (templateFile == null) {
+        return Collections.emptyMap();
+      }
+      Map<String, Void> result = new HashMap<>();
+      PsiTreeUtil.processElements(templateFile, element -> {
+        if (element instanceof TemplateToolkitNamedBlock) {
+          String blockName = ((TemplateToolkitNamedBlock)element).getName();
+          if (StringUtil.isNotEmpty(blockName)) {
+            result.put(blockName, null);
+          }
+        }
+        return true;
+      });
+      return result;
+    };
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+    return file -> file.getFileType() == TemplateToolkitFileType.INSTANCE;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * @return names of blocks defined in the {@code templateFile}
+   */
+  public static @NotNull Set<String> getBlocksNames(@NotNull Project project, @NotNull VirtualFile templateFile) {
+    return FileBasedIndex.getInstance().getFileData(NAME, templateFile, project).keySet();
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.perl5.lang.tt2.psi.indexes;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.ElementManipulators;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtilCore;
+import com.intellij.util.PathUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.perl5.lang.tt2.TemplateToolkitLanguage;
+import com.perl5.lang.tt2.filetypes.TemplateToolkitFileType;
+import com.perl5.lang.tt2.idea.settings.TemplateToolkitSettings;
+import com.perl5.lang.tt2.psi.TemplateToolkitString;
+import com.perl5.lang.tt2.psi.mixins.TemplateToolkitStringMixin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes templates by string targets of their {@code INSERT}, {@code INCLUDE}, {@code PROCESS} and {@code WRAPPER} directives.
+ * Targets are stored as written and resolved to files on request with {@link #findIncludedFile(Project, VirtualFile, String)}, because
+ * resolution depends on the template roots configuration. Together they form the templates include graph.
+ * <p>
+ * Templates are also indexed by names of the targeted files, prefixed with {@link #FILE_NAME_KEY_PREFIX}, so files including a template
+ * are found with a single key lookup.
+ */
+public class TemplateToolkitIncludesIndex extends ScalarIndexExtension<String> {
+  public static final int VERSION = 2;
+  public static final ID<String, Void> NAME = ID.create("tt2.includes");
+  /**
+   * Prefix of the target file name keys, can't appear in paths
+   */
+  private static final String FILE_NAME_KEY_PREFIX = "\0";
+
+  @Override
+  public @NotNull ID<String, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer() {
+    return inputData -> {
+      PsiFile templateFile = inputData.getPsiFile().getViewProvider().getPsi(TemplateToolkitLanguage.INSTANCE);
+      if (templateFile == null) {
+        return Collections.emptyMap();
+      }
+      Map<String, Void> result = new HashMap<>();
+      PsiTreeUtil.processElements(templateFile, element -> {
+        if (element instanceof TemplateToolkitString &&
+            TemplateToolkitStringMixin.FILES_TARGETED_CONTAINERS.contains(PsiUtilCore.getElementType(element.getParent()))) {
+          String targetPath = ElementManipulators.getValueText(element);
+          if (StringUtil.isNotEmpty(targetPath)) {
+            result.put(targetPath, null);
+            result.put(getFileNameKey(PathUtil.getFileName(targetPath)), null);
+          }
+        }
+        return true;
+      });
+      return result;
+    };
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+    return file -> file.getFileType() == TemplateToolkitFileType.INSTANCE;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * @return file targeted by the {@code targetPath} from the {@code templateFile}: relative to the template directory for paths starting
+   * with dot, relative to the template roots or absolute otherwise
+   */
+  public static @Nullable VirtualFile findIncludedFile(@NotNull Project project,
+                                                       @NotNull VirtualFile templateFile,
+                                                       @NotNull String targetPath) {
+    if (StringUtil.startsWith(targetPath, ".")) {
+      VirtualFile templateDir = templateFile.getParent();
+      return templateDir == null ? null : templateDir.findFileByRelativePath(targetPath);
+    }
+    for (VirtualFile templateRoot : TemplateToolkitSettings.getInstance(project).getTemplateRoots()) {
+      VirtualFile targetFile = templateRoot.findFileByRelativePath(targetPath);
+      if (targetFile != null && !targetFile.isDirectory()) {
+        return targetFile;
+      }
+    }
+    if (FileUtil.isAbsolute(targetPath)) {
+      return LocalFileSystem.getInstance().findFileByPath(targetPath);
+    }
+    return null;
+  }
+
+  /**
+   * @return files included by the {@code templateFile}
+   */
+  public static @NotNull Set<VirtualFile> getIncludedFiles(@NotNull Project project, @NotNull VirtualFile templateFile) {
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    for (String targetPath : FileBasedIndex.getInstance().getFileData(NAME, templateFile, project).keySet()) {
+      if (targetPath.startsWith(FILE_NAME_KEY_PREFIX)) {
+        continue;
+      }
+      VirtualFile targetFile = findIncludedFile(project, templateFile, targetPath);
+      if (targetFile != null) {
+        result.add(targetFile);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return templates including the {@code templateFile}
+   */
+  public static @NotNull Set<VirtualFile> getIncludingFiles(@NotNull Project project, @NotNull VirtualFile templateFile) {
+    FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+    String fileName = templateFile.getName();
+    Collection<VirtualFile> candidateFiles =
+      fileBasedIndex.getContainingFiles(NAME, getFileNameKey(fileName), GlobalSearchScope.allScope(project));
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    for (VirtualFile includingFile : candidateFiles) {
+      for (String targetPath : fileBasedIndex.getFileData(NAME, includingFile, project).keySet()) {
+        if (!targetPath.startsWith(FILE_NAME_KEY_PREFIX) && fileName.equals(PathUtil.getFileName(targetPath)) &&
+            templateFile.equals(findIncludedFile(project, includingFile, targetPath))) {
+          result.add(includingFile);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return templates included by the {@code templateFile} directly or transitively and templates including it directly. Blocks
+   * defined in these templates may be visible from the {@code templateFile}. Result is cached until the index, file system or project
+   * roots change.
+   */
+  public static @NotNull Set<VirtualFile> getRelatedFiles(@NotNull Project project, @NotNull VirtualFile templateFile) {
+    Map<VirtualFile, Set<VirtualFile>> relatedFilesMap = CachedValuesManager.getManager(project).getCachedValue(
+      project, () -> CachedValueProvider.Result.create(
+        new ConcurrentHashMap<>(),
+        (ModificationTracker)() -> FileBasedIndex.getInstance().getIndexModificationStamp(NAME, project),
+        VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS,
+        ProjectRootManager.getInstance(project)));
+    Set<VirtualFile> result = relatedFilesMap.get(templateFile);
+    if (result == null) {
+      result = Collections.unmodifiableSet(computeRelatedFiles(project, templateFile));
+      relatedFilesMap.put(templateFile, result);
+    }
+    return result;
+  }
+
+  private static @NotNull Set<VirtualFile> computeRelatedFiles(@NotNull Project project, @NotNull VirtualFile templateFile) {
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    Deque<VirtualFile> queue = new ArrayDeque<>();
+    queue.add(templateFile);
+    Set<VirtualFile> visited = new HashSet<>();
+    while (!queue.isEmpty()) {
+      VirtualFile currentFile = queue.poll();
+      if (!visited.add(currentFile)) {
+        continue;
+      }
+      for (VirtualFile includedFile : getIncludedFiles(project, currentFile)) {
+        result.add(includedFile);
+        queue.add(includedFile);
+      }
+    }
+    result.addAll(getIncludingFiles(project, templateFile));
+    result.remove(templateFile);
+    return result;
+  }
+
+  private static @NotNull String getFileNameKey(@NotNull String fileName) {
+    return FILE_NAME_KEY_PREFIX + fileName;
+  }
+}
@@ -39,7 +39,7 @@ public class TemplateToolkitStringMixin extends TemplateToolkitCompositeElementI
     PROCESS_DIRECTIVE,
     WRAPPER_DIRECTIVE
   );
-  protected static final TokenSet FILES_TARGETED_CONTAINERS = TokenSet.create(
+  public static final TokenSet FILES_TARGETED_CONTAINERS = TokenSet.create(
     INSERT_DIRECTIVE,
     INCLUDE_DIRECTIVE,
     PROCESS_DIRECTIVE,
@@ -16,15 +16,17 @@
 
 package com.perl5.lang.tt2.psi.references;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.ElementManipulators;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiElementResolveResult;
-import com.intellij.psi.ResolveResult;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.perl5.lang.perl.psi.references.PerlCachingReference;
+import com.perl5.lang.tt2.TemplateToolkitLanguage;
 import com.perl5.lang.tt2.psi.TemplateToolkitNamedBlock;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitBlocksIndex;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitIncludesIndex;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -48,15 +50,36 @@ public class TemplateToolkitBlockReference extends PerlCachingReference<PsiEleme
     }
 
     final List<ResolveResult> result = new ArrayList<>();
+    PsiFile containingFile = element.getContainingFile();
+    collectBlocks(containingFile, targetName, result);
+    if (!result.isEmpty()) {
+      return result.toArray(ResolveResult.EMPTY_ARRAY);
+    }
+
+    VirtualFile virtualFile = containingFile.getViewProvider().getVirtualFile();
+    Project project = element.getProject();
+    String blockName = targetName.toString();
+    PsiManager psiManager = element.getManager();
+    for (VirtualFile relatedFile : TemplateToolkitIncludesIndex.getRelatedFiles(project, virtualFile)) {
+      if (!TemplateToolkitBlocksIndex.getBlocksNames(project, relatedFile).contains(blockName)) {
+        continue;
+      }
+      FileViewProvider viewProvider = psiManager.findViewProvider(relatedFile);
+      PsiFile templateFile = viewProvider == null ? null : viewProvider.getPsi(TemplateToolkitLanguage.INSTANCE);
+      if (templateFile != null) {
+        collectBlocks(templateFile, targetName, result);
+      }
+    }
+
+    return result.toArray(ResolveResult.EMPTY_ARRAY);
+  }
 
-    PsiTreeUtil.processElements(element.getContainingFile(), element1 ->
-    {
-      if (element1 instanceof TemplateToolkitNamedBlock && StringUtil.equals(((TemplateToolkitNamedBlock)element1).getName(), targetName)) {
-        result.add(new PsiElementResolveResult(element1));
+  private static void collectBlocks(@NotNull PsiFile psiFile, @NotNull CharSequence blockName, @NotNull List<ResolveResult> result) {
+    PsiTreeUtil.processElements(psiFile, element -> {
+      if (element instanceof TemplateToolkitNamedBlock && StringUtil.equals(((TemplateToolkitNamedBlock)element).getName(), blockName)) {
+        result.add(new PsiElementResolveResult(element));
       }
       return true;
     });
-
-    return result.toArray(new ResolveResult[result.size()]);
   }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.includes;
+
+import base.TemplateToolkitLightTestCase;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.ResolveResult;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.perl5.lang.tt2.TemplateToolkitLanguage;
+import com.perl5.lang.tt2.psi.TemplateToolkitString;
+import com.perl5.lang.tt2.psi.indexes.TemplateToolkitIncludesIndex;
+import com.perl5.lang.tt2.psi.references.TemplateToolkitBlockReference;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class TemplateToolkitIncludesTest extends TemplateToolkitLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit/includes";
+  }
+
+  @Test
+  public void testResolveBlockFromIncluded() {
+    myFixture.addFileToProject("blocks.tt", "[% BLOCK header %]Header[% END %]");
+    myFixture.addFileToProject("middle.tt", "[% PROCESS './blocks.tt' %]");
+    myFixture.configureByText("page.tt", "[% PROCESS './middle.tt' %][% PROCESS hea<caret>der %]");
+    assertEquals(Collections.singletonList("blocks.tt"), resolveBlockAtCaret());
+  }
+
+  @Test
+  public void testResolveBlockFromDirectCaller() {
+    myFixture.addFileToProject("page.tt", "[% BLOCK footer %]Footer[% END %][% INCLUDE './part.tt' %]");
+    myFixture.configureByText("part.tt", "[% PROCESS foo<caret>ter %]");
+    assertEquals(Collections.singletonList("page.tt"), resolveBlockAtCaret());
+  }
+
+  @Test
+  public void testNoBlockFromIndirectCaller() {
+    myFixture.addFileToProject("root.tt", "[% BLOCK footer %]Footer[% END %][% INCLUDE './page.tt' %]");
+    myFixture.addFileToProject("page.tt", "[% INCLUDE './part.tt' %]");
+    myFixture.configureByText("part.tt", "[% PROCESS foo<caret>ter %]");
+    assertEquals(Collections.emptyList(), resolveBlockAtCaret());
+  }
+
+  @Test
+  public void testBlocksCompletion() {
+    myFixture.addFileToProject("blocks.tt", "[% BLOCK header %]Header[% END %][% BLOCK helper %]Helper[% END %]");
+    myFixture.configureByText("page.tt", "[% PROCESS './blocks.tt' %][% BLOCK hello %][% END %][% PROCESS he<caret> %]");
+    myFixture.completeBasic();
+    List<String> lookupStrings = myFixture.getLookupElementStrings();
+    assertNotNull(lookupStrings);
+    assertContainsElements(lookupStrings, "header", "helper", "hello");
+  }
+
+  @Test
+  public void testMacrosCompletion() {
+    myFixture.addFileToProject("macros.tt", "[% MACRO header INCLUDE header %][% MACRO helper(n) INCLUDE footer %]");
+    myFixture.configureByText("page.tt", "[% PROCESS './macros.tt' %][% MACRO hello INCLUDE hello %][% he<caret> %]");
+    myFixture.completeBasic();
+    List<String> lookupStrings = myFixture.getLookupElementStrings();
+    assertNotNull(lookupStrings);
+    assertContainsElements(lookupStrings, "header", "helper", "hello");
+  }
+
+  @Test
+  public void testRelatedFilesCache() {
+    VirtualFile pageFile = myFixture.addFileToProject("page.tt", "[% INCLUDE './late.tt' %]").getVirtualFile();
+    Set<VirtualFile> relatedFiles = TemplateToolkitIncludesIndex.getRelatedFiles(getProject(), pageFile);
+    assertEmpty(relatedFiles);
+    assertSame(relatedFiles, TemplateToolkitIncludesIndex.getRelatedFiles(getProject(), pageFile));
+
+    VirtualFile lateFile = myFixture.addFileToProject("late.tt", "[% BLOCK late %][% END %]").getVirtualFile();
+    assertEquals(Collections.singleton(lateFile), TemplateToolkitIncludesIndex.getRelatedFiles(getProject(), pageFile));
+  }
+
+  private @NotNull List<String> resolveBlockAtCaret() {
+    PsiElement leaf = getFile().getViewProvider().findElementAt(getEditor().getCaretModel().getOffset(), TemplateToolkitLanguage.INSTANCE);
+    TemplateToolkitString stringElement = PsiTreeUtil.getParentOfType(leaf, TemplateToolkitString.class);
+    assertNotNull(stringElement);
+    List<String> result = new ArrayList<>();
+    for (PsiReference reference : stringElement.getReferences()) {
+      if (reference instanceof TemplateToolkitBlockReference) {
+        for (ResolveResult resolveResult : ((TemplateToolkitBlockReference)reference).multiResolve(false)) {
+          PsiElement target = resolveResult.getElement();
+          assertNotNull(target);
+          result.add(target.getContainingFile().getName());
+        }
+      }
+    }
+    return result;
+  }
+}